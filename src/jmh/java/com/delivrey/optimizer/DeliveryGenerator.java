@@ -0,0 +1,110 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.dto.DeliveryDTO;
+import com.delivrey.entity.Delivery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded synthetic tours for the benchmarks: the same layout, size and seed always give the
+ * same deliveries, so results can be compared between versions. The first stop is the depot
+ * and each delivery's id is its position in the generated list.
+ */
+public final class DeliveryGenerator {
+
+    // Warehouses of the DatabaseSeeder
+    static final double PARIS_LATITUDE = 48.8566;
+    static final double PARIS_LONGITUDE = 2.3522;
+    static final double LYON_LATITUDE = 45.7640;
+    static final double LYON_LONGITUDE = 4.8357;
+
+    public enum Layout {
+        /**
+         * Spread evenly over a square of about 40 km around Paris.
+         */
+        UNIFORM,
+        /**
+         * Grouped around Paris and Lyon, two thirds in Paris, most of them within a few km of a center.
+         */
+        CLUSTERED,
+        /**
+         * On a 15 km ring around the depot, the case where greedy construction goes wrong the most.
+         */
+        RING
+    }
+
+    private DeliveryGenerator() {
+    }
+
+    public static List<Delivery> generate(Layout layout, int size, long seed) {
+        Random random = new Random(seed);
+        List<Delivery> deliveries = new ArrayList<>(size);
+        deliveries.add(delivery(0, PARIS_LATITUDE, PARIS_LONGITUDE, random));
+        for (int i = 1; i < size; i++) {
+            double[] point = switch (layout) {
+                case UNIFORM -> uniform(random);
+                case CLUSTERED -> clustered(random);
+                case RING -> ring(random);
+            };
+            deliveries.add(delivery(i, point[0], point[1], random));
+        }
+        return deliveries;
+    }
+
+    public static List<DeliveryDTO> toDtos(List<Delivery> deliveries) {
+        List<DeliveryDTO> dtos = new ArrayList<>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            dtos.add(DeliveryDTO.builder()
+                    .id(delivery.getId())
+                    .latitude(delivery.getLatitude())
+                    .longitude(delivery.getLongitude())
+                    .weight(delivery.getWeight())
+                    .volume(delivery.getVolume())
+                    .timeWindow(delivery.getTimeWindow())
+                    .status(delivery.getStatus())
+                    .build());
+        }
+        return dtos;
+    }
+
+    private static double[] uniform(Random random) {
+        return new double[] {
+                PARIS_LATITUDE + (random.nextDouble() - 0.5) * 0.36,
+                PARIS_LONGITUDE + (random.nextDouble() - 0.5) * 0.54
+        };
+    }
+
+    private static double[] clustered(Random random) {
+        boolean paris = random.nextInt(3) < 2;
+        double latitude = paris ? PARIS_LATITUDE : LYON_LATITUDE;
+        double longitude = paris ? PARIS_LONGITUDE : LYON_LONGITUDE;
+        // About 3 km of spread around the city center
+        return new double[] {
+                latitude + random.nextGaussian() * 0.027,
+                longitude + random.nextGaussian() * 0.04
+        };
+    }
+
+    private static double[] ring(Random random) {
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double radiusKm = 15 + random.nextGaussian() * 0.3;
+        return new double[] {
+                PARIS_LATITUDE + radiusKm / 111.2 * Math.sin(angle),
+                PARIS_LONGITUDE + radiusKm / (111.2 * Math.cos(Math.toRadians(PARIS_LATITUDE))) * Math.cos(angle)
+        };
+    }
+
+    private static Delivery delivery(long id, double latitude, double longitude, Random random) {
+        Delivery delivery = new Delivery();
+        delivery.setId(id);
+        delivery.setAddress("Stop " + id);
+        delivery.setLatitude(latitude);
+        delivery.setLongitude(longitude);
+        delivery.setWeight(id == 0 ? 0.0 : 1 + random.nextInt(20));
+        delivery.setVolume(id == 0 ? 0.0 : 0.1 + random.nextInt(10) / 10.0);
+        delivery.setTimeWindow("09:00-18:00");
+        return delivery;
+    }
+}
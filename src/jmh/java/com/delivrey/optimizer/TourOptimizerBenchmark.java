@@ -0,0 +1,126 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.dto.DeliveryDTO;
+import com.delivrey.entity.Delivery;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speed and quality of the tour optimizers on synthetic tours.
+ * <p>
+ * Run with {@code mvn -Pbenchmark verify}; the results go to {@code target/jmh-result.json}.
+ * Besides ops/s, each result has the allocation rate ({@code gc.alloc.rate.norm}, from the GC
+ * profiler enabled by the profile) and {@code tourLengthKm}, the length of the route built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Clarke-Wright keeps n²/2 savings: about 800 MB at 10k stops
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TourOptimizerBenchmark {
+
+    static final long SEED = 42L;
+
+    @Param({"10", "100", "1000", "10000"})
+    int size;
+
+    @Param({"UNIFORM", "CLUSTERED", "RING"})
+    DeliveryGenerator.Layout layout;
+
+    private List<Delivery> deliveries;
+    private List<DeliveryDTO> dtos;
+    private DistanceMatrix distances;
+    private NearestNeighborOptimizer nearestNeighbor;
+    private ClarkeWrightOptimizer clarkeWright;
+    private LocalSearchOptimizer localSearch;
+    private MultiStartOptimizer multiStart;
+    private AIDeliveryOptimizer aiDeliveryOptimizer;
+
+    /**
+     * Length of the last route built, reported next to the throughput.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class TourLength {
+        public double tourLengthKm;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tourLengthKm = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        deliveries = DeliveryGenerator.generate(layout, size, SEED);
+        dtos = DeliveryGenerator.toDtos(deliveries);
+        distances = DistanceMatrix.of(deliveries);
+        nearestNeighbor = new NearestNeighborOptimizer();
+        clarkeWright = new ClarkeWrightOptimizer();
+        // Same stages and defaults as the "NN+2OPT+OROPT" algorithm, without the time budget
+        localSearch = new LocalSearchOptimizer(nearestNeighbor,
+                List.of(new TwoOptImprover(), new OrOptImprover()), 10, Duration.ofMinutes(10));
+        // Default starts and seed of "MULTI_START", on every core
+        multiStart = new MultiStartOptimizer(16, Runtime.getRuntime().availableProcessors(), SEED, 10,
+                Duration.ofMinutes(10));
+        aiDeliveryOptimizer = new AIDeliveryOptimizer();
+    }
+
+    @Benchmark
+    public List<Delivery> nearestNeighbor(TourLength length) {
+        return measured(nearestNeighbor.calculateOptimalTour(deliveries, distances), length);
+    }
+
+    @Benchmark
+    public List<Delivery> clarkeWright(TourLength length) {
+        return measured(clarkeWright.calculateOptimalTour(deliveries, distances), length);
+    }
+
+    @Benchmark
+    public List<Delivery> nearestNeighborLocalSearch(TourLength length) {
+        return measured(localSearch.calculateOptimalTour(deliveries, distances), length);
+    }
+
+    @Benchmark
+    public List<Delivery> multiStart(TourLength length) {
+        return measured(multiStart.calculateOptimalTour(deliveries, distances), length);
+    }
+
+    @Benchmark
+    public List<DeliveryDTO> aiDeliveryOptimizer(TourLength length) {
+        List<DeliveryDTO> route = aiDeliveryOptimizer.optimize(dtos);
+        length.tourLengthKm = routeLength(route.stream().map(DeliveryDTO::getId).toList());
+        return route;
+    }
+
+    private List<Delivery> measured(List<Delivery> route, TourLength length) {
+        length.tourLengthKm = routeLength(route.stream().map(Delivery::getId).toList());
+        return route;
+    }
+
+    // Generated ids are the matrix indexes, cheaper than DistanceMatrix.indexesOf inside the measurement
+    private double routeLength(List<Long> ids) {
+        int[] route = new int[ids.size()];
+        for (int i = 0; i < route.length; i++) {
+            route[i] = ids.get(i).intValue();
+        }
+        return distances.routeLength(route);
+    }
+}
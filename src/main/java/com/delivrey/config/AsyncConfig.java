@@ -1,7 +1,14 @@
 package com.delivrey.config;
 
+import com.delivrey.event.TourEventExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -9,10 +16,38 @@ import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync
+@EnableConfigurationProperties({DeliveryHistoryProperties.class, TourEventProperties.class})
 public class AsyncConfig {
+
+    private final boolean virtualThreads;
+
+    /**
+     * With {@code spring.threads.virtual.enabled=true} on Java 21 or later, Tomcat serves requests on virtual
+     * threads and so do the executors below. Run with -Djdk.tracePinnedThreads=short (maven profile java21)
+     * to log the places where a virtual thread blocks while pinned inside a synchronized block.
+     */
+    public AsyncConfig(Environment environment) {
+        this.virtualThreads = Threading.VIRTUAL.isActive(environment);
+    }
     
+    /**
+     * Handles tour status changes, one tour at a time per lane and never on the thread that publishes them.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public TourEventExecutor tourEventExecutor(TourEventProperties properties, MeterRegistry meterRegistry) {
+        return new TourEventExecutor(properties.getLanes(), properties.getQueueCapacity(),
+                properties.getOverflowCapacity(), properties.getSubmitTimeout(), virtualThreads, meterRegistry);
+    }
+
     @Bean(name = "taskExecutor")
     public Executor taskExecutor() {
+        if (virtualThreads) {
+            // A thread per task; the limit only protects the connection pool
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("DeliveryHistory-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(10);
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(2);
         executor.setMaxPoolSize(10);
@@ -21,4 +56,25 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Runs optimization jobs apart from the event listeners of {@code taskExecutor}, so that
+     * long searches never delay them. When every thread is busy and the queue is full,
+     * submissions are rejected instead of piling up.
+     */
+    @Bean(name = "optimizationExecutor")
+    public ThreadPoolTaskExecutor optimizationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(20);
+        executor.setThreadNamePrefix("Optimization-");
+        if (virtualThreads) {
+            // Still pooled: optimizations are CPU bound, the pool size is what bounds them
+            executor.setThreadFactory(new VirtualThreadTaskExecutor("Optimization-").getVirtualThreadFactory());
+        }
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
 }
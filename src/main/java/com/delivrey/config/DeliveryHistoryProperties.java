@@ -0,0 +1,34 @@
+package com.delivrey.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.delivery-history")
+public class DeliveryHistoryProperties {
+    /**
+     * Writes the history of a completed tour with a single INSERT ... SELECT instead of batched
+     * inserts. PostgreSQL only.
+     */
+    private boolean insertSelect = false;
+
+    /**
+     * Computes the delivery statistics from the existing histories at startup when they have none
+     * yet, as after the upgrade that adds them.
+     */
+    private boolean statsBackfill = true;
+
+    public boolean isInsertSelect() {
+        return insertSelect;
+    }
+
+    public void setInsertSelect(boolean insertSelect) {
+        this.insertSelect = insertSelect;
+    }
+
+    public boolean isStatsBackfill() {
+        return statsBackfill;
+    }
+
+    public void setStatsBackfill(boolean statsBackfill) {
+        this.statsBackfill = statsBackfill;
+    }
+}
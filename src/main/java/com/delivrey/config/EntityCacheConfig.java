@@ -0,0 +1,81 @@
+package com.delivrey.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.stat.HibernateMetrics;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Hibernate second-level cache of the reference entities (warehouses, vehicles, customers) and
+ * query cache, in Caffeine caches bounded in size and age. Hibernate keeps the cached entities
+ * in step with the writes it makes itself, inserts, updates and deletes alike; query results are
+ * dropped when a table they read from is written. Hits, misses and puts of each region are
+ * published as the hibernate.second.level.cache.* and hibernate.query.cache.* meters.
+ * <p>
+ * The caches are local to each instance: a change made through another instance is seen once
+ * the cached entry expires.
+ */
+@Configuration
+@EnableConfigurationProperties(EntityCacheProperties.class)
+public class EntityCacheConfig {
+
+    // Regions named in the @Cache annotations of the entities
+    public static final String WAREHOUSE_REGION = "warehouse";
+    public static final String VEHICLE_REGION = "vehicle";
+    public static final String CUSTOMER_REGION = "customer";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(EntityCacheProperties properties) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager();
+        for (String region : new String[] {WAREHOUSE_REGION, VEHICLE_REGION, CUSTOMER_REGION}) {
+            cacheManager.createCache(region, region(properties.getMaxEntries(), properties.getTtl()));
+        }
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                region(properties.getQueryMaxEntries(), properties.getQueryTtl()));
+        // Last write time of each table, against which cached query results are checked: never evicted
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, region(null, null));
+        return cacheManager;
+    }
+
+    // Regions are created above only: a region missing there fails the startup instead of being left unbounded
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return hibernateProperties -> {
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    @Bean
+    public MeterBinder hibernateMetrics(EntityManagerFactory entityManagerFactory) {
+        return new HibernateMetrics(entityManagerFactory.unwrap(SessionFactory.class),
+                "entityManagerFactory", Tags.empty());
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(Long maxEntries, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        if (maxEntries != null) {
+            configuration.setMaximumSize(OptionalLong.of(maxEntries));
+        }
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
@@ -0,0 +1,60 @@
+package com.delivrey.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.entity-cache")
+public class EntityCacheProperties {
+    /**
+     * Most entities kept in each of the warehouse, vehicle and customer regions, the least
+     * recently used going first.
+     */
+    private long maxEntries = 10_000;
+
+    /**
+     * How long a cached entity is used after it was loaded. Writes through Hibernate update the
+     * cache right away; this only bounds how long changes made outside of this application
+     * (SQL scripts, another instance) go unseen.
+     */
+    private Duration ttl = Duration.ofHours(1);
+
+    /**
+     * Most query results kept. Results are dropped as soon as one of the tables they read from changes.
+     */
+    private long queryMaxEntries = 1000;
+
+    private Duration queryTtl = Duration.ofMinutes(10);
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getQueryMaxEntries() {
+        return queryMaxEntries;
+    }
+
+    public void setQueryMaxEntries(long queryMaxEntries) {
+        this.queryMaxEntries = queryMaxEntries;
+    }
+
+    public Duration getQueryTtl() {
+        return queryTtl;
+    }
+
+    public void setQueryTtl(Duration queryTtl) {
+        this.queryTtl = queryTtl;
+    }
+}
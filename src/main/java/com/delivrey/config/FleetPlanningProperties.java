@@ -0,0 +1,60 @@
+package com.delivrey.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.optimizer.fleet")
+public class FleetPlanningProperties {
+    /**
+     * Time given to the search when the request does not set one.
+     */
+    private Duration timeLimit = Duration.ofSeconds(2);
+
+    /**
+     * Longest time a request may ask for.
+     */
+    private Duration maxTimeLimit = Duration.ofSeconds(30);
+
+    /**
+     * Number of searches run in parallel, 0 for one per available core.
+     */
+    private int parallelism = 0;
+
+    /**
+     * Seed of the randomized searches, so that the same day gives the same plan.
+     */
+    private long seed = 42;
+
+    public Duration getTimeLimit() {
+        return timeLimit;
+    }
+
+    public void setTimeLimit(Duration timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    public Duration getMaxTimeLimit() {
+        return maxTimeLimit;
+    }
+
+    public void setMaxTimeLimit(Duration maxTimeLimit) {
+        this.maxTimeLimit = maxTimeLimit;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
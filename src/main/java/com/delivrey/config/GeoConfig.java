@@ -0,0 +1,16 @@
+package com.delivrey.config;
+
+import com.delivrey.service.PendingDeliveryIndex;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(GeoProperties.class)
+public class GeoConfig {
+
+    @Bean
+    public PendingDeliveryIndex pendingDeliveryIndex(GeoProperties geoProperties) {
+        return new PendingDeliveryIndex(geoProperties.getIndexCellSize());
+    }
+}
@@ -0,0 +1,46 @@
+package com.delivrey.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.geo")
+public class GeoProperties {
+    /**
+     * Answers radius searches with PostGIS and its GiST indexes instead of the portable
+     * bounding box + haversine query. Only for PostgreSQL databases with the PostGIS extension.
+     */
+    private boolean postgis = false;
+
+    /**
+     * Keeps the PENDING deliveries in memory to answer nearby searches without the database.
+     */
+    private boolean pendingIndex = true;
+
+    /**
+     * Side of the cells of the in-memory index, in degrees (0.05° is about 5 km).
+     */
+    private double indexCellSize = 0.05;
+
+    public boolean isPostgis() {
+        return postgis;
+    }
+
+    public void setPostgis(boolean postgis) {
+        this.postgis = postgis;
+    }
+
+    public boolean isPendingIndex() {
+        return pendingIndex;
+    }
+
+    public void setPendingIndex(boolean pendingIndex) {
+        this.pendingIndex = pendingIndex;
+    }
+
+    public double getIndexCellSize() {
+        return indexCellSize;
+    }
+
+    public void setIndexCellSize(double indexCellSize) {
+        this.indexCellSize = indexCellSize;
+    }
+}
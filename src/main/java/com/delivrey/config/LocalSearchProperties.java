@@ -0,0 +1,34 @@
+package com.delivrey.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.optimizer.local-search")
+public class LocalSearchProperties {
+    /**
+     * Maximum time spent improving a route once it has been built.
+     */
+    private Duration timeBudget = Duration.ofMillis(200);
+
+    /**
+     * Number of nearest stops considered for each move.
+     */
+    private int neighbors = 10;
+
+    public Duration getTimeBudget() {
+        return timeBudget;
+    }
+
+    public void setTimeBudget(Duration timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    public int getNeighbors() {
+        return neighbors;
+    }
+
+    public void setNeighbors(int neighbors) {
+        this.neighbors = neighbors;
+    }
+}
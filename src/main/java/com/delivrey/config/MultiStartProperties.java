@@ -0,0 +1,87 @@
+package com.delivrey.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.optimizer.multi-start")
+public class MultiStartProperties {
+    /**
+     * Number of routes built and improved when the request does not set it.
+     */
+    private int starts = 16;
+
+    /**
+     * Most starts a request may ask for.
+     */
+    private int maxStarts = 256;
+
+    /**
+     * Number of starts run in parallel when the request does not set it, 0 for one per available core.
+     * Requests never get more than one per core.
+     */
+    private int parallelism = 0;
+
+    /**
+     * Seed of the randomized starts when the request does not set it.
+     */
+    private long seed = 42;
+
+    /**
+     * Time given to the search when the request does not set one.
+     */
+    private Duration timeLimit = Duration.ofSeconds(2);
+
+    /**
+     * Longest time a request may ask for.
+     */
+    private Duration maxTimeLimit = Duration.ofSeconds(30);
+
+    public int getStarts() {
+        return starts;
+    }
+
+    public void setStarts(int starts) {
+        this.starts = starts;
+    }
+
+    public int getMaxStarts() {
+        return maxStarts;
+    }
+
+    public void setMaxStarts(int maxStarts) {
+        this.maxStarts = maxStarts;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public Duration getTimeLimit() {
+        return timeLimit;
+    }
+
+    public void setTimeLimit(Duration timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    public Duration getMaxTimeLimit() {
+        return maxTimeLimit;
+    }
+
+    public void setMaxTimeLimit(Duration maxTimeLimit) {
+        this.maxTimeLimit = maxTimeLimit;
+    }
+}
@@ -0,0 +1,34 @@
+package com.delivrey.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.optimizer.cache")
+public class OptimizationCacheProperties {
+    /**
+     * Most optimized routes kept, the least recently used going first; 0 turns the cache off.
+     */
+    private int maxEntries = 1000;
+
+    /**
+     * How long an optimized route is reused after it was computed.
+     */
+    private Duration ttl = Duration.ofMinutes(30);
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+}
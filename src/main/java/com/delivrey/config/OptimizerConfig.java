@@ -2,8 +2,11 @@ package com.delivrey.config;
 
 import com.delivrey.optimizer.ClarkeWrightOptimizer;
 import com.delivrey.optimizer.NearestNeighborOptimizer;
+import com.delivrey.optimizer.TimeWindowOptimizer;
 import com.delivrey.optimizer.TourOptimizer;
 import com.delivrey.optimizer.ai.AIOptimizerStub;
+import com.delivrey.service.OptimizationResultCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -12,7 +15,8 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 
 @Configuration
-@EnableConfigurationProperties(OptimizerProperties.class)
+@EnableConfigurationProperties({OptimizerProperties.class, LocalSearchProperties.class, FleetPlanningProperties.class,
+        TimeWindowProperties.class, MultiStartProperties.class, OptimizationCacheProperties.class})
 @Profile("!test") // Ne pas charger cette configuration en mode test
 public class OptimizerConfig {
 
@@ -25,9 +29,21 @@ public class OptimizerConfig {
 
     @Bean
     @Qualifier("clarkeWright")
-    public TourOptimizer clarkeWright() {
+    public ClarkeWrightOptimizer clarkeWright() {
         return new ClarkeWrightOptimizer();
     }
+
+    @Bean
+    @Qualifier("timeWindow")
+    public TimeWindowOptimizer timeWindowOptimizer(TimeWindowProperties timeWindows, LocalSearchProperties localSearch) {
+        return new TimeWindowOptimizer(timeWindows.getDeparture(), timeWindows.getAverageSpeedKmh(),
+                timeWindows.getServiceTime(), localSearch.getNeighbors(), localSearch.getTimeBudget());
+    }
+    
+    @Bean
+    public OptimizationResultCache optimizationResultCache(OptimizationCacheProperties cache, MeterRegistry meterRegistry) {
+        return new OptimizationResultCache(cache.getMaxEntries(), cache.getTtl(), meterRegistry);
+    }
     
     @Bean
     @Qualifier("aiOptimizer")
@@ -0,0 +1,30 @@
+package com.delivrey.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Per-request SQL statement count. The statements themselves are counted by
+ * {@link com.delivrey.util.StatementCounter}, set as Hibernate's statement inspector in application.yml.
+ */
+@Configuration
+@EnableConfigurationProperties(StatementCountProperties.class)
+public class StatementCountConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.statement-count", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<StatementCountFilter> statementCountFilter(StatementCountProperties properties,
+                                                                            MeterRegistry meterRegistry) {
+        FilterRegistrationBean<StatementCountFilter> registration = new FilterRegistrationBean<>(
+                new StatementCountFilter(meterRegistry, properties.getWarnThreshold()));
+        registration.addUrlPatterns("/*");
+        // Around every other filter, some of which (security, open-in-view) may query too
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
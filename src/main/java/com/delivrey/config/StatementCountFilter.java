@@ -0,0 +1,64 @@
+package com.delivrey.config;
+
+import com.delivrey.util.StatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Number of SQL statements each request ran, as the http.server.requests.statements meter tagged
+ * like http.server.requests (method and uri pattern). Only the statements of the request's own
+ * thread are counted: the asynchronous part of a request (server-sent events, optimization jobs)
+ * is left out.
+ */
+@Slf4j
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    static final String METRIC = "http.server.requests.statements";
+
+    private final MeterRegistry meterRegistry;
+    private final int warnThreshold;
+
+    public StatementCountFilter(MeterRegistry meterRegistry, int warnThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = StatementCounter.count();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long statements = StatementCounter.count() - start;
+            String uri = uri(request);
+            DistributionSummary.builder(METRIC)
+                    .description("SQL statements run by a request")
+                    .baseUnit("statements")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .record(statements);
+            if (statements > warnThreshold) {
+                log.warn("{} {} : {} requêtes SQL (seuil {})", request.getMethod(), uri, statements, warnThreshold);
+            } else {
+                log.debug("{} {} : {} requêtes SQL", request.getMethod(), uri, statements);
+            }
+        }
+    }
+
+    // The handler's pattern rather than the path, so that there is one meter per endpoint and not per id
+    private static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
@@ -0,0 +1,34 @@
+package com.delivrey.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.statement-count")
+public class StatementCountProperties {
+    /**
+     * Records the number of SQL statements of each HTTP request in the
+     * http.server.requests.statements meter.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Requests running more statements than this are logged as warnings, usually a listing whose
+     * rows load their associations one at a time. Below it they are logged at debug level.
+     */
+    private int warnThreshold = 20;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWarnThreshold() {
+        return warnThreshold;
+    }
+
+    public void setWarnThreshold(int warnThreshold) {
+        this.warnThreshold = warnThreshold;
+    }
+}
@@ -0,0 +1,48 @@
+package com.delivrey.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.time.LocalTime;
+
+@ConfigurationProperties(prefix = "app.optimizer.time-windows")
+public class TimeWindowProperties {
+    /**
+     * Time vehicles leave the warehouse.
+     */
+    private LocalTime departure = LocalTime.of(8, 0);
+
+    /**
+     * Average speed used to turn distances into driving times.
+     */
+    private double averageSpeedKmh = 30.0;
+
+    /**
+     * Time spent at each delivery.
+     */
+    private Duration serviceTime = Duration.ofMinutes(10);
+
+    public LocalTime getDeparture() {
+        return departure;
+    }
+
+    public void setDeparture(LocalTime departure) {
+        this.departure = departure;
+    }
+
+    public double getAverageSpeedKmh() {
+        return averageSpeedKmh;
+    }
+
+    public void setAverageSpeedKmh(double averageSpeedKmh) {
+        this.averageSpeedKmh = averageSpeedKmh;
+    }
+
+    public Duration getServiceTime() {
+        return serviceTime;
+    }
+
+    public void setServiceTime(Duration serviceTime) {
+        this.serviceTime = serviceTime;
+    }
+}
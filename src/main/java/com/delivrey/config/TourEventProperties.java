@@ -0,0 +1,62 @@
+package com.delivrey.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.tour-events")
+public class TourEventProperties {
+    /**
+     * Number of single-threaded lanes; events of a tour always go to the same lane.
+     */
+    private int lanes = 4;
+
+    /**
+     * Events that can wait in each lane's queue.
+     */
+    private int queueCapacity = 500;
+
+    /**
+     * Events that can wait, in order, behind a full lane queue. Beyond it, the threads that
+     * publish events wait for room, never run them themselves.
+     */
+    private int overflowCapacity = 10_000;
+
+    /**
+     * Longest a publishing thread waits for room in a full overflow; its event is then queued
+     * past the capacity and logged, never lost.
+     */
+    private Duration submitTimeout = Duration.ofSeconds(10);
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    public void setLanes(int lanes) {
+        this.lanes = lanes;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getOverflowCapacity() {
+        return overflowCapacity;
+    }
+
+    public void setOverflowCapacity(int overflowCapacity) {
+        this.overflowCapacity = overflowCapacity;
+    }
+
+    public Duration getSubmitTimeout() {
+        return submitTimeout;
+    }
+
+    public void setSubmitTimeout(Duration submitTimeout) {
+        this.submitTimeout = submitTimeout;
+    }
+}
@@ -145,6 +145,39 @@ public class CustomerController {
         }
     }
 
+    @GetMapping(value = "/nearby", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "Recherche les clients proches d'un point",
+        description = "Retourne une page des clients situés dans le rayon donné, avec les mêmes filtres optionnels "
+                + "que la recherche"
+    )
+    @Parameter(name = "latitude", description = "Latitude du centre, en degrés", required = true, example = "48.8566")
+    @Parameter(name = "longitude", description = "Longitude du centre, en degrés", required = true, example = "2.3522")
+    @Parameter(name = "radiusKm", description = "Rayon de recherche, en kilomètres", required = true, example = "5")
+    @ApiResponses({
+        @ApiResponse(
+            responseCode = "200",
+            description = "Clients situés dans le rayon",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    public ResponseEntity<Page<CustomerDto>> getNearbyCustomers(
+            @RequestParam double latitude,
+            @RequestParam double longitude,
+            @RequestParam double radiusKm,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String address,
+            @Parameter(hidden = true) @PageableDefault(size = 20) Pageable pageable) {
+        try {
+            log.info("Searching customers within {} km of ({}, {})", radiusKm, latitude, longitude);
+            return ResponseEntity.ok(customerService.findNearby(latitude, longitude, radiusKm, name, address,
+                    pageable));
+        } catch (Exception e) {
+            log.error("Error searching nearby customers: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(
         summary = "Récupère un client par son ID",
@@ -1,6 +1,7 @@
 package com.delivrey.controller;
 
 import com.delivrey.dto.DeliveryDTO;
+import com.delivrey.entity.DeliveryStatus;
 import com.delivrey.service.DeliveryService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -39,6 +40,37 @@ public class DeliveryController {
         }
     }
 
+    @GetMapping("/nearby")
+    @ResponseBody
+    public ResponseEntity<List<DeliveryDTO>> getNearby(
+            @RequestParam("latitude") double latitude,
+            @RequestParam("longitude") double longitude,
+            @RequestParam("radiusKm") double radiusKm,
+            @RequestParam(value = "status", defaultValue = "PENDING") DeliveryStatus status) {
+        logger.debug("Fetching {} deliveries within {} km of ({}, {})", status, radiusKm, latitude, longitude);
+        try {
+            return ResponseEntity.ok(deliveryService.findNearbyDeliveries(latitude, longitude, radiusKm, status));
+        } catch (Exception e) {
+            logger.error("Error fetching nearby deliveries: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/nearest")
+    @ResponseBody
+    public ResponseEntity<List<DeliveryDTO>> getNearest(
+            @RequestParam("latitude") double latitude,
+            @RequestParam("longitude") double longitude,
+            @RequestParam(value = "count", defaultValue = "10") int count) {
+        logger.debug("Fetching the {} pending deliveries nearest to ({}, {})", count, latitude, longitude);
+        try {
+            return ResponseEntity.ok(deliveryService.findNearestPendingDeliveries(latitude, longitude, count));
+        } catch (Exception e) {
+            logger.error("Error fetching nearest deliveries: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/{id}")
     @ResponseBody
     public ResponseEntity<DeliveryDTO> getById(@PathVariable("id") Long id) {
@@ -1,18 +1,26 @@
 package com.delivrey.controller;
 
+import com.delivrey.dto.CursorPage;
 import com.delivrey.dto.DeliveryHistoryDto;
+import com.delivrey.dto.DeliveryStatsDto;
 import com.delivrey.service.DeliveryHistoryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/delivery-histories")
@@ -45,6 +53,47 @@ public class DeliveryHistoryController {
         return ResponseEntity.ok(deliveryHistoryService.findAll(pageable));
     }
 
+    @GetMapping("/scroll")
+    @Operation(summary = "Parcourt les historiques de livraison par date puis id, page après page",
+               description = "Pagination par curseur : passer le nextCursor d'une page pour obtenir la suivante. "
+                       + "Le nombre total n'est calculé que si withTotal=true")
+    public ResponseEntity<CursorPage<DeliveryHistoryDto>> scrollDeliveryHistories(
+            @RequestParam(required = false) Long tourId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+
+        if (tourId != null) {
+            return ResponseEntity.ok(deliveryHistoryService.findByTourId(tourId, cursor, size, withTotal));
+        } else if (fromDate != null && toDate != null) {
+            return ResponseEntity.ok(deliveryHistoryService.findByDeliveryDateBetween(
+                    fromDate, toDate, cursor, size, withTotal));
+        }
+        return ResponseEntity.ok(deliveryHistoryService.findAll(cursor, size, withTotal));
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Exporte les historiques de livraison d'une période en NDJSON ou CSV",
+               description = "Les lignes sont lues depuis un curseur et écrites au fil de l'eau dans la réponse, "
+                       + "sans pagination ni limite de taille")
+    public void exportDeliveryHistories(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false) Long tourId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+
+        DeliveryHistoryService.ExportFormat exportFormat = DeliveryHistoryService.ExportFormat.parse(format);
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"delivery-history-"
+                + fromDate + "_" + toDate + "." + exportFormat.getExtension() + "\"");
+        // Written on the request thread: an async StreamingResponseBody would be cut by the MVC async timeout
+        deliveryHistoryService.export(fromDate, toDate, tourId, exportFormat, response.getOutputStream());
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Récupère un historique de livraison par son ID")
     public ResponseEntity<DeliveryHistoryDto> getDeliveryHistoryById(@PathVariable @NonNull Long id) {
@@ -64,4 +113,28 @@ public class DeliveryHistoryController {
     public ResponseEntity<?> getTourDeliveryStats(@PathVariable @NonNull Long tourId) {
         return ResponseEntity.ok(deliveryHistoryService.getTourDeliveryStats(tourId));
     }
+
+    @GetMapping("/customer/stats")
+    @Operation(summary = "Récupère les statistiques de livraison de plusieurs clients en une requête")
+    public ResponseEntity<List<DeliveryStatsDto>> getCustomersDeliveryStats(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(deliveryHistoryService.getCustomerDeliveryStats(ids));
+    }
+
+    @GetMapping("/tour/stats")
+    @Operation(summary = "Récupère les statistiques de livraison de plusieurs tours en une requête")
+    public ResponseEntity<List<DeliveryStatsDto>> getToursDeliveryStats(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(deliveryHistoryService.getTourDeliveryStats(ids));
+    }
+
+    @GetMapping("/day-of-week/stats")
+    @Operation(summary = "Récupère le retard moyen des livraisons en retard par jour de la semaine")
+    public ResponseEntity<Map<DayOfWeek, Double>> getAverageDelayByDayOfWeek() {
+        return ResponseEntity.ok(deliveryHistoryService.getAverageDelayByDayOfWeek());
+    }
+
+    @PostMapping("/stats/rebuild")
+    @Operation(summary = "Recalcule les statistiques de livraison à partir de tout l'historique")
+    public ResponseEntity<Map<String, Long>> rebuildDeliveryStats() {
+        return ResponseEntity.ok(Map.of("histories", deliveryHistoryService.rebuildStats()));
+    }
 }
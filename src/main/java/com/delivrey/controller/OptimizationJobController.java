@@ -0,0 +1,55 @@
+package com.delivrey.controller;
+
+import com.delivrey.dto.OptimizationJobDTO;
+import com.delivrey.service.OptimizationJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST controller for background optimization jobs, submitted through POST /api/tours/{tourId}/optimize/jobs.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/jobs")
+@Tag(name = "Optimization jobs", description = "API for following and cancelling background optimizations")
+@RequiredArgsConstructor
+public class OptimizationJobController {
+
+    private final OptimizationJobService optimizationJobService;
+
+    @Operation(summary = "Get an optimization job",
+              description = "Returns the status of the job, the best cost found so far and the route once it is over")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Job found"),
+        @ApiResponse(responseCode = "404", description = "Job not found or expired")
+    })
+    @GetMapping("/{jobId}")
+    public ResponseEntity<OptimizationJobDTO> getJob(
+            @Parameter(description = "ID of the job", required = true)
+            @PathVariable("jobId") String jobId) {
+
+        return ResponseEntity.ok(optimizationJobService.getJob(jobId));
+    }
+
+    @Operation(summary = "Cancel an optimization job",
+              description = "A queued job never starts; a running job stops and keeps its best route so far")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cancellation requested"),
+        @ApiResponse(responseCode = "404", description = "Job not found or expired")
+    })
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<OptimizationJobDTO> cancelJob(
+            @Parameter(description = "ID of the job", required = true)
+            @PathVariable("jobId") String jobId) {
+
+        log.info("Cancelling optimization job {}", jobId);
+        return ResponseEntity.ok(optimizationJobService.cancel(jobId));
+    }
+}
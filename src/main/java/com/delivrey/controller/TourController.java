@@ -1,12 +1,19 @@
 package com.delivrey.controller;
 
+import com.delivrey.dto.CursorPage;
 import com.delivrey.dto.DeliveryDTO;
+import com.delivrey.dto.OptimizationJobDTO;
+import com.delivrey.dto.OptimizationProgressDTO;
 import com.delivrey.dto.TourDTO;
+import com.delivrey.dto.TourPlanDTO;
 import com.delivrey.entity.Delivery;
 import com.delivrey.entity.TourStatus;
 import com.delivrey.exception.EntityNotFoundException;
 import com.delivrey.mapper.DeliveryMapper;
 import com.delivrey.mapper.TourMapper;
+import com.delivrey.optimizer.model.OptimizedPlan;
+import com.delivrey.service.OptimizationJobListener;
+import com.delivrey.service.OptimizationJobService;
 import com.delivrey.service.TourService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -21,15 +28,20 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
@@ -42,8 +54,14 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class TourController {
 
+    /**
+     * Longest time an optimization stream stays open.
+     */
+    private static final Duration STREAM_TIMEOUT = Duration.ofMinutes(10);
+
     private final TourService tourService;
     private final TourMapper tourMapper;
+    private final OptimizationJobService optimizationJobService;
 
     @Operation(summary = "Optimize a tour", description = "Returns an optimized list of deliveries for a tour")
     @ApiResponses(value = {
@@ -56,7 +74,7 @@ public class TourController {
     public ResponseEntity<List<DeliveryDTO>> optimize(
             @Parameter(description = "ID of the tour to optimize", required = true)
             @PathVariable("tourId") Long tourId,
-            @Parameter(description = "Algorithm to use for optimization (NN, CLARKE_WRIGHT, AI)", 
+            @Parameter(description = "Algorithm to use for optimization (NN, CLARKE_WRIGHT, VRPTW, MULTI_START, AI), optionally followed by improvement stages such as NN+2OPT+OROPT", 
                       example = "NN")
             @RequestParam(name = "algo", defaultValue = "NN") String algo) {
         
@@ -69,6 +87,197 @@ public class TourController {
         return ResponseEntity.ok(result);
     }
 
+    @Operation(summary = "Optimize a tour with parallel multi-start",
+              description = "Returns the best of several randomized nearest neighbor routes, each improved by 2-opt "
+                      + "and Or-opt. The same seed and number of starts give the same route")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully optimized the tour",
+                   content = @Content(mediaType = "application/json",
+                   schema = @Schema(implementation = DeliveryDTO.class))),
+        @ApiResponse(responseCode = "404", description = "Tour not found")
+    })
+    @GetMapping("/{tourId}/optimize/multi-start")
+    public ResponseEntity<List<DeliveryDTO>> optimizeMultiStart(
+            @Parameter(description = "ID of the tour to optimize", required = true)
+            @PathVariable("tourId") Long tourId,
+            @Parameter(description = "Number of routes built and improved, the configured default when omitted",
+                      example = "16")
+            @RequestParam(required = false) Integer starts,
+            @Parameter(description = "Number of starts run in parallel, at most one per core", example = "4")
+            @RequestParam(required = false) Integer parallelism,
+            @Parameter(description = "Seed of the randomized starts", example = "42")
+            @RequestParam(required = false) Long seed,
+            @Parameter(description = "Time given to the search in milliseconds, the configured default when omitted",
+                      example = "2000")
+            @RequestParam(required = false) Long timeLimitMs) {
+
+        log.info("Optimizing tour {} with {} starts, seed {}", tourId, starts, seed);
+        List<DeliveryDTO> result = tourService.getMultiStartTour(tourId, starts, parallelism, seed,
+                        timeLimitMs != null ? Duration.ofMillis(timeLimitMs) : null).stream()
+                .map(DeliveryMapper.INSTANCE::toDto)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(result);
+    }
+
+    @Operation(summary = "Optimize a tour in the background",
+              description = "Queues the optimization and returns a job to poll at /api/jobs/{jobId}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Optimization queued",
+                   content = @Content(mediaType = "application/json",
+                   schema = @Schema(implementation = OptimizationJobDTO.class))),
+        @ApiResponse(responseCode = "404", description = "Tour not found"),
+        @ApiResponse(responseCode = "503", description = "Too many optimizations in progress")
+    })
+    @PostMapping("/{tourId}/optimize/jobs")
+    public ResponseEntity<OptimizationJobDTO> submitOptimization(
+            @Parameter(description = "ID of the tour to optimize", required = true)
+            @PathVariable("tourId") Long tourId,
+            @Parameter(description = "Algorithm to use for optimization, as for GET /{tourId}/optimize",
+                      example = "NN+2OPT")
+            @RequestParam(name = "algo", defaultValue = "NN") String algo) {
+
+        log.info("Submitting optimization of tour {} with algorithm {}", tourId, algo);
+        OptimizationJobDTO job = optimizationJobService.submit(tourId, algo);
+
+        URI location = ServletUriComponentsBuilder
+                .fromCurrentContextPath()
+                .path("/api/jobs/{id}")
+                .buildAndExpand(job.getId())
+                .toUri();
+
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    @Operation(summary = "Stream the optimization of a tour",
+              description = "Runs the optimization in the background and sends Server-Sent Events: 'job' with the job "
+                      + "first, 'progress' with each shorter route found (cost, iteration, elapsed time), then 'result' "
+                      + "with the finished job. Cancelling the job at DELETE /api/jobs/{jobId} or closing the stream "
+                      + "stops the search early, the result then holding the best route found so far")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Optimization started",
+                   content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                   schema = @Schema(implementation = OptimizationProgressDTO.class))),
+        @ApiResponse(responseCode = "404", description = "Tour not found"),
+        @ApiResponse(responseCode = "503", description = "Too many optimizations in progress")
+    })
+    @GetMapping(value = "/{tourId}/optimize/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOptimization(
+            @Parameter(description = "ID of the tour to optimize", required = true)
+            @PathVariable("tourId") Long tourId,
+            @Parameter(description = "Algorithm to use for optimization, as for GET /{tourId}/optimize",
+                      example = "NN+2OPT+OROPT")
+            @RequestParam(name = "algo", defaultValue = "NN") String algo) {
+
+        log.info("Streaming optimization of tour {} with algorithm {}", tourId, algo);
+        OptimizationStream stream = new OptimizationStream(new SseEmitter(STREAM_TIMEOUT.toMillis()));
+        // No progress goes out before the first event of the job
+        stream.lock.lock();
+        try {
+            stream.start(optimizationJobService.submit(tourId, algo, stream));
+        } finally {
+            stream.lock.unlock();
+        }
+        return stream.emitter;
+    }
+
+    /**
+     * Sends the events of one optimization job to its client, and cancels the job once the client is gone.
+     * <p>
+     * Sending writes to the socket, so it happens under a {@link ReentrantLock} rather than a monitor: a
+     * virtual thread waiting on a slow client is not pinned to its carrier. The search never waits on
+     * the client for progress: a report arriving while an event is being sent is dropped, the next one
+     * carrying a route at least as short.
+     */
+    private final class OptimizationStream implements OptimizationJobListener {
+
+        private final SseEmitter emitter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private String jobId;
+        private int lastIteration;
+        private boolean closed;
+
+        OptimizationStream(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onCompletion(this::close);
+            emitter.onTimeout(this::close);
+            emitter.onError(e -> close());
+        }
+
+        void start(OptimizationJobDTO job) {
+            lock.lock();
+            try {
+                jobId = job.getId();
+                send("job", job);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onProgress(OptimizationProgressDTO progress) {
+            if (!lock.tryLock()) {
+                return;
+            }
+            try {
+                // Reports of parallel searches may come out of order: an older one is stale
+                if (progress.getIteration() > lastIteration) {
+                    lastIteration = progress.getIteration();
+                    send("progress", progress);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onFinished(OptimizationJobDTO job) {
+            lock.lock();
+            try {
+                if (send("result", job)) {
+                    closed = true;
+                    emitter.complete();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean send(String name, Object data) {
+            if (closed) {
+                return false;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Optimization stream of job {} closed by the client", jobId);
+                close();
+                return false;
+            }
+        }
+
+        private void close() {
+            String cancelledJobId;
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                cancelledJobId = jobId;
+            } finally {
+                lock.unlock();
+            }
+            if (cancelledJobId != null) {
+                try {
+                    optimizationJobService.cancel(cancelledJobId);
+                } catch (EntityNotFoundException e) {
+                    // Already evicted
+                }
+            }
+        }
+    }
+
     @Operation(summary = "Get total distance of a tour", 
               description = "Returns the total distance of a tour using the specified algorithm")
     @ApiResponses(value = {
@@ -80,7 +289,7 @@ public class TourController {
     public ResponseEntity<Double> getDistance(
             @Parameter(description = "ID of the tour", required = true)
             @PathVariable("tourId") Long tourId,
-            @Parameter(description = "Algorithm to use for distance calculation (NN, CLARKE_WRIGHT, AI)", 
+            @Parameter(description = "Algorithm to use for distance calculation (NN, CLARKE_WRIGHT, VRPTW, MULTI_START, AI), optionally followed by improvement stages such as NN+2OPT+OROPT", 
                       example = "NN")
             @RequestParam(name = "algo", defaultValue = "NN") String algo) {
         
@@ -89,6 +298,73 @@ public class TourController {
         return ResponseEntity.ok(distance);
     }
 
+    @Operation(summary = "Split a tour into vehicle routes",
+              description = "Returns the Clarke-Wright routes from the tour's warehouse, within the capacity of its vehicle")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully computed the routes",
+                   content = @Content(mediaType = "application/json")),
+        @ApiResponse(responseCode = "404", description = "Tour not found")
+    })
+    @GetMapping("/{tourId}/routes")
+    public ResponseEntity<List<List<DeliveryDTO>>> getRoutes(
+            @Parameter(description = "ID of the tour", required = true)
+            @PathVariable("tourId") Long tourId) {
+
+        log.info("Computing routes for tour {}", tourId);
+        List<List<DeliveryDTO>> result = tourService.getOptimizedRoutes(tourId).stream()
+                .map(route -> route.stream()
+                        .map(DeliveryMapper.INSTANCE::toDto)
+                        .collect(Collectors.toList()))
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(result);
+    }
+
+    @Operation(summary = "Schedule a tour within the delivery slots",
+              description = "Returns the deliveries of the tour in an order that meets their time slots, "
+                      + "with the estimated arrival time at each of them")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully scheduled the tour",
+                   content = @Content(mediaType = "application/json",
+                   schema = @Schema(implementation = OptimizedPlan.class))),
+        @ApiResponse(responseCode = "404", description = "Tour not found")
+    })
+    @GetMapping("/{tourId}/schedule")
+    public ResponseEntity<OptimizedPlan> getSchedule(
+            @Parameter(description = "ID of the tour", required = true)
+            @PathVariable("tourId") Long tourId) {
+
+        log.info("Scheduling tour {}", tourId);
+        return ResponseEntity.ok(tourService.getSchedule(tourId));
+    }
+
+    @Operation(summary = "Plan the tours of a day",
+              description = "Spreads the pending deliveries not yet in a tour over the vehicles, within their capacity, "
+                      + "and creates one planned tour per vehicle used, leaving from the warehouse")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "Tours planned",
+                   content = @Content(mediaType = "application/json",
+                   schema = @Schema(implementation = TourPlanDTO.class))),
+        @ApiResponse(responseCode = "404", description = "Warehouse or vehicle not found"),
+        @ApiResponse(responseCode = "500", description = "No vehicle available on that date")
+    })
+    @PostMapping("/plan")
+    public ResponseEntity<TourPlanDTO> planTours(
+            @Parameter(description = "Date of the tours (yyyy-MM-dd)", required = true, example = "2024-01-15")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @Parameter(description = "ID of the warehouse the tours leave from", required = true)
+            @RequestParam Long warehouseId,
+            @Parameter(description = "IDs of the vehicles to use, all vehicles free on that date when omitted")
+            @RequestParam(required = false) List<Long> vehicleIds,
+            @Parameter(description = "Time given to the search in milliseconds, the configured default when omitted",
+                      example = "2000")
+            @RequestParam(required = false) Long timeLimitMs) {
+
+        log.info("Planning tours of {} from warehouse {}", date, warehouseId);
+        TourPlanDTO plan = tourService.planTours(date, warehouseId, vehicleIds,
+                timeLimitMs != null ? Duration.ofMillis(timeLimitMs) : null);
+        return ResponseEntity.status(HttpStatus.CREATED).body(plan);
+    }
+
     @Operation(summary = "Get a tour by ID", description = "Returns a single tour by its ID")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Tour found",
@@ -137,6 +413,24 @@ public class TourController {
         return ResponseEntity.ok(tours);
     }
 
+    @Operation(summary = "Get tours page by page",
+              description = "Cursor pagination in id order: pass the nextCursor of a page to get the next one. "
+                      + "The total is only counted when withTotal=true")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved the page"),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor or size")
+    })
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<TourDTO>> scrollTours(
+            @Parameter(description = "nextCursor of the previous page, none for the first page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Number of tours per page, at most 1000", example = "20")
+            @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Whether to count all the tours")
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        return ResponseEntity.ok(tourService.getTours(cursor, size, withTotal));
+    }
+
     @Operation(summary = "Get all tours with pagination", description = "Returns a paginated list of tours")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Successfully retrieved paginated tours",
@@ -19,6 +19,10 @@ public interface CustomerDao {
     Page<Customer> findByFirstNameContainingIgnoreCaseAndAddressContainingIgnoreCase(
         String name, String address, Pageable pageable);
     List<Customer> findByPreferredTimeSlot(String timeSlot);
+    Page<Customer> findNearby(double latitude, double longitude, double radiusKm, String name, String address,
+                              Pageable pageable);
+    Page<Customer> findNearbyPostgis(double latitude, double longitude, double radiusKm, String name, String address,
+                                     Pageable pageable);
     Optional<Customer> findByNameIgnoreCase(String name);
     boolean existsById(Long id);
 }
@@ -73,6 +73,18 @@ public class CustomerDaoImpl implements CustomerDao {
         return customerRepository.findByPreferredTimeSlot(timeSlot);
     }
 
+    @Override
+    public Page<Customer> findNearby(double latitude, double longitude, double radiusKm, String name,
+                                     String address, Pageable pageable) {
+        return customerRepository.findNearbyCustomers(latitude, longitude, radiusKm, name, address, pageable);
+    }
+
+    @Override
+    public Page<Customer> findNearbyPostgis(double latitude, double longitude, double radiusKm, String name,
+                                            String address, Pageable pageable) {
+        return customerRepository.findNearbyCustomersPostgis(latitude, longitude, radiusKm, name, address, pageable);
+    }
+
     @Override
     public Optional<Customer> findByNameIgnoreCase(String name) {
         return customerRepository.findByNameIgnoreCase(name);
@@ -0,0 +1,28 @@
+package com.delivrey.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of a seek-paginated listing.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+    /**
+     * Token of the next page, {@code null} on the last one.
+     */
+    private String nextCursor;
+    /**
+     * Number of rows of the whole listing, only counted when asked for.
+     */
+    private Long totalElements;
+}
@@ -0,0 +1,24 @@
+package com.delivrey.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Delivery statistics of one customer or one tour.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryStatsDto {
+    /**
+     * Id of the customer or of the tour.
+     */
+    private Long id;
+    private long totalDeliveries;
+    private long onTimeDeliveries;
+    private double averageDelay;
+    private long totalDelay;
+}
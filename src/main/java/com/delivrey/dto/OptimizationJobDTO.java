@@ -0,0 +1,43 @@
+package com.delivrey.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * State of an optimization running in the background.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OptimizationJobDTO {
+    private String id;
+    private Long tourId;
+    private String algorithm;
+    private Status status;
+    /**
+     * Length in km of the best route found so far, null until the first one is built.
+     */
+    private Double bestCost;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+    /**
+     * The optimized route once the job is over; a cancelled job keeps the best route it had found.
+     */
+    private List<DeliveryDTO> result;
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+}
@@ -0,0 +1,32 @@
+package com.delivrey.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Best route an optimization job has found so far.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OptimizationProgressDTO {
+    private String jobId;
+    /**
+     * Number of improvements found since the job started, this one included.
+     */
+    private int iteration;
+    /**
+     * Length of the route in km.
+     */
+    private double cost;
+    private long elapsedMillis;
+    /**
+     * Stops of the route in driving order, the warehouse first with id -1.
+     */
+    private List<Long> deliveryIds;
+}
@@ -0,0 +1,34 @@
+package com.delivrey.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Tours planned for a day from one warehouse, one per vehicle used.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TourPlanDTO {
+    private LocalDate date;
+    private Long warehouseId;
+    /**
+     * The created tours; the delivery ids of each are in driving order.
+     */
+    private List<TourDTO> tours;
+    /**
+     * Pending deliveries no available vehicle had room for; they stay out of any tour.
+     */
+    private List<Long> unassignedDeliveryIds;
+    /**
+     * Sum of the lengths in km of the tours, each from the warehouse to its last delivery.
+     */
+    private double totalDistance;
+    private long elapsedMillis;
+}
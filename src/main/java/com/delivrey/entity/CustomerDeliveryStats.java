@@ -0,0 +1,25 @@
+package com.delivrey.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "customer_delivery_stats")
+public class CustomerDeliveryStats extends DeliveryStats {
+
+    @Id
+    @Column(name = "customer_id")
+    private Long customerId;
+
+    public CustomerDeliveryStats(Long customerId) {
+        this.customerId = customerId;
+    }
+}
@@ -0,0 +1,34 @@
+package com.delivrey.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.DayOfWeek;
+
+/**
+ * Totals per day of the week of the delivery date. The day is taken from the date rather than
+ * from delivery_history.day_of_week, which the PostgreSQL trigger of v3.0 fills in another format.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "day_of_week_delivery_stats")
+public class DayOfWeekDeliveryStats extends DeliveryStats {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "day_of_week", length = 10)
+    private DayOfWeek dayOfWeek;
+
+    public DayOfWeekDeliveryStats(DayOfWeek dayOfWeek) {
+        this.dayOfWeek = dayOfWeek;
+    }
+}
@@ -21,8 +21,10 @@ import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 
 public class DeliveryHistory {
     
+    // Sequence ids let Hibernate batch the inserts of a whole tour; allocationSize matches the sequence increment
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "delivery_history_seq")
+    @SequenceGenerator(name = "delivery_history_seq", sequenceName = "delivery_history_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,98 @@
+package com.delivrey.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.MappedSuperclass;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Running totals of the delivery histories of a customer, a tour or a day of the week, kept up to
+ * date as histories are written so that their statistics are read from a single row.
+ */
+@Getter
+@Setter
+@MappedSuperclass
+public abstract class DeliveryStats {
+
+    @Column(name = "total_deliveries", nullable = false)
+    private long totalDeliveries;
+
+    // delay_minutes <= 0
+    @Column(name = "on_time_deliveries", nullable = false)
+    private long onTimeDeliveries;
+
+    // delay_minutes > 0
+    @Column(name = "late_deliveries", nullable = false)
+    private long lateDeliveries;
+
+    // Histories with a delay, the ones AVG(delay_minutes) averages over
+    @Column(name = "delay_count", nullable = false)
+    private long delayCount;
+
+    @Column(name = "total_delay", nullable = false)
+    private long totalDelay;
+
+    // Sum of the positive delays only
+    @Column(name = "late_delay", nullable = false)
+    private long lateDelay;
+
+    /**
+     * Counts one more history, with {@code delayMinutes} late (null when the delivery time is unknown).
+     */
+    public void add(Integer delayMinutes) {
+        totalDeliveries++;
+        if (delayMinutes == null) {
+            return;
+        }
+        delayCount++;
+        totalDelay += delayMinutes;
+        if (delayMinutes > 0) {
+            lateDeliveries++;
+            lateDelay += delayMinutes;
+        } else {
+            onTimeDeliveries++;
+        }
+    }
+
+    /**
+     * Counts one history less, the reverse of {@link #add(Integer)}.
+     */
+    public void remove(Integer delayMinutes) {
+        totalDeliveries--;
+        if (delayMinutes == null) {
+            return;
+        }
+        delayCount--;
+        totalDelay -= delayMinutes;
+        if (delayMinutes > 0) {
+            lateDeliveries--;
+            lateDelay -= delayMinutes;
+        } else {
+            onTimeDeliveries--;
+        }
+    }
+
+    public void add(long totalDeliveries, long onTimeDeliveries, long lateDeliveries,
+                    long delayCount, long totalDelay, long lateDelay) {
+        this.totalDeliveries += totalDeliveries;
+        this.onTimeDeliveries += onTimeDeliveries;
+        this.lateDeliveries += lateDeliveries;
+        this.delayCount += delayCount;
+        this.totalDelay += totalDelay;
+        this.lateDelay += lateDelay;
+    }
+
+    /**
+     * Mean delay of the histories with one, late or not, 0 when there is none.
+     */
+    public double getAverageDelay() {
+        return delayCount > 0 ? (double) totalDelay / delayCount : 0.0;
+    }
+
+    /**
+     * Mean delay of the late deliveries only, 0 when there is none.
+     */
+    public double getAverageLateDelay() {
+        return lateDeliveries > 0 ? (double) lateDelay / lateDeliveries : 0.0;
+    }
+}
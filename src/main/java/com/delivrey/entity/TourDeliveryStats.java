@@ -0,0 +1,25 @@
+package com.delivrey.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "tour_delivery_stats")
+public class TourDeliveryStats extends DeliveryStats {
+
+    @Id
+    @Column(name = "tour_id")
+    private Long tourId;
+
+    public TourDeliveryStats(Long tourId) {
+        this.tourId = tourId;
+    }
+}
@@ -0,0 +1,42 @@
+package com.delivrey.event;
+
+import com.delivrey.dto.DeliveryDTO;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a delivery is created, updated, has its status changed or is deleted.
+ */
+public class DeliveryChangeEvent extends ApplicationEvent {
+
+    private final Long deliveryId;
+    private final DeliveryDTO delivery;
+
+    private DeliveryChangeEvent(Object source, Long deliveryId, DeliveryDTO delivery) {
+        super(source);
+        this.deliveryId = deliveryId;
+        this.delivery = delivery;
+    }
+
+    public static DeliveryChangeEvent saved(Object source, DeliveryDTO delivery) {
+        return new DeliveryChangeEvent(source, delivery.getId(), delivery);
+    }
+
+    public static DeliveryChangeEvent deleted(Object source, Long deliveryId) {
+        return new DeliveryChangeEvent(source, deliveryId, null);
+    }
+
+    public Long getDeliveryId() {
+        return deliveryId;
+    }
+
+    /**
+     * The delivery as saved, or {@code null} when it was deleted.
+     */
+    public DeliveryDTO getDelivery() {
+        return delivery;
+    }
+
+    public boolean isDeleted() {
+        return delivery == null;
+    }
+}
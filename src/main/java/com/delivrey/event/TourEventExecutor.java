@@ -0,0 +1,284 @@
+package com.delivrey.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the handling of tour events off the request thread, in order for any given tour.
+ * <p>
+ * Events are spread over a fixed number of lanes, each a single thread with a bounded queue;
+ * all events of a tour go to the same lane and therefore run one after the other, in the order
+ * they were submitted. Submitting never runs an event on the caller: when a lane's queue is full,
+ * its events wait in the lane's overflow queue, and move to the lane queue in the same order as
+ * room frees up. Once the overflow is full as well, submitters wait for room, one after the other,
+ * for at most the submit timeout; an event still without room then is queued past the overflow
+ * capacity rather than lost. Only events submitted after {@link #shutdown()} are rejected, with a
+ * {@link RejectedExecutionException}.
+ */
+@Slf4j
+public class TourEventExecutor {
+
+    static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final Lane[] lanes;
+    private final int overflowCapacity;
+    private final long submitTimeoutNanos;
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter overflowed;
+    private final Counter overCapacity;
+    private final Counter rejected;
+
+    public TourEventExecutor(int laneCount, int queueCapacity, int overflowCapacity, Duration submitTimeout,
+                             boolean virtualThreads, MeterRegistry meterRegistry) {
+        this.overflowCapacity = overflowCapacity;
+        this.submitTimeoutNanos = submitTimeout.toNanos();
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = "TourEvents-" + (i + 1);
+            ThreadFactory threadFactory = virtualThreads
+                    ? new VirtualThreadTaskExecutor(name).getVirtualThreadFactory()
+                    : task -> new Thread(task, name);
+            lanes[i] = new Lane(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), threadFactory));
+            // The only thread of the lane is up before any event can overflow: moving an event
+            // from the overflow straight into the queue then always has a thread to run it
+            lanes[i].executor.prestartCoreThread();
+        }
+
+        this.completed = Counter.builder("tour.events.completed")
+                .description("Tour events handled")
+                .register(meterRegistry);
+        this.failed = Counter.builder("tour.events.failed")
+                .description("Tour events whose handling threw an exception")
+                .register(meterRegistry);
+        this.overflowed = Counter.builder("tour.events.overflowed")
+                .description("Tour events submitted while their lane was full, kept in its overflow queue")
+                .register(meterRegistry);
+        this.overCapacity = Counter.builder("tour.events.over.capacity")
+                .description("Tour events queued past the overflow capacity after waiting the submit timeout for room")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("tour.events.rejected")
+                .description("Tour events submitted after shutdown")
+                .register(meterRegistry);
+        Gauge.builder("tour.events.queue.depth", this, TourEventExecutor::queueDepth)
+                .description("Tour events waiting in all lanes, overflow included")
+                .register(meterRegistry);
+        Gauge.builder("tour.events.active", this, TourEventExecutor::activeCount)
+                .description("Tour events being handled")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the handling of an event of the given tour after the ones already queued for it. Blocks
+     * for at most the submit timeout while the lane of the tour and its overflow are full.
+     *
+     * @throws RejectedExecutionException after shutdown
+     */
+    public void execute(Long tourId, Runnable task) {
+        Lane lane = lanes[Math.floorMod(tourId != null ? tourId.hashCode() : 0, lanes.length)];
+        lane.submit(() -> {
+            try {
+                task.run();
+                completed.increment();
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.error("Error while handling an event of tour {}", tourId, e);
+            } finally {
+                lane.drainOverflow();
+            }
+        });
+    }
+
+    double queueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.depth();
+        }
+        return depth;
+    }
+
+    double activeCount() {
+        int active = 0;
+        for (Lane lane : lanes) {
+            active += lane.executor.getActiveCount();
+        }
+        return active;
+    }
+
+    /**
+     * Stops accepting events and gives the queued ones, overflow included, {@link #SHUTDOWN_TIMEOUT} to finish.
+     */
+    public void shutdown() throws InterruptedException {
+        long deadline = System.nanoTime() + SHUTDOWN_TIMEOUT.toNanos();
+        for (Lane lane : lanes) {
+            lane.shutdown();
+        }
+        for (Lane lane : lanes) {
+            lane.awaitOverflow(deadline);
+            lane.executor.shutdown();
+        }
+        for (Lane lane : lanes) {
+            if (!lane.executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("{} tour events still queued at shutdown", lane.depth());
+                lane.executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * A single thread, its bounded queue and the overflow in front of it. The lock is only held
+     * while moving events between queues, never while one runs. Submitters waiting for room in the
+     * overflow take a ticket and go in ticket order, so that none is overtaken.
+     */
+    private final class Lane {
+
+        private final ThreadPoolExecutor executor;
+        private final Queue<Runnable> overflow = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition room = lock.newCondition();
+        private long nextTicket;
+        private long servedTicket;
+        private boolean shutdown;
+
+        private Lane(ThreadPoolExecutor executor) {
+            this.executor = executor;
+        }
+
+        void submit(Runnable task) {
+            lock.lock();
+            try {
+                if (shutdown) {
+                    rejected.increment();
+                    throw new RejectedExecutionException("Tour event executor is shut down");
+                }
+                boolean waiters = nextTicket != servedTicket;
+                // Behind the overflow and the waiting submitters whenever there are some
+                if (!waiters && overflow.isEmpty() && executor.getQueue().offer(task)) {
+                    return;
+                }
+                if (!waiters && overflow.size() < overflowCapacity) {
+                    overflow.add(task);
+                    overflowed.increment();
+                    return;
+                }
+                awaitRoom(task);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Called with the lock held
+        private void awaitRoom(Runnable task) {
+            long ticket = nextTicket++;
+            long nanos = submitTimeoutNanos;
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    if (shutdown) {
+                        rejected.increment();
+                        throw new RejectedExecutionException("Tour event executor is shut down");
+                    }
+                    if (ticket == servedTicket && (overflow.size() < overflowCapacity || nanos <= 0)) {
+                        break;
+                    }
+                    try {
+                        if (nanos > 0) {
+                            nanos = room.awaitNanos(nanos);
+                        } else {
+                            // Timed out behind an earlier submitter, whose own timeout is already over
+                            room.await();
+                        }
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        nanos = 0;
+                    }
+                }
+                if (overflow.isEmpty() && executor.getQueue().offer(task)) {
+                    return;
+                }
+                if (overflow.size() >= overflowCapacity) {
+                    overCapacity.increment();
+                    log.warn("Tour event lane still full after {} ms, event queued past its {} waiting events",
+                            TimeUnit.NANOSECONDS.toMillis(submitTimeoutNanos), overflowCapacity);
+                }
+                overflow.add(task);
+                overflowed.increment();
+            } finally {
+                servedTicket++;
+                room.signalAll();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Moves overflowed events into the queue, oldest first, as far as there is room. Called by
+         * the lane's thread after each event, so the queue has room for at least one.
+         */
+        void drainOverflow() {
+            lock.lock();
+            try {
+                boolean moved = false;
+                while (!overflow.isEmpty() && executor.getQueue().offer(overflow.peek())) {
+                    overflow.remove();
+                    moved = true;
+                }
+                if (moved) {
+                    room.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int depth() {
+            lock.lock();
+            try {
+                return executor.getQueue().size() + overflow.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void shutdown() {
+            lock.lock();
+            try {
+                shutdown = true;
+                room.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // The overflow only empties through the running thread, which needs the executor still open
+        void awaitOverflow(long deadline) throws InterruptedException {
+            while (System.nanoTime() < deadline) {
+                lock.lock();
+                try {
+                    if (overflow.isEmpty()) {
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+}
@@ -18,6 +18,19 @@ public class GlobalExceptionHandler {
         return new ErrorResponse("NOT_FOUND", ex.getMessage());
     }
 
+    @ExceptionHandler(InvalidRequestParameterException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponse handleInvalidRequestParameter(InvalidRequestParameterException ex) {
+        return new ErrorResponse("BAD_REQUEST", ex.getMessage());
+    }
+
+    @ExceptionHandler(OptimizationBusyException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleOptimizationBusy(OptimizationBusyException ex) {
+        log.warn("Optimization job rejected: {}", ex.getCause().getMessage());
+        return new ErrorResponse("BUSY", ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorResponse handleGeneralError(Exception ex) {
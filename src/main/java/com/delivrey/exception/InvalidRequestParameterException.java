@@ -0,0 +1,11 @@
+package com.delivrey.exception;
+
+/**
+ * Thrown when a parameter given by the client, such as a page token, a page size or an export
+ * format, cannot be used; answered with 400.
+ */
+public class InvalidRequestParameterException extends RuntimeException {
+    public InvalidRequestParameterException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.delivrey.exception;
+
+/**
+ * Thrown when an optimization job cannot be queued because the optimization executor is full.
+ */
+public class OptimizationBusyException extends RuntimeException {
+    public OptimizationBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
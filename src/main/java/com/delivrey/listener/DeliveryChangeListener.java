@@ -0,0 +1,58 @@
+package com.delivrey.listener;
+
+import com.delivrey.config.GeoProperties;
+import com.delivrey.entity.DeliveryStatus;
+import com.delivrey.event.DeliveryChangeEvent;
+import com.delivrey.service.DeliveryService;
+import com.delivrey.service.PendingDeliveryIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Keeps the {@link PendingDeliveryIndex} in step with the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeliveryChangeListener {
+
+    private final PendingDeliveryIndex pendingDeliveryIndex;
+    private final DeliveryService deliveryService;
+    private final GeoProperties geoProperties;
+
+    // Only committed changes: a rolled back update must not reach the index
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleDeliveryChange(DeliveryChangeEvent event) {
+        if (!geoProperties.isPendingIndex()) {
+            return;
+        }
+        if (event.isDeleted()) {
+            pendingDeliveryIndex.remove(event.getDeliveryId());
+        } else {
+            pendingDeliveryIndex.put(event.getDelivery());
+        }
+    }
+
+    // Until this is done, nearby searches keep going to the database
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPendingDeliveries() {
+        if (!geoProperties.isPendingIndex()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            pendingDeliveryIndex.load(deliveryService.getDeliveriesByStatus(DeliveryStatus.PENDING));
+            log.info("Indexed {} pending deliveries in {} ms",
+                    pendingDeliveryIndex.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Could not load the pending delivery index, nearby searches stay on the database", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.delivrey.listener;
+
+import com.delivrey.config.DeliveryHistoryProperties;
+import com.delivrey.service.DeliveryStatsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the delivery statistics from the histories written before they existed, once, at the
+ * first startup that finds histories but no statistics.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeliveryStatsBackfillListener {
+
+    private final DeliveryStatsService deliveryStatsService;
+    private final DeliveryHistoryProperties deliveryHistoryProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!deliveryHistoryProperties.isStatsBackfill() || !deliveryStatsService.needsBackfill()) {
+            return;
+        }
+        log.info("Calcul initial des statistiques de livraison");
+        deliveryStatsService.rebuild();
+    }
+}
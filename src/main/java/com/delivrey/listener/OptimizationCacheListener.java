@@ -0,0 +1,27 @@
+package com.delivrey.listener;
+
+import com.delivrey.event.DeliveryChangeEvent;
+import com.delivrey.service.OptimizationResultCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Drops the cached routes that go through a delivery once it changes.
+ */
+@Component
+@RequiredArgsConstructor
+public class OptimizationCacheListener {
+
+    private final OptimizationResultCache optimizationResultCache;
+
+    // After the commit: routes computed from the old state in the meantime go too, a rolled back change drops nothing
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleDeliveryChange(DeliveryChangeEvent event) {
+        optimizationResultCache.invalidateDelivery(event.getDeliveryId());
+        if (event.getDelivery() != null && event.getDelivery().getTourId() != null) {
+            optimizationResultCache.invalidateTour(event.getDelivery().getTourId());
+        }
+    }
+}
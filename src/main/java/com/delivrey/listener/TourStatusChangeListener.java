@@ -1,29 +1,42 @@
 package com.delivrey.listener;
 
 import com.delivrey.entity.TourStatus;
+import com.delivrey.event.TourEventExecutor;
 import com.delivrey.event.TourStatusChangeEvent;
 import com.delivrey.service.DeliveryHistoryService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionPhase;
 import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.concurrent.RejectedExecutionException;
+
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class TourStatusChangeListener {
     
     private final DeliveryHistoryService deliveryHistoryService;
+    private final TourEventExecutor tourEventExecutor;
     
-    @Async
+    // Handled on the lane of the tour, after the previous status changes of the same tour
     @TransactionalEventListener(
         phase = TransactionPhase.AFTER_COMMIT,
         classes = TourStatusChangeEvent.class
     )
     public void handleTourStatusChange(TourStatusChangeEvent event) {
         if (event.getNewStatus() == TourStatus.COMPLETED) {
-            deliveryHistoryService.createHistoryFromTour(event.getTour());
+            try {
+                tourEventExecutor.execute(event.getTour().getId(),
+                        () -> deliveryHistoryService.createHistoryFromTour(event.getTour()));
+            } catch (RejectedExecutionException e) {
+                // Only after shutdown: the status change is committed already, its history is written here
+                log.warn("Tour event executor shut down, writing the history of tour {} on the publishing thread",
+                        event.getTour().getId());
+                deliveryHistoryService.createHistoryFromTour(event.getTour());
+            }
         }
     }
 }
@@ -4,6 +4,7 @@ import com.delivrey.dto.TourDTO;
 import com.delivrey.entity.Tour;
 import com.delivrey.entity.Vehicle;
 import com.delivrey.entity.Warehouse;
+import com.delivrey.repository.projection.TourSummary;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
@@ -41,6 +42,21 @@ public interface TourMapper {
     @Mapping(target = "deliveries", ignore = true)
     Tour toEntity(TourDTO dto);
 
+    /**
+     * Same DTO as {@link #toDto(Tour)}, from a listing projection and the ids of its deliveries.
+     */
+    default TourDTO toDto(TourSummary tour, List<Long> deliveryIds) {
+        TourDTO dto = new TourDTO();
+        dto.setId(tour.id());
+        dto.setDate(tour.tourDate());
+        dto.setStatus(tour.tourStatus());
+        dto.setVehicleId(tour.vehicleId());
+        dto.setWarehouseId(tour.warehouseId());
+        dto.setAlgorithmUsed(tour.algorithmUsed());
+        dto.setDeliveryIds(deliveryIds);
+        return dto;
+    }
+
     default List<Long> mapDeliveriesToIds(List<com.delivrey.entity.Delivery> deliveries) {
         if (deliveries == null) {
             return null;
@@ -0,0 +1,46 @@
+package com.delivrey.optimizer;
+
+/**
+ * Don't-look bits kept as a FIFO of the stops whose bit is off. A stop leaves the queue once
+ * no improving move starts from it and only comes back when a move changes one of its edges.
+ */
+final class ActiveStops {
+
+    private final int[] queue;
+    private final boolean[] queued;
+    private int head;
+    private int size;
+
+    /**
+     * Starts with every stop of the route active, in route order.
+     */
+    ActiveStops(int[] route) {
+        int n = route.length;
+        this.queue = new int[n];
+        this.queued = new boolean[n];
+        for (int stop : route) {
+            add(stop);
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void add(int stop) {
+        if (stop < 0 || queued[stop]) {
+            return;
+        }
+        queued[stop] = true;
+        queue[(head + size) % queue.length] = stop;
+        size++;
+    }
+
+    int poll() {
+        int stop = queue[head];
+        head = (head + 1) % queue.length;
+        size--;
+        queued[stop] = false;
+        return stop;
+    }
+}
@@ -1,137 +1,373 @@
 package com.delivrey.optimizer;
 
 import com.delivrey.entity.Delivery;
+import com.delivrey.entity.Vehicle;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
 
+/**
+ * Clarke-Wright savings heuristic. Stop 0 is the depot (the tour's warehouse when it has one)
+ * and every other stop starts on its own depot-stop-depot route; routes are then merged end to
+ * end by decreasing saving d(0,i) + d(0,j) - d(i,j) as long as the vehicle capacity allows.
+ */
 @Component
 public class ClarkeWrightOptimizer implements TourOptimizer {
-    
+
+    private static final int NO_STOP = -1;
+
+    /**
+     * The monitor is asked whether to stop once every 1024 savings.
+     */
+    private static final int STOP_CHECK_INTERVAL = 1023;
+
     @Override
     public List<Delivery> calculateOptimalTour(List<Delivery> deliveries) {
         if (deliveries == null || deliveries.size() <= 1) {
             return deliveries;
         }
+        return calculateOptimalTour(deliveries, DistanceMatrix.of(deliveries));
+    }
+
+    /**
+     * Without capacity limits every route ends up merged; the depot comes first, then each route in turn.
+     */
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances) {
+        return calculateOptimalTour(deliveries, distances, SearchMonitor.NONE);
+    }
+
+    /**
+     * Stopped early, the remaining savings are not applied and the route visits the routes built so far in turn.
+     */
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances,
+                                              SearchMonitor monitor) {
+        if (deliveries == null || deliveries.size() <= 2) {
+            return deliveries == null ? null : new ArrayList<>(deliveries);
+        }
+        List<Delivery> optimizedRoute = new ArrayList<>(deliveries.size());
+        optimizedRoute.add(deliveries.get(0));
+        for (List<Delivery> route : calculateRoutes(deliveries, distances, null, monitor)) {
+            optimizedRoute.addAll(route);
+        }
+        return optimizedRoute;
+    }
+
+    /**
+     * Builds every route needed to serve stops 1..n-1 from the depot at stop 0 with the given vehicle.
+     * Limits of the vehicle that are zero or negative are treated as unlimited; a {@code null} vehicle
+     * means no capacity limit at all.
+     *
+     * @return the routes, each listing its stops in driving order without the depot
+     */
+    public List<List<Delivery>> calculateRoutes(List<Delivery> stops, DistanceMatrix distances, Vehicle vehicle) {
+        return calculateRoutes(stops, distances, vehicle, SearchMonitor.NONE);
+    }
+
+    private List<List<Delivery>> calculateRoutes(List<Delivery> stops, DistanceMatrix distances, Vehicle vehicle,
+                                                 SearchMonitor monitor) {
+        int n = stops.size();
+        double[] weights = new double[n];
+        double[] volumes = new double[n];
+        for (int i = 1; i < n; i++) {
+            Delivery delivery = stops.get(i);
+            weights[i] = delivery.getWeight() != null ? delivery.getWeight() : 0.0;
+            volumes[i] = delivery.getVolume() != null ? delivery.getVolume() : 0.0;
+        }
+        double maxWeight = vehicle != null && vehicle.getMaxWeight() > 0 ? vehicle.getMaxWeight() : Double.MAX_VALUE;
+        double maxVolume = vehicle != null && vehicle.getMaxVolume() > 0 ? vehicle.getMaxVolume() : Double.MAX_VALUE;
+        int maxDeliveries = vehicle != null && vehicle.getMaxDeliveries() > 0 ? vehicle.getMaxDeliveries() : Integer.MAX_VALUE;
+
+        int[][] routes = routes(distances, weights, volumes, maxWeight, maxVolume, maxDeliveries, monitor);
+        List<List<Delivery>> result = new ArrayList<>(routes.length);
+        for (int[] route : routes) {
+            List<Delivery> deliveries = new ArrayList<>(route.length);
+            for (int stop : route) {
+                deliveries.add(stops.get(stop));
+            }
+            result.add(deliveries);
+        }
+        return result;
+    }
+
+    /**
+     * Index-based savings algorithm.
+     *
+     * @return the routes as stop indexes, in the order their first stop appears in the input
+     */
+    public int[][] routes(DistanceMatrix distances, double[] weights, double[] volumes,
+                          double maxWeight, double maxVolume, int maxDeliveries) {
+        return routes(distances, weights, volumes, maxWeight, maxVolume, maxDeliveries, SearchMonitor.NONE);
+    }
+
+    /**
+     * Randomized variant for multi-start searches on large instances: only the savings between
+     * each stop and its {@code neighbors} are considered, each scaled by a random factor between
+     * {@code 1 - noise} and {@code 1 + noise}. With a noise of 0 every run gives the same routes.
+     */
+    public int[][] routes(DistanceMatrix distances, NeighborLists neighbors, double[] weights, double[] volumes,
+                          double maxWeight, double maxVolume, int maxDeliveries,
+                          Random random, double noise, SearchMonitor monitor) {
+        return routes(distances, SavingsHeap.neighborSavings(distances, neighbors, random, noise),
+                weights, volumes, maxWeight, maxVolume, maxDeliveries, monitor);
+    }
+
+    private int[][] routes(DistanceMatrix distances, double[] weights, double[] volumes,
+                           double maxWeight, double maxVolume, int maxDeliveries, SearchMonitor monitor) {
+        return routes(distances, SavingsHeap.positiveSavings(distances),
+                weights, volumes, maxWeight, maxVolume, maxDeliveries, monitor);
+    }
+
+    private int[][] routes(DistanceMatrix distances, SavingsHeap savings, double[] weights, double[] volumes,
+                           double maxWeight, double maxVolume, int maxDeliveries, SearchMonitor monitor) {
+        int n = distances.size();
+
+        // Route endpoints are linked lists over stop indexes; stops of a route share a union-find root
+        int[] next = new int[n];
+        int[] previous = new int[n];
+        int[] parent = new int[n];
+        int[] head = new int[n];
+        int[] tail = new int[n];
+        int[] count = new int[n];
+        double[] weight = new double[n];
+        double[] volume = new double[n];
+        for (int i = 1; i < n; i++) {
+            next[i] = NO_STOP;
+            previous[i] = NO_STOP;
+            parent[i] = i;
+            head[i] = i;
+            tail[i] = i;
+            count[i] = 1;
+            weight[i] = weights[i];
+            volume[i] = volumes[i];
+        }
 
-        // If there are only 2 deliveries, return them as is
-        if (deliveries.size() == 2) {
-            return new ArrayList<>(deliveries);
-        }
-
-        // For simplicity, we'll implement a simplified version of the Clarke-Wright algorithm
-        // that builds routes by merging the most efficient pairs of deliveries
-        
-        // Start with individual routes for each delivery
-        List<List<Delivery>> routes = new ArrayList<>();
-        for (Delivery delivery : deliveries) {
-            List<Delivery> route = new ArrayList<>();
-            route.add(delivery);
-            routes.add(route);
-        }
-
-        // Calculate savings for all pairs of deliveries
-        List<Savings> savings = calculateSavings(deliveries);
-        
-        // Sort savings in descending order
-        savings.sort(Comparator.comparingDouble(Savings::getSaving).reversed());
-        
-        // Merge routes based on savings
-        for (Savings saving : savings) {
-            int route1Idx = findRouteContaining(routes, saving.getI());
-            int route2Idx = findRouteContaining(routes, saving.getJ());
-            
-            // If the deliveries are in different routes and neither is in the middle of a route
-            if (route1Idx != route2Idx && route1Idx != -1 && route2Idx != -1) {
-                List<Delivery> route1 = routes.get(route1Idx);
-                List<Delivery> route2 = routes.get(route2Idx);
-                
-                // If the first route ends with i and the second starts with j, merge them
-                if (route1.get(route1.size() - 1).equals(saving.getI()) && 
-                    route2.get(0).equals(saving.getJ())) {
-                    route1.addAll(route2);
-                    routes.remove(route2Idx);
+        int routeCount = Math.max(0, n - 1);
+        int polled = 0;
+        while (routeCount > 1 && !savings.isEmpty()) {
+            if ((++polled & STOP_CHECK_INTERVAL) == 0 && monitor.shouldStop()) {
+                break;
+            }
+            int i = savings.topI();
+            int j = savings.topJ();
+            savings.pop();
+
+            // Only the two ends of a route can be linked to another route
+            if (!isEndpoint(i, next, previous) || !isEndpoint(j, next, previous)) {
+                continue;
+            }
+            int a = find(parent, i);
+            int b = find(parent, j);
+            if (a == b
+                    || count[a] + count[b] > maxDeliveries
+                    || weight[a] + weight[b] > maxWeight
+                    || volume[a] + volume[b] > maxVolume) {
+                continue;
+            }
+
+            // Orient both routes so that i ends route a and j starts route b, reversing the shorter if needed
+            if (tail[a] != i && head[b] != j) {
+                if (count[a] <= count[b]) {
+                    reverse(a, next, previous, head, tail);
+                } else {
+                    reverse(b, next, previous, head, tail);
                 }
-                // If the first route starts with i and the second ends with j, merge them in reverse
-                else if (route1.get(0).equals(saving.getI()) && 
-                         route2.get(route2.size() - 1).equals(saving.getJ())) {
-                    Collections.reverse(route2);
-                    route2.addAll(route1);
-                    routes.set(route1Idx, route2);
-                    routes.remove(route2Idx);
+            }
+            if (tail[a] != i) {
+                // i starts route a: append a after b instead, j must then end b
+                if (tail[b] != j) {
+                    reverse(b, next, previous, head, tail);
                 }
+                int swap = a;
+                a = b;
+                b = swap;
+                swap = i;
+                i = j;
+                j = swap;
+            } else if (head[b] != j) {
+                reverse(b, next, previous, head, tail);
             }
+
+            next[i] = j;
+            previous[j] = i;
+            parent[b] = a;
+            tail[a] = tail[b];
+            count[a] += count[b];
+            weight[a] += weight[b];
+            volume[a] += volume[b];
+            routeCount--;
         }
-        
-        // Return the first route (in a real implementation, we might have multiple routes)
-        return routes.isEmpty() ? new ArrayList<>() : routes.get(0);
-    }
-    
-    private List<Savings> calculateSavings(List<Delivery> deliveries) {
-        List<Savings> savings = new ArrayList<>();
-        
-        for (int i = 0; i < deliveries.size(); i++) {
-            for (int j = i + 1; j < deliveries.size(); j++) {
-                Delivery di = deliveries.get(i);
-                Delivery dj = deliveries.get(j);
-                
-                // Calculate savings using the distance from the depot to each delivery
-                double saving = calculateDistance(0, 0, di.getLatitude(), di.getLongitude()) +
-                              calculateDistance(0, 0, dj.getLatitude(), dj.getLongitude()) -
-                              calculateDistance(di.getLatitude(), di.getLongitude(), 
-                                              dj.getLatitude(), dj.getLongitude());
-                
-                savings.add(new Savings(di, dj, saving));
+
+        int[][] routes = new int[routeCount][];
+        boolean[] emitted = new boolean[n];
+        int r = 0;
+        for (int stop = 1; stop < n; stop++) {
+            int root = find(parent, stop);
+            if (emitted[root]) {
+                continue;
             }
+            emitted[root] = true;
+            int[] route = new int[count[root]];
+            int k = 0;
+            for (int s = head[root]; s != NO_STOP; s = next[s]) {
+                route[k++] = s;
+            }
+            routes[r++] = route;
         }
-        
-        return savings;
+        return routes;
     }
-    
-    private int findRouteContaining(List<List<Delivery>> routes, Delivery delivery) {
-        for (int i = 0; i < routes.size(); i++) {
-            if (routes.get(i).contains(delivery)) {
-                return i;
-            }
+
+    private static boolean isEndpoint(int stop, int[] next, int[] previous) {
+        return next[stop] == NO_STOP || previous[stop] == NO_STOP;
+    }
+
+    private static int find(int[] parent, int stop) {
+        int root = stop;
+        while (parent[root] != root) {
+            root = parent[root];
         }
-        return -1;
+        // Path compression
+        while (parent[stop] != root) {
+            int up = parent[stop];
+            parent[stop] = root;
+            stop = up;
+        }
+        return root;
     }
-    
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Earth's radius in kilometers
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-                
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+
+    private static void reverse(int root, int[] next, int[] previous, int[] head, int[] tail) {
+        int stop = head[root];
+        while (stop != NO_STOP) {
+            int following = next[stop];
+            next[stop] = previous[stop];
+            previous[stop] = following;
+            stop = following;
+        }
+        int swap = head[root];
+        head[root] = tail[root];
+        tail[root] = swap;
     }
-    
-    private static class Savings {
-        private final Delivery i;
-        private final Delivery j;
-        private final double saving;
-        
-        public Savings(Delivery i, Delivery j, double saving) {
-            this.i = i;
-            this.j = j;
-            this.saving = saving;
-        }
-        
-        public Delivery getI() {
-            return i;
-        }
-        
-        public Delivery getJ() {
-            return j;
-        }
-        
-        public double getSaving() {
-            return saving;
+
+    /**
+     * Binary max-heap of the positive savings, held in parallel primitive arrays.
+     */
+    static final class SavingsHeap {
+
+        private final int[] first;
+        private final int[] second;
+        private final double[] saving;
+        private int size;
+
+        private SavingsHeap(int capacity) {
+            this.first = new int[capacity];
+            this.second = new int[capacity];
+            this.saving = new double[capacity];
+        }
+
+        static SavingsHeap positiveSavings(DistanceMatrix distances) {
+            int n = distances.size();
+            int customers = Math.max(0, n - 1);
+            SavingsHeap heap = new SavingsHeap((int) Math.min(Integer.MAX_VALUE - 8, (long) customers * (customers - 1) / 2));
+            for (int i = 1; i < n; i++) {
+                double fromDepot = distances.distance(0, i);
+                for (int j = i + 1; j < n; j++) {
+                    double value = fromDepot + distances.distance(0, j) - distances.distance(i, j);
+                    if (value > 0) {
+                        heap.first[heap.size] = i;
+                        heap.second[heap.size] = j;
+                        heap.saving[heap.size] = value;
+                        heap.size++;
+                    }
+                }
+            }
+            heap.heapify();
+            return heap;
+        }
+
+        /**
+         * Positive savings of each stop with its neighbors, randomly scaled. A pair found from
+         * both of its stops is kept twice; the second one is skipped once the routes are merged.
+         */
+        static SavingsHeap neighborSavings(DistanceMatrix distances, NeighborLists neighbors,
+                                           Random random, double noise) {
+            int n = distances.size();
+            SavingsHeap heap = new SavingsHeap(Math.max(0, n - 1) * neighbors.count());
+            for (int i = 1; i < n; i++) {
+                double fromDepot = distances.distance(0, i);
+                for (int rank = 0; rank < neighbors.count(); rank++) {
+                    int j = neighbors.get(i, rank);
+                    if (j == 0) {
+                        continue;
+                    }
+                    double value = fromDepot + distances.distance(0, j) - distances.distance(i, j);
+                    if (value > 0) {
+                        if (noise > 0) {
+                            value *= 1 + noise * (2 * random.nextDouble() - 1);
+                        }
+                        heap.first[heap.size] = Math.min(i, j);
+                        heap.second[heap.size] = Math.max(i, j);
+                        heap.saving[heap.size] = value;
+                        heap.size++;
+                    }
+                }
+            }
+            heap.heapify();
+            return heap;
+        }
+
+        // Bottom-up heap construction in O(m)
+        private void heapify() {
+            for (int k = (size >>> 1) - 1; k >= 0; k--) {
+                siftDown(k);
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int topI() {
+            return first[0];
+        }
+
+        int topJ() {
+            return second[0];
+        }
+
+        void pop() {
+            size--;
+            if (size > 0) {
+                move(size, 0);
+                siftDown(0);
+            }
+        }
+
+        private void siftDown(int k) {
+            int i = first[k];
+            int j = second[k];
+            double value = saving[k];
+            int half = size >>> 1;
+            while (k < half) {
+                int child = 2 * k + 1;
+                if (child + 1 < size && saving[child + 1] > saving[child]) {
+                    child++;
+                }
+                if (saving[child] <= value) {
+                    break;
+                }
+                move(child, k);
+                k = child;
+            }
+            first[k] = i;
+            second[k] = j;
+            saving[k] = value;
+        }
+
+        private void move(int from, int to) {
+            first[to] = first[from];
+            second[to] = second[from];
+            saving[to] = saving[from];
         }
     }
 }
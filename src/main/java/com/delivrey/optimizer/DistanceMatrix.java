@@ -0,0 +1,168 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+import com.delivrey.util.GeoUtils;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Distances in kilometers between every pair of stops of a tour.
+ * Built once per tour into a flat n×n array and read by index: the index of a stop
+ * is its position in the list given to {@link #of(List)}. Beyond {@link #DENSE_MAX_STOPS}
+ * stops, such as a whole day of a depot, only the coordinates are kept and each distance is
+ * computed when it is read: the array would take n² × 8 bytes (200 MB at 5,000 stops).
+ */
+public final class DistanceMatrix {
+
+    /**
+     * Number of stops from which the rows of the matrix are computed in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    /**
+     * Most stops whose distances are all stored, in 32 MB.
+     */
+    static final int DENSE_MAX_STOPS = 2_000;
+
+    private final int size;
+    // Null when the distances are computed on demand from the points
+    private final double[] distances;
+    private final GeoUtils.Points points;
+    // Kept in every case, for the searches that look stops up by position (KdTree)
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    private DistanceMatrix(int size, double[] distances, GeoUtils.Points points, double[] latitudes,
+                           double[] longitudes) {
+        this.size = size;
+        this.distances = distances;
+        this.points = points;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    public static DistanceMatrix of(List<Delivery> deliveries) {
+        int n = deliveries.size();
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            Delivery delivery = deliveries.get(i);
+            latitudes[i] = delivery.getLatitude();
+            longitudes[i] = delivery.getLongitude();
+        }
+        return of(latitudes, longitudes);
+    }
+
+    public static DistanceMatrix of(double[] latitudes, double[] longitudes) {
+        return latitudes.length > DENSE_MAX_STOPS ? onDemand(latitudes, longitudes) : dense(latitudes, longitudes);
+    }
+
+    static DistanceMatrix dense(double[] latitudes, double[] longitudes) {
+        int n = latitudes.length;
+        GeoUtils.Points points = GeoUtils.Points.of(latitudes, longitudes);
+        double[] distances = new double[n * n];
+        IntStream rows = IntStream.range(0, n);
+        if (n >= PARALLEL_THRESHOLD) {
+            rows = rows.parallel();
+        }
+        // Row i computes cells j > i in bulk, then mirrors them, so no cell is written twice
+        rows.forEach(i -> {
+            GeoUtils.distancesKm(points, i, i + 1, n, distances, i * n + i + 1);
+            for (int j = i + 1; j < n; j++) {
+                distances[j * n + i] = distances[i * n + j];
+            }
+        });
+        return new DistanceMatrix(n, distances, null, latitudes, longitudes);
+    }
+
+    static DistanceMatrix onDemand(double[] latitudes, double[] longitudes) {
+        return new DistanceMatrix(latitudes.length, null, GeoUtils.Points.of(latitudes, longitudes),
+                latitudes, longitudes);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether every distance is stored, rather than computed on each read.
+     */
+    public boolean isDense() {
+        return distances != null;
+    }
+
+    public double distance(int from, int to) {
+        return distances != null ? distances[from * size + to] : GeoUtils.distanceKm(points, from, to);
+    }
+
+    /**
+     * Distances from stop {@code from} to every stop, into {@code row}.
+     */
+    public void row(int from, double[] row) {
+        if (distances != null) {
+            System.arraycopy(distances, from * size, row, 0, size);
+        } else {
+            GeoUtils.distancesKm(points, from, row);
+        }
+    }
+
+    /**
+     * The distances between the given stops only: stop i of the result is {@code stops[i]} here.
+     */
+    public DistanceMatrix subset(int[] stops) {
+        int m = stops.length;
+        double[] subsetLatitudes = new double[m];
+        double[] subsetLongitudes = new double[m];
+        for (int i = 0; i < m; i++) {
+            subsetLatitudes[i] = latitudes[stops[i]];
+            subsetLongitudes[i] = longitudes[stops[i]];
+        }
+        if (m > DENSE_MAX_STOPS) {
+            return onDemand(subsetLatitudes, subsetLongitudes);
+        }
+        double[] subset = new double[m * m];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < m; j++) {
+                subset[i * m + j] = distance(stops[i], stops[j]);
+            }
+        }
+        return new DistanceMatrix(m, subset, null, subsetLatitudes, subsetLongitudes);
+    }
+
+    /**
+     * A tree over the stops of the matrix, with the same indexes.
+     */
+    KdTree tree() {
+        return KdTree.of(latitudes, longitudes);
+    }
+
+    /**
+     * Length of an open route (no return to the first stop), as summed by getTotalDistance.
+     */
+    public double routeLength(int[] route) {
+        double total = 0.0;
+        for (int i = 1; i < route.length; i++) {
+            total += distance(route[i - 1], route[i]);
+        }
+        return total;
+    }
+
+    /**
+     * Matrix indexes of the stops of {@code route}, an ordering of the same {@code deliveries}
+     * instances the matrix was built from, so they are matched by identity.
+     */
+    public static int[] indexesOf(List<Delivery> deliveries, List<Delivery> route) {
+        Map<Delivery, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < deliveries.size(); i++) {
+            indexes.put(deliveries.get(i), i);
+        }
+        int[] result = new int[route.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = indexes.get(route.get(i));
+        }
+        return result;
+    }
+}
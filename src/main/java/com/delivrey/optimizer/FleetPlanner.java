@@ -0,0 +1,390 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Vehicle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Capacitated multi-vehicle planner: splits the stops served from a depot into one route per
+ * vehicle, within the weight, volume and delivery count limits of each vehicle.
+ * <p>
+ * Each worker repeats, until the monitor asks to stop or its plans stop improving: randomized Clarke-Wright savings on the
+ * nearest neighbors of each stop, assignment of the routes to vehicles (best fit, splitting the
+ * routes no vehicle can carry), then 2-opt and Or-opt inside every route. The workers run in
+ * parallel and the best plan wins: fewest stops left unassigned, then shortest total distance.
+ * Stop 0 is the depot; like the other optimizers, routes are open and start at the depot.
+ */
+public class FleetPlanner {
+
+    /**
+     * Savings are only computed between a stop and this many of its nearest stops.
+     */
+    static final int SAVINGS_NEIGHBORS = 40;
+
+    /**
+     * Savings are scaled by a random factor of up to ±10% after the first run.
+     */
+    static final double NOISE = 0.1;
+
+    /**
+     * A worker gives up after this many runs in a row without a better plan.
+     */
+    static final int MAX_RUNS_WITHOUT_IMPROVEMENT = 50;
+
+    private static final int LOCAL_SEARCH_NEIGHBORS = 10;
+
+    private final ClarkeWrightOptimizer clarkeWright = new ClarkeWrightOptimizer();
+    private final LocalSearchOptimizer localSearch = new LocalSearchOptimizer(null,
+            List.of(new TwoOptImprover(), new OrOptImprover()), LOCAL_SEARCH_NEIGHBORS, Duration.ofDays(1));
+    private final int parallelism;
+    private final long seed;
+
+    /**
+     * @param parallelism number of workers searching at the same time
+     * @param seed        seed of the random savings of the first worker, the others add their rank
+     */
+    public FleetPlanner(int parallelism, long seed) {
+        this.parallelism = Math.max(1, parallelism);
+        this.seed = seed;
+    }
+
+    /**
+     * Best plan found before {@code monitor} asks to stop. Each worker completes at least one
+     * run, and the first one is never cut short, so a plan is always returned. Small instances
+     * usually return well before the deadline, once no worker finds anything better.
+     *
+     * @param weights weight of each stop, the depot's is ignored
+     * @param volumes volume of each stop, the depot's is ignored
+     * @param fleet   vehicles available, at most one route each; limits of zero or less are unlimited
+     */
+    public Plan plan(DistanceMatrix distances, double[] weights, double[] volumes, List<Vehicle> fleet,
+                     SearchMonitor monitor) {
+        int n = distances.size();
+        if (n <= 1 || fleet.isEmpty()) {
+            int[] unassigned = new int[Math.max(0, n - 1)];
+            Arrays.setAll(unassigned, i -> i + 1);
+            return new Plan(new int[0][], new int[0], unassigned, 0.0);
+        }
+        Capacity[] capacities = new Capacity[fleet.size()];
+        for (int v = 0; v < capacities.length; v++) {
+            capacities[v] = Capacity.of(fleet.get(v));
+        }
+        NeighborLists neighbors = NeighborLists.of(distances, SAVINGS_NEIGHBORS);
+
+        List<Callable<Plan>> workers = new ArrayList<>(parallelism);
+        for (int w = 0; w < parallelism; w++) {
+            int worker = w;
+            workers.add(() -> search(worker, distances, neighbors, weights, volumes, capacities, monitor));
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Plan best = null;
+            for (Future<Plan> result : pool.invokeAll(workers)) {
+                Plan plan = result.get();
+                if (best == null || plan.isBetterThan(best)) {
+                    best = plan;
+                }
+            }
+            return best;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while planning", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Planning failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Plan search(int worker, DistanceMatrix distances, NeighborLists neighbors, double[] weights,
+                        double[] volumes, Capacity[] capacities, SearchMonitor monitor) {
+        Random random = new Random(seed + worker);
+        Capacity largest = Capacity.largest(capacities);
+        Plan best = null;
+        int run = 0;
+        int runsWithoutImprovement = 0;
+        do {
+            // The very first run is plain Clarke-Wright and must finish
+            boolean first = worker == 0 && run == 0;
+            SearchMonitor runMonitor = first ? SearchMonitor.NONE : monitor;
+            int[][] routes = clarkeWright.routes(distances, neighbors, weights, volumes,
+                    largest.weight(), largest.volume(), largest.deliveries(),
+                    random, first ? 0.0 : NOISE, runMonitor);
+            Plan plan = improve(assign(routes, distances, weights, volumes, capacities), distances, monitor);
+            if (best == null || plan.isBetterThan(best)) {
+                best = plan;
+                runsWithoutImprovement = 0;
+            } else {
+                runsWithoutImprovement++;
+            }
+            run++;
+        } while (runsWithoutImprovement < MAX_RUNS_WITHOUT_IMPROVEMENT && !monitor.shouldStop());
+        return best;
+    }
+
+    /**
+     * Gives each route, heaviest first, to the smallest free vehicle that can carry it. A route
+     * no free vehicle can carry is cut: the longest head that fits one goes to it and the rest
+     * waits for another vehicle. Stops left once the vehicles run out are then inserted where
+     * they lengthen a route the least, in vehicles that still have room; the others stay unassigned.
+     */
+    Plan assign(int[][] routes, DistanceMatrix distances, double[] weights, double[] volumes,
+                Capacity[] capacities) {
+        PriorityQueue<Load> pending = new PriorityQueue<>(Comparator.comparingDouble(Load::weight).reversed()
+                .thenComparing(Comparator.comparingInt((Load load) -> load.stops().length).reversed()));
+        for (int[] route : routes) {
+            pending.add(Load.of(route, weights, volumes));
+        }
+        boolean[] used = new boolean[capacities.length];
+        int free = capacities.length;
+        List<int[]> assignedRoutes = new ArrayList<>();
+        List<Integer> vehicles = new ArrayList<>();
+        List<Integer> unassigned = new ArrayList<>();
+
+        while (!pending.isEmpty()) {
+            Load load = pending.poll();
+            int vehicle = smallestFitting(load, capacities, used);
+            if (vehicle >= 0) {
+                used[vehicle] = true;
+                free--;
+                assignedRoutes.add(load.stops());
+                vehicles.add(vehicle);
+                continue;
+            }
+            // Longest head of the route that a free vehicle can carry, on the smallest such vehicle
+            int bestLength = 0;
+            for (int v = 0; v < capacities.length; v++) {
+                if (used[v]) {
+                    continue;
+                }
+                int length = capacities[v].fittingPrefix(load.stops(), weights, volumes);
+                if (length > bestLength || (length == bestLength && length > 0
+                        && capacities[v].compareTo(capacities[vehicle]) < 0)) {
+                    bestLength = length;
+                    vehicle = v;
+                }
+            }
+            int[] stops = load.stops();
+            if (vehicle < 0) {
+                if (free == 0) {
+                    // No vehicle left at all
+                    for (int stop : stops) {
+                        unassigned.add(stop);
+                    }
+                } else {
+                    // Even the first stop fits no free vehicle on its own
+                    unassigned.add(stops[0]);
+                    if (stops.length > 1) {
+                        pending.add(Load.of(Arrays.copyOfRange(stops, 1, stops.length), weights, volumes));
+                    }
+                }
+                continue;
+            }
+            used[vehicle] = true;
+            free--;
+            assignedRoutes.add(Arrays.copyOf(stops, bestLength));
+            vehicles.add(vehicle);
+            if (bestLength < stops.length) {
+                pending.add(Load.of(Arrays.copyOfRange(stops, bestLength, stops.length), weights, volumes));
+            }
+        }
+        int[] assignedVehicles = vehicles.stream().mapToInt(Integer::intValue).toArray();
+        int[] left = unassigned.isEmpty()
+                ? new int[0]
+                : insert(unassigned, assignedRoutes, assignedVehicles, distances, weights, volumes, capacities);
+        return new Plan(assignedRoutes.toArray(new int[0][]), assignedVehicles, left, 0.0);
+    }
+
+    /**
+     * Cheapest insertion of the given stops, heaviest first, into the routes whose vehicle can
+     * still take them. Updates {@code routes} and returns the stops that fit nowhere, sorted.
+     */
+    private static int[] insert(List<Integer> stops, List<int[]> routes, int[] vehicles, DistanceMatrix distances,
+                                double[] weights, double[] volumes, Capacity[] capacities) {
+        int routeCount = routes.size();
+        double[] routeWeights = new double[routeCount];
+        double[] routeVolumes = new double[routeCount];
+        for (int r = 0; r < routeCount; r++) {
+            for (int stop : routes.get(r)) {
+                routeWeights[r] += weights[stop];
+                routeVolumes[r] += volumes[stop];
+            }
+        }
+        stops.sort(Comparator.comparingDouble((Integer stop) -> weights[stop]).reversed());
+
+        List<Integer> left = new ArrayList<>();
+        for (int stop : stops) {
+            int bestRoute = -1;
+            int bestPosition = -1;
+            double bestCost = Double.MAX_VALUE;
+            for (int r = 0; r < routeCount; r++) {
+                int[] route = routes.get(r);
+                Capacity capacity = capacities[vehicles[r]];
+                if (route.length >= capacity.deliveries()
+                        || routeWeights[r] + weights[stop] > capacity.weight()
+                        || routeVolumes[r] + volumes[stop] > capacity.volume()) {
+                    continue;
+                }
+                // Position p puts the stop before route[p]; the route is open so the last position only adds one leg
+                for (int p = 0; p <= route.length; p++) {
+                    int previous = p == 0 ? 0 : route[p - 1];
+                    double cost = distances.distance(previous, stop);
+                    if (p < route.length) {
+                        cost += distances.distance(stop, route[p]) - distances.distance(previous, route[p]);
+                    }
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestRoute = r;
+                        bestPosition = p;
+                    }
+                }
+            }
+            if (bestRoute < 0) {
+                left.add(stop);
+                continue;
+            }
+            int[] route = routes.get(bestRoute);
+            int[] extended = new int[route.length + 1];
+            System.arraycopy(route, 0, extended, 0, bestPosition);
+            extended[bestPosition] = stop;
+            System.arraycopy(route, bestPosition, extended, bestPosition + 1, route.length - bestPosition);
+            routes.set(bestRoute, extended);
+            routeWeights[bestRoute] += weights[stop];
+            routeVolumes[bestRoute] += volumes[stop];
+        }
+        return left.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    private static int smallestFitting(Load load, Capacity[] capacities, boolean[] used) {
+        int best = -1;
+        for (int v = 0; v < capacities.length; v++) {
+            if (!used[v] && capacities[v].fits(load)
+                    && (best < 0 || capacities[v].compareTo(capacities[best]) < 0)) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reorders the stops of every route with 2-opt and Or-opt, on the distances of that route only.
+     */
+    private Plan improve(Plan plan, DistanceMatrix distances, SearchMonitor monitor) {
+        // The lengths of single routes mean nothing to the caller, only the stop requests go through
+        SearchMonitor stopOnly = monitor::shouldStop;
+        double total = 0.0;
+        int[][] routes = new int[plan.routes().length][];
+        for (int r = 0; r < routes.length; r++) {
+            int[] stops = plan.routes()[r];
+            int[] withDepot = new int[stops.length + 1];
+            System.arraycopy(stops, 0, withDepot, 1, stops.length);
+            DistanceMatrix routeDistances = distances.subset(withDepot);
+
+            int[] order = new int[withDepot.length];
+            Arrays.setAll(order, i -> i);
+            total += stops.length > 2 && !monitor.shouldStop()
+                    ? localSearch.improve(order, routeDistances, stopOnly)
+                    : routeDistances.routeLength(order);
+
+            int[] improved = new int[stops.length];
+            for (int i = 1; i < order.length; i++) {
+                improved[i - 1] = withDepot[order[i]];
+            }
+            routes[r] = improved;
+        }
+        return new Plan(routes, plan.vehicles(), plan.unassigned(), total);
+    }
+
+    /**
+     * @param routes     stops of each route in driving order, without the depot
+     * @param vehicles   index in the fleet of the vehicle driving each route
+     * @param unassigned stops no vehicle could take
+     * @param distanceKm total length of the routes, each from the depot to its last stop
+     */
+    public record Plan(int[][] routes, int[] vehicles, int[] unassigned, double distanceKm) {
+
+        boolean isBetterThan(Plan other) {
+            if (unassigned.length != other.unassigned.length) {
+                return unassigned.length < other.unassigned.length;
+            }
+            return distanceKm < other.distanceKm;
+        }
+    }
+
+    private record Load(int[] stops, double weight, double volume) {
+
+        static Load of(int[] stops, double[] weights, double[] volumes) {
+            double weight = 0.0;
+            double volume = 0.0;
+            for (int stop : stops) {
+                weight += weights[stop];
+                volume += volumes[stop];
+            }
+            return new Load(stops, weight, volume);
+        }
+    }
+
+    record Capacity(double weight, double volume, int deliveries) implements Comparable<Capacity> {
+
+        static Capacity of(Vehicle vehicle) {
+            return new Capacity(
+                    vehicle.getMaxWeight() > 0 ? vehicle.getMaxWeight() : Double.MAX_VALUE,
+                    vehicle.getMaxVolume() > 0 ? vehicle.getMaxVolume() : Double.MAX_VALUE,
+                    vehicle.getMaxDeliveries() > 0 ? vehicle.getMaxDeliveries() : Integer.MAX_VALUE);
+        }
+
+        /**
+         * Each limit of the roomiest vehicle for it: routes are built to these, then cut if needed.
+         */
+        static Capacity largest(Capacity[] capacities) {
+            double weight = 0.0;
+            double volume = 0.0;
+            int deliveries = 0;
+            for (Capacity capacity : capacities) {
+                weight = Math.max(weight, capacity.weight);
+                volume = Math.max(volume, capacity.volume);
+                deliveries = Math.max(deliveries, capacity.deliveries);
+            }
+            return new Capacity(weight, volume, deliveries);
+        }
+
+        boolean fits(Load load) {
+            return load.stops().length <= deliveries && load.weight() <= weight && load.volume() <= volume;
+        }
+
+        int fittingPrefix(int[] stops, double[] weights, double[] volumes) {
+            double totalWeight = 0.0;
+            double totalVolume = 0.0;
+            int length = 0;
+            while (length < stops.length && length < deliveries) {
+                totalWeight += weights[stops[length]];
+                totalVolume += volumes[stops[length]];
+                if (totalWeight > weight || totalVolume > volume) {
+                    break;
+                }
+                length++;
+            }
+            return length;
+        }
+
+        @Override
+        public int compareTo(Capacity other) {
+            int byWeight = Double.compare(weight, other.weight);
+            if (byWeight != 0) {
+                return byWeight;
+            }
+            int byVolume = Double.compare(volume, other.volume);
+            return byVolume != 0 ? byVolume : Integer.compare(deliveries, other.deliveries);
+        }
+    }
+}
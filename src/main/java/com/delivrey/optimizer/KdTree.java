@@ -0,0 +1,266 @@
+package com.delivrey.optimizer;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Static 3-d tree over the stops of a tour answering "nearest remaining stop" and "remaining
+ * stops within a distance" queries, with removal in O(log n). Stops live in one int array
+ * partitioned by median splits, so the tree has no node objects; each implicit node keeps the
+ * number of stops still present below it so emptied subtrees are skipped.
+ * Stops are placed on the unit sphere: the straight-line (chord) distance between two of them
+ * grows with their great-circle distance, so the tree ranks neighbours as haversine does,
+ * across the antimeridian and near the poles as well.
+ */
+public final class KdTree {
+
+    private static final int LEAF_SIZE = 8;
+
+    // Unit vectors of the stops
+    private final double[][] axes;
+    private final int[] items;
+    private final int[] slotOf;
+    private final long[] removed;
+
+    // Implicit nodes are numbered heap-style from 1: children of node k are 2k and 2k + 1
+    private final int[] alive;
+    private final double[] splitValue;
+    private final byte[] splitAxis;
+    private int remaining;
+
+    private int best;
+    private double bestSquared;
+
+    private KdTree(double[] x, double[] y, double[] z) {
+        int n = x.length;
+        this.axes = new double[][]{x, y, z};
+        this.items = new int[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = i;
+        }
+
+        int leaves = Math.max(1, (n + LEAF_SIZE - 1) / LEAF_SIZE);
+        int nodes = Integer.highestOneBit(leaves) << 3;
+        this.alive = new int[nodes];
+        this.splitValue = new double[nodes];
+        this.splitAxis = new byte[nodes];
+        build(1, 0, n);
+
+        this.slotOf = new int[n];
+        for (int slot = 0; slot < n; slot++) {
+            slotOf[items[slot]] = slot;
+        }
+        this.removed = new long[(n + 63) >>> 6];
+        this.remaining = n;
+    }
+
+    /**
+     * Builds a tree over geographic coordinates, in degrees.
+     */
+    public static KdTree of(double[] latitudes, double[] longitudes) {
+        int n = latitudes.length;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] z = new double[n];
+        for (int i = 0; i < n; i++) {
+            double latitude = Math.toRadians(latitudes[i]);
+            double longitude = Math.toRadians(longitudes[i]);
+            double cosLatitude = Math.cos(latitude);
+            x[i] = cosLatitude * Math.cos(longitude);
+            y[i] = cosLatitude * Math.sin(longitude);
+            z[i] = Math.sin(latitude);
+        }
+        return new KdTree(x, y, z);
+    }
+
+    public int remaining() {
+        return remaining;
+    }
+
+    /**
+     * Chord between two stops on the unit sphere: 2 sin(θ / 2) for stops θ radians apart.
+     */
+    public double chord(int from, int to) {
+        return Math.sqrt(squaredDistance(from, axes[0][to], axes[1][to], axes[2][to]));
+    }
+
+    /**
+     * Removes a stop from the candidates returned by the queries.
+     */
+    public void remove(int stop) {
+        removed[stop >>> 6] |= 1L << stop;
+        remaining--;
+        int slot = slotOf[stop];
+        int node = 1;
+        int lo = 0;
+        int hi = items.length;
+        while (true) {
+            alive[node]--;
+            if (hi - lo <= LEAF_SIZE) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (slot < mid) {
+                node = 2 * node;
+                hi = mid;
+            } else {
+                node = 2 * node + 1;
+                lo = mid;
+            }
+        }
+    }
+
+    /**
+     * Returns the remaining stop closest to {@code from}, or -1 when none is left.
+     */
+    public int nearest(int from) {
+        best = -1;
+        bestSquared = Double.MAX_VALUE;
+        nearest(1, 0, items.length, axes[0][from], axes[1][from], axes[2][from]);
+        return best;
+    }
+
+    /**
+     * Passes every remaining stop at most {@code chord} away from {@code from} to {@code action}, in no particular order.
+     */
+    public void within(int from, double chord, IntConsumer action) {
+        within(1, 0, items.length, axes[0][from], axes[1][from], axes[2][from], chord * chord, action);
+    }
+
+    private void build(int node, int lo, int hi) {
+        alive[node] = hi - lo;
+        if (hi - lo <= LEAF_SIZE) {
+            return;
+        }
+        // Split the widest side at its median
+        int axis = 0;
+        double widest = -1.0;
+        for (int a = 0; a < axes.length; a++) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int k = lo; k < hi; k++) {
+                double value = axes[a][items[k]];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                axis = a;
+            }
+        }
+        double[] key = axes[axis];
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, key);
+        splitAxis[node] = (byte) axis;
+        splitValue[node] = key[items[mid]];
+        build(2 * node, lo, mid);
+        build(2 * node + 1, mid, hi);
+    }
+
+    /**
+     * Quickselect: reorders items[lo..hi] so that items[k] holds the k-th smallest key.
+     */
+    private void select(int lo, int hi, int k, double[] key) {
+        while (hi > lo) {
+            double pivot = key[items[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (key[items[i]] < pivot) {
+                    i++;
+                }
+                while (key[items[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = items[i];
+                    items[i] = items[j];
+                    items[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void nearest(int node, int lo, int hi, double qx, double qy, double qz) {
+        if (alive[node] == 0) {
+            return;
+        }
+        if (hi - lo <= LEAF_SIZE) {
+            for (int k = lo; k < hi; k++) {
+                int candidate = items[k];
+                if ((removed[candidate >>> 6] & (1L << candidate)) != 0) {
+                    continue;
+                }
+                double squared = squaredDistance(candidate, qx, qy, qz);
+                if (squared < bestSquared) {
+                    bestSquared = squared;
+                    best = candidate;
+                }
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double offset = offset(node, qx, qy, qz);
+        if (offset < 0) {
+            nearest(2 * node, lo, mid, qx, qy, qz);
+            // The far side can only hold a closer stop if the splitting plane is closer than the best so far
+            if (offset * offset < bestSquared) {
+                nearest(2 * node + 1, mid, hi, qx, qy, qz);
+            }
+        } else {
+            nearest(2 * node + 1, mid, hi, qx, qy, qz);
+            if (offset * offset < bestSquared) {
+                nearest(2 * node, lo, mid, qx, qy, qz);
+            }
+        }
+    }
+
+    private void within(int node, int lo, int hi, double qx, double qy, double qz, double maxSquared,
+                        IntConsumer action) {
+        if (alive[node] == 0) {
+            return;
+        }
+        if (hi - lo <= LEAF_SIZE) {
+            for (int k = lo; k < hi; k++) {
+                int candidate = items[k];
+                if ((removed[candidate >>> 6] & (1L << candidate)) == 0
+                        && squaredDistance(candidate, qx, qy, qz) <= maxSquared) {
+                    action.accept(candidate);
+                }
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double offset = offset(node, qx, qy, qz);
+        if (offset < 0 || offset * offset <= maxSquared) {
+            within(2 * node, lo, mid, qx, qy, qz, maxSquared, action);
+        }
+        if (offset >= 0 || offset * offset <= maxSquared) {
+            within(2 * node + 1, mid, hi, qx, qy, qz, maxSquared, action);
+        }
+    }
+
+    private double offset(int node, double qx, double qy, double qz) {
+        double q = switch (splitAxis[node]) {
+            case 0 -> qx;
+            case 1 -> qy;
+            default -> qz;
+        };
+        return q - splitValue[node];
+    }
+
+    private double squaredDistance(int stop, double qx, double qy, double qz) {
+        double dx = axes[0][stop] - qx;
+        double dy = axes[1][stop] - qy;
+        double dz = axes[2][stop] - qz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,99 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Improvement pipeline: builds a route with another {@link TourOptimizer}, then runs the
+ * given {@link TourImprover}s in turn until none of them shortens the route any more or the
+ * time budget is spent. The first stop keeps its place.
+ */
+public class LocalSearchOptimizer implements TourOptimizer {
+
+    private final TourOptimizer construction;
+    private final List<TourImprover> improvers;
+    private final int neighborCount;
+    private final Duration timeBudget;
+
+    public LocalSearchOptimizer(TourOptimizer construction, List<TourImprover> improvers,
+                                int neighborCount, Duration timeBudget) {
+        this.construction = construction;
+        this.improvers = List.copyOf(improvers);
+        this.neighborCount = neighborCount;
+        this.timeBudget = timeBudget;
+    }
+
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries) {
+        if (deliveries == null || deliveries.size() <= 2) {
+            return construction.calculateOptimalTour(deliveries);
+        }
+        return calculateOptimalTour(deliveries, DistanceMatrix.of(deliveries));
+    }
+
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances) {
+        return calculateOptimalTour(deliveries, distances, SearchMonitor.NONE);
+    }
+
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances,
+                                              SearchMonitor monitor) {
+        SearchMonitor budget = monitor.until(timeBudget);
+        List<Delivery> initial = construction.calculateOptimalTour(deliveries, distances, budget);
+        if (initial == null || initial.size() <= 2) {
+            return initial;
+        }
+        int[] route = DistanceMatrix.indexesOf(deliveries, initial);
+        improve(route, distances, budget);
+
+        List<Delivery> optimizedRoute = new ArrayList<>(route.length);
+        for (int index : route) {
+            optimizedRoute.add(deliveries.get(index));
+        }
+        return optimizedRoute;
+    }
+
+    /**
+     * Improves {@code route} in place.
+     *
+     * @return the length of the improved route
+     */
+    public double improve(int[] route, DistanceMatrix distances, SearchMonitor monitor) {
+        return improve(route, distances, NeighborLists.of(distances, neighborCount), monitor);
+    }
+
+    /**
+     * Same as {@link #improve(int[], DistanceMatrix, SearchMonitor)} with neighbor lists
+     * already built, for callers improving many routes over the same stops.
+     */
+    public double improve(int[] route, DistanceMatrix distances, NeighborLists neighbors, SearchMonitor monitor) {
+        int[] position = new int[distances.size()];
+        for (int i = 0; i < route.length; i++) {
+            position[route[i]] = i;
+        }
+        double cost = distances.routeLength(route);
+        monitor.onImprovement(cost, route);
+
+        // Don't-look bits can leave a few moves behind, so stages run again until a whole round finds nothing
+        boolean improved = true;
+        while (improved && !monitor.shouldStop()) {
+            improved = false;
+            for (TourImprover improver : improvers) {
+                double saved = improver.improve(route, position, distances, neighbors, monitor);
+                if (saved > 0) {
+                    cost -= saved;
+                    improved = true;
+                    monitor.onImprovement(cost, route);
+                }
+                if (monitor.shouldStop()) {
+                    break;
+                }
+            }
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,145 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Best of several nearest neighbor routes, each improved by 2-opt and Or-opt. The first start
+ * is the plain nearest neighbor route; the others pick at random among the near stops at each
+ * step, start i drawing from a generator seeded with {@code seed + i}. Starts run in parallel
+ * and the shortest route wins, the lowest start on a tie, so the same seed and number of starts
+ * give the same route whatever the parallelism, as long as the time limit is not reached.
+ */
+public class MultiStartOptimizer implements TourOptimizer {
+
+    /**
+     * Randomized starts choose among the stops at most 30% farther than the nearest one.
+     */
+    static final double TOLERANCE = 0.3;
+
+    private final NearestNeighborOptimizer construction = new NearestNeighborOptimizer();
+    private final LocalSearchOptimizer localSearch;
+    private final int starts;
+    private final int parallelism;
+    private final long seed;
+    private final int neighborCount;
+    private final Duration timeLimit;
+
+    /**
+     * @param starts        number of routes built and improved
+     * @param parallelism   number of starts running at the same time
+     * @param seed          seed of the randomized starts
+     * @param neighborCount number of nearest stops considered at each step and for each move
+     * @param timeLimit     time after which starts not begun yet are skipped and running ones stop improving
+     */
+    public MultiStartOptimizer(int starts, int parallelism, long seed, int neighborCount, Duration timeLimit) {
+        this.starts = Math.max(1, starts);
+        this.parallelism = Math.max(1, parallelism);
+        this.seed = seed;
+        this.neighborCount = neighborCount;
+        this.timeLimit = timeLimit;
+        this.localSearch = new LocalSearchOptimizer(construction,
+                List.of(new TwoOptImprover(), new OrOptImprover()), neighborCount, timeLimit);
+    }
+
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries) {
+        if (deliveries == null || deliveries.size() <= 2) {
+            return deliveries;
+        }
+        return calculateOptimalTour(deliveries, DistanceMatrix.of(deliveries));
+    }
+
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances) {
+        return calculateOptimalTour(deliveries, distances, SearchMonitor.NONE);
+    }
+
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances,
+                                              SearchMonitor monitor) {
+        if (deliveries == null || deliveries.size() <= 2) {
+            return deliveries;
+        }
+        int[] route = route(distances, monitor);
+        List<Delivery> optimizedRoute = new ArrayList<>(route.length);
+        for (int index : route) {
+            optimizedRoute.add(deliveries.get(index));
+        }
+        return optimizedRoute;
+    }
+
+    /**
+     * Shortest route found before {@code monitor} or the time limit stops the search. The first
+     * start always runs, so a route is returned even when the search is stopped right away.
+     * {@code monitor} hears of the length of each new best route, from the worker threads.
+     */
+    public int[] route(DistanceMatrix distances, SearchMonitor monitor) {
+        SearchMonitor deadline = monitor.until(timeLimit);
+        // The lengths of single starts mean nothing to the caller, only the stop requests go through
+        SearchMonitor stopOnly = deadline::shouldStop;
+        NeighborLists neighbors = NeighborLists.of(distances, neighborCount);
+        Best best = new Best(monitor);
+
+        List<Callable<Void>> runs = new ArrayList<>(starts);
+        for (int s = 0; s < starts; s++) {
+            int start = s;
+            runs.add(() -> {
+                if (start > 0 && stopOnly.shouldStop()) {
+                    return null;
+                }
+                int[] route = start == 0
+                        ? construction.route(distances)
+                        : construction.route(distances, neighbors, new Random(seed + start), TOLERANCE);
+                localSearch.improve(route, distances, neighbors, stopOnly);
+                best.offer(start, route, distances.routeLength(route));
+                return null;
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, starts));
+        try {
+            for (Future<Void> run : pool.invokeAll(runs)) {
+                run.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while optimizing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Optimization failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return best.route;
+    }
+
+    private static final class Best {
+
+        private final SearchMonitor monitor;
+        private int start = Integer.MAX_VALUE;
+        private int[] route;
+        private double cost = Double.POSITIVE_INFINITY;
+
+        Best(SearchMonitor monitor) {
+            this.monitor = monitor;
+        }
+
+        synchronized void offer(int start, int[] route, double cost) {
+            if (cost < this.cost) {
+                monitor.onImprovement(cost, route);
+            } else if (cost > this.cost || start > this.start) {
+                return;
+            }
+            this.start = start;
+            this.route = route;
+            this.cost = cost;
+        }
+    }
+}
@@ -4,67 +4,196 @@ import com.delivrey.entity.Delivery;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.function.IntConsumer;
 
 @Component
 public class NearestNeighborOptimizer implements TourOptimizer {
-    
+
+    /**
+     * Below this many stops a linear scan of the distance matrix beats building a KD-tree.
+     */
+    static final int TREE_THRESHOLD = 128;
+
+    /**
+     * Relative distance, on top of the nearest stop of the tree, within which the matrix ranks the
+     * candidates. Matrix distances are within 1e-5 of haversine, which the tree ranks exactly: every
+     * stop the matrix could find nearer is inside this margin, so the route is the one of the linear scan.
+     */
+    static final double TREE_SLACK = 1e-3;
+
     @Override
     public List<Delivery> calculateOptimalTour(List<Delivery> deliveries) {
         if (deliveries == null || deliveries.isEmpty() || deliveries.size() == 1) {
             return deliveries;
         }
+        int n = deliveries.size();
+        if (n < TREE_THRESHOLD) {
+            return calculateOptimalTour(deliveries, DistanceMatrix.of(deliveries));
+        }
+        // Large tours never need the n×n matrix: the tree reads only a few distances per step
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = deliveries.get(i).getLatitude();
+            longitudes[i] = deliveries.get(i).getLongitude();
+        }
+        return toDeliveries(deliveries, route(DistanceMatrix.onDemand(latitudes, longitudes)));
+    }
+
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances) {
+        if (deliveries == null || deliveries.isEmpty() || deliveries.size() == 1) {
+            return deliveries;
+        }
+        return toDeliveries(deliveries, route(distances));
+    }
+
+    /**
+     * Nearest neighbor order starting from stop 0, ranked with {@code distances}: by linear scan
+     * of the matrix rows for small tours, among the candidates of a {@link KdTree} from
+     * {@link #TREE_THRESHOLD} stops on, in O(n log n). Both give the same route.
+     */
+    public int[] route(DistanceMatrix distances) {
+        return distances.size() < TREE_THRESHOLD ? scanRoute(distances) : treeRoute(distances);
+    }
+
+    int[] scanRoute(DistanceMatrix distances) {
+        int n = distances.size();
+        int[] route = new int[n];
+        long[] visited = new long[(n + 63) >>> 6];
 
-        List<Delivery> optimizedRoute = new ArrayList<>();
-        Set<Delivery> unvisited = new HashSet<>(deliveries);
-        
         // Start with the first delivery
-        Delivery current = deliveries.get(0);
-        optimizedRoute.add(current);
-        unvisited.remove(current);
-
-        // Find nearest neighbor until all deliveries are visited
-        while (!unvisited.isEmpty()) {
-            Delivery nearest = findNearestNeighbor(current, unvisited);
-            optimizedRoute.add(nearest);
-            unvisited.remove(nearest);
+        int current = 0;
+        visited[0] |= 1L;
+        for (int step = 1; step < n; step++) {
+            int nearest = -1;
+            double minDistance = Double.MAX_VALUE;
+            for (int candidate = 1; candidate < n; candidate++) {
+                if ((visited[candidate >>> 6] & (1L << candidate)) != 0) {
+                    continue;
+                }
+                double distance = distances.distance(current, candidate);
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nearest = candidate;
+                }
+            }
+            visited[nearest >>> 6] |= 1L << nearest;
+            route[step] = nearest;
             current = nearest;
         }
+        return route;
+    }
 
-        return optimizedRoute;
+    int[] treeRoute(DistanceMatrix distances) {
+        int n = distances.size();
+        int[] route = new int[n];
+        KdTree tree = distances.tree();
+        Nearest nearest = new Nearest(distances);
+
+        // Start with the first delivery
+        int current = 0;
+        tree.remove(current);
+        for (int step = 1; step < n; step++) {
+            int closest = tree.nearest(current);
+            // The tree's nearest stop bounds the search; the matrix picks among the stops about as near
+            nearest.reset(current, closest);
+            tree.within(current, tree.chord(current, closest) * (1 + TREE_SLACK) + 1e-12, nearest);
+            tree.remove(nearest.stop);
+            route[step] = nearest.stop;
+            current = nearest.stop;
+        }
+        return route;
     }
 
-    private Delivery findNearestNeighbor(Delivery current, Set<Delivery> candidates) {
-        Delivery nearest = null;
-        double minDistance = Double.MAX_VALUE;
-
-        for (Delivery candidate : candidates) {
-            double distance = calculateDistance(
-                current.getLatitude(), 
-                current.getLongitude(),
-                candidate.getLatitude(),
-                candidate.getLongitude()
-            );
-            
-            if (distance < minDistance) {
-                minDistance = distance;
-                nearest = candidate;
+    /**
+     * Randomized nearest neighbor order starting from stop 0, for multi-start searches: each
+     * step picks at random among the unvisited {@code neighbors} of the current stop that are
+     * at most {@code 1 + tolerance} times as far as the nearest of them. Once all its neighbors
+     * are visited, the step falls back to the nearest unvisited stop of the matrix row.
+     */
+    public int[] route(DistanceMatrix distances, NeighborLists neighbors, Random random, double tolerance) {
+        int n = distances.size();
+        int[] route = new int[n];
+        long[] visited = new long[(n + 63) >>> 6];
+        int[] candidates = new int[neighbors.count()];
+
+        int current = 0;
+        visited[0] |= 1L;
+        for (int step = 1; step < n; step++) {
+            int count = 0;
+            double limit = Double.MAX_VALUE;
+            for (int rank = 0; rank < neighbors.count(); rank++) {
+                int candidate = neighbors.get(current, rank);
+                if ((visited[candidate >>> 6] & (1L << candidate)) != 0) {
+                    continue;
+                }
+                double distance = distances.distance(current, candidate);
+                if (count == 0) {
+                    // Neighbors are sorted, the first unvisited one is the nearest
+                    limit = distance * (1 + tolerance);
+                } else if (distance > limit) {
+                    break;
+                }
+                candidates[count++] = candidate;
             }
+            int next;
+            if (count > 0) {
+                next = candidates[random.nextInt(count)];
+            } else {
+                next = -1;
+                double minDistance = Double.MAX_VALUE;
+                for (int candidate = 1; candidate < n; candidate++) {
+                    if ((visited[candidate >>> 6] & (1L << candidate)) == 0
+                            && distances.distance(current, candidate) < minDistance) {
+                        minDistance = distances.distance(current, candidate);
+                        next = candidate;
+                    }
+                }
+            }
+            visited[next >>> 6] |= 1L << next;
+            route[step] = next;
+            current = next;
         }
+        return route;
+    }
+
+    /**
+     * Nearest of the candidates of one step by the matrix, the lowest index among equally near
+     * ones, as the linear scan picks it.
+     */
+    private static final class Nearest implements IntConsumer {
+
+        private final DistanceMatrix distances;
+        private int from;
+        private int stop;
+        private double distance;
 
-        return nearest;
+        private Nearest(DistanceMatrix distances) {
+            this.distances = distances;
+        }
+
+        void reset(int from, int candidate) {
+            this.from = from;
+            this.stop = candidate;
+            this.distance = distances.distance(from, candidate);
+        }
+
+        @Override
+        public void accept(int candidate) {
+            double candidateDistance = distances.distance(from, candidate);
+            if (candidateDistance < distance || (candidateDistance == distance && candidate < stop)) {
+                stop = candidate;
+                distance = candidateDistance;
+            }
+        }
     }
 
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Earth's radius in kilometers
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-                
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+    private static List<Delivery> toDeliveries(List<Delivery> deliveries, int[] route) {
+        List<Delivery> optimizedRoute = new ArrayList<>(route.length);
+        for (int index : route) {
+            optimizedRoute.add(deliveries.get(index));
+        }
+        return optimizedRoute;
     }
 }
@@ -0,0 +1,68 @@
+package com.delivrey.optimizer;
+
+import java.util.stream.IntStream;
+
+/**
+ * The k nearest stops of every stop, closest first. Local search only tries moves
+ * that bring a stop next to one of its neighbors, which keeps each pass linear in
+ * the number of stops instead of quadratic.
+ */
+public final class NeighborLists {
+
+    private final int count;
+    private final int[] neighbors;
+
+    private NeighborLists(int count, int[] neighbors) {
+        this.count = count;
+        this.neighbors = neighbors;
+    }
+
+    public static NeighborLists of(DistanceMatrix distances, int k) {
+        int n = distances.size();
+        int count = Math.max(0, Math.min(k, n - 1));
+        int[] neighbors = new int[n * count];
+        IntStream rows = IntStream.range(0, n);
+        if (n >= DistanceMatrix.PARALLEL_THRESHOLD) {
+            rows = rows.parallel();
+        }
+        // Rows are read in bulk: a matrix computing its distances on demand then uses the vector kernels
+        ThreadLocal<double[]> rowBuffers = ThreadLocal.withInitial(() -> new double[n]);
+        rows.forEach(i -> {
+            double[] row = rowBuffers.get();
+            distances.row(i, row);
+            // Bounded insertion sort of row i, keeping only the count closest stops
+            double[] best = new double[count];
+            int offset = i * count;
+            int size = 0;
+            for (int j = 0; j < n; j++) {
+                if (j == i) {
+                    continue;
+                }
+                double d = row[j];
+                if (size == count && d >= best[count - 1]) {
+                    continue;
+                }
+                int slot = size < count ? size++ : count - 1;
+                while (slot > 0 && best[slot - 1] > d) {
+                    best[slot] = best[slot - 1];
+                    neighbors[offset + slot] = neighbors[offset + slot - 1];
+                    slot--;
+                }
+                best[slot] = d;
+                neighbors[offset + slot] = j;
+            }
+        });
+        return new NeighborLists(count, neighbors);
+    }
+
+    /**
+     * Number of neighbors kept per stop.
+     */
+    public int count() {
+        return count;
+    }
+
+    public int get(int stop, int rank) {
+        return neighbors[stop * count + rank];
+    }
+}
@@ -0,0 +1,138 @@
+package com.delivrey.optimizer;
+
+/**
+ * Or-opt: moves a run of up to {@link #MAX_SEGMENT} consecutive stops elsewhere in the route,
+ * possibly reversed. The run is only reinserted next to a nearest neighbor of one of its ends.
+ */
+public class OrOptImprover implements TourImprover {
+
+    static final int MAX_SEGMENT = 3;
+
+    private static final double EPSILON = 1e-10;
+    private static final int NONE = -1;
+
+    @Override
+    public double improve(int[] route, int[] position, DistanceMatrix distances, NeighborLists neighbors,
+                          SearchMonitor monitor) {
+        int n = route.length;
+        if (n < 3) {
+            return 0.0;
+        }
+        ActiveStops active = new ActiveStops(route);
+        double saved = 0.0;
+        while (!active.isEmpty() && !monitor.shouldStop()) {
+            int stop = active.poll();
+            double gain = improveFrom(stop, route, position, distances, neighbors, active);
+            if (gain > 0) {
+                saved += gain;
+                active.add(stop);
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Tries the runs that start at {@code first}; the first stop of the route never moves.
+     */
+    private double improveFrom(int first, int[] route, int[] position, DistanceMatrix distances,
+                               NeighborLists neighbors, ActiveStops active) {
+        int n = route.length;
+        int i = position[first];
+        if (i == 0) {
+            return 0.0;
+        }
+        int previous = route[i - 1];
+        for (int length = 1; length <= MAX_SEGMENT && i + length <= n; length++) {
+            int last = route[i + length - 1];
+            int next = i + length < n ? route[i + length] : NONE;
+
+            // What taking the run out saves: its two outer edges, minus the edge that closes the gap
+            double removal = distances.distance(previous, first);
+            if (next != NONE) {
+                removal += distances.distance(last, next) - distances.distance(previous, next);
+            }
+            if (removal <= EPSILON) {
+                continue;
+            }
+
+            for (int end = 0; end < (length == 1 ? 1 : 2); end++) {
+                int e = end == 0 ? first : last;
+                int other = end == 0 ? last : first;
+                for (int rank = 0; rank < neighbors.count(); rank++) {
+                    int c = neighbors.get(e, rank);
+                    if (distances.distance(e, c) >= removal) {
+                        break;
+                    }
+                    int j = position[c];
+                    if (j >= i && j < i + length) {
+                        continue;
+                    }
+
+                    // Neighbors of c once the run is out of the route
+                    int after = j + 1 == i ? next : (j + 1 < n ? route[j + 1] : NONE);
+                    int before = j - 1 == i + length - 1 ? previous : (j > 0 ? route[j - 1] : NONE);
+
+                    // Between c and its successor, e next to c
+                    double insertion = distances.distance(c, e);
+                    if (after != NONE) {
+                        insertion += distances.distance(other, after) - distances.distance(c, after);
+                    }
+                    if (removal - insertion > EPSILON) {
+                        move(route, position, i, length, j, e == last);
+                        touch(active, previous, next, first, last, c, after);
+                        return removal - insertion;
+                    }
+
+                    // Between the predecessor of c and c, e next to c
+                    if (before != NONE) {
+                        insertion = distances.distance(before, other) + distances.distance(e, c)
+                                - distances.distance(before, c);
+                        if (removal - insertion > EPSILON) {
+                            move(route, position, i, length, position[before], e == first);
+                            touch(active, previous, next, first, last, c, before);
+                            return removal - insertion;
+                        }
+                    }
+                }
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Moves the run at positions [from, from + length) right after the stop at position {@code after},
+     * which lies outside the run.
+     */
+    private static void move(int[] route, int[] position, int from, int length, int after, boolean reversed) {
+        int[] run = new int[length];
+        for (int k = 0; k < length; k++) {
+            run[k] = route[reversed ? from + length - 1 - k : from + k];
+        }
+        int start;
+        if (after < from) {
+            // Stops between the insertion point and the run shift right
+            for (int k = from - 1; k > after; k--) {
+                route[k + length] = route[k];
+                position[route[k + length]] = k + length;
+            }
+            start = after + 1;
+        } else {
+            // Stops between the run and the insertion point shift left
+            for (int k = from + length; k <= after; k++) {
+                route[k - length] = route[k];
+                position[route[k - length]] = k - length;
+            }
+            start = after - length + 1;
+        }
+        for (int k = 0; k < length; k++) {
+            route[start + k] = run[k];
+            position[run[k]] = start + k;
+        }
+    }
+
+    private static void touch(ActiveStops active, int... stops) {
+        for (int stop : stops) {
+            active.add(stop);
+        }
+    }
+}
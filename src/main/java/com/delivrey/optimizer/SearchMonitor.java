@@ -0,0 +1,61 @@
+package com.delivrey.optimizer;
+
+import java.time.Duration;
+
+/**
+ * Lets the caller of a search stop it early and follow its progress.
+ */
+public interface SearchMonitor {
+
+    /**
+     * Never stops the search and ignores its progress.
+     */
+    SearchMonitor NONE = () -> false;
+
+    /**
+     * Polled between moves; the search returns its best route so far once this is true.
+     */
+    boolean shouldStop();
+
+    /**
+     * Called with the length of the route the search starts from, then each time it finds a shorter one.
+     */
+    default void onImprovement(double cost) {
+    }
+
+    /**
+     * Same as {@link #onImprovement(double)}, from searches that can also show the route: stop
+     * indexes, only valid during the call, so a monitor that keeps it must copy it.
+     */
+    default void onImprovement(double cost, int[] route) {
+        onImprovement(cost);
+    }
+
+    static SearchMonitor withDeadline(Duration budget) {
+        return NONE.until(budget);
+    }
+
+    /**
+     * This monitor, also stopping the search once {@code budget} has elapsed.
+     */
+    default SearchMonitor until(Duration budget) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        SearchMonitor monitor = this;
+        return new SearchMonitor() {
+            @Override
+            public boolean shouldStop() {
+                return System.nanoTime() - deadline >= 0 || monitor.shouldStop();
+            }
+
+            @Override
+            public void onImprovement(double cost) {
+                monitor.onImprovement(cost);
+            }
+
+            @Override
+            public void onImprovement(double cost, int[] route) {
+                monitor.onImprovement(cost, route);
+            }
+        };
+    }
+}
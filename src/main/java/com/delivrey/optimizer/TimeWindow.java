@@ -0,0 +1,143 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Customer;
+import com.delivrey.entity.Delivery;
+
+import java.time.LocalTime;
+
+/**
+ * Delivery slots such as "09:00-11:00", packed into a single int: the opening minute of the day
+ * in the high 16 bits and the closing minute in the low 16 bits. A slot that ends before it
+ * starts runs past midnight, so its closing minute is above {@link #MINUTES_PER_DAY}; a slot
+ * with a start only stays open until the end of the day.
+ */
+public final class TimeWindow {
+
+    /**
+     * No slot, or one that could not be read.
+     */
+    public static final int NONE = -1;
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private TimeWindow() {
+    }
+
+    /**
+     * Slot of a stop: the preferred slot of its customer when set, as for the planned time of
+     * the delivery history, otherwise the time window of the delivery itself.
+     */
+    public static int of(Delivery delivery) {
+        Customer customer = delivery.getCustomer();
+        if (customer != null) {
+            int window = parse(customer.getPreferredTimeSlot());
+            if (window != NONE) {
+                return window;
+            }
+        }
+        return parse(delivery.getTimeWindow());
+    }
+
+    /**
+     * Reads "H:mm-H:mm", hours on one or two digits, with optional seconds and spaces.
+     *
+     * @return the packed slot, {@link #NONE} when {@code slot} is null or malformed
+     */
+    public static int parse(CharSequence slot) {
+        if (slot == null) {
+            return NONE;
+        }
+        Cursor cursor = new Cursor(slot);
+        int open = cursor.time();
+        if (open < 0) {
+            return NONE;
+        }
+        cursor.skipSpaces();
+        if (cursor.atEnd()) {
+            return pack(open, MINUTES_PER_DAY);
+        }
+        if (!cursor.accept('-')) {
+            return NONE;
+        }
+        int close = cursor.time();
+        cursor.skipSpaces();
+        if (close < 0 || !cursor.atEnd()) {
+            return NONE;
+        }
+        return pack(open, close < open ? close + MINUTES_PER_DAY : close);
+    }
+
+    public static int open(int window) {
+        return window >>> 16;
+    }
+
+    public static int close(int window) {
+        return window & 0xFFFF;
+    }
+
+    public static LocalTime openTime(int window) {
+        return LocalTime.of(open(window) / 60, open(window) % 60);
+    }
+
+    private static int pack(int open, int close) {
+        return open << 16 | close;
+    }
+
+    private static final class Cursor {
+
+        private final CharSequence text;
+        private int index;
+
+        Cursor(CharSequence text) {
+            this.text = text;
+        }
+
+        /**
+         * Minute of the day of a "H:mm" or "H:mm:ss" time after optional spaces, -1 if there is none.
+         */
+        int time() {
+            skipSpaces();
+            int hours = number(1, 2);
+            if (hours < 0 || hours > 23 || !accept(':')) {
+                return -1;
+            }
+            int minutes = number(2, 2);
+            if (minutes < 0 || minutes > 59) {
+                return -1;
+            }
+            if (accept(':') && number(2, 2) < 0) {
+                return -1;
+            }
+            return hours * 60 + minutes;
+        }
+
+        private int number(int minDigits, int maxDigits) {
+            int value = 0;
+            int digits = 0;
+            while (digits < maxDigits && index < text.length()
+                    && text.charAt(index) >= '0' && text.charAt(index) <= '9') {
+                value = value * 10 + text.charAt(index++) - '0';
+                digits++;
+            }
+            return digits >= minDigits ? value : -1;
+        }
+
+        boolean accept(char c) {
+            if (index < text.length() && text.charAt(index) == c) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        void skipSpaces() {
+            while (index < text.length() && text.charAt(index) == ' ') {
+                index++;
+            }
+        }
+
+        boolean atEnd() {
+            return index == text.length();
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+import com.delivrey.optimizer.model.OptimizedPlan;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routing with delivery slots (VRPTW for one vehicle): the vehicle leaves the depot, stop 0,
+ * at the departure time, drives at an average speed and spends a fixed service time at each
+ * stop. It may wait for a slot to open but must start each delivery before its slot closes.
+ * <p>
+ * Stops are inserted, tightest slot first, where they lengthen the route the least without
+ * making any stop late; then relocations of runs of up to three stops and 2-opt moves shorten
+ * the route while every slot is still met. Each check only replays the stops a move shifts:
+ * the rest of the route is covered by the latest start each stop can have. A stop whose slot
+ * cannot be met at all is served late, where it adds the least distance.
+ */
+public class TimeWindowOptimizer implements TourOptimizer {
+
+    static final int MAX_SEGMENT = 3;
+
+    private static final double EPSILON = 1e-9;
+    private static final int NONE = -1;
+
+    private final LocalTime departure;
+    private final int departureMinute;
+    private final double minutesPerKm;
+    private final double serviceMinutes;
+    private final int neighborCount;
+    private final Duration timeBudget;
+
+    /**
+     * @param departure       time the vehicle leaves the depot
+     * @param averageSpeedKmh speed used to turn distances into driving times
+     * @param serviceTime     time spent at each delivery
+     * @param neighborCount   number of nearest stops considered for each move
+     * @param timeBudget      maximum time spent improving a route once it has been built
+     */
+    public TimeWindowOptimizer(LocalTime departure, double averageSpeedKmh, Duration serviceTime,
+                               int neighborCount, Duration timeBudget) {
+        this.departure = departure;
+        this.departureMinute = departure.getHour() * 60 + departure.getMinute();
+        this.minutesPerKm = 60.0 / averageSpeedKmh;
+        this.serviceMinutes = serviceTime.toSeconds() / 60.0;
+        this.neighborCount = neighborCount;
+        this.timeBudget = timeBudget;
+    }
+
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries) {
+        if (deliveries == null || deliveries.size() <= 2) {
+            return deliveries;
+        }
+        return calculateOptimalTour(deliveries, DistanceMatrix.of(deliveries));
+    }
+
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances) {
+        return calculateOptimalTour(deliveries, distances, SearchMonitor.NONE);
+    }
+
+    @Override
+    public List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances,
+                                              SearchMonitor monitor) {
+        if (deliveries == null || deliveries.size() <= 2) {
+            return deliveries;
+        }
+        int[] route = route(distances, windows(deliveries), monitor);
+        List<Delivery> optimizedRoute = new ArrayList<>(route.length);
+        for (int index : route) {
+            optimizedRoute.add(deliveries.get(index));
+        }
+        return optimizedRoute;
+    }
+
+    /**
+     * Optimized route with the estimated arrival and departure times at each delivery on
+     * {@code date}. The depot, first of {@code deliveries}, is not part of the ordered deliveries.
+     */
+    public OptimizedPlan plan(List<Delivery> deliveries, DistanceMatrix distances, LocalDate date,
+                              SearchMonitor monitor) {
+        long start = System.nanoTime();
+        int[] windows = windows(deliveries);
+        int[] route = deliveries.size() <= 1 ? new int[deliveries.size()] : route(distances, windows, monitor);
+        Schedule schedule = new Schedule(distances, windows);
+        schedule.load(route);
+
+        LocalDateTime midnight = date.atStartOfDay();
+        List<OptimizedPlan.DeliveryOrder> orders = new ArrayList<>(Math.max(0, route.length - 1));
+        double totalDistance = 0.0;
+        int lateDeliveries = 0;
+        long lateMinutes = 0;
+        for (int k = 1; k < route.length; k++) {
+            int previous = route[k - 1];
+            int stop = route[k];
+            double distance = distances.distance(previous, stop);
+            double arrival = schedule.departure(k - 1) + distance * minutesPerKm;
+            long late = windows[stop] == TimeWindow.NONE
+                    ? 0 : Math.max(0, Math.round(schedule.start[k] - TimeWindow.close(windows[stop])));
+            if (late > 0) {
+                lateDeliveries++;
+                lateMinutes += late;
+            }
+            Map<String, Object> additionalInfo = new LinkedHashMap<>();
+            additionalInfo.put("waitingMinutes", Math.round(schedule.start[k] - arrival));
+            additionalInfo.put("lateMinutes", late);
+
+            orders.add(OptimizedPlan.DeliveryOrder.builder()
+                    .deliveryId(deliveries.get(stop).getId())
+                    .sequenceNumber(k)
+                    .estimatedArrivalTime(at(midnight, arrival))
+                    .estimatedDepartureTime(at(midnight, schedule.departure(k)))
+                    .distanceFromPrevious(distance)
+                    .travelTimeFromPrevious(minutes(distance * minutesPerKm))
+                    .additionalInfo(additionalInfo)
+                    .build());
+            totalDistance += distance;
+        }
+
+        double end = route.length > 1 ? schedule.departure(route.length - 1) : departureMinute;
+        return OptimizedPlan.builder()
+                .orderedDeliveries(orders)
+                .recommendations(lateDeliveries == 0
+                        ? List.of()
+                        : List.of(lateDeliveries + " livraison(s) ne peuvent pas être servies dans leur créneau"))
+                .predictedRoutes(Collections.emptyList())
+                .metadata(OptimizedPlan.OptimizationMetadata.builder()
+                        .optimizerName("TimeWindowOptimizer")
+                        .optimizerVersion("1.0.0")
+                        .optimizationTime(LocalDateTime.now())
+                        .optimizationDuration(Duration.ofNanos(System.nanoTime() - start))
+                        .totalDeliveries(orders.size())
+                        .totalDistance(totalDistance)
+                        .totalDuration(minutes(end - departureMinute))
+                        .statistics(Map.of("lateDeliveries", lateDeliveries, "lateMinutes", lateMinutes))
+                        .constraintsUsed(Map.of(
+                                "departure", departure.toString(),
+                                "averageSpeedKmh", 60.0 / minutesPerKm,
+                                "serviceMinutes", serviceMinutes))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Route through all the stops of {@code distances} starting at stop 0, meeting as many of
+     * the packed {@link TimeWindow}s as it can. Stops without a slot can be served at any time.
+     */
+    public int[] route(DistanceMatrix distances, int[] windows, SearchMonitor monitor) {
+        Schedule schedule = new Schedule(distances, windows);
+        schedule.insertAll();
+        if (schedule.size > 2) {
+            schedule.improve(NeighborLists.of(distances, neighborCount), monitor.until(timeBudget));
+        }
+        return Arrays.copyOf(schedule.route, schedule.size);
+    }
+
+    private static int[] windows(List<Delivery> deliveries) {
+        int[] windows = new int[deliveries.size()];
+        windows[0] = TimeWindow.NONE;
+        for (int i = 1; i < windows.length; i++) {
+            windows[i] = TimeWindow.of(deliveries.get(i));
+        }
+        return windows;
+    }
+
+    private static LocalDateTime at(LocalDateTime midnight, double minute) {
+        return midnight.plusSeconds(Math.round(minute * 60));
+    }
+
+    private static Duration minutes(double minutes) {
+        return Duration.ofSeconds(Math.round(minutes * 60));
+    }
+
+    /**
+     * A route being built or improved, with the time each delivery starts and the latest time it
+     * could start without making any later stop late.
+     */
+    private final class Schedule {
+
+        private final DistanceMatrix distances;
+        private final double[] open;
+        private final double[] close;
+        private final int[] route;
+        private final int[] position;
+        private final double[] start;
+        private final double[] latest;
+        private final int[] middle;
+        private int size;
+        private double cost;
+
+        Schedule(DistanceMatrix distances, int[] windows) {
+            this.distances = distances;
+            int n = distances.size();
+            this.open = new double[n];
+            this.close = new double[n];
+            for (int i = 0; i < n; i++) {
+                boolean hasWindow = i > 0 && windows[i] != TimeWindow.NONE;
+                open[i] = hasWindow ? TimeWindow.open(windows[i]) : 0;
+                close[i] = hasWindow ? TimeWindow.close(windows[i]) : Double.POSITIVE_INFINITY;
+            }
+            this.route = new int[n];
+            this.position = new int[n];
+            this.start = new double[n];
+            this.latest = new double[n];
+            this.middle = new int[n];
+        }
+
+        void load(int[] stops) {
+            System.arraycopy(stops, 0, route, 0, stops.length);
+            size = stops.length;
+            refresh();
+        }
+
+        double travel(int from, int to) {
+            return distances.distance(from, to) * minutesPerKm;
+        }
+
+        double departure(int k) {
+            return start[k] + (route[k] == 0 ? 0.0 : serviceMinutes);
+        }
+
+        /**
+         * Recomputes the start times forwards and the latest start times backwards.
+         */
+        void refresh() {
+            if (size == 0) {
+                return;
+            }
+            start[0] = departureMinute;
+            position[route[0]] = 0;
+            for (int k = 1; k < size; k++) {
+                start[k] = Math.max(open[route[k]], departure(k - 1) + travel(route[k - 1], route[k]));
+                position[route[k]] = k;
+            }
+            latest[size - 1] = close[route[size - 1]];
+            for (int k = size - 2; k >= 0; k--) {
+                double service = route[k] == 0 ? 0.0 : serviceMinutes;
+                latest[k] = Math.min(close[route[k]], latest[k + 1] - service - travel(route[k], route[k + 1]));
+            }
+        }
+
+        /**
+         * Whether the route made of positions [0, i], then the first {@code m} stops of
+         * {@link #middle}, then positions [k, size) meets every slot.
+         */
+        boolean feasible(int i, int m, int k) {
+            double time = departure(i);
+            int previous = route[i];
+            for (int q = 0; q < m; q++) {
+                int stop = middle[q];
+                time = Math.max(open[stop], time + travel(previous, stop));
+                if (time > close[stop] + EPSILON) {
+                    return false;
+                }
+                time += serviceMinutes;
+                previous = stop;
+            }
+            if (k >= size) {
+                return true;
+            }
+            return Math.max(open[route[k]], time + travel(previous, route[k])) <= latest[k] + EPSILON;
+        }
+
+        /**
+         * Cheapest insertion, stops with the earliest closing slot first.
+         */
+        void insertAll() {
+            int n = distances.size();
+            route[0] = 0;
+            size = 1;
+            refresh();
+            Integer[] order = new Integer[n - 1];
+            for (int i = 1; i < n; i++) {
+                order[i - 1] = i;
+            }
+            Arrays.sort(order, (a, b) -> close[a] != close[b]
+                    ? Double.compare(close[a], close[b])
+                    : Double.compare(open[a], open[b]));
+            for (int stop : order) {
+                int after = cheapestInsertion(stop);
+                if (after == NONE) {
+                    // No place meets this slot: the stop is served late, its slot no longer constrains the others
+                    close[stop] = Double.POSITIVE_INFINITY;
+                    after = cheapestInsertion(stop);
+                }
+                insert(stop, after);
+            }
+        }
+
+        private int cheapestInsertion(int stop) {
+            int best = NONE;
+            double bestCost = Double.POSITIVE_INFINITY;
+            middle[0] = stop;
+            for (int p = 0; p < size; p++) {
+                double added = distances.distance(route[p], stop);
+                if (p + 1 < size) {
+                    added += distances.distance(stop, route[p + 1]) - distances.distance(route[p], route[p + 1]);
+                }
+                if (added < bestCost && feasible(p, 1, p + 1)) {
+                    bestCost = added;
+                    best = p;
+                }
+            }
+            return best;
+        }
+
+        private void insert(int stop, int after) {
+            double added = distances.distance(route[after], stop);
+            if (after + 1 < size) {
+                added += distances.distance(stop, route[after + 1]) - distances.distance(route[after], route[after + 1]);
+            }
+            System.arraycopy(route, after + 1, route, after + 2, size - after - 1);
+            route[after + 1] = stop;
+            size++;
+            cost += added;
+            refresh();
+        }
+
+        void improve(NeighborLists neighbors, SearchMonitor monitor) {
+            monitor.onImprovement(cost, route);
+            boolean improved = true;
+            while (improved && !monitor.shouldStop()) {
+                improved = false;
+                for (int stop = 1; stop < size && !monitor.shouldStop(); stop++) {
+                    double gain = twoOpt(stop, neighbors);
+                    if (gain <= 0) {
+                        gain = relocate(stop, neighbors);
+                    }
+                    if (gain > 0) {
+                        cost -= gain;
+                        improved = true;
+                        monitor.onImprovement(cost, route);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reverses the stops between {@code a} and a near stop so that they become consecutive,
+         * replacing the edge from {@code a} to its successor.
+         */
+        private double twoOpt(int a, NeighborLists neighbors) {
+            int i = position[a];
+            double current = i + 1 < size ? distances.distance(a, route[i + 1]) : Double.POSITIVE_INFINITY;
+            for (int rank = 0; rank < neighbors.count(); rank++) {
+                int c = neighbors.get(a, rank);
+                if (distances.distance(a, c) >= current) {
+                    break;
+                }
+                int j = position[c];
+                int x = Math.min(i, j);
+                int y = Math.max(i, j);
+                if (y - x < 2) {
+                    continue;
+                }
+                // Edges route[x]-route[x+1] and route[y]-route[y+1] become route[x]-route[y] and route[x+1]-route[y+1]
+                double gain = distances.distance(route[x], route[x + 1]) - distances.distance(route[x], route[y]);
+                if (y + 1 < size) {
+                    gain += distances.distance(route[y], route[y + 1]) - distances.distance(route[x + 1], route[y + 1]);
+                }
+                if (gain <= EPSILON) {
+                    continue;
+                }
+                int m = 0;
+                for (int k = y; k > x; k--) {
+                    middle[m++] = route[k];
+                }
+                if (feasible(x, m, y + 1)) {
+                    System.arraycopy(middle, 0, route, x + 1, m);
+                    refresh();
+                    return gain;
+                }
+            }
+            return 0.0;
+        }
+
+        /**
+         * Moves a run of up to {@link #MAX_SEGMENT} stops starting at {@code first} right after a
+         * near stop of its first stop, or right before a near stop of its last one.
+         */
+        private double relocate(int first, NeighborLists neighbors) {
+            int s = position[first];
+            int previous = route[s - 1];
+            for (int length = 1; length <= MAX_SEGMENT && s + length <= size; length++) {
+                int last = route[s + length - 1];
+                int next = s + length < size ? route[s + length] : NONE;
+                double removal = distances.distance(previous, first);
+                if (next != NONE) {
+                    removal += distances.distance(last, next) - distances.distance(previous, next);
+                }
+                if (removal <= EPSILON) {
+                    continue;
+                }
+                for (int end = 0; end < 2; end++) {
+                    int e = end == 0 ? first : last;
+                    for (int rank = 0; rank < neighbors.count(); rank++) {
+                        int c = neighbors.get(e, rank);
+                        if (distances.distance(e, c) >= removal) {
+                            break;
+                        }
+                        // The run goes after c when c is near its first stop, before c when near its last
+                        int after = end == 0 ? position[c] : position[c] - 1;
+                        if (after < 0 || (after >= s - 1 && after < s + length)) {
+                            continue;
+                        }
+                        double gain = removal - insertionCost(after, first, last);
+                        if (gain > EPSILON && tryRelocate(s, length, after)) {
+                            return gain;
+                        }
+                    }
+                }
+            }
+            return 0.0;
+        }
+
+        private double insertionCost(int after, int first, int last) {
+            double added = distances.distance(route[after], first);
+            if (after + 1 < size) {
+                added += distances.distance(last, route[after + 1]) - distances.distance(route[after], route[after + 1]);
+            }
+            return added;
+        }
+
+        private boolean tryRelocate(int s, int length, int after) {
+            int m = 0;
+            int i;
+            int k;
+            if (after < s) {
+                // The run, then the stops it jumps over
+                i = after;
+                k = s + length;
+                for (int q = s; q < s + length; q++) {
+                    middle[m++] = route[q];
+                }
+                for (int q = after + 1; q < s; q++) {
+                    middle[m++] = route[q];
+                }
+            } else {
+                // The stops the run jumps over, then the run
+                i = s - 1;
+                k = after + 1;
+                for (int q = s + length; q <= after; q++) {
+                    middle[m++] = route[q];
+                }
+                for (int q = s; q < s + length; q++) {
+                    middle[m++] = route[q];
+                }
+            }
+            if (!feasible(i, m, k)) {
+                return false;
+            }
+            System.arraycopy(middle, 0, route, i + 1, m);
+            refresh();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.delivrey.optimizer;
+
+/**
+ * Local search stage applied to a route after it has been built.
+ * Routes are open paths of stop indexes whose first stop never moves.
+ */
+public interface TourImprover {
+
+    /**
+     * Applies improving moves to {@code route} in place, keeping {@code position[route[i]] == i}.
+     *
+     * @return the total length saved, 0 when no improving move was found
+     */
+    double improve(int[] route, int[] position, DistanceMatrix distances, NeighborLists neighbors, SearchMonitor monitor);
+}
@@ -5,4 +5,22 @@ import java.util.List;
 
 public interface TourOptimizer {
     List<Delivery> calculateOptimalTour(List<Delivery> deliveries);
+
+    /**
+     * Same as {@link #calculateOptimalTour(List)} but reuses a distance matrix already built
+     * for {@code deliveries}, so callers that also need distances compute them only once.
+     */
+    default List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances) {
+        return calculateOptimalTour(deliveries);
+    }
+
+    /**
+     * Same as {@link #calculateOptimalTour(List, DistanceMatrix)} for long-running searches:
+     * optimizers that search iteratively report progress to {@code monitor} and return their
+     * best route so far once it asks them to stop.
+     */
+    default List<Delivery> calculateOptimalTour(List<Delivery> deliveries, DistanceMatrix distances,
+                                                SearchMonitor monitor) {
+        return calculateOptimalTour(deliveries, distances);
+    }
 }
@@ -0,0 +1,128 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+import com.delivrey.entity.Tour;
+import com.delivrey.entity.Vehicle;
+import com.delivrey.entity.Warehouse;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only copy of what the optimizers need from a tour, taken once and detached from the
+ * persistence context: the warehouse first when the tour has one, as a stop with id -1, then the
+ * deliveries. The stops are plain {@link Delivery} objects holding only the id, coordinates,
+ * weight, volume and time slot, never managed, so optimizing never touches the tour itself;
+ * the vehicle is likewise a copy of its capacities.
+ */
+public final class TourSnapshot {
+
+    /**
+     * Id of the stop standing for the warehouse.
+     */
+    public static final long DEPOT_ID = -1L;
+
+    private final Long tourId;
+    private final LocalDate tourDate;
+    private final Long warehouseId;
+    private final Vehicle vehicle;
+    private final List<Delivery> stops;
+
+    private TourSnapshot(Long tourId, LocalDate tourDate, Long warehouseId, Vehicle vehicle, List<Delivery> stops) {
+        this.tourId = tourId;
+        this.tourDate = tourDate;
+        this.warehouseId = warehouseId;
+        this.vehicle = vehicle;
+        this.stops = Collections.unmodifiableList(stops);
+    }
+
+    /**
+     * Snapshot of {@code tour}, whose deliveries are {@code deliveries}. Only the id, date,
+     * warehouse and vehicle of the tour are read.
+     */
+    public static TourSnapshot of(Tour tour, List<TourStop> deliveries) {
+        Warehouse warehouse = tour.getWarehouse();
+        List<Delivery> stops = new ArrayList<>(deliveries.size() + 1);
+        if (warehouse != null) {
+            stops.add(depot(warehouse));
+        }
+        for (TourStop delivery : deliveries) {
+            stops.add(stop(delivery));
+        }
+        return new TourSnapshot(tour.getId(), tour.getTourDate(), warehouse != null ? warehouse.getId() : null,
+                capacities(tour.getVehicle()), stops);
+    }
+
+    /**
+     * The warehouse as the stop every route leaves from.
+     */
+    public static Delivery depot(Warehouse warehouse) {
+        Delivery depot = new Delivery();
+        depot.setId(DEPOT_ID);
+        depot.setLatitude(warehouse.getLatitude());
+        depot.setLongitude(warehouse.getLongitude());
+        depot.setAddress("Warehouse");
+        return depot;
+    }
+
+    private static Vehicle capacities(Vehicle vehicle) {
+        if (vehicle == null) {
+            return null;
+        }
+        Vehicle copy = new Vehicle();
+        copy.setId(vehicle.getId());
+        copy.setMaxWeight(vehicle.getMaxWeight());
+        copy.setMaxVolume(vehicle.getMaxVolume());
+        copy.setMaxDeliveries(vehicle.getMaxDeliveries());
+        return copy;
+    }
+
+    private static Delivery stop(TourStop row) {
+        Delivery stop = new Delivery();
+        stop.setId(row.id());
+        stop.setLatitude(row.latitude());
+        stop.setLongitude(row.longitude());
+        stop.setWeight(row.weight());
+        stop.setVolume(row.volume());
+        // Resolved once here, as TimeWindow.of would with the customer loaded
+        stop.setTimeWindow(TimeWindow.parse(row.preferredTimeSlot()) != TimeWindow.NONE
+                ? row.preferredTimeSlot()
+                : row.timeWindow());
+        return stop;
+    }
+
+    public Long getTourId() {
+        return tourId;
+    }
+
+    public LocalDate getTourDate() {
+        return tourDate;
+    }
+
+    /**
+     * Id of the warehouse, {@code null} when the tour has none and its first stop is a delivery.
+     */
+    public Long getWarehouseId() {
+        return warehouseId;
+    }
+
+    public boolean hasDepot() {
+        return warehouseId != null;
+    }
+
+    /**
+     * Capacities of the vehicle of the tour, a detached copy, {@code null} when it has none.
+     */
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    /**
+     * Stops in the order the optimizers take them, unmodifiable.
+     */
+    public List<Delivery> getStops() {
+        return stops;
+    }
+}
@@ -0,0 +1,11 @@
+package com.delivrey.optimizer;
+
+/**
+ * A delivery of a tour as read for optimization, built by a JPQL constructor expression.
+ *
+ * @param timeWindow        time window of the delivery
+ * @param preferredTimeSlot preferred slot of its customer, which comes first when set
+ */
+public record TourStop(Long id, Double latitude, Double longitude, Double weight, Double volume,
+                       String timeWindow, String preferredTimeSlot) {
+}
@@ -0,0 +1,114 @@
+package com.delivrey.optimizer;
+
+/**
+ * 2-opt: replaces two edges of the route by the two edges that reconnect it the other way,
+ * reversing the stops in between. Only moves creating an edge from a stop to one of its
+ * nearest neighbors are tried, and only while that edge is shorter than the one it replaces.
+ */
+public class TwoOptImprover implements TourImprover {
+
+    private static final double EPSILON = 1e-10;
+
+    @Override
+    public double improve(int[] route, int[] position, DistanceMatrix distances, NeighborLists neighbors,
+                          SearchMonitor monitor) {
+        int n = route.length;
+        if (n < 3) {
+            return 0.0;
+        }
+        ActiveStops active = new ActiveStops(route);
+        double saved = 0.0;
+        while (!active.isEmpty() && !monitor.shouldStop()) {
+            int stop = active.poll();
+            double gain = improveFrom(stop, route, position, distances, neighbors, active);
+            if (gain > 0) {
+                saved += gain;
+                active.add(stop);
+            }
+        }
+        return saved;
+    }
+
+    private double improveFrom(int a, int[] route, int[] position, DistanceMatrix distances,
+                               NeighborLists neighbors, ActiveStops active) {
+        int n = route.length;
+        int i = position[a];
+
+        // New edge a-c, the successors of a and c are then linked together
+        if (i + 1 < n) {
+            double current = distances.distance(a, route[i + 1]);
+            for (int rank = 0; rank < neighbors.count(); rank++) {
+                int c = neighbors.get(a, rank);
+                if (distances.distance(a, c) >= current) {
+                    break;
+                }
+                int j = position[c];
+                if (j == i + 1) {
+                    continue;
+                }
+                double gain = tryMove(Math.min(i, j), Math.max(i, j), route, position, distances, active);
+                if (gain > 0) {
+                    return gain;
+                }
+            }
+        }
+
+        // New edge a-c, the predecessors of a and c are then linked together; the first stop has none
+        if (i > 0) {
+            double current = distances.distance(a, route[i - 1]);
+            for (int rank = 0; rank < neighbors.count(); rank++) {
+                int c = neighbors.get(a, rank);
+                if (distances.distance(a, c) >= current) {
+                    break;
+                }
+                int j = position[c];
+                if (j == 0 || j == i - 1) {
+                    continue;
+                }
+                double gain = tryMove(Math.min(i, j) - 1, Math.max(i, j) - 1, route, position, distances, active);
+                if (gain > 0) {
+                    return gain;
+                }
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Replaces edges (x, x+1) and (y, y+1) by (x, y) and (x+1, y+1) when that is shorter.
+     * The last stop has no outgoing edge, so when y is the end of the route only one edge changes.
+     */
+    private double tryMove(int x, int y, int[] route, int[] position, DistanceMatrix distances, ActiveStops active) {
+        int n = route.length;
+        int rx = route[x];
+        int rx1 = route[x + 1];
+        int ry = route[y];
+        double gain = distances.distance(rx, rx1) - distances.distance(rx, ry);
+        int ry1 = -1;
+        if (y + 1 < n) {
+            ry1 = route[y + 1];
+            gain += distances.distance(ry, ry1) - distances.distance(rx1, ry1);
+        }
+        if (gain <= EPSILON) {
+            return 0.0;
+        }
+        reverse(route, position, x + 1, y);
+        active.add(rx);
+        active.add(rx1);
+        active.add(ry);
+        active.add(ry1);
+        return gain;
+    }
+
+    private static void reverse(int[] route, int[] position, int from, int to) {
+        while (from < to) {
+            int swap = route[from];
+            route[from] = route[to];
+            route[to] = swap;
+            position[route[from]] = from;
+            position[route[to]] = to;
+            from++;
+            to--;
+        }
+    }
+}
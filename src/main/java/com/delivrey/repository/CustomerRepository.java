@@ -1,6 +1,7 @@
 package com.delivrey.repository;
 
 import com.delivrey.entity.Customer;
+import com.delivrey.util.GeoUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -45,33 +46,88 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     List<Customer> findByPreferredTimeSlot(String timeSlot);
     
     // Find customers near a specific location (within a radius in kilometers)
+    default List<Customer> findNearbyCustomers(double latitude, double longitude, double radiusKm) {
+        GeoUtils.BoundingBox box = GeoUtils.boundingBox(latitude, longitude, radiusKm);
+        return findNearbyCustomersInBox(latitude, longitude, radiusKm,
+                box.minLatitude(), box.maxLatitude(), box.minLongitude(), box.maxLongitude());
+    }
+
+    // The box is a range on idx_customer_location: only the rows inside it get the exact distance check.
+    // The cosine is capped at 1, which rounding exceeds for a customer at the center: acos would fail
     @Query("""
         SELECT c FROM Customer c 
-        WHERE (6371 * acos(cos(radians(:latitude)) * cos(radians(c.latitude)) * 
-              cos(radians(c.longitude) - radians(:longitude)) + 
-              sin(radians(:latitude)) * sin(radians(c.latitude)))) <= :radiusKm
+        WHERE c.latitude BETWEEN :minLat AND :maxLat
+        AND c.longitude BETWEEN :minLon AND :maxLon
+        AND (6371 * acos(least(1.0, cos(radians(:latitude)) * cos(radians(c.latitude)) *
+              cos(radians(c.longitude) - radians(:longitude)) +
+              sin(radians(:latitude)) * sin(radians(c.latitude))))) <= :radiusKm
     """)
-    List<Customer> findNearbyCustomers(
+    List<Customer> findNearbyCustomersInBox(
         @Param("latitude") double latitude,
         @Param("longitude") double longitude,
-        @Param("radiusKm") double radiusKm
+        @Param("radiusKm") double radiusKm,
+        @Param("minLat") double minLatitude,
+        @Param("maxLat") double maxLatitude,
+        @Param("minLon") double minLongitude,
+        @Param("maxLon") double maxLongitude
     );
     
     // Find customers near a specific location with pagination and search filters
+    default Page<Customer> findNearbyCustomers(double latitude, double longitude, double radiusKm,
+                                               @Nullable String name, @Nullable String address,
+                                               @NonNull Pageable pageable) {
+        GeoUtils.BoundingBox box = GeoUtils.boundingBox(latitude, longitude, radiusKm);
+        return findNearbyCustomersInBox(latitude, longitude, radiusKm,
+                box.minLatitude(), box.maxLatitude(), box.minLongitude(), box.maxLongitude(),
+                name, address, pageable);
+    }
+
     @Query("""
         SELECT c FROM Customer c 
-        WHERE (6371 * acos(cos(radians(:latitude)) * cos(radians(c.latitude)) * 
-              cos(radians(c.longitude) - radians(:longitude)) + 
-              sin(radians(:latitude)) * sin(radians(c.latitude)))) <= :radiusKm
+        WHERE c.latitude BETWEEN :minLat AND :maxLat
+        AND c.longitude BETWEEN :minLon AND :maxLon
+        AND (6371 * acos(least(1.0, cos(radians(:latitude)) * cos(radians(c.latitude)) *
+              cos(radians(c.longitude) - radians(:longitude)) +
+              sin(radians(:latitude)) * sin(radians(c.latitude))))) <= :radiusKm
         AND (:name IS NULL OR LOWER(c.name) LIKE LOWER(CONCAT('%', :name, '%')))
         AND (:address IS NULL OR LOWER(c.address) LIKE LOWER(CONCAT('%', :address, '%')))
     """)
-    Page<Customer> findNearbyCustomers(
+    Page<Customer> findNearbyCustomersInBox(
         @Param("latitude") double latitude,
         @Param("longitude") double longitude,
         @Param("radiusKm") double radiusKm,
+        @Param("minLat") double minLatitude,
+        @Param("maxLat") double maxLatitude,
+        @Param("minLon") double minLongitude,
+        @Param("maxLon") double maxLongitude,
         @Param("name") @Nullable String name, 
         @Param("address") @Nullable String address, 
         @NonNull Pageable pageable
     );
+
+    // PostgreSQL only: same page as findNearbyCustomers, from the GiST index on customer.location (changelog v4.3).
+    // The filters are cast so that PostgreSQL knows their type when they are null
+    @Query(value = """
+        SELECT c.* FROM customer c
+        WHERE ST_DWithin(c.location,
+              CAST(ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326) AS geography),
+              :radiusKm * 1000)
+        AND (CAST(:name AS TEXT) IS NULL OR LOWER(c.name) LIKE LOWER(CONCAT('%', CAST(:name AS TEXT), '%')))
+        AND (CAST(:address AS TEXT) IS NULL OR LOWER(c.address) LIKE LOWER(CONCAT('%', CAST(:address AS TEXT), '%')))
+    """, countQuery = """
+        SELECT COUNT(*) FROM customer c
+        WHERE ST_DWithin(c.location,
+              CAST(ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326) AS geography),
+              :radiusKm * 1000)
+        AND (CAST(:name AS TEXT) IS NULL OR LOWER(c.name) LIKE LOWER(CONCAT('%', CAST(:name AS TEXT), '%')))
+        AND (CAST(:address AS TEXT) IS NULL OR LOWER(c.address) LIKE LOWER(CONCAT('%', CAST(:address AS TEXT), '%')))
+    """, nativeQuery = true)
+    Page<Customer> findNearbyCustomersPostgis(
+        @Param("latitude") double latitude,
+        @Param("longitude") double longitude,
+        @Param("radiusKm") double radiusKm,
+        @Param("name") @Nullable String name,
+        @Param("address") @Nullable String address,
+        @NonNull Pageable pageable
+    );
 }
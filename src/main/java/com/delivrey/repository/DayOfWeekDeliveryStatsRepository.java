@@ -0,0 +1,43 @@
+package com.delivrey.repository;
+
+import com.delivrey.entity.DayOfWeekDeliveryStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.DayOfWeek;
+import java.util.List;
+
+@Repository
+public interface DayOfWeekDeliveryStatsRepository extends JpaRepository<DayOfWeekDeliveryStats, DayOfWeek> {
+
+    // Adds the totals of delta to the row of its day in place, so concurrent tours add up
+    @Modifying
+    @Query("""
+        UPDATE DayOfWeekDeliveryStats s SET
+            s.totalDeliveries = s.totalDeliveries + :#{#delta.totalDeliveries},
+            s.onTimeDeliveries = s.onTimeDeliveries + :#{#delta.onTimeDeliveries},
+            s.lateDeliveries = s.lateDeliveries + :#{#delta.lateDeliveries},
+            s.delayCount = s.delayCount + :#{#delta.delayCount},
+            s.totalDelay = s.totalDelay + :#{#delta.totalDelay},
+            s.lateDelay = s.lateDelay + :#{#delta.lateDelay}
+        WHERE s.dayOfWeek = :#{#delta.dayOfWeek}
+    """)
+    int increment(@Param("delta") DayOfWeekDeliveryStats delta);
+
+    // Backfill: totals per delivery date, folded into days of the week by the caller since
+    // extracting the day of a date differs between H2 and PostgreSQL
+    @Query("""
+        SELECT dh.deliveryDate, COUNT(dh),
+               SUM(CASE WHEN dh.delayMinutes <= 0 THEN 1 ELSE 0 END),
+               SUM(CASE WHEN dh.delayMinutes > 0 THEN 1 ELSE 0 END),
+               COUNT(dh.delayMinutes),
+               COALESCE(SUM(dh.delayMinutes), 0),
+               COALESCE(SUM(CASE WHEN dh.delayMinutes > 0 THEN dh.delayMinutes ELSE 0 END), 0)
+        FROM DeliveryHistory dh
+        GROUP BY dh.deliveryDate
+    """)
+    List<Object[]> sumHistoryByDeliveryDate();
+}
@@ -1,10 +1,14 @@
 package com.delivrey.repository;
 
 import com.delivrey.entity.DeliveryHistory;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
@@ -13,84 +17,155 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface DeliveryHistoryRepository extends JpaRepository<DeliveryHistory, Long> {
     
-    // Paginated queries
+    // Pages are mapped to DeliveryHistoryDto, which reads the status of the delivery and of the tour:
+    // both are joined to the page's select rather than loaded row by row. The customer only gives its id
+    @Override
     @NonNull
+    @EntityGraph(attributePaths = {"delivery", "tour"})
     Page<DeliveryHistory> findAll(@NonNull Pageable pageable);
     
     // Find all delivery histories for a specific customer with pagination
     @NonNull
+    @EntityGraph(attributePaths = {"delivery", "tour"})
     Page<DeliveryHistory> findByCustomerId(@NonNull Long customerId, @NonNull Pageable pageable);
     
     // Find all delivery histories for a specific tour with pagination
     @NonNull
+    @EntityGraph(attributePaths = {"delivery", "tour"})
     Page<DeliveryHistory> findByTourId(@NonNull Long tourId, @NonNull Pageable pageable);
     
     // Find delivery histories within a date range with pagination
     @NonNull
+    @EntityGraph(attributePaths = {"delivery", "tour"})
     Page<DeliveryHistory> findByDeliveryDateBetween(
         @NonNull LocalDate startDate, 
         @NonNull LocalDate endDate, 
         @NonNull Pageable pageable
     );
     
+    long countByDeliveryDateBetween(LocalDate startDate, LocalDate endDate);
+
+    // Seek pagination on (deliveryDate, id), rows after the given ones, as many as the pageable's size.
+    // idx_delivery_history_date_id is in the order of the pages: the scan starts at the cursor's day, only skips
+    // the rows of that day up to the cursor's id, and stops after one page. No count query runs.
+    @Query("""
+        SELECT dh FROM DeliveryHistory dh
+        LEFT JOIN FETCH dh.delivery
+        LEFT JOIN FETCH dh.tour
+        WHERE dh.deliveryDate >= :afterDate
+        AND (dh.deliveryDate > :afterDate OR dh.id > :afterId)
+        ORDER BY dh.deliveryDate, dh.id
+    """)
+    List<DeliveryHistory> findPageAfter(
+        @Param("afterDate") LocalDate afterDate,
+        @Param("afterId") long afterId,
+        Pageable limit
+    );
+
+    // Same pages within one tour, read from idx_delivery_history_tour_date_id
+    @Query("""
+        SELECT dh FROM DeliveryHistory dh
+        LEFT JOIN FETCH dh.delivery
+        LEFT JOIN FETCH dh.tour t
+        WHERE t.id = :tourId
+        AND dh.deliveryDate >= :afterDate
+        AND (dh.deliveryDate > :afterDate OR dh.id > :afterId)
+        ORDER BY dh.deliveryDate, dh.id
+    """)
+    List<DeliveryHistory> findPageByTourIdAfter(
+        @Param("tourId") Long tourId,
+        @Param("afterDate") LocalDate afterDate,
+        @Param("afterId") long afterId,
+        Pageable limit
+    );
+
+    // Same pages up to a day, from idx_delivery_history_date_id as well
+    @Query("""
+        SELECT dh FROM DeliveryHistory dh
+        LEFT JOIN FETCH dh.delivery
+        LEFT JOIN FETCH dh.tour
+        WHERE dh.deliveryDate >= :afterDate
+        AND dh.deliveryDate <= :endDate
+        AND (dh.deliveryDate > :afterDate OR dh.id > :afterId)
+        ORDER BY dh.deliveryDate, dh.id
+    """)
+    List<DeliveryHistory> findPageUntilDateAfter(
+        @Param("endDate") LocalDate endDate,
+        @Param("afterDate") LocalDate afterDate,
+        @Param("afterId") long afterId,
+        Pageable limit
+    );
+    
+    // Export: rows read from a forward-only cursor, HINT_FETCH_SIZE at a time, and never snapshotted for dirty
+    // checking. The stream must be closed, inside the transaction that opened it.
+    @Query("""
+        SELECT dh FROM DeliveryHistory dh
+        LEFT JOIN FETCH dh.delivery
+        LEFT JOIN FETCH dh.tour
+        WHERE dh.deliveryDate BETWEEN :startDate AND :endDate
+        ORDER BY dh.deliveryDate, dh.id
+    """)
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<DeliveryHistory> streamByDeliveryDateBetween(
+        @Param("startDate") LocalDate startDate,
+        @Param("endDate") LocalDate endDate
+    );
+
+    // Same pages within one tour, read from idx_delivery_history_tour_date_id
+    @Query("""
+        SELECT dh FROM DeliveryHistory dh
+        LEFT JOIN FETCH dh.delivery
+        LEFT JOIN FETCH dh.tour t
+        WHERE t.id = :tourId
+        AND dh.deliveryDate BETWEEN :startDate AND :endDate
+        ORDER BY dh.deliveryDate, dh.id
+    """)
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<DeliveryHistory> streamByTourIdAndDeliveryDateBetween(
+        @Param("tourId") Long tourId,
+        @Param("startDate") LocalDate startDate,
+        @Param("endDate") LocalDate endDate
+    );
+
     // Find delayed deliveries (delay > 0) with pagination
+    @EntityGraph(attributePaths = {"delivery", "tour"})
     @Query("SELECT dh FROM DeliveryHistory dh WHERE dh.delayMinutes > 0")
     Page<DeliveryHistory> findDelayedDeliveries(Pageable pageable);
     
     // Find on-time deliveries (delay <= 0) with pagination
+    @EntityGraph(attributePaths = {"delivery", "tour"})
     @Query("SELECT dh FROM DeliveryHistory dh WHERE dh.delayMinutes <= 0")
     Page<DeliveryHistory> findOnTimeDeliveries(Pageable pageable);
     
-    // Statistics methods
-    @Query("SELECT COUNT(dh) FROM DeliveryHistory dh WHERE dh.customer.id = :customerId")
-    long countByCustomerId(@Param("customerId") @NonNull Long customerId);
-    
-    @Query("SELECT COUNT(dh) FROM DeliveryHistory dh WHERE dh.customer.id = :customerId AND dh.delayMinutes <= :maxDelay")
-    long countByCustomerIdAndDelayMinutesLessThanEqual(
-        @Param("customerId") @NonNull Long customerId, 
-        @Param("maxDelay") int maxDelay
-    );
-    
-    @Query("SELECT AVG(dh.delayMinutes) FROM DeliveryHistory dh WHERE dh.customer.id = :customerId")
-    @NonNull
-    Optional<Double> findAverageDelayByCustomerId(@Param("customerId") @NonNull Long customerId);
-    
+    // Total of the tour's seek pagination. Statistics come from the rollup tables kept by DeliveryStatsService
     @Query("SELECT COUNT(dh) FROM DeliveryHistory dh WHERE dh.tour.id = :tourId")
     long countByTourId(@Param("tourId") @NonNull Long tourId);
     
-    @Query("SELECT COUNT(dh) FROM DeliveryHistory dh WHERE dh.tour.id = :tourId AND dh.delayMinutes <= :maxDelay")
-    long countByTourIdAndDelayMinutesLessThanEqual(
-        @Param("tourId") @NonNull Long tourId, 
-        @Param("maxDelay") int maxDelay
-    );
-    
-    @Query("SELECT AVG(dh.delayMinutes) FROM DeliveryHistory dh WHERE dh.tour.id = :tourId")
-    @NonNull
-    Optional<Double> findAverageDelayByTourId(@Param("tourId") @NonNull Long tourId);
-    
-    @Query("SELECT COALESCE(SUM(dh.delayMinutes), 0) FROM DeliveryHistory dh WHERE dh.tour.id = :tourId")
-    @NonNull
-    Optional<Long> findTotalDelayByTourId(@Param("tourId") @NonNull Long tourId);
-    
     // Existing methods for backward compatibility
+    @EntityGraph(attributePaths = {"delivery", "tour"})
     List<DeliveryHistory> findByCustomerId(Long customerId);
+    @EntityGraph(attributePaths = {"delivery", "tour"})
     List<DeliveryHistory> findByTourId(Long tourId);
+    @EntityGraph(attributePaths = {"delivery", "tour"})
     List<DeliveryHistory> findByDeliveryDateBetween(LocalDate startDate, LocalDate endDate);
-    
-    // Calculate average delay by day of week
-    @Query("""
-        SELECT dh.dayOfWeek, AVG(dh.delayMinutes) 
-        FROM DeliveryHistory dh 
-        WHERE dh.delayMinutes > 0 
-        GROUP BY dh.dayOfWeek
-    """)
-    List<Object[]> findAverageDelayByDayOfWeek();
+
+    // Histories a delivery's deletion removes by cascade, for DeliveryStatsService.remove: only the ids
+    // of the customer and the tour are read, so neither is fetched
+    List<DeliveryHistory> findByDeliveryId(Long deliveryId);
     
     // Find deliveries by planned time window
+    @EntityGraph(attributePaths = {"delivery", "tour"})
     @Query("""
         SELECT dh FROM DeliveryHistory dh 
         WHERE dh.plannedTime BETWEEN :startTime AND :endTime
@@ -109,4 +184,76 @@ public interface DeliveryHistoryRepository extends JpaRepository<DeliveryHistory
         WHERE dh.id = :id
     """)
     Optional<DeliveryHistory> findByIdWithDetails(@Param("id") Long id);
+    
+    // Everything needed to write the history of a tour's deliveries, in a single query
+    @Query("""
+        SELECT d.id AS deliveryId, c.id AS customerId,
+               c.preferredTimeSlot AS preferredTimeSlot, d.timeWindow AS timeWindow
+        FROM Tour t
+        JOIN t.deliveries d
+        JOIN d.customer c
+        WHERE t.id = :tourId
+    """)
+    List<TourStop> findTourStops(@Param("tourId") Long tourId);
+
+    /**
+     * Writes the history of every delivery of a tour in one statement (PostgreSQL), and returns the
+     * rows it inserted, for the statistics: RETURNING gives exactly these rows, whatever else the
+     * transaction or concurrent ones wrote. The planned time is the start of the customer's
+     * preferred slot, else of the delivery's time window, else noon, as in DeliveryHistoryServiceImpl.
+     * A slot is read when it matches what TimeWindow.parse accepts, "H:mm-H:mm" with hours up to 23,
+     * minutes up to 59, optional seconds and spaces; its start is then cast without the seconds.
+     * Hibernate runs it as a select: it invalidates no second-level cache region and no cached query
+     * after it, which is right as long as DeliveryHistory has no region and no cached query reads
+     * delivery_history. The native spaces are the tables it reads, so that pending changes to them
+     * are flushed before it runs.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "tour_delivery"),
+        @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "delivery"),
+        @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "customer"),
+        @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "delivery_history")
+    })
+    @Query(value = """
+        WITH inserted AS (
+            INSERT INTO delivery_history (id, customer_id, delivery_id, tour_id, delivery_date,
+                                          planned_time, actual_time, delay_minutes, day_of_week, created_at)
+            SELECT nextval('delivery_history_seq'), s.customer_id, s.delivery_id, :tourId, :deliveryDate,
+                   s.planned_time, :actualTime,
+                   GREATEST(0, CAST(FLOOR(EXTRACT(EPOCH FROM (CAST(:actualTime AS TIME) - s.planned_time)) / 60) AS INTEGER)),
+                   :dayOfWeek, CURRENT_TIMESTAMP
+            FROM (
+                SELECT d.id AS delivery_id, d.customer_id,
+                       CAST(CASE
+                           WHEN c.preferred_time_slot ~ '^ *(?:[01]?[0-9]|2[0-3]):[0-5][0-9](?::[0-9]{2})? *(?:- *(?:[01]?[0-9]|2[0-3]):[0-5][0-9](?::[0-9]{2})? *)?$'
+                               THEN SUBSTRING(c.preferred_time_slot FROM '^ *((?:[01]?[0-9]|2[0-3]):[0-5][0-9])')
+                           WHEN d.time_window ~ '^ *(?:[01]?[0-9]|2[0-3]):[0-5][0-9](?::[0-9]{2})? *(?:- *(?:[01]?[0-9]|2[0-3]):[0-5][0-9](?::[0-9]{2})? *)?$'
+                               THEN SUBSTRING(d.time_window FROM '^ *((?:[01]?[0-9]|2[0-3]):[0-5][0-9])')
+                           ELSE '12:00'
+                       END AS TIME) AS planned_time
+                FROM tour_delivery td
+                JOIN delivery d ON d.id = td.delivery_id
+                JOIN customer c ON c.id = d.customer_id
+                WHERE td.tour_id = :tourId
+            ) s
+            RETURNING *
+        )
+        SELECT * FROM inserted
+    """, nativeQuery = true)
+    List<DeliveryHistory> insertHistoryForTour(
+        @Param("tourId") Long tourId,
+        @Param("deliveryDate") LocalDate deliveryDate,
+        @Param("actualTime") LocalTime actualTime,
+        @Param("dayOfWeek") String dayOfWeek
+    );
+
+    // Whether there is any history at all, without counting them
+    boolean existsByIdNotNull();
+
+    interface TourStop {
+        Long getDeliveryId();
+        Long getCustomerId();
+        String getPreferredTimeSlot();
+        String getTimeWindow();
+    }
 }
@@ -2,35 +2,72 @@ package com.delivrey.repository;
 
 import com.delivrey.entity.Delivery;
 import com.delivrey.entity.DeliveryStatus;
+import com.delivrey.util.GeoUtils;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DeliveryRepository extends JpaRepository<Delivery, Long> {
+
+    // Listings are mapped to DeliveryDTO, which reads the customer's name: it comes in the same select
+    @Override
+    @EntityGraph(attributePaths = "customer")
+    List<Delivery> findAll();
     
     // Basic queries
+    @EntityGraph(attributePaths = "customer")
     List<Delivery> findByStatus(DeliveryStatus status);
     
     // Find deliveries by customer
     List<Delivery> findByCustomerId(Long customerId);
     
     // Find deliveries with pagination
+    @EntityGraph(attributePaths = "customer")
     Page<Delivery> findByStatus(DeliveryStatus status, Pageable pageable);
     
     // Find deliveries within a time window
+    @EntityGraph(attributePaths = "customer")
     List<Delivery> findByTimeWindow(String timeWindow);
     
     // Find deliveries by customer and status
     List<Delivery> findByCustomerIdAndStatus(Long customerId, DeliveryStatus status);
     
+    // Deliveries with the given status that no tour contains yet
+    @Query("""
+        SELECT d FROM Delivery d
+        WHERE d.status = :status
+        AND d.tour IS NULL
+        AND NOT EXISTS (SELECT t.id FROM Tour t JOIN t.deliveries td WHERE td = d)
+        ORDER BY d.id
+    """)
+    List<Delivery> findUnplannedByStatus(@Param("status") DeliveryStatus status);
+
+    // The given deliveries still unplanned, locked until the end of the transaction in id order. A concurrent
+    // planner waits on the rows, then finds them in a tour already and leaves them out
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+        SELECT d FROM Delivery d
+        WHERE d.id IN :ids
+        AND d.status = :status
+        AND d.tour IS NULL
+        AND NOT EXISTS (SELECT t.id FROM Tour t JOIN t.deliveries td WHERE td = d)
+        ORDER BY d.id
+    """)
+    List<Delivery> lockUnplannedByIdAndStatus(@Param("ids") Collection<Long> ids,
+                                              @Param("status") DeliveryStatus status);
+
     // Find deliveries with customer details (eager loading)
     @Query("""
         SELECT d FROM Delivery d 
@@ -38,31 +75,86 @@ public interface DeliveryRepository extends JpaRepository<Delivery, Long> {
         WHERE d.id = :id
     """)
     Optional<Delivery> findByIdWithCustomer(@Param("id") Long id);
+
+    // Deliveries with their customer, in no particular order
+    @Query("""
+        SELECT d FROM Delivery d
+        LEFT JOIN FETCH d.customer
+        WHERE d.id IN :ids
+    """)
+    List<Delivery> findAllByIdWithCustomer(@Param("ids") Collection<Long> ids);
     
     // Find deliveries near a location (within radius in km)
+    default List<Delivery> findNearbyDeliveries(double latitude, double longitude, double radiusKm, DeliveryStatus status) {
+        GeoUtils.BoundingBox box = GeoUtils.boundingBox(latitude, longitude, radiusKm);
+        return findNearbyDeliveriesInBox(latitude, longitude, radiusKm, status,
+                box.minLatitude(), box.maxLatitude(), box.minLongitude(), box.maxLongitude());
+    }
+
+    // The box is a range on indexed columns: only the rows inside it get the exact distance check.
+    // The cosine is capped at 1, which rounding exceeds for a delivery at the center: acos would fail
+    @EntityGraph(attributePaths = "customer")
     @Query("""
         SELECT d FROM Delivery d 
-        WHERE (6371 * acos(cos(radians(:latitude)) * cos(radians(d.latitude)) * 
-              cos(radians(d.longitude) - radians(:longitude)) + 
-              sin(radians(:latitude)) * sin(radians(d.latitude)))) <= :radiusKm
-        AND d.status = :status
+        WHERE d.status = :status
+        AND d.latitude BETWEEN :minLat AND :maxLat
+        AND d.longitude BETWEEN :minLon AND :maxLon
+        AND (6371 * acos(least(1.0, cos(radians(:latitude)) * cos(radians(d.latitude)) *
+              cos(radians(d.longitude) - radians(:longitude)) +
+              sin(radians(:latitude)) * sin(radians(d.latitude))))) <= :radiusKm
     """)
-    List<Delivery> findNearbyDeliveries(
+    List<Delivery> findNearbyDeliveriesInBox(
         @Param("latitude") double latitude,
         @Param("longitude") double longitude,
         @Param("radiusKm") double radiusKm,
-        @Param("status") DeliveryStatus status
+        @Param("status") DeliveryStatus status,
+        @Param("minLat") double minLatitude,
+        @Param("maxLat") double maxLatitude,
+        @Param("minLon") double minLongitude,
+        @Param("maxLon") double maxLongitude
+    );
+
+    // PostgreSQL only: uses the GiST index on delivery.location (changelog v7.1)
+    @Query(value = """
+        SELECT d.* FROM delivery d
+        WHERE d.delivery_status = :status
+        AND ST_DWithin(d.location,
+              CAST(ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326) AS geography),
+              :radiusKm * 1000)
+    """, nativeQuery = true)
+    List<Delivery> findNearbyDeliveriesPostgis(
+        @Param("latitude") double latitude,
+        @Param("longitude") double longitude,
+        @Param("radiusKm") double radiusKm,
+        @Param("status") String status
+    );
+    
+    // PostgreSQL only: k nearest deliveries, walking the GiST index in distance order
+    @Query(value = """
+        SELECT d.* FROM delivery d
+        WHERE d.delivery_status = :status
+        ORDER BY d.location <-> CAST(ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326) AS geography)
+        LIMIT :count
+    """, nativeQuery = true)
+    List<Delivery> findNearestDeliveriesPostgis(
+        @Param("latitude") double latitude,
+        @Param("longitude") double longitude,
+        @Param("count") int count,
+        @Param("status") String status
     );
     
     // Count deliveries by status
     long countByStatus(DeliveryStatus status);
     
     // Find deliveries created between dates
+    @EntityGraph(attributePaths = "customer")
     List<Delivery> findByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate);
     
     // Find deliveries by weight range
+    @EntityGraph(attributePaths = "customer")
     List<Delivery> findByWeightBetween(Double minWeight, Double maxWeight);
     
     // Find deliveries by volume range
+    @EntityGraph(attributePaths = "customer")
     List<Delivery> findByVolumeBetween(Double minVolume, Double maxVolume);
 }
@@ -0,0 +1,47 @@
+package com.delivrey.repository;
+
+import com.delivrey.entity.TourDeliveryStats;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TourDeliveryStatsRepository extends JpaRepository<TourDeliveryStats, Long> {
+
+    // Adds the totals of delta to the row of its tour in place, so concurrent tours add up
+    @Modifying
+    @Query("""
+        UPDATE TourDeliveryStats s SET
+            s.totalDeliveries = s.totalDeliveries + :#{#delta.totalDeliveries},
+            s.onTimeDeliveries = s.onTimeDeliveries + :#{#delta.onTimeDeliveries},
+            s.lateDeliveries = s.lateDeliveries + :#{#delta.lateDeliveries},
+            s.delayCount = s.delayCount + :#{#delta.delayCount},
+            s.totalDelay = s.totalDelay + :#{#delta.totalDelay},
+            s.lateDelay = s.lateDelay + :#{#delta.lateDelay}
+        WHERE s.tourId = :#{#delta.tourId}
+    """)
+    int increment(@Param("delta") TourDeliveryStats delta);
+
+    // Backfill: the totals of every tour computed from delivery_history in one statement. The native
+    // query space keeps Hibernate from emptying every second-level cache region after it
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "tour_delivery_stats"))
+    @Modifying
+    @Query(value = """
+        INSERT INTO tour_delivery_stats (tour_id, total_deliveries, on_time_deliveries, late_deliveries,
+                                         delay_count, total_delay, late_delay)
+        SELECT tour_id, COUNT(*),
+               SUM(CASE WHEN delay_minutes <= 0 THEN 1 ELSE 0 END),
+               SUM(CASE WHEN delay_minutes > 0 THEN 1 ELSE 0 END),
+               COUNT(delay_minutes),
+               COALESCE(SUM(delay_minutes), 0),
+               COALESCE(SUM(CASE WHEN delay_minutes > 0 THEN delay_minutes ELSE 0 END), 0)
+        FROM delivery_history
+        GROUP BY tour_id
+    """, nativeQuery = true)
+    int insertFromHistory();
+}
@@ -2,8 +2,11 @@ package com.delivrey.repository;
 
 import com.delivrey.entity.Tour;
 import com.delivrey.entity.TourStatus;
+import com.delivrey.optimizer.TourStop;
+import com.delivrey.repository.projection.TourSummary;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
@@ -17,14 +20,68 @@ import java.util.Optional;
 
 @Repository
 public interface TourRepository extends JpaRepository<Tour, Long> {
-    @Query("SELECT DISTINCT t FROM Tour t LEFT JOIN FETCH t.deliveries")
-    List<Tour> findAllWithDeliveries();
-    
+
+    // Listings read these columns only, their delivery ids come from the join table (findDeliveryIds)
+    String TOUR_SUMMARY = """
+        SELECT new com.delivrey.repository.projection.TourSummary(t.id, t.tourDate, t.tourStatus, v.id, w.id,
+               t.algorithmUsed)
+        FROM Tour t LEFT JOIN t.vehicle v LEFT JOIN t.warehouse w
+    """;
+
+    @Query(TOUR_SUMMARY + " ORDER BY t.id")
+    List<TourSummary> findAllSummaries();
+
+    @Query(value = TOUR_SUMMARY, countQuery = "SELECT COUNT(t) FROM Tour t")
+    Page<TourSummary> findAllSummaries(Pageable pageable);
+
+    // Seek pagination on id, as many tours as the pageable's size
+    @Query(TOUR_SUMMARY + " WHERE t.id > :afterId ORDER BY t.id")
+    List<TourSummary> findSummariesAfter(@Param("afterId") long afterId, Pageable limit);
+
+    @Query(TOUR_SUMMARY + " WHERE t.tourStatus = :status ORDER BY t.id")
+    List<TourSummary> findSummariesByStatus(@Param("status") TourStatus status);
+
+    @Query(value = TOUR_SUMMARY + " WHERE t.tourStatus = :status",
+           countQuery = "SELECT COUNT(t) FROM Tour t WHERE t.tourStatus = :status")
+    Page<TourSummary> findSummariesByStatus(@Param("status") TourStatus status, Pageable pageable);
+
+    @Query(TOUR_SUMMARY + " WHERE v.id = :vehicleId ORDER BY t.id")
+    List<TourSummary> findSummariesByVehicleId(@Param("vehicleId") Long vehicleId);
+
+    @Query(TOUR_SUMMARY + " WHERE w.id = :warehouseId ORDER BY t.id")
+    List<TourSummary> findSummariesByWarehouseId(@Param("warehouseId") Long warehouseId);
+
+    @Query(TOUR_SUMMARY + " WHERE t.tourDate BETWEEN :startDate AND :endDate ORDER BY t.id")
+    List<TourSummary> findSummariesByTourDateBetween(@Param("startDate") LocalDate startDate,
+                                                     @Param("endDate") LocalDate endDate);
+
+    // (tour id, delivery id) pairs straight from the join table, no delivery row is read
+    @Query(value = "SELECT td.tour_id, td.delivery_id FROM tour_delivery td ORDER BY td.tour_id, td.delivery_id",
+           nativeQuery = true)
+    List<Object[]> findAllDeliveryIds();
+
+    @Query(value = """
+        SELECT td.tour_id, td.delivery_id FROM tour_delivery td
+        WHERE td.tour_id IN (:tourIds)
+        ORDER BY td.tour_id, td.delivery_id
+    """, nativeQuery = true)
+    List<Object[]> findDeliveryIds(@Param("tourIds") Collection<Long> tourIds);
+
     @Query("SELECT DISTINCT t FROM Tour t LEFT JOIN FETCH t.deliveries LEFT JOIN FETCH t.warehouse WHERE t.id = :id")
     Optional<Tour> findByIdWithDeliveriesAndWarehouse(@Param("id") Long id);
     
     @Query("SELECT t FROM Tour t LEFT JOIN FETCH t.deliveries WHERE t.id = :id")
     Optional<Tour> findByIdWithDeliveries(@Param("id") Long id);
+
+    // Only the columns the optimizers use, no delivery entity is loaded
+    @Query("""
+        SELECT new com.delivrey.optimizer.TourStop(d.id, d.latitude, d.longitude, d.weight, d.volume,
+               d.timeWindow, c.preferredTimeSlot)
+        FROM Tour t JOIN t.deliveries d LEFT JOIN d.customer c
+        WHERE t.id = :tourId
+        ORDER BY d.id
+    """)
+    List<TourStop> findStops(@Param("tourId") Long tourId);
     
     List<Tour> findByVehicleId(Long vehicleId);
     
@@ -2,10 +2,14 @@ package com.delivrey.repository;
 
 import com.delivrey.entity.Vehicle;
 
+import java.time.LocalDate;
 import java.util.List;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 
@@ -13,7 +17,14 @@ import org.springframework.data.repository.query.Param;
 
 public interface VehicleRepository extends JpaRepository<Vehicle, Long> {
 	
-	 Vehicle findByRegistrationNumber(String registrationNumber);
+	// Vehicles rarely change: their lists come from the query cache, the entities from the second-level cache
+	@Override
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+	List<Vehicle> findAll();
+
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+	Vehicle findByRegistrationNumber(String registrationNumber);
+
     // Find vehicles with maxVolume greater than or equal to the given value, ordered by maxVolume in descending order
     @Query("SELECT v FROM Vehicle v WHERE v.maxVolume >= :maxVolume ORDER BY v.maxVolume DESC")
     List<Vehicle> findByMaxVolumeGreaterThanEqualOrderByMaxVolumeDesc(@Param("maxVolume") double maxVolume);
@@ -22,5 +33,16 @@ public interface VehicleRepository extends JpaRepository<Vehicle, Long> {
     @Query("SELECT v FROM Vehicle v WHERE v.maxVolume <= :maxVolume ORDER BY v.maxVolume ASC")
     List<Vehicle> findByMaxVolumeLessThanEqualOrderByMaxVolumeAsc(@Param("maxVolume") double maxVolume);
 
+    // Vehicles not already driving a tour (other than a cancelled one) on the given date
+    @Query("""
+        SELECT v FROM Vehicle v
+        WHERE NOT EXISTS (
+            SELECT t.id FROM Tour t
+            WHERE t.vehicle = v AND t.tourDate = :date AND t.tourStatus <> com.delivrey.entity.TourStatus.CANCELLED
+        )
+        ORDER BY v.id
+    """)
+    List<Vehicle> findAvailableOn(@Param("date") LocalDate date);
+
 	 
 }
@@ -4,10 +4,19 @@ import com.delivrey.entity.Warehouse;
 
 import java.util.List;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 public interface WarehouseRepository extends JpaRepository<Warehouse, Long> {
 	
 	
+	// Warehouses rarely change: their lists come from the query cache, the entities from the second-level cache
+	@Override
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+	List<Warehouse> findAll();
+
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
 	List<Warehouse> findByAddress(String address);
 }
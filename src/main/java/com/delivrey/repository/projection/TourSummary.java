@@ -0,0 +1,12 @@
+package com.delivrey.repository.projection;
+
+import com.delivrey.entity.TourStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Columns of a tour shown in tour listings, read without the tour entity or its associations.
+ */
+public record TourSummary(Long id, LocalDate tourDate, TourStatus tourStatus, Long vehicleId, Long warehouseId,
+                          String algorithmUsed) {
+}
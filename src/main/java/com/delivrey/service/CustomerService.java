@@ -24,4 +24,11 @@ public interface CustomerService {
     
     @NonNull
     Page<CustomerDto> search(String name, String address, @NonNull Pageable pageable);
+
+    /**
+     * Customers within {@code radiusKm} of a point, optionally filtered by name and address as {@link #search} does.
+     */
+    @NonNull
+    Page<CustomerDto> findNearby(double latitude, double longitude, double radiusKm, String name, String address,
+                                 @NonNull Pageable pageable);
 }
@@ -1,19 +1,33 @@
 package com.delivrey.service;
 
+import com.delivrey.dto.CursorPage;
 import com.delivrey.dto.DeliveryHistoryDto;
+import com.delivrey.dto.DeliveryStatsDto;
 import com.delivrey.entity.Tour;
+import com.delivrey.exception.InvalidRequestParameterException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.lang.NonNull;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 
 public interface DeliveryHistoryService {
     
-    @Transactional
+    /**
+     * Writes the history of a completed tour in a transaction of its own: called once the status
+     * change has committed, it must never join the transaction that is finishing on the calling thread.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
     void createHistoryFromTour(Tour tour);
 
     @Transactional(readOnly = true)
@@ -39,6 +53,38 @@ public interface DeliveryHistoryService {
             @NonNull LocalDate endDate, 
             @NonNull Pageable pageable);
     
+    /**
+     * Seek pagination in (deliveryDate, id) order: the page after {@code cursor}, the first one when it is null.
+     * Histories without a delivery date are not listed.
+     *
+     * @param withTotal whether to count all the histories, which takes a full scan
+     */
+    @Transactional(readOnly = true)
+    @NonNull
+    CursorPage<DeliveryHistoryDto> findAll(String cursor, int size, boolean withTotal);
+
+    @Transactional(readOnly = true)
+    @NonNull
+    CursorPage<DeliveryHistoryDto> findByTourId(@NonNull Long tourId, String cursor, int size, boolean withTotal);
+
+    @Transactional(readOnly = true)
+    @NonNull
+    CursorPage<DeliveryHistoryDto> findByDeliveryDateBetween(
+            @NonNull LocalDate startDate,
+            @NonNull LocalDate endDate,
+            String cursor, int size, boolean withTotal);
+    
+    /**
+     * Writes the histories delivered between two dates, of a single tour when {@code tourId} is set,
+     * to {@code out} in (deliveryDate, id) order. Rows are read from a database cursor and written
+     * one by one, so memory stays flat whatever the number of rows; {@code out} is flushed, not closed.
+     *
+     * @return the number of histories written
+     */
+    @Transactional(readOnly = true)
+    long export(@NonNull LocalDate startDate, @NonNull LocalDate endDate, Long tourId,
+                @NonNull ExportFormat format, @NonNull OutputStream out) throws IOException;
+
     @Transactional(readOnly = true)
     @NonNull
     Map<String, Object> getCustomerDeliveryStats(@NonNull Long customerId);
@@ -46,4 +92,62 @@ public interface DeliveryHistoryService {
     @Transactional(readOnly = true)
     @NonNull
     Map<String, Object> getTourDeliveryStats(@NonNull Long tourId);
+
+    /**
+     * Statistics of several customers in a single query, in the order of {@code customerIds},
+     * zeros for the customers without history.
+     */
+    @Transactional(readOnly = true)
+    @NonNull
+    List<DeliveryStatsDto> getCustomerDeliveryStats(@NonNull Collection<Long> customerIds);
+
+    @Transactional(readOnly = true)
+    @NonNull
+    List<DeliveryStatsDto> getTourDeliveryStats(@NonNull Collection<Long> tourIds);
+
+    /**
+     * Mean delay of the late deliveries per day of the week, for the days with any.
+     */
+    @Transactional(readOnly = true)
+    @NonNull
+    Map<DayOfWeek, Double> getAverageDelayByDayOfWeek();
+
+    /**
+     * Recomputes the per customer, per tour and per day statistics from the whole history.
+     *
+     * @return the number of histories counted
+     */
+    long rebuildStats();
+
+    enum ExportFormat {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * @throws InvalidRequestParameterException when {@code name} is not a format, in any case
+         */
+        public static ExportFormat parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidRequestParameterException("Unknown export format: " + name);
+            }
+        }
+    }
 }
@@ -38,6 +38,8 @@ public interface DeliveryService {
     // Location-based queries
     List<DeliveryDTO> findNearbyDeliveries(double latitude, double longitude, double radiusKm, DeliveryStatus status);
     
+    List<DeliveryDTO> findNearestPendingDeliveries(double latitude, double longitude, int count);
+    
     // Time-based queries
     List<DeliveryDTO> getDeliveriesByTimeWindow(String timeWindow);
     
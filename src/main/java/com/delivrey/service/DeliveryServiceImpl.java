@@ -1,12 +1,17 @@
 package com.delivrey.service;
 
+import com.delivrey.config.GeoProperties;
 import com.delivrey.dto.DeliveryDTO;
 import com.delivrey.entity.Delivery;
 import com.delivrey.entity.DeliveryStatus;
+import com.delivrey.event.DeliveryChangeEvent;
 import com.delivrey.exception.ResourceNotFoundException;
 import com.delivrey.mapper.DeliveryMapper;
+import com.delivrey.repository.DeliveryHistoryRepository;
 import com.delivrey.repository.DeliveryRepository;
+import com.delivrey.util.GeoUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -14,6 +19,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -26,8 +32,16 @@ import java.util.stream.Collectors;
 @Transactional
 public class DeliveryServiceImpl implements DeliveryService {
 
+    private static final double NEAREST_FIRST_RADIUS_KM = 5.0;
+    private static final double HALF_EARTH_CIRCUMFERENCE_KM = 20_016.0;
+
     private final DeliveryRepository deliveryRepository;
     private final DeliveryMapper deliveryMapper;
+    private final GeoProperties geoProperties;
+    private final PendingDeliveryIndex pendingDeliveryIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DeliveryHistoryRepository deliveryHistoryRepository;
+    private final DeliveryStatsService deliveryStatsService;
 
     @Override
     @Transactional(readOnly = true)
@@ -51,7 +65,7 @@ public class DeliveryServiceImpl implements DeliveryService {
             delivery.setStatus(DeliveryStatus.PENDING);
         }
         Delivery savedDelivery = deliveryRepository.save(delivery);
-        return deliveryMapper.toDto(savedDelivery);
+        return published(deliveryMapper.toDto(savedDelivery));
     }
 
     @Override
@@ -60,7 +74,7 @@ public class DeliveryServiceImpl implements DeliveryService {
             .map(existingDelivery -> {
                 deliveryMapper.updateDeliveryFromDto(deliveryDTO, existingDelivery);
                 Delivery updatedDelivery = deliveryRepository.save(existingDelivery);
-                return deliveryMapper.toDto(updatedDelivery);
+                return published(deliveryMapper.toDto(updatedDelivery));
             })
             .orElseThrow(() -> new ResourceNotFoundException("Delivery not found with id: " + id));
     }
@@ -70,7 +84,15 @@ public class DeliveryServiceImpl implements DeliveryService {
         if (!deliveryRepository.existsById(id)) {
             throw new ResourceNotFoundException("Delivery not found with id: " + id);
         }
+        // Its histories go with it (orphanRemoval), and so do they from the totals
+        deliveryStatsService.remove(deliveryHistoryRepository.findByDeliveryId(id));
         deliveryRepository.deleteById(id);
+        eventPublisher.publishEvent(DeliveryChangeEvent.deleted(this, id));
+    }
+
+    private DeliveryDTO published(DeliveryDTO delivery) {
+        eventPublisher.publishEvent(DeliveryChangeEvent.saved(this, delivery));
+        return delivery;
     }
 
     @Override
@@ -79,7 +101,7 @@ public class DeliveryServiceImpl implements DeliveryService {
             .map(delivery -> {
                 delivery.setStatus(status);
                 Delivery updatedDelivery = deliveryRepository.save(delivery);
-                return deliveryMapper.toDto(updatedDelivery);
+                return published(deliveryMapper.toDto(updatedDelivery));
             })
             .orElseThrow(() -> new ResourceNotFoundException("Delivery not found with id: " + id));
     }
@@ -113,7 +135,40 @@ public class DeliveryServiceImpl implements DeliveryService {
     @Override
     @Transactional(readOnly = true)
     public List<DeliveryDTO> findNearbyDeliveries(double latitude, double longitude, double radiusKm, DeliveryStatus status) {
-        return deliveryRepository.findNearbyDeliveries(latitude, longitude, radiusKm, status).stream()
+        if (status == DeliveryStatus.PENDING && pendingDeliveryIndex.isReady()) {
+            return pendingDeliveryIndex.withinRadius(latitude, longitude, radiusKm);
+        }
+        List<Delivery> deliveries = geoProperties.isPostgis()
+                ? deliveryRepository.findNearbyDeliveriesPostgis(latitude, longitude, radiusKm, status.name())
+                : deliveryRepository.findNearbyDeliveries(latitude, longitude, radiusKm, status);
+        return deliveries.stream()
+                .map(deliveryMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DeliveryDTO> findNearestPendingDeliveries(double latitude, double longitude, int count) {
+        if (pendingDeliveryIndex.isReady()) {
+            return pendingDeliveryIndex.nearest(latitude, longitude, count);
+        }
+        if (geoProperties.isPostgis()) {
+            return deliveryRepository.findNearestDeliveriesPostgis(latitude, longitude, count, DeliveryStatus.PENDING.name())
+                    .stream()
+                    .map(deliveryMapper::toDto)
+                    .collect(Collectors.toList());
+        }
+        // Widen the search until it holds enough deliveries (or covers the whole planet)
+        double radiusKm = NEAREST_FIRST_RADIUS_KM;
+        List<Delivery> deliveries = deliveryRepository.findNearbyDeliveries(latitude, longitude, radiusKm, DeliveryStatus.PENDING);
+        while (deliveries.size() < count && radiusKm < HALF_EARTH_CIRCUMFERENCE_KM) {
+            radiusKm *= 4;
+            deliveries = deliveryRepository.findNearbyDeliveries(latitude, longitude, radiusKm, DeliveryStatus.PENDING);
+        }
+        return deliveries.stream()
+                .sorted(Comparator.comparingDouble(delivery ->
+                        GeoUtils.haversineKm(latitude, longitude, delivery.getLatitude(), delivery.getLongitude())))
+                .limit(count)
                 .map(deliveryMapper::toDto)
                 .collect(Collectors.toList());
     }
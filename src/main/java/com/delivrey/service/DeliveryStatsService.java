@@ -0,0 +1,42 @@
+package com.delivrey.service;
+
+import com.delivrey.entity.DeliveryHistory;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+/**
+ * Keeps the per customer, per tour and per day of the week totals of the delivery histories.
+ */
+public interface DeliveryStatsService {
+
+    /**
+     * Adds histories to the totals, within the transaction that writes them so that both commit
+     * or roll back together.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    void add(Collection<DeliveryHistory> histories);
+
+    /**
+     * Subtracts histories from the totals, within the transaction that deletes them. Histories
+     * deleted in bulk without going through this method (SQL, cascades in the database) leave the
+     * totals off until the next {@link #rebuild()}.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    void remove(Collection<DeliveryHistory> histories);
+
+    /**
+     * Recomputes every total from delivery_history.
+     *
+     * @return the number of histories counted
+     */
+    @Transactional
+    long rebuild();
+
+    /**
+     * Whether there are histories but no totals yet, as right after the rollup tables are created.
+     */
+    @Transactional(readOnly = true)
+    boolean needsBackfill();
+}
@@ -0,0 +1,21 @@
+package com.delivrey.service;
+
+import com.delivrey.dto.OptimizationJobDTO;
+import com.delivrey.dto.OptimizationProgressDTO;
+
+/**
+ * Follows an optimization job as it runs. Calls come one at a time from the thread running the
+ * job, except {@link #onFinished} for a job cancelled before it started.
+ */
+public interface OptimizationJobListener {
+
+    /**
+     * A shorter route was found; calls are spaced out when improvements come quickly.
+     */
+    void onProgress(OptimizationProgressDTO progress);
+
+    /**
+     * The job is over: completed, cancelled with its best route so far, or failed.
+     */
+    void onFinished(OptimizationJobDTO job);
+}
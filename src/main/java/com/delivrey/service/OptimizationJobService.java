@@ -0,0 +1,29 @@
+package com.delivrey.service;
+
+import com.delivrey.dto.OptimizationJobDTO;
+
+/**
+ * Runs tour optimizations in the background so that long searches do not hold request threads.
+ */
+public interface OptimizationJobService {
+
+    /**
+     * Queues the optimization of a tour.
+     *
+     * @return the job, still QUEUED
+     */
+    OptimizationJobDTO submit(Long tourId, String algorithm);
+
+    /**
+     * Same as {@link #submit(Long, String)}, reporting the routes found and the end of the job to {@code listener}.
+     */
+    OptimizationJobDTO submit(Long tourId, String algorithm, OptimizationJobListener listener);
+
+    OptimizationJobDTO getJob(String jobId);
+
+    /**
+     * Cancels a job: a queued job never starts and a running one stops at its next check,
+     * keeping the best route found so far. Jobs already over are left as they are.
+     */
+    OptimizationJobDTO cancel(String jobId);
+}
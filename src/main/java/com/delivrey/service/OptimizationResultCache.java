@@ -0,0 +1,199 @@
+package com.delivrey.service;
+
+import com.delivrey.entity.Delivery;
+import com.delivrey.optimizer.TimeWindow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes already optimized, reused while the tour they were computed for is unchanged.
+ * <p>
+ * A route is found again by its {@link Key}: the algorithm, the warehouse and a hash of the ids
+ * and coordinates of the stops (and of their time slots for the algorithms that follow them), so
+ * moving, adding or removing a stop gives a new key rather than a stale route. At most
+ * {@code maxEntries} routes are kept, the least recently used going first, each for {@code ttl}.
+ * Routes of a tour are also dropped as soon as the tour or one of its deliveries changes.
+ */
+public class OptimizationResultCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter expired;
+    private final Counter evicted;
+
+    public OptimizationResultCache(int maxEntries, Duration ttl, MeterRegistry meterRegistry) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        // Access order: the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > OptimizationResultCache.this.maxEntries) {
+                    evicted.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder("tour.optimization.cache")
+                .description("Optimization requests answered from the cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("tour.optimization.cache")
+                .description("Optimization requests answered from the cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.expired = Counter.builder("tour.optimization.cache.evictions")
+                .description("Optimized routes dropped from the cache")
+                .tag("cause", "expired")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("tour.optimization.cache.evictions")
+                .description("Optimized routes dropped from the cache")
+                .tag("cause", "size")
+                .register(meterRegistry);
+        Gauge.builder("tour.optimization.cache.size", this, OptimizationResultCache::size)
+                .description("Optimized routes in the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Key of the route of {@code stops}, in any order, the warehouse first when there is one.
+     *
+     * @param timeWindows whether the algorithm follows the time slots of the stops
+     */
+    public static Key key(String algorithm, Long warehouseId, List<Delivery> stops, boolean timeWindows) {
+        List<Delivery> sorted = new ArrayList<>(stops);
+        sorted.sort(Comparator.comparing(Delivery::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
+        long hash = 0;
+        for (Delivery stop : sorted) {
+            hash = mix(hash, stop.getId() != null ? stop.getId() : Long.MIN_VALUE);
+            hash = mix(hash, coordinate(stop.getLatitude()));
+            hash = mix(hash, coordinate(stop.getLongitude()));
+            if (timeWindows) {
+                hash = mix(hash, TimeWindow.of(stop));
+            }
+        }
+        return new Key(algorithm.toUpperCase().replace(" ", ""), warehouseId, hash, stops.size());
+    }
+
+    /**
+     * The cached route of {@code key} as instances of {@code stops}, {@code null} if there is none.
+     */
+    public Route get(Key key, List<Delivery> stops) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.createdNanos > ttlNanos) {
+                entries.remove(key);
+                expired.increment();
+                entry = null;
+            }
+        }
+        Route route = entry != null ? entry.route(stops) : null;
+        (route != null ? hits : misses).increment();
+        return route;
+    }
+
+    /**
+     * Keeps the route of a tour, {@code route} being made of some of the stops {@code key} was computed from.
+     */
+    public void put(Key key, Long tourId, List<Delivery> route, double distanceKm) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        long[] deliveryIds = new long[route.size()];
+        for (int i = 0; i < deliveryIds.length; i++) {
+            deliveryIds[i] = route.get(i).getId();
+        }
+        Entry entry = new Entry(tourId, deliveryIds, distanceKm, System.nanoTime());
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+    }
+
+    public synchronized void invalidateTour(Long tourId) {
+        entries.values().removeIf(entry -> tourId.equals(entry.tourId));
+    }
+
+    public synchronized void invalidateDelivery(Long deliveryId) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().contains(deliveryId)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static long coordinate(Double degrees) {
+        return degrees != null ? Double.doubleToLongBits(degrees) : Long.MIN_VALUE;
+    }
+
+    /**
+     * Folds {@code value} into {@code hash} (the multiply-xorshift step of SplitMix64), the same on every run.
+     */
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Algorithm, warehouse and content of the tour a route was computed for.
+     */
+    public record Key(String algorithm, Long warehouseId, long contentHash, int stopCount) {
+    }
+
+    /**
+     * Optimized stops in driving order and the length of the route.
+     */
+    public record Route(List<Delivery> stops, double distanceKm) {
+    }
+
+    private record Entry(Long tourId, long[] deliveryIds, double distanceKm, long createdNanos) {
+
+        boolean contains(Long deliveryId) {
+            for (long id : deliveryIds) {
+                if (id == deliveryId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * The route with the instances of {@code stops}, {@code null} if one of its stops is missing.
+         */
+        Route route(List<Delivery> stops) {
+            Map<Long, Delivery> byId = new HashMap<>(stops.size() * 2);
+            for (Delivery stop : stops) {
+                byId.put(stop.getId(), stop);
+            }
+            List<Delivery> route = new ArrayList<>(deliveryIds.length);
+            for (long id : deliveryIds) {
+                Delivery stop = byId.get(id);
+                if (stop == null) {
+                    return null;
+                }
+                route.add(stop);
+            }
+            return new Route(route, distanceKm);
+        }
+    }
+}
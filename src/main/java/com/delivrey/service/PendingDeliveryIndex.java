@@ -0,0 +1,284 @@
+package com.delivrey.service;
+
+import com.delivrey.dto.DeliveryDTO;
+import com.delivrey.entity.DeliveryStatus;
+import com.delivrey.util.GeoUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory grid of the PENDING deliveries, answering radius and nearest-neighbour searches
+ * without going to the database.
+ * <p>
+ * The world is cut into square cells of {@code cellSize} degrees; a search only looks at the
+ * cells that can hold a match. The index is fed with every saved or deleted delivery and is
+ * {@linkplain #isReady() ready} once {@link #load} has added the deliveries already stored;
+ * until then callers must fall back to the database. The returned DTOs are shared snapshots
+ * and must not be modified.
+ */
+public class PendingDeliveryIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final double cellSize;
+    private final int cellsPerTurn;
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    // Deliveries changed before the index was loaded: their state is newer than the loaded one
+    private final Set<Long> changedBeforeLoad = new HashSet<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public PendingDeliveryIndex(double cellSize) {
+        if (!(cellSize > 0 && cellSize <= 90)) {
+            throw new IllegalArgumentException("Cell size must be between 0 and 90 degrees: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.cellsPerTurn = (int) Math.ceil(360.0 / cellSize);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the deliveries read from the database and marks the index ready. Deliveries saved or
+     * deleted since the index was created are skipped, the index already knows a newer state.
+     */
+    public void load(Collection<DeliveryDTO> deliveries) {
+        lock.writeLock().lock();
+        try {
+            for (DeliveryDTO delivery : deliveries) {
+                if (!changedBeforeLoad.contains(delivery.getId())) {
+                    upsert(delivery);
+                }
+            }
+            changedBeforeLoad.clear();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records the saved state of a delivery: indexed while PENDING, dropped otherwise.
+     */
+    public void put(DeliveryDTO delivery) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                changedBeforeLoad.add(delivery.getId());
+            }
+            upsert(delivery);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long deliveryId) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                changedBeforeLoad.add(deliveryId);
+            }
+            removeEntry(deliveryId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * PENDING deliveries within {@code radiusKm} of the point, closest first.
+     */
+    public List<DeliveryDTO> withinRadius(double latitude, double longitude, double radiusKm) {
+        GeoUtils.BoundingBox box = GeoUtils.boundingBox(latitude, longitude, radiusKm);
+        int minRow = row(box.minLatitude());
+        int maxRow = row(box.maxLatitude());
+        int minColumn = column(box.minLongitude());
+        int columns = box.maxLongitude() - box.minLongitude() >= 360.0
+                ? cellsPerTurn
+                : Math.min(cellsPerTurn, column(box.maxLongitude()) - minColumn + 1);
+
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if ((long) (maxRow - minRow + 1) * columns > cells.size()) {
+                // Fewer occupied cells than cells in the box: scanning them all is cheaper
+                for (Entry entry : entries.values()) {
+                    addIfWithin(entry, latitude, longitude, radiusKm, matches);
+                }
+            } else {
+                for (int row = minRow; row <= maxRow; row++) {
+                    for (int i = 0; i < columns; i++) {
+                        List<Entry> cell = cells.get(key(row, minColumn + i));
+                        if (cell != null) {
+                            for (Entry entry : cell) {
+                                addIfWithin(entry, latitude, longitude, radiusKm, matches);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparingDouble(Match::distanceKm));
+        return deliveries(matches);
+    }
+
+    /**
+     * The {@code count} PENDING deliveries closest to the point, closest first.
+     * <p>
+     * Looks at rings of cells around the point, widening until no cell outside the rings can
+     * hold a delivery closer than the farthest one kept.
+     */
+    public List<DeliveryDTO> nearest(double latitude, double longitude, int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        // Max-heap on distance: the farthest of the kept deliveries is the first to go
+        PriorityQueue<Match> closest = new PriorityQueue<>(count + 1,
+                Comparator.comparingDouble(Match::distanceKm).reversed());
+        int centerRow = row(latitude);
+        int centerColumn = column(longitude);
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+
+        lock.readLock().lock();
+        try {
+            for (int ring = 0; ; ring++) {
+                int side = 2 * ring + 1;
+                if ((long) side * side > cells.size() || side * cellSize >= 180.0) {
+                    // The rings would visit more cells than are occupied: look at every delivery instead
+                    closest.clear();
+                    for (Entry entry : entries.values()) {
+                        keepIfCloser(entry, latitude, longitude, count, closest);
+                    }
+                    break;
+                }
+                for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                    // Whole first and last rows, only the two end cells of the rows in between
+                    boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                    int step = edgeRow ? 1 : 2 * ring;
+                    for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+                        List<Entry> cell = cells.get(key(row, column));
+                        if (cell != null) {
+                            for (Entry entry : cell) {
+                                keepIfCloser(entry, latitude, longitude, count, closest);
+                            }
+                        }
+                    }
+                }
+                if (closest.size() == count
+                        && closest.peek().distanceKm() <= distanceOutsideRings(ring, cosLatitude)) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Match> matches = new ArrayList<>(closest);
+        matches.sort(Comparator.comparingDouble(Match::distanceKm));
+        return deliveries(matches);
+    }
+
+    /**
+     * Lower bound of the distance from the point to any delivery outside the first
+     * {@code ring} rings: at least {@code ring} cells away in latitude or in longitude.
+     */
+    private double distanceOutsideRings(int ring, double cosLatitude) {
+        double span = Math.toRadians(ring * cellSize);
+        double alongMeridian = EARTH_RADIUS_KM * span;
+        // Distance to the meridian span away, which a point further east or west has to cross
+        double acrossMeridians = EARTH_RADIUS_KM * Math.asin(Math.min(1.0, cosLatitude * Math.sin(span)));
+        return Math.min(alongMeridian, acrossMeridians);
+    }
+
+    private void upsert(DeliveryDTO delivery) {
+        removeEntry(delivery.getId());
+        if (delivery.getStatus() != DeliveryStatus.PENDING
+                || delivery.getLatitude() == null || delivery.getLongitude() == null) {
+            return;
+        }
+        Entry entry = new Entry(delivery.getLatitude(), delivery.getLongitude(),
+                key(row(delivery.getLatitude()), column(delivery.getLongitude())), delivery);
+        entries.put(delivery.getId(), entry);
+        cells.computeIfAbsent(entry.cell(), cell -> new ArrayList<>()).add(entry);
+    }
+
+    private void removeEntry(Long deliveryId) {
+        Entry entry = entries.remove(deliveryId);
+        if (entry == null) {
+            return;
+        }
+        List<Entry> cell = cells.get(entry.cell());
+        cell.remove(entry);
+        if (cell.isEmpty()) {
+            cells.remove(entry.cell());
+        }
+    }
+
+    private static void addIfWithin(Entry entry, double latitude, double longitude, double radiusKm,
+                                    List<Match> matches) {
+        double distance = GeoUtils.haversineKm(latitude, longitude, entry.latitude(), entry.longitude());
+        if (distance <= radiusKm) {
+            matches.add(new Match(distance, entry.delivery()));
+        }
+    }
+
+    private static void keepIfCloser(Entry entry, double latitude, double longitude, int count,
+                                     PriorityQueue<Match> closest) {
+        double distance = GeoUtils.haversineKm(latitude, longitude, entry.latitude(), entry.longitude());
+        if (closest.size() < count) {
+            closest.add(new Match(distance, entry.delivery()));
+        } else if (distance < closest.peek().distanceKm()) {
+            closest.poll();
+            closest.add(new Match(distance, entry.delivery()));
+        }
+    }
+
+    private static List<DeliveryDTO> deliveries(List<Match> matches) {
+        List<DeliveryDTO> deliveries = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            deliveries.add(match.delivery());
+        }
+        return deliveries;
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor((latitude + 90.0) / cellSize);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor((longitude + 180.0) / cellSize);
+    }
+
+    private long key(int row, int column) {
+        return (long) row * cellsPerTurn + Math.floorMod(column, cellsPerTurn);
+    }
+
+    private record Entry(double latitude, double longitude, long cell, DeliveryDTO delivery) {
+    }
+
+    private record Match(double distanceKm, DeliveryDTO delivery) {
+    }
+}
@@ -1,11 +1,18 @@
 package com.delivrey.service;
 
+import com.delivrey.dto.CursorPage;
 import com.delivrey.dto.TourDTO;
+import com.delivrey.dto.TourPlanDTO;
 import com.delivrey.entity.Delivery;
 import com.delivrey.entity.TourStatus;
+import com.delivrey.optimizer.SearchMonitor;
+import com.delivrey.optimizer.TourSnapshot;
+import com.delivrey.optimizer.model.OptimizedPlan;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +27,13 @@ public interface TourService {
     List<TourDTO> getAllTours();
     
     Page<TourDTO> getAllTours(Pageable pageable);
+
+    /**
+     * Seek pagination in id order: the page after {@code cursor}, the first one when it is null.
+     *
+     * @param withTotal whether to count all the tours
+     */
+    CursorPage<TourDTO> getTours(String cursor, int size, boolean withTotal);
     
     TourDTO createTour(TourDTO tourDTO);
     
@@ -32,8 +46,60 @@ public interface TourService {
     
     // Additional methods
     List<Delivery> getOptimizedTour(Long tourId, String algorithm);
+
+    /**
+     * Same as {@link #getOptimizedTour(Long, String)}, reporting progress to {@code monitor}
+     * and stopping early when it asks to. The length of the returned route is reported last.
+     */
+    List<Delivery> getOptimizedTour(Long tourId, String algorithm, SearchMonitor monitor);
+
+    /**
+     * Detached copy of what the optimizers need from a tour: its warehouse first when it has one, then its deliveries.
+     */
+    TourSnapshot getTourSnapshot(Long tourId);
+
+    /**
+     * Optimizes a snapshot taken by {@link #getTourSnapshot(Long)}, reporting progress to {@code monitor};
+     * the routes it reports are indexes in its stops. The returned route, made of the stops of the
+     * snapshot, is reported last. Runs outside of any transaction.
+     */
+    List<Delivery> optimize(TourSnapshot snapshot, String algorithm, SearchMonitor monitor);
+
+    /**
+     * The deliveries standing for the stops of a snapshot route, with their customers, in the same
+     * order; the warehouse stays as it is.
+     */
+    List<Delivery> getDeliveries(List<Delivery> route);
     
+    /**
+     * Best of several nearest neighbor routes, randomized after the first one and improved by
+     * 2-opt and Or-opt, searched in parallel. Null arguments take the configured defaults; the
+     * same seed and number of starts give the same route unless the time limit is reached.
+     */
+    List<Delivery> getMultiStartTour(Long tourId, Integer starts, Integer parallelism, Long seed, Duration timeLimit);
+
     double getTotalDistance(Long tourId, String algorithm);
+
+    /**
+     * Splits the deliveries of a tour into Clarke-Wright routes from its warehouse,
+     * within the capacity of the tour's vehicle.
+     */
+    List<List<Delivery>> getOptimizedRoutes(Long tourId);
+
+    /**
+     * Orders the deliveries of a tour within their time slots, with the estimated arrival
+     * time at each of them on the day of the tour.
+     */
+    OptimizedPlan getSchedule(Long tourId);
+
+    /**
+     * Spreads the pending deliveries not yet in a tour over the given vehicles, or all vehicles
+     * free on {@code date} when none are given, and creates one planned tour per vehicle used.
+     * Deliveries put in a tour by a concurrent call during the search are reported as unassigned.
+     *
+     * @param timeLimit time given to the search, the configured default when null
+     */
+    TourPlanDTO planTours(LocalDate date, Long warehouseId, List<Long> vehicleIds, Duration timeLimit);
     
     // Find methods
     Optional<TourDTO> findById(Long id);
@@ -4,10 +4,13 @@ import com.delivrey.entity.Warehouse;
 import com.delivrey.repository.WarehouseRepository;
 import com.delivrey.service.WarehouseService;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
+// Transactional like VehicleServiceImpl: an update reads and writes the cached warehouse in one transaction
 @Service
+@Transactional
 public class WarehouseServiceImpl implements WarehouseService {
 
     private final WarehouseRepository repository;
@@ -1,13 +1,20 @@
 package com.delivrey.service.impl;
 
+import com.delivrey.config.GeoProperties;
 import com.delivrey.dao.CustomerDao;
 import com.delivrey.dto.CustomerDto;
 import com.delivrey.entity.Customer;
+import com.delivrey.entity.Delivery;
+import com.delivrey.event.DeliveryChangeEvent;
 import com.delivrey.exception.NotFoundException;
 import com.delivrey.mapper.CustomerMapper;
+import com.delivrey.repository.DeliveryHistoryRepository;
+import com.delivrey.repository.DeliveryRepository;
 import com.delivrey.service.CustomerService;
+import com.delivrey.service.DeliveryStatsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -28,6 +35,11 @@ public class CustomerServiceImpl implements CustomerService {
 
     private final CustomerDao customerDao;
     private final CustomerMapper customerMapper;
+    private final DeliveryHistoryRepository deliveryHistoryRepository;
+    private final DeliveryStatsService deliveryStatsService;
+    private final DeliveryRepository deliveryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final GeoProperties geoProperties;
 
     @Override
     @Transactional(readOnly = true)
@@ -82,7 +94,16 @@ public class CustomerServiceImpl implements CustomerService {
         if (!customerDao.existsById(id)) {
             throw new NotFoundException("Customer not found with id: " + id);
         }
+        // Deleting the customer deletes its deliveries and their histories by cascade
+        List<Long> deliveryIds = deliveryRepository.findByCustomerId(id).stream()
+                .map(Delivery::getId)
+                .toList();
+        deliveryStatsService.remove(deliveryHistoryRepository.findByCustomerId(id));
         customerDao.deleteById(id);
+        // The pending delivery index only learns of the deliveries gone with the customer this way
+        for (Long deliveryId : deliveryIds) {
+            eventPublisher.publishEvent(DeliveryChangeEvent.deleted(this, deliveryId));
+        }
     }
 
     @Override
@@ -109,4 +130,16 @@ public class CustomerServiceImpl implements CustomerService {
                 
         return new PageImpl<>(dtos, pageable, customers.getTotalElements());
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    @NonNull
+    public Page<CustomerDto> findNearby(double latitude, double longitude, double radiusKm, String name,
+                                        String address, @NonNull Pageable pageable) {
+        log.debug("Searching customers within {} km of ({}, {})", radiusKm, latitude, longitude);
+        Page<Customer> customers = geoProperties.isPostgis()
+                ? customerDao.findNearbyPostgis(latitude, longitude, radiusKm, name, address, pageable)
+                : customerDao.findNearby(latitude, longitude, radiusKm, name, address, pageable);
+        return customers.map(customerMapper::toDto);
+    }
 }
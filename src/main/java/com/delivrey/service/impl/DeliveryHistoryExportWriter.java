@@ -0,0 +1,109 @@
+package com.delivrey.service.impl;
+
+import com.delivrey.dto.DeliveryHistoryDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes exported histories one at a time to a buffered output stream, which it flushes but never closes.
+ */
+abstract class DeliveryHistoryExportWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    abstract void write(DeliveryHistoryDto history) throws IOException;
+
+    abstract void flush() throws IOException;
+
+    /**
+     * One JSON object per line.
+     */
+    static DeliveryHistoryExportWriter ndjson(OutputStream out, ObjectMapper objectMapper) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory()
+                .createGenerator(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE))
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+        // Flushing after every row would turn each of them into a write to the socket
+        ObjectWriter writer = objectMapper.writerFor(DeliveryHistoryDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return new DeliveryHistoryExportWriter() {
+            @Override
+            void write(DeliveryHistoryDto history) throws IOException {
+                writer.writeValue(generator, history);
+                generator.writeRaw('\n');
+            }
+
+            @Override
+            void flush() throws IOException {
+                generator.flush();
+            }
+        };
+    }
+
+    /**
+     * A header line, then one line per history with the fields of {@link DeliveryHistoryDto} in order.
+     */
+    static DeliveryHistoryExportWriter csv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write("id,customerId,deliveryId,tourId,deliveryDate,plannedTime,actualTime,delayMinutes,"
+                + "deliveryStatus,tourStatus,notes\n");
+        return new DeliveryHistoryExportWriter() {
+            @Override
+            void write(DeliveryHistoryDto history) throws IOException {
+                writer.write(value(history.getId()));
+                writer.write(',');
+                writer.write(value(history.getCustomerId()));
+                writer.write(',');
+                writer.write(value(history.getDeliveryId()));
+                writer.write(',');
+                writer.write(value(history.getTourId()));
+                writer.write(',');
+                writer.write(value(history.getDeliveryDate()));
+                writer.write(',');
+                writer.write(value(history.getPlannedTime()));
+                writer.write(',');
+                writer.write(value(history.getActualTime()));
+                writer.write(',');
+                writer.write(value(history.getDelayMinutes()));
+                writer.write(',');
+                writer.write(value(history.getDeliveryStatus()));
+                writer.write(',');
+                writer.write(value(history.getTourStatus()));
+                writer.write(',');
+                writer.write(quote(history.getNotes()));
+                writer.write('\n');
+            }
+
+            @Override
+            void flush() throws IOException {
+                writer.flush();
+            }
+        };
+    }
+
+    private static String value(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    /**
+     * Free text as a CSV field (RFC 4180): quoted, inner quotes doubled, when it holds a separator.
+     */
+    static String quote(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
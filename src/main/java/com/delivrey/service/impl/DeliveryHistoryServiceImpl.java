@@ -1,56 +1,130 @@
 package com.delivrey.service.impl;
 
+import com.delivrey.config.DeliveryHistoryProperties;
+import com.delivrey.dto.CursorPage;
 import com.delivrey.dto.DeliveryHistoryDto;
+import com.delivrey.dto.DeliveryStatsDto;
+import com.delivrey.entity.Customer;
+import com.delivrey.entity.CustomerDeliveryStats;
+import com.delivrey.entity.DayOfWeekDeliveryStats;
 import com.delivrey.entity.Delivery;
 import com.delivrey.entity.DeliveryHistory;
+import com.delivrey.entity.DeliveryStats;
 import com.delivrey.entity.Tour;
+import com.delivrey.entity.TourDeliveryStats;
 import com.delivrey.entity.TourStatus;
+import com.delivrey.exception.InvalidRequestParameterException;
 import com.delivrey.mapper.DeliveryHistoryMapper;
+import com.delivrey.optimizer.TimeWindow;
+import com.delivrey.repository.CustomerDeliveryStatsRepository;
+import com.delivrey.repository.DayOfWeekDeliveryStatsRepository;
 import com.delivrey.repository.DeliveryHistoryRepository;
+import com.delivrey.repository.TourDeliveryStatsRepository;
 import com.delivrey.service.DeliveryHistoryService;
+import com.delivrey.service.DeliveryStatsService;
+import com.delivrey.util.KeysetCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DeliveryHistoryServiceImpl implements DeliveryHistoryService {
 
+    /**
+     * Largest page of a seek-paginated listing.
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Position before every history: any of them has a later date, or the same one and a larger id.
+     */
+    private static final KeysetCursor FIRST_PAGE = new KeysetCursor(LocalDate.of(1, 1, 1), Long.MIN_VALUE);
+
+    /**
+     * Histories exported between two clears of the persistence context, as many as the fetch size of the export queries.
+     */
+    private static final int EXPORT_CLEAR_INTERVAL = 1000;
+
+    /**
+     * Ids per query of the batch statistics.
+     */
+    private static final int STATS_IDS_BATCH_SIZE = 1000;
+
     private final DeliveryHistoryRepository deliveryHistoryRepository;
     private final DeliveryHistoryMapper deliveryHistoryMapper;
+    private final DeliveryHistoryProperties deliveryHistoryProperties;
+    private final DeliveryStatsService deliveryStatsService;
+    private final CustomerDeliveryStatsRepository customerDeliveryStatsRepository;
+    private final TourDeliveryStatsRepository tourDeliveryStatsRepository;
+    private final DayOfWeekDeliveryStatsRepository dayOfWeekDeliveryStatsRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
 
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void createHistoryFromTour(Tour tour) {
-        if (tour.getTourStatus() == TourStatus.COMPLETED && tour.getDeliveries() != null) {
-            tour.getDeliveries().forEach(delivery -> {
-                DeliveryHistory history = new DeliveryHistory();
-                history.setCustomer(delivery.getCustomer());
-                history.setDelivery(delivery);
-                history.setTour(tour);
-                history.setDeliveryDate(tour.getTourDate());
-                history.setPlannedTime(extractPlannedTime(delivery));
-                history.setActualTime(LocalTime.now());
-                history.calculateDelay();
-
-                deliveryHistoryRepository.save(history);
-            });
+        if (tour.getTourStatus() != TourStatus.COMPLETED) {
+            return;
+        }
+        LocalTime actualTime = LocalTime.now();
+
+        if (deliveryHistoryProperties.isInsertSelect()) {
+            String dayOfWeek = tour.getTourDate() != null ? tour.getTourDate().getDayOfWeek().name() : null;
+            List<DeliveryHistory> inserted = deliveryHistoryRepository.insertHistoryForTour(
+                    tour.getId(), tour.getTourDate(), actualTime, dayOfWeek);
+            deliveryStatsService.add(inserted);
+            log.debug("{} historiques créés pour la tournée {}", inserted.size(), tour.getId());
+            return;
+        }
+
+        // One query for all the stops; deliveries, customers and the tour are only referenced by id
+        List<DeliveryHistoryRepository.TourStop> stops = deliveryHistoryRepository.findTourStops(tour.getId());
+        Tour tourReference = entityManager.getReference(Tour.class, tour.getId());
+        List<DeliveryHistory> histories = new ArrayList<>(stops.size());
+        for (DeliveryHistoryRepository.TourStop stop : stops) {
+            DeliveryHistory history = new DeliveryHistory()
+                    .setCustomer(entityManager.getReference(Customer.class, stop.getCustomerId()))
+                    .setDelivery(entityManager.getReference(Delivery.class, stop.getDeliveryId()))
+                    .setTour(tourReference)
+                    .setDeliveryDate(tour.getTourDate())
+                    .setPlannedTime(extractPlannedTime(stop))
+                    .setActualTime(actualTime);
+            history.calculateDelay();
+            histories.add(history);
         }
+
+        // Inserted in JDBC batches (hibernate.jdbc.batch_size) when the transaction flushes
+        deliveryHistoryRepository.saveAll(histories);
+        deliveryStatsService.add(histories);
+        log.debug("{} historiques créés pour la tournée {}", histories.size(), tour.getId());
     }
 
     @Override
@@ -117,23 +191,124 @@ public class DeliveryHistoryServiceImpl implements DeliveryHistoryService {
         return new PageImpl<>(dtos, pageable, histories.getTotalElements());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    @NonNull
+    public CursorPage<DeliveryHistoryDto> findAll(String cursor, int size, boolean withTotal) {
+        KeysetCursor after = after(cursor, FIRST_PAGE);
+        int pageSize = pageSize(size);
+        // One row more than the page tells whether there is a next one
+        List<DeliveryHistory> rows = deliveryHistoryRepository.findPageAfter(
+                after.date(), after.id(), PageRequest.of(0, pageSize + 1));
+        return toCursorPage(rows, pageSize, withTotal ? deliveryHistoryRepository.count() : null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @NonNull
+    public CursorPage<DeliveryHistoryDto> findByTourId(@NonNull Long tourId, String cursor, int size,
+                                                       boolean withTotal) {
+        KeysetCursor after = after(cursor, FIRST_PAGE);
+        int pageSize = pageSize(size);
+        List<DeliveryHistory> rows = deliveryHistoryRepository.findPageByTourIdAfter(
+                tourId, after.date(), after.id(), PageRequest.of(0, pageSize + 1));
+        return toCursorPage(rows, pageSize, withTotal ? deliveryHistoryRepository.countByTourId(tourId) : null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @NonNull
+    public CursorPage<DeliveryHistoryDto> findByDeliveryDateBetween(
+            @NonNull LocalDate startDate,
+            @NonNull LocalDate endDate,
+            String cursor, int size, boolean withTotal) {
+        KeysetCursor first = new KeysetCursor(startDate, Long.MIN_VALUE);
+        KeysetCursor after = after(cursor, first);
+        if (after.date().isBefore(startDate)) {
+            after = first;
+        }
+        int pageSize = pageSize(size);
+        List<DeliveryHistory> rows = deliveryHistoryRepository.findPageUntilDateAfter(
+                endDate, after.date(), after.id(), PageRequest.of(0, pageSize + 1));
+        return toCursorPage(rows, pageSize,
+                withTotal ? deliveryHistoryRepository.countByDeliveryDateBetween(startDate, endDate) : null);
+    }
+
+    private static KeysetCursor after(String cursor, KeysetCursor first) {
+        if (cursor == null || cursor.isBlank()) {
+            return first;
+        }
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        if (after.date() == null) {
+            throw new InvalidRequestParameterException("Invalid page token: " + cursor);
+        }
+        return after;
+    }
+
+    private static int pageSize(int size) {
+        if (size < 1) {
+            throw new InvalidRequestParameterException("Page size must be positive: " + size);
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    private CursorPage<DeliveryHistoryDto> toCursorPage(List<DeliveryHistory> rows, int pageSize, Long total) {
+        boolean hasNext = rows.size() > pageSize;
+        List<DeliveryHistory> page = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            DeliveryHistory last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getDeliveryDate(), last.getId()).encode();
+        }
+        return CursorPage.<DeliveryHistoryDto>builder()
+                .content(page.stream()
+                        .map(deliveryHistoryMapper::toDto)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()))
+                .size(pageSize)
+                .nextCursor(nextCursor)
+                .totalElements(total)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long export(@NonNull LocalDate startDate, @NonNull LocalDate endDate, Long tourId,
+                       @NonNull ExportFormat format, @NonNull OutputStream out) throws IOException {
+        DeliveryHistoryExportWriter writer = format == ExportFormat.CSV
+                ? DeliveryHistoryExportWriter.csv(out)
+                : DeliveryHistoryExportWriter.ndjson(out, objectMapper);
+        long count = 0;
+        try (Stream<DeliveryHistory> histories = tourId != null
+                ? deliveryHistoryRepository.streamByTourIdAndDeliveryDateBetween(tourId, startDate, endDate)
+                : deliveryHistoryRepository.streamByDeliveryDateBetween(startDate, endDate)) {
+            for (DeliveryHistory history : (Iterable<DeliveryHistory>) histories::iterator) {
+                writer.write(deliveryHistoryMapper.toDto(history));
+                if (++count % EXPORT_CLEAR_INTERVAL == 0) {
+                    // Les entités déjà écrites, leurs livraisons et tournées ne restent pas en mémoire
+                    entityManager.clear();
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+        log.debug("{} historiques exportés en {} entre {} et {}", count, format, startDate, endDate);
+        return count;
+    }
+
     @Override
     @Transactional(readOnly = true)
     @NonNull
     public Map<String, Object> getCustomerDeliveryStats(@NonNull Long customerId) {
         log.debug("Fetching delivery stats for customer id: {}", customerId);
-        Long totalDeliveries = deliveryHistoryRepository.countByCustomerId(customerId);
-        Long onTimeDeliveries = deliveryHistoryRepository.countByCustomerIdAndDelayMinutesLessThanEqual(customerId, 0);
-        Double averageDelay = deliveryHistoryRepository.findAverageDelayByCustomerId(customerId).orElse(0.0);
-
-        Objects.requireNonNull(totalDeliveries, "Total deliveries cannot be null");
-        Objects.requireNonNull(onTimeDeliveries, "On-time deliveries cannot be null");
-        Objects.requireNonNull(averageDelay, "Average delay cannot be null");
+        // One row kept up to date by DeliveryStatsService, none when the customer has no history yet
+        CustomerDeliveryStats totals = customerDeliveryStatsRepository.findById(customerId)
+                .orElseGet(() -> new CustomerDeliveryStats(customerId));
 
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalDeliveries", totalDeliveries);
-        stats.put("onTimeDeliveries", onTimeDeliveries);
-        stats.put("averageDelay", averageDelay);
+        stats.put("totalDeliveries", totals.getTotalDeliveries());
+        stats.put("onTimeDeliveries", totals.getOnTimeDeliveries());
+        stats.put("averageDelay", totals.getAverageDelay());
 
         return stats;
     }
@@ -143,36 +318,95 @@ public class DeliveryHistoryServiceImpl implements DeliveryHistoryService {
     @NonNull
     public Map<String, Object> getTourDeliveryStats(@NonNull Long tourId) {
         log.debug("Fetching delivery stats for tour id: {}", tourId);
-        Long totalDeliveries = deliveryHistoryRepository.countByTourId(tourId);
-        Long onTimeDeliveries = deliveryHistoryRepository.countByTourIdAndDelayMinutesLessThanEqual(tourId, 0);
-        Double averageDelay = deliveryHistoryRepository.findAverageDelayByTourId(tourId).orElse(0.0);
-        Long totalDelay = deliveryHistoryRepository.findTotalDelayByTourId(tourId).orElse(0L);
-
-        Objects.requireNonNull(totalDeliveries, "Total deliveries cannot be null");
-        Objects.requireNonNull(onTimeDeliveries, "On-time deliveries cannot be null");
-        Objects.requireNonNull(averageDelay, "Average delay cannot be null");
-        Objects.requireNonNull(totalDelay, "Total delay cannot be null");
+        TourDeliveryStats totals = tourDeliveryStatsRepository.findById(tourId)
+                .orElseGet(() -> new TourDeliveryStats(tourId));
 
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalDeliveries", totalDeliveries);
-        stats.put("onTimeDeliveries", onTimeDeliveries);
-        stats.put("averageDelay", averageDelay);
-        stats.put("totalDelay", totalDelay);
+        stats.put("totalDeliveries", totals.getTotalDeliveries());
+        stats.put("onTimeDeliveries", totals.getOnTimeDeliveries());
+        stats.put("averageDelay", totals.getAverageDelay());
+        stats.put("totalDelay", totals.getTotalDelay());
 
         return stats;
     }
 
-    private LocalTime extractPlannedTime(Delivery delivery) {
-        try {
-            if (delivery.getCustomer() != null && delivery.getCustomer().getPreferredTimeSlot() != null) {
-                String[] timeParts = delivery.getCustomer().getPreferredTimeSlot().split("-");
-                if (timeParts.length > 0) {
-                    return LocalTime.parse(timeParts[0].trim());
-                }
+    @Override
+    @Transactional(readOnly = true)
+    @NonNull
+    public List<DeliveryStatsDto> getCustomerDeliveryStats(@NonNull Collection<Long> customerIds) {
+        return statsOf(customerIds, customerDeliveryStatsRepository::findAllById, CustomerDeliveryStats::getCustomerId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @NonNull
+    public List<DeliveryStatsDto> getTourDeliveryStats(@NonNull Collection<Long> tourIds) {
+        return statsOf(tourIds, tourDeliveryStatsRepository::findAllById, TourDeliveryStats::getTourId);
+    }
+
+    /**
+     * Rollup rows of {@code ids}, read with one IN query per batch of ids, as statistics in the order of the ids.
+     */
+    private static <S extends DeliveryStats> List<DeliveryStatsDto> statsOf(
+            Collection<Long> ids, Function<List<Long>, List<S>> findAllById, Function<S, Long> idOf) {
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        Map<Long, S> rows = new HashMap<>();
+        for (int from = 0; from < distinctIds.size(); from += STATS_IDS_BATCH_SIZE) {
+            List<Long> batch = distinctIds.subList(from, Math.min(from + STATS_IDS_BATCH_SIZE, distinctIds.size()));
+            for (S row : findAllById.apply(batch)) {
+                rows.put(idOf.apply(row), row);
             }
-        } catch (Exception e) {
-            log.warn("Erreur lors de l'extraction de l'heure planifiée pour la livraison: {}", delivery.getId(), e);
         }
-        return LocalTime.NOON; // Heure par défaut si non spécifiée
+        List<DeliveryStatsDto> stats = new ArrayList<>(distinctIds.size());
+        for (Long id : distinctIds) {
+            S row = rows.get(id);
+            stats.add(DeliveryStatsDto.builder()
+                    .id(id)
+                    .totalDeliveries(row != null ? row.getTotalDeliveries() : 0)
+                    .onTimeDeliveries(row != null ? row.getOnTimeDeliveries() : 0)
+                    .averageDelay(row != null ? row.getAverageDelay() : 0.0)
+                    .totalDelay(row != null ? row.getTotalDelay() : 0)
+                    .build());
+        }
+        return stats;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @NonNull
+    public Map<DayOfWeek, Double> getAverageDelayByDayOfWeek() {
+        Map<DayOfWeek, Double> averages = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeekDeliveryStats day : dayOfWeekDeliveryStatsRepository.findAll()) {
+            if (day.getLateDeliveries() > 0) {
+                averages.put(day.getDayOfWeek(), day.getAverageLateDelay());
+            }
+        }
+        return averages;
+    }
+
+    @Override
+    public long rebuildStats() {
+        return deliveryStatsService.rebuild();
+    }
+
+    private LocalTime extractPlannedTime(DeliveryHistoryRepository.TourStop stop) {
+        LocalTime plannedTime = startOf(stop.getPreferredTimeSlot(), stop.getDeliveryId());
+        if (plannedTime == null) {
+            plannedTime = startOf(stop.getTimeWindow(), stop.getDeliveryId());
+        }
+        return plannedTime != null ? plannedTime : LocalTime.NOON; // Heure par défaut si non spécifiée
+    }
+
+    // Début d'un créneau au format "09:00-11:00", lu comme par le TimeWindowOptimizer
+    private LocalTime startOf(String slot, Long deliveryId) {
+        if (slot == null) {
+            return null;
+        }
+        int window = TimeWindow.parse(slot);
+        if (window == TimeWindow.NONE) {
+            log.warn("Créneau horaire illisible pour la livraison {} : '{}'", deliveryId, slot);
+            return null;
+        }
+        return TimeWindow.openTime(window);
     }
 }
@@ -0,0 +1,173 @@
+package com.delivrey.service.impl;
+
+import com.delivrey.entity.CustomerDeliveryStats;
+import com.delivrey.entity.DayOfWeekDeliveryStats;
+import com.delivrey.entity.DeliveryHistory;
+import com.delivrey.entity.DeliveryStats;
+import com.delivrey.entity.TourDeliveryStats;
+import com.delivrey.repository.CustomerDeliveryStatsRepository;
+import com.delivrey.repository.DayOfWeekDeliveryStatsRepository;
+import com.delivrey.repository.DeliveryHistoryRepository;
+import com.delivrey.repository.TourDeliveryStatsRepository;
+import com.delivrey.service.DeliveryStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Totals are updated with in-place increments, row by row in a fixed order (customers by id, the
+ * tours by id, then the days) so that concurrent tours never wait on each other in a cycle. The
+ * day rows are shared by all tours: a tour's transaction holds them until it commits.
+ */
+@Slf4j
+@Service
+public class DeliveryStatsServiceImpl implements DeliveryStatsService {
+
+    private final CustomerDeliveryStatsRepository customerDeliveryStatsRepository;
+    private final TourDeliveryStatsRepository tourDeliveryStatsRepository;
+    private final DayOfWeekDeliveryStatsRepository dayOfWeekDeliveryStatsRepository;
+    private final DeliveryHistoryRepository deliveryHistoryRepository;
+    private final TransactionTemplate newTransaction;
+
+    public DeliveryStatsServiceImpl(CustomerDeliveryStatsRepository customerDeliveryStatsRepository,
+                                    TourDeliveryStatsRepository tourDeliveryStatsRepository,
+                                    DayOfWeekDeliveryStatsRepository dayOfWeekDeliveryStatsRepository,
+                                    DeliveryHistoryRepository deliveryHistoryRepository,
+                                    PlatformTransactionManager transactionManager) {
+        this.customerDeliveryStatsRepository = customerDeliveryStatsRepository;
+        this.tourDeliveryStatsRepository = tourDeliveryStatsRepository;
+        this.dayOfWeekDeliveryStatsRepository = dayOfWeekDeliveryStatsRepository;
+        this.deliveryHistoryRepository = deliveryHistoryRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void add(Collection<DeliveryHistory> histories) {
+        apply(histories, DeliveryStats::add, true);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void remove(Collection<DeliveryHistory> histories) {
+        apply(histories, DeliveryStats::remove, false);
+    }
+
+    /**
+     * Sums {@code count} over the histories per customer, tour and day, then adds each sum to its
+     * row. {@code createMissing} creates the rows that do not exist yet; without it, sums whose
+     * row is missing (totals never backfilled) are dropped.
+     */
+    private void apply(Collection<DeliveryHistory> histories, BiConsumer<DeliveryStats, Integer> count,
+                       boolean createMissing) {
+        if (histories.isEmpty()) {
+            return;
+        }
+        Map<Long, CustomerDeliveryStats> customers = new TreeMap<>();
+        Map<Long, TourDeliveryStats> tours = new TreeMap<>();
+        Map<DayOfWeek, DayOfWeekDeliveryStats> days = new EnumMap<>(DayOfWeek.class);
+        for (DeliveryHistory history : histories) {
+            Integer delay = history.getDelayMinutes();
+            // getId() on the references of createHistoryFromTour does not load them
+            count.accept(customers.computeIfAbsent(history.getCustomer().getId(), CustomerDeliveryStats::new), delay);
+            count.accept(tours.computeIfAbsent(history.getTour().getId(), TourDeliveryStats::new), delay);
+            if (history.getDeliveryDate() != null) {
+                count.accept(days.computeIfAbsent(history.getDeliveryDate().getDayOfWeek(),
+                        DayOfWeekDeliveryStats::new), delay);
+            }
+        }
+
+        for (CustomerDeliveryStats delta : customers.values()) {
+            increment(delta, customerDeliveryStatsRepository::increment, customerDeliveryStatsRepository,
+                    createMissing ? new CustomerDeliveryStats(delta.getCustomerId()) : null);
+        }
+        for (TourDeliveryStats delta : tours.values()) {
+            increment(delta, tourDeliveryStatsRepository::increment, tourDeliveryStatsRepository,
+                    createMissing ? new TourDeliveryStats(delta.getTourId()) : null);
+        }
+        for (DayOfWeekDeliveryStats delta : days.values()) {
+            increment(delta, dayOfWeekDeliveryStatsRepository::increment, dayOfWeekDeliveryStatsRepository,
+                    createMissing ? new DayOfWeekDeliveryStats(delta.getDayOfWeek()) : null);
+        }
+    }
+
+    /**
+     * Adds {@code delta} to its row, creating the row first from {@code emptyRow} when there is
+     * none yet, or leaving it missing when {@code emptyRow} is null.
+     */
+    private <S extends DeliveryStats> void increment(S delta, ToIntFunction<S> update,
+                                                     JpaRepository<S, ?> repository, S emptyRow) {
+        if (update.applyAsInt(delta) > 0) {
+            return;
+        }
+        if (emptyRow == null) {
+            log.debug("Pas de ligne de statistiques à décrémenter : {}", delta.getClass().getSimpleName());
+            return;
+        }
+        // Created and committed on its own, so that a concurrent tour creating the same row
+        // makes this insert fail rather than the whole history of the tour
+        try {
+            newTransaction.executeWithoutResult(status -> repository.saveAndFlush(emptyRow));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Ligne de statistiques créée entre-temps par une autre transaction", e);
+        }
+        if (update.applyAsInt(delta) == 0) {
+            throw new IllegalStateException("Statistics row missing after creation: " + delta.getClass().getSimpleName());
+        }
+    }
+
+    @Override
+    @Transactional
+    public long rebuild() {
+        customerDeliveryStatsRepository.deleteAllInBatch();
+        tourDeliveryStatsRepository.deleteAllInBatch();
+        dayOfWeekDeliveryStatsRepository.deleteAllInBatch();
+
+        int customers = customerDeliveryStatsRepository.insertFromHistory();
+        int tours = tourDeliveryStatsRepository.insertFromHistory();
+
+        Map<DayOfWeek, DayOfWeekDeliveryStats> days = new EnumMap<>(DayOfWeek.class);
+        long histories = 0;
+        for (Object[] row : dayOfWeekDeliveryStatsRepository.sumHistoryByDeliveryDate()) {
+            LocalDate date = (LocalDate) row[0];
+            if (date == null) {
+                continue;
+            }
+            DayOfWeekDeliveryStats day = days.computeIfAbsent(date.getDayOfWeek(), DayOfWeekDeliveryStats::new);
+            day.add(count(row[1]), count(row[2]), count(row[3]), count(row[4]), count(row[5]), count(row[6]));
+            histories += count(row[1]);
+        }
+        dayOfWeekDeliveryStatsRepository.saveAll(days.values());
+
+        log.info("Statistiques de livraison recalculées : {} historiques, {} clients, {} tournées",
+                histories, customers, tours);
+        return histories;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean needsBackfill() {
+        return customerDeliveryStatsRepository.count() == 0 && deliveryHistoryRepository.existsByIdNotNull();
+    }
+
+    // SUM and COUNT come back as Long or as BigDecimal/BigInteger depending on the database
+    private static long count(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+}
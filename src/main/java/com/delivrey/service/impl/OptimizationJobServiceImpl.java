@@ -0,0 +1,300 @@
+package com.delivrey.service.impl;
+
+import com.delivrey.dto.DeliveryDTO;
+import com.delivrey.dto.OptimizationJobDTO;
+import com.delivrey.dto.OptimizationJobDTO.Status;
+import com.delivrey.dto.OptimizationProgressDTO;
+import com.delivrey.entity.Delivery;
+import com.delivrey.exception.EntityNotFoundException;
+import com.delivrey.exception.OptimizationBusyException;
+import com.delivrey.mapper.DeliveryMapper;
+import com.delivrey.optimizer.SearchMonitor;
+import com.delivrey.optimizer.TourSnapshot;
+import com.delivrey.repository.TourRepository;
+import com.delivrey.service.OptimizationJobListener;
+import com.delivrey.service.OptimizationJobService;
+import com.delivrey.service.TourService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class OptimizationJobServiceImpl implements OptimizationJobService {
+
+    /**
+     * How long finished jobs stay available for polling.
+     */
+    private static final Duration RETENTION = Duration.ofHours(1);
+
+    /**
+     * Shortest time between two progress reports to a listener.
+     */
+    private static final Duration PROGRESS_INTERVAL = Duration.ofMillis(100);
+
+    private final TourService tourService;
+    private final TourRepository tourRepository;
+    private final AsyncTaskExecutor optimizationExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public OptimizationJobServiceImpl(TourService tourService, TourRepository tourRepository,
+                                      @Qualifier("optimizationExecutor") AsyncTaskExecutor optimizationExecutor,
+                                      PlatformTransactionManager transactionManager) {
+        this.tourService = tourService;
+        this.tourRepository = tourRepository;
+        this.optimizationExecutor = optimizationExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public OptimizationJobDTO submit(Long tourId, String algorithm) {
+        return submit(tourId, algorithm, null);
+    }
+
+    @Override
+    public OptimizationJobDTO submit(Long tourId, String algorithm, OptimizationJobListener listener) {
+        if (!tourRepository.existsById(tourId)) {
+            throw new EntityNotFoundException("Tour not found with id: " + tourId);
+        }
+        evictExpiredJobs();
+
+        Job job = new Job(UUID.randomUUID().toString(), tourId, algorithm, listener);
+        jobs.put(job.id, job);
+        try {
+            job.future = optimizationExecutor.submit(() -> run(job));
+        } catch (TaskRejectedException e) {
+            // Executor saturated: the job never existed for the caller
+            jobs.remove(job.id);
+            throw new OptimizationBusyException("Too many optimizations in progress, retry later", e);
+        }
+        log.info("Submitted optimization job {} for tour {} with algorithm {}", job.id, tourId, algorithm);
+        return job.toDto();
+    }
+
+    @Override
+    public OptimizationJobDTO getJob(String jobId) {
+        return findJob(jobId).toDto();
+    }
+
+    @Override
+    public OptimizationJobDTO cancel(String jobId) {
+        Job job = findJob(jobId);
+        if (job.cancel()) {
+            if (job.future != null) {
+                // Only removes a job that has not started; a running job stops through its monitor
+                job.future.cancel(false);
+            }
+            // A running job reports its end once its search has stopped
+            job.notifyIfFinished();
+        }
+        return job.toDto();
+    }
+
+    private void run(Job job) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            // No connection is held during the search: only the reads before and after it are transactional
+            TourSnapshot snapshot = tourService.getTourSnapshot(job.tourId);
+            job.follow(snapshot.getStops());
+            List<Delivery> stops = tourService.optimize(snapshot, job.algorithm, job);
+            List<DeliveryDTO> route = readOnlyTransaction.execute(status -> tourService.getDeliveries(stops).stream()
+                    .map(DeliveryMapper.INSTANCE::toDto)
+                    .collect(Collectors.toList()));
+            job.complete(route);
+        } catch (RuntimeException e) {
+            log.error("Optimization job {} failed", job.id, e);
+            job.fail(e);
+        }
+        job.notifyIfFinished();
+    }
+
+    private Job findJob(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new EntityNotFoundException("Optimization job not found with id: " + jobId);
+        }
+        return job;
+    }
+
+    private void evictExpiredJobs() {
+        LocalDateTime expiry = LocalDateTime.now().minus(RETENTION);
+        jobs.values().removeIf(job -> job.isExpired(expiry));
+    }
+
+    /**
+     * A job is the monitor of its own search: it records each improvement and asks the search to stop once cancelled.
+     */
+    private static final class Job implements SearchMonitor {
+
+        private final String id;
+        private final Long tourId;
+        private final String algorithm;
+        private final OptimizationJobListener listener;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+
+        private volatile Status status = Status.QUEUED;
+        private volatile boolean cancelRequested;
+        private volatile Double bestCost;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+        private volatile List<DeliveryDTO> result;
+        private volatile Future<?> future;
+
+        // Progress reporting, only used when there is a listener. Has its own lock, only held while
+        // a report is built: listeners are called after it is released
+        private final Object progressLock = new Object();
+        private List<Long> stopIds;
+        private long startNanos;
+        private long lastProgressNanos;
+        private int iteration;
+        private boolean notified;
+
+        private Job(String id, Long tourId, String algorithm, OptimizationJobListener listener) {
+            this.id = id;
+            this.tourId = tourId;
+            this.algorithm = algorithm;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean shouldStop() {
+            return cancelRequested || Thread.currentThread().isInterrupted();
+        }
+
+        @Override
+        public void onImprovement(double cost) {
+            bestCost = cost;
+        }
+
+        @Override
+        public void onImprovement(double cost, int[] route) {
+            bestCost = cost;
+            OptimizationProgressDTO progress;
+            synchronized (progressLock) {
+                iteration++;
+                if (listener == null || stopIds == null) {
+                    return;
+                }
+                long now = System.nanoTime();
+                if (iteration > 1 && now - lastProgressNanos < PROGRESS_INTERVAL.toNanos()) {
+                    return;
+                }
+                lastProgressNanos = now;
+                List<Long> deliveryIds = new ArrayList<>(route.length);
+                for (int stop : route) {
+                    deliveryIds.add(stopIds.get(stop));
+                }
+                progress = OptimizationProgressDTO.builder()
+                        .jobId(id)
+                        .iteration(iteration)
+                        .cost(cost)
+                        .elapsedMillis((now - startNanos) / 1_000_000)
+                        .deliveryIds(deliveryIds)
+                        .build();
+            }
+            // Outside the lock: the listener may write to a client, other searches of the job go on meanwhile
+            listener.onProgress(progress);
+        }
+
+        /**
+         * Stops the routes of the search are indexes in.
+         */
+        void follow(List<Delivery> stops) {
+            synchronized (progressLock) {
+                if (listener != null) {
+                    startNanos = System.nanoTime();
+                    stopIds = stops.stream().map(Delivery::getId).collect(Collectors.toList());
+                }
+            }
+        }
+
+        synchronized boolean start() {
+            if (status != Status.QUEUED) {
+                return false;
+            }
+            status = Status.RUNNING;
+            startedAt = LocalDateTime.now();
+            return true;
+        }
+
+        synchronized boolean cancel() {
+            if (status != Status.QUEUED && status != Status.RUNNING) {
+                return false;
+            }
+            cancelRequested = true;
+            if (status == Status.QUEUED) {
+                finish(Status.CANCELLED);
+            }
+            return true;
+        }
+
+        synchronized void complete(List<DeliveryDTO> route) {
+            result = route;
+            finish(cancelRequested ? Status.CANCELLED : Status.COMPLETED);
+        }
+
+        synchronized void fail(RuntimeException e) {
+            error = e.getMessage();
+            finish(cancelRequested ? Status.CANCELLED : Status.FAILED);
+        }
+
+        private void finish(Status finalStatus) {
+            status = finalStatus;
+            finishedAt = LocalDateTime.now();
+        }
+
+        /**
+         * Tells the listener, once, that the job is over. Called outside the other locks since listeners may block.
+         */
+        void notifyIfFinished() {
+            OptimizationJobDTO finished;
+            synchronized (this) {
+                if (listener == null || notified || finishedAt == null) {
+                    return;
+                }
+                notified = true;
+                finished = toDto();
+            }
+            listener.onFinished(finished);
+        }
+
+        boolean isExpired(LocalDateTime expiry) {
+            LocalDateTime finished = finishedAt;
+            return finished != null && finished.isBefore(expiry);
+        }
+
+        synchronized OptimizationJobDTO toDto() {
+            return OptimizationJobDTO.builder()
+                    .id(id)
+                    .tourId(tourId)
+                    .algorithm(algorithm)
+                    .status(status)
+                    .bestCost(bestCost)
+                    .submittedAt(submittedAt)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .error(error)
+                    .result(result)
+                    .build();
+        }
+    }
+}
@@ -1,50 +1,123 @@
 package com.delivrey.service.impl;
 
+import com.delivrey.dto.CursorPage;
 import com.delivrey.dto.TourDTO;
+import com.delivrey.dto.TourPlanDTO;
+import com.delivrey.config.FleetPlanningProperties;
+import com.delivrey.config.LocalSearchProperties;
+import com.delivrey.config.MultiStartProperties;
 import com.delivrey.entity.Delivery;
+import com.delivrey.entity.DeliveryStatus;
 import com.delivrey.entity.Tour;
 import com.delivrey.entity.TourStatus;
+import com.delivrey.entity.Vehicle;
+import com.delivrey.entity.Warehouse;
+import com.delivrey.event.DeliveryChangeEvent;
 import com.delivrey.event.TourStatusChangeEvent;
 import com.delivrey.exception.EntityNotFoundException;
+import com.delivrey.exception.InvalidRequestParameterException;
+import com.delivrey.exception.OptimizationException;
+import com.delivrey.mapper.DeliveryMapper;
 import com.delivrey.mapper.TourMapper;
+import com.delivrey.optimizer.ClarkeWrightOptimizer;
+import com.delivrey.optimizer.DistanceMatrix;
+import com.delivrey.optimizer.FleetPlanner;
+import com.delivrey.optimizer.LocalSearchOptimizer;
+import com.delivrey.optimizer.MultiStartOptimizer;
+import com.delivrey.optimizer.OrOptImprover;
+import com.delivrey.optimizer.SearchMonitor;
+import com.delivrey.optimizer.TimeWindowOptimizer;
+import com.delivrey.optimizer.TourImprover;
 import com.delivrey.optimizer.TourOptimizer;
+import com.delivrey.optimizer.TourSnapshot;
+import com.delivrey.optimizer.TwoOptImprover;
+import com.delivrey.optimizer.model.OptimizedPlan;
+import com.delivrey.repository.DeliveryRepository;
 import com.delivrey.repository.TourRepository;
+import com.delivrey.repository.VehicleRepository;
+import com.delivrey.repository.WarehouseRepository;
+import com.delivrey.repository.projection.TourSummary;
+import com.delivrey.service.OptimizationResultCache;
 import com.delivrey.service.TourService;
+import com.delivrey.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class TourServiceImpl implements TourService {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    /**
+     * Most tour ids per query when reading the delivery ids of a listing, well under the bind parameter limits.
+     */
+    private static final int DELIVERY_IDS_BATCH_SIZE = 1000;
+
+    /**
+     * Largest page of {@link #getTours}.
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
     
+    /**
+     * Recorded as the algorithm of the tours created by {@link #planTours}.
+     */
+    private static final String FLEET_ALGORITHM = "CVRP";
+
     private final TourRepository tourRepository;
+    private final DeliveryRepository deliveryRepository;
+    private final VehicleRepository vehicleRepository;
+    private final WarehouseRepository warehouseRepository;
     private final TourMapper tourMapper;
+    private final DeliveryMapper deliveryMapper;
     private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
     
     @Qualifier("nearestNeighbor")
     private final TourOptimizer nearestNeighborOptimizer;
 
     @Qualifier("clarkeWright")
-    private final TourOptimizer clarkeWrightOptimizer;
+    private final ClarkeWrightOptimizer clarkeWrightOptimizer;
 
     @Qualifier("aiOptimizer")
     private final TourOptimizer aiOptimizer;
 
+    @Qualifier("timeWindow")
+    private final TimeWindowOptimizer timeWindowOptimizer;
+
+    private final LocalSearchProperties localSearchProperties;
+
+    private final FleetPlanningProperties fleetPlanningProperties;
+
+    private final MultiStartProperties multiStartProperties;
+
+    private final OptimizationResultCache optimizationResultCache;
+
     @Override
     @Transactional(readOnly = true)
     public TourDTO getTourById(Long id) {
@@ -56,16 +129,35 @@ public class TourServiceImpl implements TourService {
     @Override
     @Transactional(readOnly = true)
     public List<TourDTO> getAllTours() {
-        return tourRepository.findAllWithDeliveries().stream()
-                .map(tourMapper::toDto)
-                .collect(Collectors.toList());
+        List<TourSummary> tours = tourRepository.findAllSummaries();
+        // Every tour is listed, so the whole join table is read once rather than by batches of ids
+        return toDtos(tours, groupByTour(tourRepository.findAllDeliveryIds()));
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<TourDTO> getAllTours(Pageable pageable) {
-        return tourRepository.findAll(pageable)
-                .map(tourMapper::toDto);
+        return toDtos(tourRepository.findAllSummaries(pageable));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<TourDTO> getTours(String cursor, int size, boolean withTotal) {
+        if (size < 1) {
+            throw new InvalidRequestParameterException("Page size must be positive: " + size);
+        }
+        int pageSize = Math.min(size, MAX_PAGE_SIZE);
+        long afterId = cursor == null || cursor.isBlank() ? Long.MIN_VALUE : KeysetCursor.decode(cursor).id();
+        // One row more than the page tells whether there is a next one
+        List<TourSummary> rows = tourRepository.findSummariesAfter(afterId, PageRequest.of(0, pageSize + 1));
+        boolean hasNext = rows.size() > pageSize;
+        List<TourSummary> page = hasNext ? rows.subList(0, pageSize) : rows;
+        return CursorPage.<TourDTO>builder()
+                .content(toDtos(page))
+                .size(pageSize)
+                .nextCursor(hasNext ? new KeysetCursor(null, page.get(page.size() - 1).id()).encode() : null)
+                .totalElements(withTotal ? tourRepository.count() : null)
+                .build();
     }
 
     @Override
@@ -83,6 +175,7 @@ public class TourServiceImpl implements TourService {
                 .map(existingTour -> {
                     tourMapper.updateTourFromDto(tourDTO, existingTour);
                     Tour updatedTour = tourRepository.save(existingTour);
+                    optimizationResultCache.invalidateTour(id);
                     return tourMapper.toDto(updatedTour);
                 })
                 .orElseThrow(() -> new EntityNotFoundException("Tour not found with id: " + id));
@@ -95,6 +188,7 @@ public class TourServiceImpl implements TourService {
             throw new EntityNotFoundException("Tour not found with id: " + id);
         }
         tourRepository.deleteById(id);
+        optimizationResultCache.invalidateTour(id);
     }
 
     @Override
@@ -126,32 +220,25 @@ public class TourServiceImpl implements TourService {
     @Override
     @Transactional(readOnly = true)
     public List<TourDTO> findByStatus(TourStatus status) {
-        return tourRepository.findByTourStatus(status).stream()
-                .map(tourMapper::toDto)
-                .collect(Collectors.toList());
+        return toDtos(tourRepository.findSummariesByStatus(status));
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<TourDTO> findByStatus(TourStatus status, Pageable pageable) {
-        return tourRepository.findByTourStatus(status, pageable)
-                .map(tourMapper::toDto);
+        return toDtos(tourRepository.findSummariesByStatus(status, pageable));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<TourDTO> findByVehicleId(Long vehicleId) {
-        return tourRepository.findByVehicleId(vehicleId).stream()
-                .map(tourMapper::toDto)
-                .collect(Collectors.toList());
+        return toDtos(tourRepository.findSummariesByVehicleId(vehicleId));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<TourDTO> findByWarehouseId(Long warehouseId) {
-        return tourRepository.findByWarehouseId(warehouseId).stream()
-                .map(tourMapper::toDto)
-                .collect(Collectors.toList());
+        return toDtos(tourRepository.findSummariesByWarehouseId(warehouseId));
     }
 
     @Override
@@ -161,79 +248,419 @@ public class TourServiceImpl implements TourService {
             LocalDate startDate = LocalDate.parse(startDateStr, DATE_FORMATTER);
             LocalDate endDate = LocalDate.parse(endDateStr, DATE_FORMATTER);
 
-            return tourRepository.findByTourDateBetween(startDate, endDate).stream()
-                    .map(tourMapper::toDto)
-                    .collect(Collectors.toList());
+            return toDtos(tourRepository.findSummariesByTourDateBetween(startDate, endDate));
         } catch (DateTimeParseException e) {
             throw new IllegalArgumentException("Invalid date format. Please use ISO format (yyyy-MM-dd)", e);
         }
     }
 
+    private Page<TourDTO> toDtos(Page<TourSummary> tours) {
+        Map<Long, List<Long>> deliveryIds = deliveryIdsOf(tours.getContent());
+        return tours.map(tour -> tourMapper.toDto(tour, deliveryIds.getOrDefault(tour.id(), new ArrayList<>())));
+    }
+
+    private List<TourDTO> toDtos(List<TourSummary> tours) {
+        return toDtos(tours, deliveryIdsOf(tours));
+    }
+
+    private List<TourDTO> toDtos(List<TourSummary> tours, Map<Long, List<Long>> deliveryIds) {
+        return tours.stream()
+                .map(tour -> tourMapper.toDto(tour, deliveryIds.getOrDefault(tour.id(), new ArrayList<>())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Delivery ids of each of {@code tours}, read from the join table by batches of tour ids.
+     */
+    private Map<Long, List<Long>> deliveryIdsOf(List<TourSummary> tours) {
+        Map<Long, List<Long>> deliveryIds = new HashMap<>();
+        List<Long> tourIds = tours.stream().map(TourSummary::id).toList();
+        for (int from = 0; from < tourIds.size(); from += DELIVERY_IDS_BATCH_SIZE) {
+            List<Long> batch = tourIds.subList(from, Math.min(from + DELIVERY_IDS_BATCH_SIZE, tourIds.size()));
+            deliveryIds.putAll(groupByTour(tourRepository.findDeliveryIds(batch)));
+        }
+        return deliveryIds;
+    }
+
+    /**
+     * (tour id, delivery id) rows as the delivery ids of each tour.
+     */
+    private static Map<Long, List<Long>> groupByTour(List<Object[]> rows) {
+        Map<Long, List<Long>> deliveryIds = new HashMap<>();
+        for (Object[] row : rows) {
+            // Native columns come back as whatever integer type the driver picks
+            Long tourId = ((Number) row[0]).longValue();
+            deliveryIds.computeIfAbsent(tourId, id -> new ArrayList<>()).add(((Number) row[1]).longValue());
+        }
+        return deliveryIds;
+    }
+
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<Delivery> getOptimizedTour(Long tourId, String algorithm) {
-        Tour tour = tourRepository.findByIdWithDeliveriesAndWarehouse(tourId)
+        TourSnapshot snapshot = readOnly(status -> loadSnapshot(tourId));
+        List<Delivery> route = optimizeCached(snapshot, algorithm).stops();
+        return readOnly(status -> deliveriesOf(route));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Delivery> getOptimizedTour(Long tourId, String algorithm, SearchMonitor monitor) {
+        TourSnapshot snapshot = readOnly(status -> loadSnapshot(tourId));
+        List<Delivery> route = optimize(snapshot, algorithm, monitor);
+        return readOnly(status -> deliveriesOf(route));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TourSnapshot getTourSnapshot(Long tourId) {
+        return loadSnapshot(tourId);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Delivery> optimize(TourSnapshot snapshot, String algorithm, SearchMonitor monitor) {
+        List<Delivery> stops = snapshot.getStops();
+        DistanceMatrix distances = DistanceMatrix.of(stops);
+
+        List<Delivery> optimizedRoute = selectOptimizer(algorithm).calculateOptimalTour(stops, distances, monitor);
+        int[] route = DistanceMatrix.indexesOf(stops, optimizedRoute);
+        monitor.onImprovement(distances.routeLength(route), route);
+        return optimizedRoute;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Delivery> getDeliveries(List<Delivery> route) {
+        return deliveriesOf(route);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Delivery> getMultiStartTour(Long tourId, Integer starts, Integer parallelism, Long seed,
+                                            Duration timeLimit) {
+        List<Delivery> stops = readOnly(status -> loadSnapshot(tourId)).getStops();
+        List<Delivery> route = multiStartOptimizer(starts, parallelism, seed, timeLimit)
+                .calculateOptimalTour(stops, DistanceMatrix.of(stops));
+        return readOnly(status -> deliveriesOf(route));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public double getTotalDistance(Long tourId, String algorithm) {
+        // Same route as getOptimizedTour, so asking for both optimizes once; no delivery entity is loaded
+        return optimizeCached(readOnly(status -> loadSnapshot(tourId)), algorithm).distanceKm();
+    }
+
+    /**
+     * Optimized route of a tour and its length, from the cache while the tour is unchanged.
+     */
+    private OptimizationResultCache.Route optimizeCached(TourSnapshot snapshot, String algorithm) {
+        List<Delivery> stops = snapshot.getStops();
+        TourOptimizer optimizer = selectOptimizer(algorithm);
+        OptimizationResultCache.Key key = OptimizationResultCache.key(algorithm, snapshot.getWarehouseId(), stops,
+                optimizer == timeWindowOptimizer);
+        OptimizationResultCache.Route cached = optimizationResultCache.get(key, stops);
+        if (cached != null) {
+            return cached;
+        }
+
+        DistanceMatrix distances = DistanceMatrix.of(stops);
+        List<Delivery> optimizedRoute = optimizer.calculateOptimalTour(stops, distances);
+        // Optimizers return the same instances they were given, so matrix indexes are found by identity
+        double length = distances.routeLength(DistanceMatrix.indexesOf(stops, optimizedRoute));
+        optimizationResultCache.put(key, snapshot.getTourId(), optimizedRoute, length);
+        return new OptimizationResultCache.Route(optimizedRoute, length);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<List<Delivery>> getOptimizedRoutes(Long tourId) {
+        TourSnapshot snapshot = readOnly(status -> loadSnapshot(tourId));
+        if (!snapshot.hasDepot()) {
+            throw new OptimizationException("Tour " + tourId + " has no warehouse to start its routes from");
+        }
+        List<Delivery> stops = snapshot.getStops();
+
+        // The warehouse is stop 0, the depot every route leaves from
+        List<List<Delivery>> routes = clarkeWrightOptimizer.calculateRoutes(stops, DistanceMatrix.of(stops),
+                snapshot.getVehicle());
+        return readOnly(status -> routesOf(routes));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public OptimizedPlan getSchedule(Long tourId) {
+        TourSnapshot snapshot = readOnly(status -> loadSnapshot(tourId));
+        if (!snapshot.hasDepot()) {
+            throw new OptimizationException("Tour " + tourId + " has no warehouse to start its schedule from");
+        }
+        List<Delivery> stops = snapshot.getStops();
+        LocalDate date = snapshot.getTourDate() != null ? snapshot.getTourDate() : LocalDate.now();
+        return timeWindowOptimizer.plan(stops, DistanceMatrix.of(stops), date, SearchMonitor.NONE);
+    }
+
+    /**
+     * The search runs outside of any transaction, on the deliveries read beforehand: no connection
+     * is held while it runs. The tours are then created in a short transaction that locks the
+     * deliveries it plans and leaves out the ones another planning took in the meantime.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public TourPlanDTO planTours(LocalDate date, Long warehouseId, List<Long> vehicleIds, Duration timeLimit) {
+        long start = System.nanoTime();
+        PlanningInput input = readOnly(status -> loadPlanningInput(date, warehouseId, vehicleIds));
+        List<Delivery> stops = input.stops();
+        List<Vehicle> fleet = input.fleet();
+
+        double[] weights = new double[stops.size()];
+        double[] volumes = new double[stops.size()];
+        for (int i = 1; i < stops.size(); i++) {
+            weights[i] = stops.get(i).getWeight();
+            volumes[i] = stops.get(i).getVolume();
+        }
+        DistanceMatrix distances = DistanceMatrix.of(stops);
+
+        int parallelism = parallelism(null, fleetPlanningProperties.getParallelism());
+        Duration limit = timeLimit(timeLimit, fleetPlanningProperties.getTimeLimit(),
+                fleetPlanningProperties.getMaxTimeLimit());
+        FleetPlanner.Plan plan = new FleetPlanner(parallelism, fleetPlanningProperties.getSeed())
+                .plan(distances, weights, volumes, fleet, SearchMonitor.withDeadline(limit));
+
+        List<Long> unassigned = new ArrayList<>(plan.unassigned().length);
+        for (int stop : plan.unassigned()) {
+            unassigned.add(stops.get(stop).getId());
+        }
+        List<TourDTO> tours = new TransactionTemplate(transactionManager).execute(status ->
+                savePlan(date, warehouseId, fleet, plan, stops, distances, unassigned));
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Planned {} tours for {} deliveries from warehouse {} on {} in {} ms, {} left unassigned",
+                tours.size(), stops.size() - 1, warehouseId, date, elapsedMillis, unassigned.size());
+
+        double totalDistance = tours.stream().mapToDouble(TourDTO::getTotalDistance).sum();
+        return TourPlanDTO.builder()
+                .date(date)
+                .warehouseId(warehouseId)
+                .tours(tours)
+                .unassignedDeliveryIds(unassigned)
+                .totalDistance(totalDistance)
+                .elapsedMillis(elapsedMillis)
+                .build();
+    }
+
+    private PlanningInput loadPlanningInput(LocalDate date, Long warehouseId, List<Long> vehicleIds) {
+        Warehouse warehouse = warehouseRepository.findById(warehouseId)
+                .orElseThrow(() -> new EntityNotFoundException("Warehouse not found with id: " + warehouseId));
+        List<Vehicle> fleet = loadFleet(date, vehicleIds);
+        if (fleet.isEmpty()) {
+            throw new OptimizationException("No vehicle available on " + date);
+        }
+        // The warehouse is stop 0, the depot every route leaves from
+        List<Delivery> stops = new ArrayList<>();
+        stops.add(TourSnapshot.depot(warehouse));
+        stops.addAll(deliveryRepository.findUnplannedByStatus(DeliveryStatus.PENDING));
+        return new PlanningInput(fleet, stops);
+    }
+
+    /**
+     * One tour per route of the plan, with the deliveries of the route that are still unplanned.
+     * The others were planned by a concurrent call since they were read: they go to {@code unassigned}.
+     */
+    private List<TourDTO> savePlan(LocalDate date, Long warehouseId, List<Vehicle> fleet, FleetPlanner.Plan plan,
+                                   List<Delivery> stops, DistanceMatrix distances, List<Long> unassigned) {
+        List<Long> planned = new ArrayList<>();
+        for (int[] route : plan.routes()) {
+            for (int stop : route) {
+                planned.add(stops.get(stop).getId());
+            }
+        }
+        Map<Long, Delivery> available = new HashMap<>();
+        for (int from = 0; from < planned.size(); from += DELIVERY_IDS_BATCH_SIZE) {
+            List<Long> batch = planned.subList(from, Math.min(from + DELIVERY_IDS_BATCH_SIZE, planned.size()));
+            for (Delivery delivery : deliveryRepository.lockUnplannedByIdAndStatus(batch, DeliveryStatus.PENDING)) {
+                available.put(delivery.getId(), delivery);
+            }
+        }
+        int taken = planned.size() - available.size();
+        if (taken > 0) {
+            log.warn("{} livraisons planifiées entre-temps par une autre planification, laissées de côté", taken);
+        }
+
+        Warehouse warehouse = warehouseRepository.getReferenceById(warehouseId);
+        List<TourDTO> tours = new ArrayList<>(plan.routes().length);
+        for (int r = 0; r < plan.routes().length; r++) {
+            List<Delivery> deliveries = new ArrayList<>(plan.routes()[r].length);
+            double length = 0.0;
+            int previous = 0;
+            for (int stop : plan.routes()[r]) {
+                Delivery delivery = available.get(stops.get(stop).getId());
+                if (delivery == null) {
+                    unassigned.add(stops.get(stop).getId());
+                    continue;
+                }
+                deliveries.add(delivery);
+                length += distances.distance(previous, stop);
+                previous = stop;
+            }
+            if (!deliveries.isEmpty()) {
+                Vehicle vehicle = vehicleRepository.getReferenceById(fleet.get(plan.vehicles()[r]).getId());
+                tours.add(createPlannedTour(date, warehouse, vehicle, deliveries, length));
+            }
+        }
+        return tours;
+    }
+
+    private List<Vehicle> loadFleet(LocalDate date, List<Long> vehicleIds) {
+        if (vehicleIds == null || vehicleIds.isEmpty()) {
+            return vehicleRepository.findAvailableOn(date);
+        }
+        List<Vehicle> fleet = vehicleRepository.findAllById(vehicleIds);
+        if (fleet.size() < vehicleIds.stream().distinct().count()) {
+            List<Long> found = fleet.stream().map(Vehicle::getId).toList();
+            List<Long> missing = vehicleIds.stream().filter(id -> !found.contains(id)).distinct().toList();
+            throw new EntityNotFoundException("Vehicles not found with ids: " + missing);
+        }
+        return fleet;
+    }
+
+    /**
+     * The requested time limit within the configured maximum, the configured default when none is requested.
+     */
+    private static Duration timeLimit(Duration requested, Duration defaultLimit, Duration max) {
+        if (requested == null || requested.isNegative() || requested.isZero()) {
+            return defaultLimit;
+        }
+        return requested.compareTo(max) > 0 ? max : requested;
+    }
+
+    /**
+     * The requested parallelism, else the configured one, else one per core; never more than one per core.
+     */
+    private static int parallelism(Integer requested, int configured) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int parallelism = requested != null && requested > 0 ? requested : configured > 0 ? configured : cores;
+        return Math.min(parallelism, cores);
+    }
+
+    private MultiStartOptimizer multiStartOptimizer(Integer starts, Integer parallelism, Long seed,
+                                                    Duration timeLimit) {
+        int startCount = starts != null && starts > 0 ? starts : multiStartProperties.getStarts();
+        return new MultiStartOptimizer(Math.min(startCount, multiStartProperties.getMaxStarts()),
+                parallelism(parallelism, multiStartProperties.getParallelism()),
+                seed != null ? seed : multiStartProperties.getSeed(),
+                localSearchProperties.getNeighbors(),
+                timeLimit(timeLimit, multiStartProperties.getTimeLimit(), multiStartProperties.getMaxTimeLimit()));
+    }
+
+    /**
+     * Saves a planned tour driving through {@code route}, indexes of {@code stops}, in that order.
+     */
+    private TourDTO createPlannedTour(LocalDate date, Warehouse warehouse, Vehicle vehicle, List<Delivery> deliveries,
+                                     double length) {
+        Tour tour = new Tour();
+        tour.setTourDate(date);
+        tour.setTourStatus(TourStatus.PLANNED);
+        tour.setWarehouse(warehouse);
+        tour.setVehicle(vehicle);
+        tour.setAlgorithmUsed(FLEET_ALGORITHM);
+        tour.setDeliveries(deliveries);
+        Tour savedTour = tourRepository.save(tour);
+        for (Delivery delivery : deliveries) {
+            delivery.setTour(savedTour);
+            // Handled once committed: the pending delivery index then shows the delivery on its tour
+            eventPublisher.publishEvent(DeliveryChangeEvent.saved(this, deliveryMapper.toDto(delivery)));
+        }
+
+        // tour_delivery keeps no order, so the driving order is only given back here
+        TourDTO dto = tourMapper.toDto(savedTour);
+        dto.setDeliveryIds(deliveries.stream().map(Delivery::getId).collect(Collectors.toList()));
+        dto.setTotalDistance(length);
+        return dto;
+    }
+
+    /**
+     * What a planning reads before its search: the fleet, and the depot followed by the deliveries to plan.
+     */
+    private record PlanningInput(List<Vehicle> fleet, List<Delivery> stops) {
+    }
+
+    private TourSnapshot loadSnapshot(Long tourId) {
+        // The warehouse and the vehicle are lazy: they come from the second-level cache, not a join
+        Tour tour = tourRepository.findById(tourId)
                 .orElseThrow(() -> new EntityNotFoundException("Tour not found with id: " + tourId));
+        return TourSnapshot.of(tour, tourRepository.findStops(tourId));
+    }
+
+    /**
+     * Runs {@code action} in a read-only transaction of its own, for the reads around a search
+     * that runs outside of any.
+     */
+    private <T> T readOnly(TransactionCallback<T> action) {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        return readOnlyTransaction.execute(action);
+    }
 
-        List<Delivery> deliveries = tour.getDeliveries();
+    /**
+     * The deliveries standing for the stops of a snapshot route, in the same order, for the callers
+     * that show them; the warehouse stays as it is.
+     */
+    private List<Delivery> deliveriesOf(List<Delivery> route) {
+        return routesOf(List.of(route)).get(0);
+    }
 
-        // Add warehouse as the starting point if it exists
-        if (tour.getWarehouse() != null) {
-            Delivery warehouseDelivery = new Delivery();
-            warehouseDelivery.setId(-1L); // Temporary ID for warehouse
-            warehouseDelivery.setLatitude(tour.getWarehouse().getLatitude());
-            warehouseDelivery.setLongitude(tour.getWarehouse().getLongitude());
-            warehouseDelivery.setAddress("Warehouse");
-            deliveries.add(0, warehouseDelivery);
+    private List<List<Delivery>> routesOf(List<List<Delivery>> routes) {
+        List<Long> ids = routes.stream()
+                .flatMap(List::stream)
+                .map(Delivery::getId)
+                .filter(id -> id != TourSnapshot.DEPOT_ID)
+                .toList();
+        Map<Long, Delivery> deliveries = deliveryRepository.findAllByIdWithCustomer(ids).stream()
+                .collect(Collectors.toMap(Delivery::getId, Function.identity()));
+        List<List<Delivery>> result = new ArrayList<>(routes.size());
+        for (List<Delivery> route : routes) {
+            // A delivery deleted since the snapshot keeps its snapshot stop
+            result.add(route.stream()
+                    .map(stop -> deliveries.getOrDefault(stop.getId(), stop))
+                    .collect(Collectors.toList()));
         }
+        return result;
+    }
+
+    /**
+     * Resolves an algorithm such as "NN", or a construction algorithm followed by improvement
+     * stages such as "NN+2OPT" or "CLARKE_WRIGHT+2OPT+OROPT". "VRPTW" follows the time slots of
+     * the deliveries and takes no stage; "MULTI_START" runs with the configured defaults.
+     */
+    private TourOptimizer selectOptimizer(String algorithm) {
+        String[] stages = algorithm.toUpperCase().split("\\+");
 
         // Choose optimization algorithm
-        TourOptimizer optimizer = switch (algorithm.toUpperCase()) {
+        TourOptimizer optimizer = switch (stages[0].trim()) {
             case "CLARKE_WRIGHT" -> clarkeWrightOptimizer;
+            case "VRPTW" -> timeWindowOptimizer;
+            case "MULTI_START" -> multiStartOptimizer(null, null, null, null);
             case "AI" -> aiOptimizer;
             default -> nearestNeighborOptimizer; // Default to nearest neighbor
         };
+        if (stages.length == 1) {
+            return optimizer;
+        }
+        if (optimizer == timeWindowOptimizer) {
+            // The improvement stages ignore time slots and would undo them
+            throw new IllegalArgumentException("VRPTW already improves its routes and takes no improvement stage");
+        }
 
-        // Optimize the tour
-        return optimizer.calculateOptimalTour(deliveries);
-    }
-
-    @Override
-    @Transactional(readOnly = true)
-    public double getTotalDistance(Long tourId, String algorithm) {
-        List<Delivery> optimizedRoute = getOptimizedTour(tourId, algorithm);
-        if (optimizedRoute.size() < 2) {
-            return 0.0;
-        }
-
-        double totalDistance = 0.0;
-        Delivery previous = optimizedRoute.get(0);
-        
-        for (int i = 1; i < optimizedRoute.size(); i++) {
-            Delivery current = optimizedRoute.get(i);
-            totalDistance += calculateDistance(
-                previous.getLatitude(), previous.getLongitude(),
-                current.getLatitude(), current.getLongitude()
-            );
-            previous = current;
-        }
-
-        return totalDistance;
-    }
-
-    // Utility method to calculate distance between two geographical points
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Earth's radius in kilometers
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-                
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        return R * c; // Distance in kilometers
+        List<TourImprover> improvers = new ArrayList<>();
+        for (int i = 1; i < stages.length; i++) {
+            improvers.add(switch (stages[i].trim()) {
+                case "2OPT" -> new TwoOptImprover();
+                case "OROPT" -> new OrOptImprover();
+                default -> throw new IllegalArgumentException("Unknown improvement stage: " + stages[i]);
+            });
+        }
+        return new LocalSearchOptimizer(optimizer, improvers,
+                localSearchProperties.getNeighbors(), localSearchProperties.getTimeBudget());
     }
 }
@@ -2,7 +2,23 @@ package com.delivrey.util;
 
 public final class GeoUtils {
 
-    private static final double EARTH_RADIUS_KM = 6371.0;
+    static final double EARTH_RADIUS_KM = 6371.0;
+
+    /**
+     * Largest latitude and longitude difference, in degrees, for which the bulk methods use the
+     * equirectangular approximation instead of haversine. Within it, and up to
+     * {@link #FAST_PATH_MAX_LATITUDE}, the approximation is off by less than 1e-5 of the
+     * distance (under a meter).
+     */
+    public static final double FAST_PATH_MAX_SPAN = 0.5;
+
+    /**
+     * Beyond this latitude, in degrees, meridians converge too fast for the approximation.
+     */
+    public static final double FAST_PATH_MAX_LATITUDE = 80.0;
+
+    // Vector implementation when compiled in (vector profile) and its module is available
+    private static final HaversineKernel KERNEL = loadKernel();
 
     private GeoUtils() {}
 
@@ -18,4 +34,130 @@ public final class GeoUtils {
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
         return EARTH_RADIUS_KM * c;
     }
+
+    /**
+     * Distance in kilometers between two stops of {@code points}, as the bulk methods compute it.
+     */
+    public static double distanceKm(Points points, int from, int to) {
+        return ScalarHaversineKernel.distanceKm(points.latitudes[from], points.longitudes[from],
+                points.cosLatitudes[from], points.latitudes[to], points.longitudes[to], points.cosLatitudes[to]);
+    }
+
+    /**
+     * Distances in kilometers from stop {@code from} of {@code points} to every stop, into {@code out}.
+     */
+    public static void distancesKm(Points points, int from, double[] out) {
+        distancesKm(points, from, 0, points.size(), out, 0);
+    }
+
+    /**
+     * Distances in kilometers from stop {@code from} to stops {@code start} (inclusive) to
+     * {@code end} (exclusive) of {@code points}, written to {@code out} from {@code offset}.
+     */
+    public static void distancesKm(Points points, int from, int start, int end, double[] out, int offset) {
+        KERNEL.distancesKm(points.latitudes[from], points.longitudes[from], points.cosLatitudes[from],
+                points, start, end, out, offset);
+    }
+
+    /**
+     * Distances in kilometers from the given point to every stop of {@code points}, into {@code out}.
+     */
+    public static void distancesKm(double latitude, double longitude, Points points, double[] out) {
+        double rLat = Math.toRadians(latitude);
+        KERNEL.distancesKm(rLat, Math.toRadians(longitude), Math.cos(rLat), points, 0, points.size(), out, 0);
+    }
+
+    /**
+     * Distances in kilometers from every origin to every destination, row by row:
+     * the distance from origin i to destination j is at {@code i * destinations.size() + j}.
+     */
+    public static double[] distancesKm(Points origins, Points destinations) {
+        int columns = destinations.size();
+        double[] distances = new double[origins.size() * columns];
+        for (int i = 0; i < origins.size(); i++) {
+            KERNEL.distancesKm(origins.latitudes[i], origins.longitudes[i], origins.cosLatitudes[i],
+                    destinations, 0, columns, distances, i * columns);
+        }
+        return distances;
+    }
+
+    private static HaversineKernel loadKernel() {
+        try {
+            return (HaversineKernel) Class.forName("com.delivrey.util.VectorHaversineKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarHaversineKernel();
+        }
+    }
+
+    /**
+     * Smallest latitude/longitude rectangle containing every point within {@code radiusKm} of the center.
+     * Lets radius queries range-scan an index on the coordinates before the exact distance check.
+     * Near a pole or across the antimeridian the box spans every longitude.
+     */
+    public static BoundingBox boundingBox(double latitude, double longitude, double radiusKm) {
+        double angularRadius = radiusKm / EARTH_RADIUS_KM;
+        double rLat = Math.toRadians(latitude);
+        double minLat = rLat - angularRadius;
+        double maxLat = rLat + angularRadius;
+        if (minLat <= -Math.PI / 2 || maxLat >= Math.PI / 2) {
+            return new BoundingBox(Math.toDegrees(Math.max(minLat, -Math.PI / 2)),
+                    Math.toDegrees(Math.min(maxLat, Math.PI / 2)), -180.0, 180.0);
+        }
+
+        // Widest longitude offset, reached where the circle touches its meridian tangents
+        double deltaLon = Math.toDegrees(Math.asin(Math.sin(angularRadius) / Math.cos(rLat)));
+        double minLon = longitude - deltaLon;
+        double maxLon = longitude + deltaLon;
+        if (minLon < -180.0 || maxLon > 180.0) {
+            minLon = -180.0;
+            maxLon = 180.0;
+        }
+        return new BoundingBox(Math.toDegrees(minLat), Math.toDegrees(maxLat), minLon, maxLon);
+    }
+
+    /**
+     * Coordinates prepared for the bulk distance methods: radians and cosine of the latitude are
+     * computed once per point instead of once per pair.
+     */
+    public static final class Points {
+
+        final double[] latitudes;
+        final double[] longitudes;
+        final double[] cosLatitudes;
+
+        private Points(double[] latitudes, double[] longitudes, double[] cosLatitudes) {
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.cosLatitudes = cosLatitudes;
+        }
+
+        /**
+         * @param latitudes  in degrees
+         * @param longitudes in degrees, same length as {@code latitudes}
+         */
+        public static Points of(double[] latitudes, double[] longitudes) {
+            if (latitudes.length != longitudes.length) {
+                throw new IllegalArgumentException("As many latitudes as longitudes are needed: "
+                        + latitudes.length + " != " + longitudes.length);
+            }
+            int n = latitudes.length;
+            double[] rLatitudes = new double[n];
+            double[] rLongitudes = new double[n];
+            double[] cosLatitudes = new double[n];
+            for (int i = 0; i < n; i++) {
+                rLatitudes[i] = Math.toRadians(latitudes[i]);
+                rLongitudes[i] = Math.toRadians(longitudes[i]);
+                cosLatitudes[i] = Math.cos(rLatitudes[i]);
+            }
+            return new Points(rLatitudes, rLongitudes, cosLatitudes);
+        }
+
+        public int size() {
+            return latitudes.length;
+        }
+    }
+
+    public record BoundingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+    }
 }
@@ -0,0 +1,10 @@
+package com.delivrey.util;
+
+/**
+ * Computes distances from one point to a range of {@link GeoUtils.Points}, coordinates in radians.
+ */
+interface HaversineKernel {
+
+    void distancesKm(double latitude, double longitude, double cosLatitude,
+                     GeoUtils.Points to, int start, int end, double[] out, int offset);
+}
@@ -0,0 +1,49 @@
+package com.delivrey.util;
+
+import com.delivrey.exception.InvalidRequestParameterException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Position after the last row of a page in seek pagination: the sort key of that row, a date
+ * and its id, or its id alone. Handed to clients as an opaque URL-safe token.
+ *
+ * @param date sort date of the last row, {@code null} for listings sorted by id only
+ */
+public record KeysetCursor(LocalDate date, long id) {
+
+    private static final String VERSION = "1";
+
+    public String encode() {
+        String key = VERSION + ":" + (date != null ? date.toEpochDay() : "") + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws InvalidRequestParameterException when {@code token} was not made by {@link #encode()}
+     */
+    public static KeysetCursor decode(String token) {
+        KeysetCursor cursor = parse(token);
+        if (cursor == null) {
+            throw new InvalidRequestParameterException("Invalid page token: " + token);
+        }
+        return cursor;
+    }
+
+    private static KeysetCursor parse(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", -1);
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                return null;
+            }
+            LocalDate date = parts[1].isEmpty() ? null : LocalDate.ofEpochDay(Long.parseLong(parts[1]));
+            return new KeysetCursor(date, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            // Bad Base64 or number, or a day out of range
+            return null;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.delivrey.util;
+
+import static com.delivrey.util.GeoUtils.EARTH_RADIUS_KM;
+
+/**
+ * One pair at a time: equirectangular approximation for close pairs, haversine for the others.
+ */
+final class ScalarHaversineKernel implements HaversineKernel {
+
+    static final double MAX_SPAN = Math.toRadians(GeoUtils.FAST_PATH_MAX_SPAN);
+    static final double MIN_COS_LATITUDE = Math.cos(Math.toRadians(GeoUtils.FAST_PATH_MAX_LATITUDE));
+
+    @Override
+    public void distancesKm(double latitude, double longitude, double cosLatitude,
+                            GeoUtils.Points to, int start, int end, double[] out, int offset) {
+        double[] latitudes = to.latitudes;
+        double[] longitudes = to.longitudes;
+        double[] cosLatitudes = to.cosLatitudes;
+        for (int j = start; j < end; j++) {
+            out[offset + j - start] = distanceKm(latitude, longitude, cosLatitude,
+                    latitudes[j], longitudes[j], cosLatitudes[j]);
+        }
+    }
+
+    /**
+     * Distance between two points, coordinates in radians.
+     */
+    static double distanceKm(double latitude, double longitude, double cosLatitude,
+                             double toLatitude, double toLongitude, double toCosLatitude) {
+        double dLat = toLatitude - latitude;
+        double dLon = toLongitude - longitude;
+        if (Math.abs(dLat) <= MAX_SPAN && Math.abs(dLon) <= MAX_SPAN
+                && cosLatitude >= MIN_COS_LATITUDE && toCosLatitude >= MIN_COS_LATITUDE) {
+            // Locally flat: east-west scaled by the mean cosine of the two latitudes
+            double x = dLon * 0.5 * (cosLatitude + toCosLatitude);
+            return EARTH_RADIUS_KM * Math.sqrt(x * x + dLat * dLat);
+        }
+        double sinLat = Math.sin(dLat * 0.5);
+        double sinLon = Math.sin(dLon * 0.5);
+        double a = sinLat * sinLat + cosLatitude * toCosLatitude * sinLon * sinLon;
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
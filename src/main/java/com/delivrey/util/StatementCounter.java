@@ -0,0 +1,27 @@
+package com.delivrey.util;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares, per thread. Set as the session factory's statement
+ * inspector (hibernate.session_factory.statement_inspector), so every query, lazy load and flush
+ * goes through it; a JDBC batch counts once. Callers take {@link #count()} before and after the
+ * work to measure, on the same thread.
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    /**
+     * Statements prepared by the current thread since it started.
+     */
+    public static long count() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,129 @@
+package com.delivrey.config;
+
+import com.delivrey.entity.Vehicle;
+import com.delivrey.entity.VehicleType;
+import com.delivrey.repository.VehicleRepository;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import org.hibernate.cache.spi.RegionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.cache.CacheManager;
+import java.util.List;
+import java.util.OptionalLong;
+
+import static com.delivrey.support.StatementCountAssertions.assertStatements;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads served from the second-level and query caches run no SQL, and writes made through
+ * Hibernate are seen right away. The only test context creating the regions: the other JPA
+ * tests run without the second-level cache. Each test commits for real.
+ */
+@DataJpaTest(properties = "spring.liquibase.enabled=false")
+@Import(EntityCacheConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EntityCacheConfigTest {
+
+    @Autowired
+    private CacheManager entityCacheManager;
+
+    @Autowired
+    private EntityCacheProperties properties;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void entityCacheManager_ShouldBoundEveryRegion_ExceptTheUpdateTimestamps() {
+        for (String region : List.of(EntityCacheConfig.WAREHOUSE_REGION, EntityCacheConfig.VEHICLE_REGION,
+                EntityCacheConfig.CUSTOMER_REGION)) {
+            CaffeineConfiguration<?, ?> configuration = configuration(region);
+            assertEquals(OptionalLong.of(properties.getMaxEntries()), configuration.getMaximumSize(), region);
+            assertEquals(OptionalLong.of(properties.getTtl().toNanos()), configuration.getExpireAfterWrite(), region);
+        }
+        CaffeineConfiguration<?, ?> queries = configuration(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+        assertEquals(OptionalLong.of(properties.getQueryMaxEntries()), queries.getMaximumSize());
+        assertEquals(OptionalLong.of(properties.getQueryTtl().toNanos()), queries.getExpireAfterWrite());
+        CaffeineConfiguration<?, ?> timestamps =
+                configuration(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME);
+        assertTrue(timestamps.getMaximumSize().isEmpty());
+        assertTrue(timestamps.getExpireAfterWrite().isEmpty());
+    }
+
+    @Test
+    void findById_ShouldRunNoStatement_OnceTheVehicleIsCached() {
+        // Arrange
+        Long id = vehicleRepository.save(vehicle("AB-123-CD", 800)).getId();
+        vehicleRepository.findById(id);
+
+        // Act
+        Vehicle cached = assertStatements(0, () -> vehicleRepository.findById(id).orElseThrow());
+
+        // Assert
+        assertEquals("AB-123-CD", cached.getRegistrationNumber());
+    }
+
+    @Test
+    void findById_ShouldSeeAnUpdate_MadeThroughHibernate() {
+        // Arrange
+        Long id = vehicleRepository.save(vehicle("EF-456-GH", 800)).getId();
+        vehicleRepository.findById(id);
+
+        // Act
+        transaction.executeWithoutResult(status -> vehicleRepository.findById(id).orElseThrow().setMaxWeight(1200));
+
+        // Assert: from the cache, already up to date
+        Vehicle cached = assertStatements(0, () -> vehicleRepository.findById(id).orElseThrow());
+        assertEquals(1200, cached.getMaxWeight());
+    }
+
+    @Test
+    void findAll_ShouldComeFromTheQueryCache_UntilAVehicleIsAdded() {
+        // Arrange
+        vehicleRepository.save(vehicle("IJ-789-KL", 800));
+        int before = vehicleRepository.findAll().size();
+
+        // Act
+        List<Vehicle> cached = assertStatements(0, () -> vehicleRepository.findAll());
+        vehicleRepository.save(vehicle("MN-012-OP", 3500));
+        List<Vehicle> reloaded = assertStatements(1, () -> vehicleRepository.findAll());
+
+        // Assert
+        assertEquals(before, cached.size());
+        assertEquals(before + 1, reloaded.size());
+    }
+
+    private CaffeineConfiguration<?, ?> configuration(String region) {
+        javax.cache.Cache<Object, Object> cache = entityCacheManager.getCache(region);
+        assertNotNull(cache, region);
+        return cache.getConfiguration(CaffeineConfiguration.class);
+    }
+
+    private static Vehicle vehicle(String registrationNumber, double maxWeight) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setRegistrationNumber(registrationNumber);
+        vehicle.setType(VehicleType.VAN);
+        vehicle.setMaxWeight(maxWeight);
+        vehicle.setMaxVolume(10);
+        vehicle.setMaxDeliveries(20);
+        return vehicle;
+    }
+}
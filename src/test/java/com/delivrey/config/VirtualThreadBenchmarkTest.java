@@ -0,0 +1,91 @@
+package com.delivrey.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the two taskExecutor beans of AsyncConfig, platform pool and virtual threads, on a
+ * burst of blocking work (tasks that wait like a JDBC or OpenAI call). Only runs on demand:
+ * mvn -Pjava21 test -Dtest=VirtualThreadBenchmarkTest -Dbenchmark=true
+ */
+@Slf4j
+@EnabledForJreRange(min = JRE.JAVA_21)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadBenchmarkTest {
+
+    private static final int TASKS = 2_000;
+    private static final long BLOCKING_MILLIS = 20;
+
+    @Test
+    void virtualThreads_ShouldThrottleABurstThatThePoolRejects() throws InterruptedException {
+        Executor pool = new AsyncConfig(new MockEnvironment()).taskExecutor();
+        Executor virtual = new AsyncConfig(new MockEnvironment()
+                .withProperty("spring.threads.virtual.enabled", "true")).taskExecutor();
+        assertInstanceOf(ThreadPoolTaskExecutor.class, pool);
+        assertInstanceOf(SimpleAsyncTaskExecutor.class, virtual);
+
+        try {
+            Result platform = run(pool);
+            Result virtualThreads = run(virtual);
+
+            log.info("platform pool:   {} completed, {} rejected in {} ms",
+                    platform.completed, platform.rejected, platform.millis);
+            log.info("virtual threads: {} completed, {} rejected in {} ms",
+                    virtualThreads.completed, virtualThreads.rejected, virtualThreads.millis);
+
+            // The pool's 10 threads and 500 queued tasks overflow; the virtual executor makes the submitter wait instead
+            assertTrue(platform.rejected > 0, "the burst should overflow the platform pool");
+            assertEquals(TASKS, platform.completed + platform.rejected);
+            assertEquals(0, virtualThreads.rejected);
+            assertEquals(TASKS, virtualThreads.completed);
+        } finally {
+            ((ThreadPoolTaskExecutor) pool).shutdown();
+            ((SimpleAsyncTaskExecutor) virtual).close();
+        }
+    }
+
+    private Result run(Executor executor) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        AtomicInteger completed = new AtomicInteger();
+        int rejected = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        Thread.sleep(BLOCKING_MILLIS);
+                        completed.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                rejected++;
+                done.countDown();
+            }
+        }
+        assertTrue(done.await(5, TimeUnit.MINUTES), "tasks still running after 5 minutes");
+        return new Result(completed.get(), rejected, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private record Result(int completed, int rejected, long millis) {
+    }
+}
@@ -0,0 +1,237 @@
+package com.delivrey.controller;
+
+import com.delivrey.dto.OptimizationJobDTO;
+import com.delivrey.dto.OptimizationJobDTO.Status;
+import com.delivrey.dto.OptimizationProgressDTO;
+import com.delivrey.entity.Tour;
+import com.delivrey.mapper.TourMapper;
+import com.delivrey.optimizer.SearchMonitor;
+import com.delivrey.optimizer.TourSnapshot;
+import com.delivrey.optimizer.TourStop;
+import com.delivrey.repository.TourRepository;
+import com.delivrey.service.OptimizationJobListener;
+import com.delivrey.service.OptimizationJobService;
+import com.delivrey.service.TourService;
+import com.delivrey.service.impl.OptimizationJobServiceImpl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * The Server-Sent Events of GET /api/tours/{tourId}/optimize/stream, read from the response as they are written.
+ */
+@ExtendWith(MockitoExtension.class)
+class TourControllerTest {
+
+    private static final long WAIT_MILLIS = 5_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private TourService tourService;
+
+    @Mock
+    private TourMapper tourMapper;
+
+    @Mock
+    private OptimizationJobService optimizationJobService;
+
+    @Mock
+    private TourRepository tourRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void streamOptimization_ShouldSendTheJobBeforeAnyProgress() throws Exception {
+        // Arrange: the search reports progress from its own thread before submit has even returned
+        when(optimizationJobService.submit(eq(1L), eq("NN"), any())).thenAnswer(invocation -> {
+            OptimizationJobListener listener = invocation.getArgument(2);
+            Thread search = new Thread(() -> listener.onProgress(progress(1)));
+            search.start();
+            search.join();
+            return job(Status.QUEUED);
+        });
+
+        // Act
+        MvcResult result = stream(optimizationJobService);
+        OptimizationJobListener listener = listener();
+        listener.onProgress(progress(2));
+
+        // Assert: the report that came before the job is dropped, the next one follows it
+        assertEquals(List.of("job", "progress"), eventNames(result));
+        assertEquals("job-1", data(result, 0).get("id").asText());
+        assertEquals(2, data(result, 1).get("iteration").asInt());
+    }
+
+    @Test
+    void streamOptimization_ShouldDropTheStaleReports() throws Exception {
+        // Arrange
+        when(optimizationJobService.submit(eq(1L), eq("NN"), any())).thenReturn(job(Status.QUEUED));
+        MvcResult result = stream(optimizationJobService);
+        OptimizationJobListener listener = listener();
+
+        // Act: parallel searches report out of order
+        listener.onProgress(progress(3));
+        listener.onProgress(progress(2));
+        listener.onProgress(progress(3));
+        listener.onProgress(progress(5));
+
+        // Assert
+        assertEquals(List.of("job", "progress", "progress"), eventNames(result));
+        assertEquals(3, data(result, 1).get("iteration").asInt());
+        assertEquals(5, data(result, 2).get("iteration").asInt());
+    }
+
+    @Test
+    void streamOptimization_ShouldCompleteTheStream_WithTheResult() throws Exception {
+        // Arrange
+        when(optimizationJobService.submit(eq(1L), eq("NN"), any())).thenReturn(job(Status.QUEUED));
+        MvcResult result = stream(optimizationJobService);
+        OptimizationJobListener listener = listener();
+
+        // Act
+        listener.onFinished(job(Status.COMPLETED));
+        listener.onProgress(progress(7));
+
+        // Assert: nothing after the result, and the job is left as it is
+        assertEquals(List.of("job", "result"), eventNames(result));
+        assertEquals("COMPLETED", data(result, 1).get("status").asText());
+        assertDoesNotThrow(() -> result.getAsyncResult(WAIT_MILLIS));
+        verify(optimizationJobService, never()).cancel(any());
+    }
+
+    @Test
+    void streamOptimization_ShouldCancelTheJob_WhenTheClientDisconnects_AndKeepItsBestRoute() throws Exception {
+        // Arrange: a real job whose search improves its route until it is told to stop
+        OptimizationJobServiceImpl jobService = new OptimizationJobServiceImpl(tourService, tourRepository,
+                new SimpleAsyncTaskExecutor(), transactionManager);
+        Tour tour = new Tour();
+        tour.setId(1L);
+        TourSnapshot snapshot = TourSnapshot.of(tour, List.of(new TourStop(10L, 48.85, 2.35, 5.0, 0.1, null, null)));
+        when(tourRepository.existsById(1L)).thenReturn(true);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(tourService.getTourSnapshot(1L)).thenReturn(snapshot);
+        when(tourService.optimize(eq(snapshot), eq("NN"), any())).thenAnswer(invocation -> {
+            SearchMonitor monitor = invocation.getArgument(2);
+            while (!monitor.shouldStop()) {
+                monitor.onImprovement(12.5, new int[]{0});
+                Thread.sleep(150);
+            }
+            return snapshot.getStops();
+        });
+        when(tourService.getDeliveries(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        MvcResult result = stream(jobService);
+        awaitEvent(result, "progress");
+
+        // Act: the connection breaks
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener asyncListener : new ArrayList<>(asyncContext.getListeners())) {
+            asyncListener.onError(new AsyncEvent(asyncContext, new IOException("Broken pipe")));
+        }
+
+        // Assert: the search stops, and its job keeps the route it had found
+        String jobId = data(result, 0).get("id").asText();
+        OptimizationJobDTO job = awaitFinished(jobService, jobId);
+        assertEquals(Status.CANCELLED, job.getStatus());
+        assertEquals(12.5, job.getBestCost());
+        assertEquals(1, job.getResult().size());
+        assertEquals(10L, job.getResult().get(0).getId());
+        assertFalse(eventNames(result).contains("result"));
+    }
+
+    private MvcResult stream(OptimizationJobService jobService) throws Exception {
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(new TourController(tourService, tourMapper, jobService))
+                .build();
+        return mockMvc.perform(get("/api/tours/1/optimize/stream").param("algo", "NN"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private OptimizationJobListener listener() {
+        ArgumentCaptor<OptimizationJobListener> listener = ArgumentCaptor.forClass(OptimizationJobListener.class);
+        verify(optimizationJobService).submit(eq(1L), eq("NN"), listener.capture());
+        return listener.getValue();
+    }
+
+    private static List<String> eventNames(MvcResult result) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            if (line.startsWith("event:")) {
+                names.add(line.substring("event:".length()));
+            }
+        }
+        return names;
+    }
+
+    private JsonNode data(MvcResult result, int event) throws IOException {
+        List<String> data = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            if (line.startsWith("data:")) {
+                data.add(line.substring("data:".length()));
+            }
+        }
+        return objectMapper.readTree(data.get(event));
+    }
+
+    private static void awaitEvent(MvcResult result, String name) throws Exception {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!eventNames(result).contains(name)) {
+            assertTrue(System.currentTimeMillis() < deadline, "no " + name + " event");
+            Thread.sleep(10);
+        }
+    }
+
+    private static OptimizationJobDTO awaitFinished(OptimizationJobService jobService, String jobId)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        OptimizationJobDTO job = jobService.getJob(jobId);
+        while (job.getFinishedAt() == null) {
+            assertTrue(System.currentTimeMillis() < deadline, "the job did not stop");
+            Thread.sleep(10);
+            job = jobService.getJob(jobId);
+        }
+        return job;
+    }
+
+    private static OptimizationJobDTO job(Status status) {
+        return OptimizationJobDTO.builder()
+                .id("job-1")
+                .tourId(1L)
+                .algorithm("NN")
+                .status(status)
+                .build();
+    }
+
+    private static OptimizationProgressDTO progress(int iteration) {
+        return OptimizationProgressDTO.builder()
+                .jobId("job-1")
+                .iteration(iteration)
+                .cost(100.0 - iteration)
+                .deliveryIds(List.of(10L))
+                .build();
+    }
+}
@@ -0,0 +1,291 @@
+package com.delivrey.event;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TourEventExecutorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private MeterRegistry meterRegistry;
+    private TourEventExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void execute_ShouldRunTheEventsOfEachTourInOrder() throws InterruptedException {
+        // Arrange
+        executor = new TourEventExecutor(4, 16, 10_000, TIMEOUT, false, meterRegistry);
+        int tours = 10;
+        int eventsPerTour = 300;
+        List<List<Integer>> handled = new ArrayList<>();
+        for (int tour = 0; tour < tours; tour++) {
+            handled.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        CountDownLatch done = new CountDownLatch(tours * eventsPerTour);
+
+        // Act: the events of all tours interleaved, more than the lane queues hold
+        for (int event = 0; event < eventsPerTour; event++) {
+            for (int tour = 0; tour < tours; tour++) {
+                int tourIndex = tour;
+                int eventIndex = event;
+                executor.execute((long) tour, () -> {
+                    handled.get(tourIndex).add(eventIndex);
+                    done.countDown();
+                });
+            }
+        }
+
+        // Assert
+        assertTrue(done.await(30, TimeUnit.SECONDS), "events still pending");
+        List<Integer> expected = IntStream.range(0, eventsPerTour).boxed().toList();
+        for (List<Integer> events : handled) {
+            assertEquals(expected, events);
+        }
+        // Counted once the event has returned, after the latch
+        executor.shutdown();
+        assertEquals(tours * eventsPerTour, meterRegistry.counter("tour.events.completed").count());
+        executor = null;
+    }
+
+    @Test
+    void execute_ShouldKeepOverflowingEventsInOrder_WithoutRunningThemOnTheCaller() throws InterruptedException {
+        // Arrange: one lane whose thread is held by a first event
+        executor = new TourEventExecutor(1, 2, 100, TIMEOUT, false, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(1L, () -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(50);
+
+        // Act: 2 events fit in the queue, the 48 others overflow
+        for (int event = 0; event < 50; event++) {
+            int eventIndex = event;
+            executor.execute(1L, () -> {
+                handled.add(eventIndex);
+                threads.add(Thread.currentThread());
+                done.countDown();
+            });
+        }
+        assertTrue(handled.isEmpty());
+        assertEquals(50, executor.queueDepth());
+        release.countDown();
+
+        // Assert
+        assertTrue(done.await(10, TimeUnit.SECONDS), "events still pending");
+        assertEquals(IntStream.range(0, 50).boxed().toList(), handled);
+        assertFalse(threads.contains(Thread.currentThread()));
+        assertEquals(48, meterRegistry.counter("tour.events.overflowed").count());
+        assertEquals(0, meterRegistry.counter("tour.events.rejected").count());
+    }
+
+    @Test
+    void execute_ShouldBlockTheCaller_WhenTheOverflowIsFull_AndLoseNothing() throws InterruptedException {
+        // Arrange: the thread of the only lane is busy, its queue takes 1 event and its overflow 2
+        executor = new TourEventExecutor(1, 1, 2, TIMEOUT, false, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(1L, () -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(13);
+        for (int event = 0; event < 3; event++) {
+            int eventIndex = event;
+            executor.execute(1L, () -> {
+                handled.add(eventIndex);
+                done.countDown();
+            });
+        }
+
+        // Act: 10 more events of the same tour from another thread, which has to wait
+        Thread publisher = new Thread(() -> {
+            for (int event = 3; event < 13; event++) {
+                int eventIndex = event;
+                executor.execute(1L, () -> {
+                    handled.add(eventIndex);
+                    done.countDown();
+                });
+            }
+        });
+        publisher.start();
+        publisher.join(300);
+        assertTrue(publisher.isAlive(), "the publisher should wait for room");
+        assertEquals(3, executor.queueDepth());
+        release.countDown();
+
+        // Assert: every event ran, in order, and none was rejected
+        publisher.join(5_000);
+        assertFalse(publisher.isAlive());
+        assertTrue(done.await(5, TimeUnit.SECONDS), "events still pending");
+        assertEquals(IntStream.range(0, 13).boxed().toList(), handled);
+        assertEquals(0, meterRegistry.counter("tour.events.rejected").count());
+        assertEquals(0, meterRegistry.counter("tour.events.over.capacity").count());
+    }
+
+    @Test
+    void execute_ShouldQueuePastTheCapacity_WhenTheWaitTimesOut() throws InterruptedException {
+        // Arrange: a lane held longer than the submit timeout
+        executor = new TourEventExecutor(1, 1, 1, Duration.ofMillis(50), false, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(1L, () -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+
+        // Act: 2 events fill the queue and the overflow, the 2 others wait then get queued anyway
+        long start = System.nanoTime();
+        for (int event = 0; event < 4; event++) {
+            int eventIndex = event;
+            executor.execute(1L, () -> {
+                handled.add(eventIndex);
+                done.countDown();
+            });
+        }
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+
+        // Assert
+        assertTrue(waitedMillis >= 100, "each of the 2 late events should wait the timeout, waited " + waitedMillis);
+        assertTrue(done.await(5, TimeUnit.SECONDS), "events still pending");
+        assertEquals(List.of(0, 1, 2, 3), handled);
+        assertEquals(2, meterRegistry.counter("tour.events.over.capacity").count());
+        assertEquals(0, meterRegistry.counter("tour.events.rejected").count());
+    }
+
+    @Test
+    void shutdown_ShouldReleaseTheWaitingSubmitters_WithARejection() throws InterruptedException {
+        // Arrange: a full lane and a publisher waiting for room
+        executor = new TourEventExecutor(1, 1, 1, TIMEOUT, false, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(1L, () -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(1L, () -> { });
+        executor.execute(1L, () -> { });
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Thread publisher = new Thread(() -> {
+            try {
+                executor.execute(1L, () -> { });
+            } catch (RejectedExecutionException e) {
+                failures.add(e);
+            }
+        });
+        publisher.start();
+        publisher.join(200);
+        assertTrue(publisher.isAlive());
+
+        // Act
+        Thread stopping = new Thread(() -> {
+            try {
+                executor.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopping.start();
+        publisher.join(5_000);
+        release.countDown();
+        stopping.join(5_000);
+
+        // Assert: the caller hears of it, so that it can handle the event itself
+        assertEquals(1, failures.size());
+        assertEquals(1, meterRegistry.counter("tour.events.rejected").count());
+        executor = null;
+    }
+
+    @Test
+    void execute_ShouldGoOn_WhenAnEventFails() throws InterruptedException {
+        // Arrange
+        executor = new TourEventExecutor(1, 10, 10, TIMEOUT, false, meterRegistry);
+        CountDownLatch done = new CountDownLatch(1);
+
+        // Act
+        executor.execute(1L, () -> {
+            throw new IllegalStateException("Tour not found");
+        });
+        executor.execute(1L, done::countDown);
+
+        // Assert
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.counter("tour.events.failed").count());
+    }
+
+    @Test
+    void shutdown_ShouldRunTheQueuedEvents_ThenRejectNewOnes() throws InterruptedException {
+        // Arrange
+        executor = new TourEventExecutor(2, 1, 100, TIMEOUT, false, meterRegistry);
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        for (int event = 0; event < 20; event++) {
+            int eventIndex = event;
+            executor.execute(1L, () -> {
+                sleep(1);
+                handled.add(eventIndex);
+            });
+        }
+
+        // Act
+        executor.shutdown();
+
+        // Assert
+        assertEquals(IntStream.range(0, 20).boxed().toList(), handled);
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(1L, () -> { }));
+        assertEquals(0.0, executor.queueDepth());
+        executor = null;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
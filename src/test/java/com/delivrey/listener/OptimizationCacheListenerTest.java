@@ -0,0 +1,45 @@
+package com.delivrey.listener;
+
+import com.delivrey.dto.DeliveryDTO;
+import com.delivrey.event.DeliveryChangeEvent;
+import com.delivrey.service.OptimizationResultCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OptimizationCacheListenerTest {
+
+    @Mock
+    private OptimizationResultCache optimizationResultCache;
+
+    @InjectMocks
+    private OptimizationCacheListener listener;
+
+    @Test
+    void handleDeliveryChange_ShouldDropTheRoutesOfTheDeliveryAndOfItsTour_WhenSaved() {
+        // Arrange
+        DeliveryDTO delivery = DeliveryDTO.builder().id(5L).tourId(100L).build();
+
+        // Act
+        listener.handleDeliveryChange(DeliveryChangeEvent.saved(this, delivery));
+
+        // Assert
+        verify(optimizationResultCache).invalidateDelivery(5L);
+        verify(optimizationResultCache).invalidateTour(100L);
+    }
+
+    @Test
+    void handleDeliveryChange_ShouldDropTheRoutesOfTheDelivery_WhenDeleted() {
+        // Act
+        listener.handleDeliveryChange(DeliveryChangeEvent.deleted(this, 5L));
+
+        // Assert
+        verify(optimizationResultCache).invalidateDelivery(5L);
+        verifyNoMoreInteractions(optimizationResultCache);
+    }
+}
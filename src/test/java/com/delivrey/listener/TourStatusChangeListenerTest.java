@@ -0,0 +1,81 @@
+package com.delivrey.listener;
+
+import com.delivrey.entity.Tour;
+import com.delivrey.entity.TourStatus;
+import com.delivrey.event.TourEventExecutor;
+import com.delivrey.event.TourStatusChangeEvent;
+import com.delivrey.service.DeliveryHistoryService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TourStatusChangeListenerTest {
+
+    @Mock
+    private DeliveryHistoryService deliveryHistoryService;
+
+    @Mock
+    private TourEventExecutor tourEventExecutor;
+
+    @InjectMocks
+    private TourStatusChangeListener listener;
+
+    @Test
+    void handleTourStatusChange_ShouldWriteTheHistoryOnTheLaneOfTheTour_WhenCompleted() {
+        // Arrange
+        Tour tour = tour();
+
+        // Act
+        listener.handleTourStatusChange(new TourStatusChangeEvent(this, tour, TourStatus.IN_PROGRESS,
+                TourStatus.COMPLETED));
+
+        // Assert: nothing written until the lane runs the event
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(tourEventExecutor).execute(eq(5L), task.capture());
+        verifyNoInteractions(deliveryHistoryService);
+        task.getValue().run();
+        verify(deliveryHistoryService).createHistoryFromTour(tour);
+    }
+
+    @Test
+    void handleTourStatusChange_ShouldWriteTheHistoryItself_WhenTheExecutorIsShutDown() {
+        // Arrange
+        Tour tour = tour();
+        doThrow(new RejectedExecutionException("Tour event executor is shut down"))
+                .when(tourEventExecutor).execute(eq(5L), any());
+
+        // Act
+        listener.handleTourStatusChange(new TourStatusChangeEvent(this, tour, TourStatus.IN_PROGRESS,
+                TourStatus.COMPLETED));
+
+        // Assert: the history of the committed status change is not lost
+        verify(deliveryHistoryService).createHistoryFromTour(tour);
+    }
+
+    @Test
+    void handleTourStatusChange_ShouldIgnoreTheOtherStatuses() {
+        // Act
+        listener.handleTourStatusChange(new TourStatusChangeEvent(this, tour(), TourStatus.PLANNED,
+                TourStatus.IN_PROGRESS));
+
+        // Assert
+        verifyNoInteractions(tourEventExecutor, deliveryHistoryService);
+    }
+
+    private static Tour tour() {
+        Tour tour = new Tour();
+        tour.setId(5L);
+        tour.setTourStatus(TourStatus.COMPLETED);
+        return tour;
+    }
+}
@@ -0,0 +1,164 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+import com.delivrey.entity.Vehicle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.delivrey.optimizer.DistanceMatrixTest.delivery;
+import static com.delivrey.optimizer.DistanceMatrixTest.randomDeliveries;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClarkeWrightOptimizerTest {
+
+    private final ClarkeWrightOptimizer optimizer = new ClarkeWrightOptimizer();
+
+    @Test
+    void routes_ShouldMergeEveryStop_WhenCapacityIsUnlimited() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(60, new Random(21)));
+        double[] none = new double[60];
+
+        // Act
+        int[][] routes = optimizer.routes(distances, none, none, Double.MAX_VALUE, Double.MAX_VALUE, Integer.MAX_VALUE);
+
+        // Assert
+        assertEquals(1, routes.length);
+        assertCoversEveryStop(routes, 60);
+    }
+
+    @Test
+    void routes_ShouldMergeTheClosestStopsTogether() {
+        // Arrange: depot in the middle, a pair of stops to the west and a pair to the east
+        DistanceMatrix distances = DistanceMatrix.of(
+                new double[]{48.80, 48.80, 48.80, 48.80, 48.80},
+                new double[]{2.30, 2.20, 2.40, 2.21, 2.41});
+        double[] none = new double[5];
+
+        // Act: two stops per vehicle
+        int[][] routes = optimizer.routes(distances, none, none, Double.MAX_VALUE, Double.MAX_VALUE, 2);
+
+        // Assert: in the order their first stop appears in the input
+        assertEquals(2, routes.length);
+        assertArrayEquals(new int[]{1, 3}, sorted(routes[0]));
+        assertArrayEquals(new int[]{2, 4}, sorted(routes[1]));
+    }
+
+    @Test
+    void routes_ShouldRespectWeightVolumeAndDeliveryLimits() {
+        // Arrange
+        Random random = new Random(22);
+        int n = 120;
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(n, random));
+        double[] weights = new double[n];
+        double[] volumes = new double[n];
+        for (int i = 1; i < n; i++) {
+            weights[i] = 10 + random.nextInt(90);
+            volumes[i] = 0.1 + random.nextDouble();
+        }
+
+        // Act
+        int[][] routes = optimizer.routes(distances, weights, volumes, 500.0, 4.0, 12);
+
+        // Assert
+        assertCoversEveryStop(routes, n);
+        for (int[] route : routes) {
+            assertTrue(route.length <= 12);
+            assertTrue(Arrays.stream(route).mapToDouble(stop -> weights[stop]).sum() <= 500.0);
+            assertTrue(Arrays.stream(route).mapToDouble(stop -> volumes[stop]).sum() <= 4.0);
+        }
+    }
+
+    @Test
+    void calculateRoutes_ShouldTreatNonPositiveLimitsAsUnlimited() {
+        // Arrange
+        List<Delivery> stops = randomDeliveries(30, new Random(23));
+        stops.forEach(stop -> stop.setWeight(100.0));
+        Vehicle vehicle = new Vehicle();
+        vehicle.setMaxWeight(0);
+        vehicle.setMaxVolume(-1);
+        vehicle.setMaxDeliveries(10);
+
+        // Act
+        List<List<Delivery>> routes = optimizer.calculateRoutes(stops, DistanceMatrix.of(stops), vehicle);
+
+        // Assert: only the number of deliveries limits the routes
+        assertEquals(3, routes.size());
+        routes.forEach(route -> assertTrue(route.size() <= 10));
+        assertEquals(29, routes.stream().mapToInt(List::size).sum());
+        routes.forEach(route -> assertFalse(route.contains(stops.get(0))));
+    }
+
+    @Test
+    void calculateOptimalTour_ShouldKeepTheDepotFirstAndEveryDelivery() {
+        // Arrange
+        List<Delivery> deliveries = randomDeliveries(25, new Random(24));
+
+        // Act
+        List<Delivery> route = optimizer.calculateOptimalTour(deliveries);
+
+        // Assert
+        assertSame(deliveries.get(0), route.get(0));
+        assertEquals(deliveries.size(), route.size());
+        assertTrue(route.containsAll(deliveries));
+    }
+
+    @Test
+    void calculateOptimalTour_ShouldNotBeLongerThanTheStarRoutes() {
+        // Arrange: the savings of merging can only shorten the sum of the depot-stop-depot trips
+        List<Delivery> deliveries = randomDeliveries(40, new Random(25));
+        DistanceMatrix distances = DistanceMatrix.of(deliveries);
+        double star = 0.0;
+        for (int i = 1; i < deliveries.size(); i++) {
+            star += 2 * distances.distance(0, i);
+        }
+
+        // Act
+        List<Delivery> route = optimizer.calculateOptimalTour(deliveries, distances);
+
+        // Assert
+        int[] indexes = DistanceMatrix.indexesOf(deliveries, route);
+        double closed = distances.routeLength(indexes) + distances.distance(indexes[indexes.length - 1], 0);
+        assertTrue(closed < star);
+    }
+
+    @Test
+    void routes_ShouldGiveTheSameRoutes_ForTheSameSeed() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(200, new Random(26)));
+        NeighborLists neighbors = NeighborLists.of(distances, 10);
+        double[] none = new double[200];
+
+        // Act
+        int[][] first = optimizer.routes(distances, neighbors, none, none, Double.MAX_VALUE, Double.MAX_VALUE, 15,
+                new Random(5), 0.2, SearchMonitor.NONE);
+        int[][] second = optimizer.routes(distances, neighbors, none, none, Double.MAX_VALUE, Double.MAX_VALUE, 15,
+                new Random(5), 0.2, SearchMonitor.NONE);
+
+        // Assert
+        assertTrue(Arrays.deepEquals(first, second));
+        assertCoversEveryStop(first, 200);
+    }
+
+    private static void assertCoversEveryStop(int[][] routes, int n) {
+        List<Integer> stops = new ArrayList<>();
+        for (int[] route : routes) {
+            Arrays.stream(route).forEach(stops::add);
+        }
+        stops.sort(null);
+        assertEquals(n - 1, stops.size());
+        for (int i = 0; i < stops.size(); i++) {
+            assertEquals(i + 1, stops.get(i).intValue());
+        }
+    }
+
+    private static int[] sorted(int[] route) {
+        int[] copy = route.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
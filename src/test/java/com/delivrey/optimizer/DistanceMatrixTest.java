@@ -0,0 +1,156 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+import com.delivrey.util.GeoUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceMatrixTest {
+
+    // Relative error allowed to the equirectangular fast path of the bulk kernels
+    private static final double TOLERANCE = 1e-5;
+
+    @Test
+    void of_ShouldMatchHaversine_ForEveryPair() {
+        // Arrange
+        List<Delivery> deliveries = randomDeliveries(40, new Random(1));
+
+        // Act
+        DistanceMatrix distances = DistanceMatrix.of(deliveries);
+
+        // Assert
+        assertEquals(40, distances.size());
+        for (int i = 0; i < deliveries.size(); i++) {
+            for (int j = 0; j < deliveries.size(); j++) {
+                Delivery from = deliveries.get(i);
+                Delivery to = deliveries.get(j);
+                double expected = GeoUtils.haversineKm(from.getLatitude(), from.getLongitude(),
+                        to.getLatitude(), to.getLongitude());
+                assertEquals(expected, distances.distance(i, j), expected * TOLERANCE + 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void of_ShouldBeSymmetricWithZeroDiagonal() {
+        // Arrange
+        List<Delivery> deliveries = randomDeliveries(300, new Random(2));
+
+        // Act: above PARALLEL_THRESHOLD, rows are filled in parallel
+        DistanceMatrix distances = DistanceMatrix.of(deliveries);
+
+        // Assert
+        for (int i = 0; i < distances.size(); i++) {
+            assertEquals(0.0, distances.distance(i, i));
+            for (int j = i + 1; j < distances.size(); j++) {
+                assertEquals(distances.distance(i, j), distances.distance(j, i));
+            }
+        }
+    }
+
+    @Test
+    void onDemand_ShouldMatchDense() {
+        // Arrange
+        List<Delivery> deliveries = randomDeliveries(50, new Random(5));
+        double[] latitudes = deliveries.stream().mapToDouble(Delivery::getLatitude).toArray();
+        double[] longitudes = deliveries.stream().mapToDouble(Delivery::getLongitude).toArray();
+
+        // Act
+        DistanceMatrix dense = DistanceMatrix.dense(latitudes, longitudes);
+        DistanceMatrix onDemand = DistanceMatrix.onDemand(latitudes, longitudes);
+
+        // Assert: single reads, whole rows and subsets agree
+        assertTrue(dense.isDense());
+        assertFalse(onDemand.isDense());
+        double[] denseRow = new double[50];
+        double[] onDemandRow = new double[50];
+        for (int i = 0; i < 50; i++) {
+            dense.row(i, denseRow);
+            onDemand.row(i, onDemandRow);
+            for (int j = 0; j < 50; j++) {
+                assertEquals(dense.distance(i, j), onDemand.distance(i, j), dense.distance(i, j) * TOLERANCE + 1e-9);
+                assertEquals(denseRow[j], onDemandRow[j], denseRow[j] * TOLERANCE + 1e-9);
+            }
+        }
+        int[] stops = {4, 49, 0, 17};
+        DistanceMatrix denseSubset = dense.subset(stops);
+        DistanceMatrix onDemandSubset = onDemand.subset(stops);
+        for (int i = 0; i < stops.length; i++) {
+            for (int j = 0; j < stops.length; j++) {
+                assertEquals(denseSubset.distance(i, j), onDemandSubset.distance(i, j),
+                        denseSubset.distance(i, j) * TOLERANCE + 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void subset_ShouldKeepTheDistancesOfTheSelectedStops() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(20, new Random(3)));
+        int[] stops = {7, 2, 19, 0};
+
+        // Act
+        DistanceMatrix subset = distances.subset(stops);
+
+        // Assert
+        assertEquals(stops.length, subset.size());
+        for (int i = 0; i < stops.length; i++) {
+            for (int j = 0; j < stops.length; j++) {
+                assertEquals(distances.distance(stops[i], stops[j]), subset.distance(i, j));
+            }
+        }
+    }
+
+    @Test
+    void routeLength_ShouldSumTheLegsWithoutReturningToTheStart() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(5, new Random(4)));
+        int[] route = {0, 3, 1, 4, 2};
+
+        // Act
+        double length = distances.routeLength(route);
+
+        // Assert
+        double expected = distances.distance(0, 3) + distances.distance(3, 1)
+                + distances.distance(1, 4) + distances.distance(4, 2);
+        assertEquals(expected, length, 1e-12);
+        assertEquals(0.0, distances.routeLength(new int[]{2}));
+    }
+
+    @Test
+    void indexesOf_ShouldMatchDeliveriesByIdentity() {
+        // Arrange: two deliveries equal by value, which only identity tells apart
+        Delivery first = delivery(1L, 48.85, 2.35);
+        Delivery twin = delivery(1L, 48.85, 2.35);
+        Delivery other = delivery(2L, 48.86, 2.36);
+        List<Delivery> deliveries = List.of(first, twin, other);
+
+        // Act
+        int[] indexes = DistanceMatrix.indexesOf(deliveries, List.of(other, twin, first));
+
+        // Assert
+        assertArrayEquals(new int[]{2, 1, 0}, indexes);
+    }
+
+    // Stops spread over about 20 km around Paris
+    static List<Delivery> randomDeliveries(int count, Random random) {
+        List<Delivery> deliveries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            deliveries.add(delivery((long) i, 48.75 + random.nextDouble() * 0.2, 2.25 + random.nextDouble() * 0.25));
+        }
+        return deliveries;
+    }
+
+    static Delivery delivery(Long id, double latitude, double longitude) {
+        Delivery delivery = new Delivery();
+        delivery.setId(id);
+        delivery.setLatitude(latitude);
+        delivery.setLongitude(longitude);
+        return delivery;
+    }
+}
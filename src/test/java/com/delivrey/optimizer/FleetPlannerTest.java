@@ -0,0 +1,194 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+import com.delivrey.entity.Vehicle;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.delivrey.optimizer.DistanceMatrixTest.randomDeliveries;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetPlannerTest {
+
+    @Test
+    void plan_ShouldServeEveryStopOnce_WithinTheLimitsOfEachVehicle() {
+        // Arrange: about 270 kg to carry, 300 kg of fleet
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(61, new Random(1)));
+        double[] weights = loads(61, 1.0, 8.0, new Random(2));
+        double[] volumes = loads(61, 0.01, 0.05, new Random(3));
+        List<Vehicle> fleet = List.of(vehicle(100, 2.0, 25), vehicle(100, 2.0, 25), vehicle(100, 2.0, 25));
+
+        // Act
+        FleetPlanner.Plan plan = new FleetPlanner(2, 42L).plan(distances, weights, volumes, fleet,
+                SearchMonitor.withDeadline(Duration.ofSeconds(10)));
+
+        // Assert
+        assertEquals(0, plan.unassigned().length);
+        assertEquals(plan.routes().length, plan.vehicles().length);
+        assertEquals(plan.vehicles().length, Arrays.stream(plan.vehicles()).distinct().count());
+        assertServesEachStopOnce(plan, 61);
+        double total = 0.0;
+        for (int r = 0; r < plan.routes().length; r++) {
+            int[] route = plan.routes()[r];
+            Vehicle vehicle = fleet.get(plan.vehicles()[r]);
+            assertTrue(route.length <= vehicle.getMaxDeliveries());
+            assertTrue(Arrays.stream(route).mapToDouble(stop -> weights[stop]).sum() <= vehicle.getMaxWeight());
+            assertTrue(Arrays.stream(route).mapToDouble(stop -> volumes[stop]).sum() <= vehicle.getMaxVolume());
+            total += distances.routeLength(withDepot(route));
+        }
+        assertEquals(total, plan.distanceKm(), 1e-6);
+    }
+
+    @Test
+    void plan_ShouldLeaveStopsUnassigned_WhenTheFleetIsTooSmall() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(11, new Random(4)));
+        double[] weights = loads(11, 1.0, 1.0, new Random(5));
+        double[] volumes = new double[11];
+
+        // Act: room for 5 stops out of 10
+        FleetPlanner.Plan plan = new FleetPlanner(1, 42L).plan(distances, weights, volumes,
+                List.of(vehicle(0, 0, 5)), SearchMonitor.NONE);
+
+        // Assert
+        assertEquals(1, plan.routes().length);
+        assertEquals(5, plan.routes()[0].length);
+        assertEquals(5, plan.unassigned().length);
+        assertServesEachStopOnce(plan, 11);
+    }
+
+    @Test
+    void plan_ShouldLeaveEveryStopUnassigned_WhenThereIsNoVehicle() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(4, new Random(6)));
+
+        // Act
+        FleetPlanner.Plan plan = new FleetPlanner(1, 42L).plan(distances, new double[4], new double[4],
+                List.of(), SearchMonitor.NONE);
+
+        // Assert
+        assertEquals(0, plan.routes().length);
+        assertArrayEquals(new int[]{1, 2, 3}, plan.unassigned());
+        assertEquals(0.0, plan.distanceKm());
+    }
+
+    @Test
+    void plan_ShouldReturnTheSamePlan_ForTheSameSeed() {
+        // Arrange
+        List<Delivery> stops = randomDeliveries(41, new Random(7));
+        DistanceMatrix distances = DistanceMatrix.of(stops);
+        double[] weights = loads(41, 1.0, 8.0, new Random(8));
+        double[] volumes = new double[41];
+        List<Vehicle> fleet = List.of(vehicle(60, 0, 0), vehicle(60, 0, 0), vehicle(80, 0, 0));
+
+        // Act: a single worker, which stops on its own once its plans stop improving
+        FleetPlanner.Plan first = new FleetPlanner(1, 42L).plan(distances, weights, volumes, fleet, SearchMonitor.NONE);
+        FleetPlanner.Plan second = new FleetPlanner(1, 42L).plan(distances, weights, volumes, fleet, SearchMonitor.NONE);
+
+        // Assert
+        assertTrue(Arrays.deepEquals(first.routes(), second.routes()));
+        assertArrayEquals(first.vehicles(), second.vehicles());
+        assertEquals(first.distanceKm(), second.distanceKm());
+    }
+
+    @Test
+    void plan_ShouldReturnAPlan_WhenAskedToStopAtOnce() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(31, new Random(9)));
+        double[] weights = loads(31, 1.0, 1.0, new Random(10));
+
+        // Act: the first run is never cut short
+        FleetPlanner.Plan plan = new FleetPlanner(2, 42L).plan(distances, weights, new double[31],
+                List.of(vehicle(0, 0, 15), vehicle(0, 0, 15)), () -> true);
+
+        // Assert
+        assertEquals(0, plan.unassigned().length);
+        assertServesEachStopOnce(plan, 31);
+    }
+
+    @Test
+    void assign_ShouldCutARouteThatNoVehicleCanCarry() {
+        // Arrange: 40 kg on one route, two vehicles of 25 kg
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(5, new Random(11)));
+        double[] weights = {0, 10, 10, 10, 10};
+        FleetPlanner.Capacity[] capacities = {
+                FleetPlanner.Capacity.of(vehicle(25, 0, 0)), FleetPlanner.Capacity.of(vehicle(25, 0, 0))};
+
+        // Act
+        FleetPlanner.Plan plan = new FleetPlanner(1, 42L).assign(new int[][]{{1, 2, 3, 4}}, distances, weights,
+                new double[5], capacities);
+
+        // Assert: the longest head that fits goes to the first vehicle, the rest to the other
+        assertEquals(2, plan.routes().length);
+        assertArrayEquals(new int[]{1, 2}, plan.routes()[0]);
+        assertArrayEquals(new int[]{3, 4}, plan.routes()[1]);
+        assertEquals(0, plan.unassigned().length);
+    }
+
+    @Test
+    void assign_ShouldInsertTheStopsLeft_IntoVehiclesWithRoom() {
+        // Arrange: three routes, two vehicles, only the first one with room left for the third route
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(5, new Random(12)));
+        double[] weights = {0, 10, 10, 10, 50};
+        FleetPlanner.Capacity[] capacities = {
+                FleetPlanner.Capacity.of(vehicle(60, 0, 0)), FleetPlanner.Capacity.of(vehicle(25, 0, 0))};
+
+        // Act
+        FleetPlanner.Plan plan = new FleetPlanner(1, 42L).assign(new int[][]{{4}, {1, 2}, {3}}, distances, weights,
+                new double[5], capacities);
+
+        // Assert
+        assertEquals(0, plan.unassigned().length);
+        assertServesEachStopOnce(plan, 5);
+        assertArrayEquals(new int[]{0, 1}, plan.vehicles());
+        assertArrayEquals(new int[]{3, 4}, sorted(plan.routes()[0]));
+        assertArrayEquals(new int[]{1, 2}, plan.routes()[1]);
+    }
+
+    private static void assertServesEachStopOnce(FleetPlanner.Plan plan, int n) {
+        List<Integer> served = new ArrayList<>();
+        for (int[] route : plan.routes()) {
+            Arrays.stream(route).forEach(served::add);
+        }
+        Arrays.stream(plan.unassigned()).forEach(served::add);
+        served.sort(null);
+        List<Integer> expected = new ArrayList<>();
+        for (int stop = 1; stop < n; stop++) {
+            expected.add(stop);
+        }
+        assertEquals(expected, served);
+    }
+
+    private static int[] sorted(int[] route) {
+        int[] sorted = route.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static int[] withDepot(int[] route) {
+        int[] withDepot = new int[route.length + 1];
+        System.arraycopy(route, 0, withDepot, 1, route.length);
+        return withDepot;
+    }
+
+    private static double[] loads(int count, double min, double max, Random random) {
+        double[] loads = new double[count];
+        for (int i = 1; i < count; i++) {
+            loads[i] = min + random.nextDouble() * (max - min);
+        }
+        return loads;
+    }
+
+    private static Vehicle vehicle(double maxWeight, double maxVolume, int maxDeliveries) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setMaxWeight(maxWeight);
+        vehicle.setMaxVolume(maxVolume);
+        vehicle.setMaxDeliveries(maxDeliveries);
+        return vehicle;
+    }
+}
@@ -0,0 +1,160 @@
+package com.delivrey.optimizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KdTreeTest {
+
+    @Test
+    void nearest_ShouldMatchBruteForce_WhileStopsAreRemoved() {
+        // Arrange
+        Random random = new Random(7);
+        int n = 500;
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = 45.70 + random.nextDouble() * 0.1;
+            longitudes[i] = 4.80 + random.nextDouble() * 0.1;
+        }
+        KdTree tree = KdTree.of(latitudes, longitudes);
+        double[][] projected = project(latitudes, longitudes);
+        boolean[] removed = new boolean[n];
+
+        // Act / Assert: remove stops in random order, checking the answer of every query
+        for (int step = 0; step < n; step++) {
+            int from = random.nextInt(n);
+            int nearest = tree.nearest(from);
+            int expected = bruteForceNearest(projected, removed, from);
+            // Compared by distance, as equally near stops may come out in any order
+            assertEquals(squaredDistance(projected, from, expected), squaredDistance(projected, from, nearest), 1e-12);
+            assertFalse(removed[nearest]);
+
+            removed[nearest] = true;
+            tree.remove(nearest);
+            assertEquals(n - step - 1, tree.remaining());
+        }
+        assertEquals(-1, tree.nearest(0));
+    }
+
+    @Test
+    void nearest_ShouldRankLikeHaversine_AcrossTheAntimeridianAndNearAPole() {
+        // Arrange: a flat projection would put 179.9° and -179.9° a whole planet apart
+        double[] latitudes = {-16.5, -16.5, -16.5, 89.5, 89.9, 88.5};
+        double[] longitudes = {179.9, -179.9, 178.0, 0.0, 180.0, 0.0};
+        KdTree tree = KdTree.of(latitudes, longitudes);
+
+        // Act / Assert
+        tree.remove(0);
+        tree.remove(3);
+        assertEquals(1, tree.nearest(0));
+        // 0.6° apart across the pole, against 1° along the meridian
+        assertEquals(4, tree.nearest(3));
+    }
+
+    @Test
+    void within_ShouldMatchBruteForce_WhileStopsAreRemoved() {
+        // Arrange
+        Random random = new Random(8);
+        int n = 300;
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = -60 + random.nextDouble() * 120;
+            longitudes[i] = -180 + random.nextDouble() * 360;
+        }
+        KdTree tree = KdTree.of(latitudes, longitudes);
+        double[][] projected = project(latitudes, longitudes);
+        boolean[] removed = new boolean[n];
+
+        for (int step = 0; step < n; step += 3) {
+            int from = random.nextInt(n);
+            double chord = random.nextDouble() * 0.5;
+
+            // Act
+            Set<Integer> found = new HashSet<>();
+            tree.within(from, chord, stop -> assertTrue(found.add(stop), "stop " + stop + " passed twice"));
+
+            // Assert
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < n; i++) {
+                if (!removed[i] && squaredDistance(projected, from, i) <= chord * chord) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(expected, found);
+            removed[step] = true;
+            tree.remove(step);
+        }
+    }
+
+    @Test
+    void nearest_ShouldReturnItself_WhenStillPresent() {
+        // Arrange
+        KdTree tree = KdTree.of(new double[]{48.0, 48.1, 48.2}, new double[]{2.0, 2.1, 2.2});
+
+        // Act / Assert
+        assertEquals(1, tree.nearest(1));
+        tree.remove(1);
+        int nearest = tree.nearest(1);
+        assertTrue(nearest == 0 || nearest == 2);
+    }
+
+    @Test
+    void nearest_ShouldHandleDuplicateCoordinates() {
+        // Arrange: more identical points than fit in a leaf
+        int n = 40;
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        Arrays.fill(latitudes, 43.6);
+        Arrays.fill(longitudes, 1.44);
+        KdTree tree = KdTree.of(latitudes, longitudes);
+
+        // Act / Assert: every stop comes out exactly once
+        boolean[] seen = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int nearest = tree.nearest(0);
+            assertFalse(seen[nearest]);
+            seen[nearest] = true;
+            tree.remove(nearest);
+        }
+        assertEquals(0, tree.remaining());
+    }
+
+    // Same unit vectors as KdTree.of, so that ties are ranked the same way
+    private static double[][] project(double[] latitudes, double[] longitudes) {
+        double[][] projected = new double[latitudes.length][];
+        for (int i = 0; i < latitudes.length; i++) {
+            double latitude = Math.toRadians(latitudes[i]);
+            double longitude = Math.toRadians(longitudes[i]);
+            projected[i] = new double[]{Math.cos(latitude) * Math.cos(longitude),
+                    Math.cos(latitude) * Math.sin(longitude), Math.sin(latitude)};
+        }
+        return projected;
+    }
+
+    private static double squaredDistance(double[][] projected, int from, int to) {
+        double dx = projected[from][0] - projected[to][0];
+        double dy = projected[from][1] - projected[to][1];
+        double dz = projected[from][2] - projected[to][2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static int bruteForceNearest(double[][] projected, boolean[] removed, int from) {
+        int best = -1;
+        double bestSquared = Double.MAX_VALUE;
+        for (int i = 0; i < projected.length; i++) {
+            double squared = squaredDistance(projected, from, i);
+            if (!removed[i] && squared < bestSquared) {
+                bestSquared = squared;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,110 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static com.delivrey.optimizer.DistanceMatrixTest.randomDeliveries;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiStartOptimizerTest {
+
+    private static final Duration NO_LIMIT = Duration.ofMinutes(5);
+
+    @Test
+    void route_ShouldNotDependOnTheParallelism_ForAGivenSeed() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(150, new Random(1)));
+
+        // Act
+        int[] sequential = new MultiStartOptimizer(8, 1, 42L, 10, NO_LIMIT).route(distances, SearchMonitor.NONE);
+        int[] parallel = new MultiStartOptimizer(8, 4, 42L, 10, NO_LIMIT).route(distances, SearchMonitor.NONE);
+        int[] again = new MultiStartOptimizer(8, 4, 42L, 10, NO_LIMIT).route(distances, SearchMonitor.NONE);
+
+        // Assert
+        assertVisitsEveryStopFromTheDepot(sequential, 150);
+        assertArrayEquals(sequential, parallel);
+        assertArrayEquals(parallel, again);
+    }
+
+    @Test
+    void route_ShouldBeNoLongerThanItsFirstStart() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(150, new Random(2)));
+
+        // Act: the first start is the same whatever the seed or the number of starts
+        int[] single = new MultiStartOptimizer(1, 1, 42L, 10, NO_LIMIT).route(distances, SearchMonitor.NONE);
+        int[] bestOfEight = new MultiStartOptimizer(8, 4, 42L, 10, NO_LIMIT).route(distances, SearchMonitor.NONE);
+        int[] otherSeed = new MultiStartOptimizer(8, 4, 7L, 10, NO_LIMIT).route(distances, SearchMonitor.NONE);
+
+        // Assert
+        assertTrue(distances.routeLength(bestOfEight) <= distances.routeLength(single));
+        assertTrue(distances.routeLength(otherSeed) <= distances.routeLength(single));
+        assertVisitsEveryStopFromTheDepot(otherSeed, 150);
+    }
+
+    @Test
+    void route_ShouldReportEachNewBestRoute_ShorterEachTime() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(100, new Random(3)));
+        List<Double> improvements = Collections.synchronizedList(new ArrayList<>());
+        SearchMonitor monitor = new SearchMonitor() {
+            @Override
+            public boolean shouldStop() {
+                return false;
+            }
+
+            @Override
+            public void onImprovement(double cost) {
+                improvements.add(cost);
+            }
+        };
+
+        // Act
+        int[] route = new MultiStartOptimizer(6, 3, 42L, 10, NO_LIMIT).route(distances, monitor);
+
+        // Assert
+        assertFalse(improvements.isEmpty());
+        for (int i = 1; i < improvements.size(); i++) {
+            assertTrue(improvements.get(i) < improvements.get(i - 1));
+        }
+        assertEquals(distances.routeLength(route), improvements.get(improvements.size() - 1), 1e-9);
+    }
+
+    @Test
+    void route_ShouldReturnTheFirstStart_WhenAskedToStopAtOnce() {
+        // Arrange
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(100, new Random(4)));
+
+        // Act
+        int[] route = new MultiStartOptimizer(8, 4, 42L, 10, NO_LIMIT).route(distances, () -> true);
+
+        // Assert: the plain nearest neighbor route, the only start that always runs
+        assertArrayEquals(new NearestNeighborOptimizer().route(distances), route);
+    }
+
+    @Test
+    void calculateOptimalTour_ShouldReturnTrivialInputsUnchanged() {
+        // Arrange
+        MultiStartOptimizer optimizer = new MultiStartOptimizer(4, 2, 42L, 10, NO_LIMIT);
+        List<Delivery> two = randomDeliveries(2, new Random(5));
+
+        // Act & Assert
+        assertNull(optimizer.calculateOptimalTour(null));
+        assertSame(two, optimizer.calculateOptimalTour(two));
+    }
+
+    private static void assertVisitsEveryStopFromTheDepot(int[] route, int n) {
+        assertEquals(0, route[0]);
+        int[] sorted = route.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(IntStream.range(0, n).toArray(), sorted);
+    }
+}
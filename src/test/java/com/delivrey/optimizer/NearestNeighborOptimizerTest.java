@@ -0,0 +1,123 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static com.delivrey.optimizer.DistanceMatrixTest.delivery;
+import static com.delivrey.optimizer.DistanceMatrixTest.randomDeliveries;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearestNeighborOptimizerTest {
+
+    private final NearestNeighborOptimizer optimizer = new NearestNeighborOptimizer();
+
+    @Test
+    void calculateOptimalTour_ShouldFollowTheNearestStop_FromTheFirstDelivery() {
+        // Arrange: stops on a line, given out of order
+        Delivery start = delivery(1L, 48.80, 2.30);
+        Delivery third = delivery(3L, 48.80, 2.32);
+        Delivery second = delivery(2L, 48.80, 2.31);
+        Delivery fourth = delivery(4L, 48.80, 2.33);
+
+        // Act
+        List<Delivery> route = optimizer.calculateOptimalTour(List.of(start, third, fourth, second));
+
+        // Assert
+        assertEquals(List.of(start, second, third, fourth), route);
+    }
+
+    @Test
+    void calculateOptimalTour_ShouldReturnTheInput_WhenThereIsNothingToOrder() {
+        // Arrange
+        List<Delivery> single = List.of(delivery(1L, 48.8, 2.3));
+
+        // Act / Assert
+        assertSame(single, optimizer.calculateOptimalTour(single));
+        assertTrue(optimizer.calculateOptimalTour(List.of()).isEmpty());
+        assertNull(optimizer.calculateOptimalTour(null));
+    }
+
+    @Test
+    void calculateOptimalTour_ShouldRankWithTheSuppliedMatrix_AboveTheTreeThreshold() {
+        // Arrange: a matrix that disagrees with geography, reversing the order of the stops
+        int n = NearestNeighborOptimizer.TREE_THRESHOLD + 10;
+        List<Delivery> deliveries = randomDeliveries(n, new Random(11));
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = 0.0;
+            longitudes[i] = i == 0 ? 0.0 : (n - i) * 0.001;
+        }
+        DistanceMatrix distances = DistanceMatrix.of(latitudes, longitudes);
+
+        // Act
+        List<Delivery> route = optimizer.calculateOptimalTour(deliveries, distances);
+
+        // Assert: the order of the matrix, not the one of the coordinates of the deliveries
+        assertSame(deliveries.get(0), route.get(0));
+        for (int step = 1; step < n; step++) {
+            assertSame(deliveries.get(n - step), route.get(step));
+        }
+    }
+
+    @Test
+    void route_ShouldGiveTheRouteOfTheLinearScan_AboveTheTreeThreshold() {
+        // Arrange: around Paris, around the world, and across the antimeridian near a pole
+        Random random = new Random(12);
+        double[][] regions = {{48.75, 2.25, 0.2}, {-80.0, -180.0, 160.0}, {84.0, 179.0, 2.0}};
+        for (double[] region : regions) {
+            int n = 400;
+            double[] latitudes = new double[n];
+            double[] longitudes = new double[n];
+            for (int i = 0; i < n; i++) {
+                latitudes[i] = region[0] + random.nextDouble() * region[2];
+                longitudes[i] = wrap(region[1] + random.nextDouble() * region[2] * 2);
+            }
+
+            // Act
+            for (DistanceMatrix distances : List.of(DistanceMatrix.dense(latitudes, longitudes),
+                    DistanceMatrix.onDemand(latitudes, longitudes))) {
+                int[] byTree = optimizer.treeRoute(distances);
+                int[] byScan = optimizer.scanRoute(distances);
+
+                // Assert
+                assertPermutation(byTree);
+                assertArrayEquals(byScan, byTree);
+                assertArrayEquals(byScan, optimizer.route(distances));
+            }
+        }
+    }
+
+    @Test
+    void calculateOptimalTour_ShouldGiveTheSameRoute_WithOrWithoutAMatrix() {
+        // Arrange
+        List<Delivery> deliveries = randomDeliveries(NearestNeighborOptimizer.TREE_THRESHOLD * 3, new Random(13));
+
+        // Act
+        List<Delivery> withoutMatrix = optimizer.calculateOptimalTour(deliveries);
+        List<Delivery> withMatrix = optimizer.calculateOptimalTour(deliveries, DistanceMatrix.of(deliveries));
+
+        // Assert
+        assertEquals(deliveries.size(), withoutMatrix.size());
+        for (int i = 0; i < withMatrix.size(); i++) {
+            assertSame(withMatrix.get(i), withoutMatrix.get(i));
+        }
+    }
+
+    private static double wrap(double longitude) {
+        return longitude > 180 ? longitude - 360 : longitude;
+    }
+
+    private static void assertPermutation(int[] route) {
+        assertEquals(0, route[0]);
+        HashSet<Integer> seen = new HashSet<>();
+        for (int stop : route) {
+            assertTrue(seen.add(stop), "stop " + stop + " visited twice");
+        }
+        assertEquals(route.length, seen.size());
+    }
+}
@@ -0,0 +1,163 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+import com.delivrey.optimizer.model.OptimizedPlan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static com.delivrey.optimizer.DistanceMatrixTest.delivery;
+import static com.delivrey.optimizer.DistanceMatrixTest.randomDeliveries;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeWindowOptimizerTest {
+
+    // Departure at 08:00, 30 km/h, 5 minutes at each stop
+    private static final int DEPARTURE = 8 * 60;
+    private static final double MINUTES_PER_KM = 2.0;
+    private static final double SERVICE_MINUTES = 5.0;
+
+    private TimeWindowOptimizer optimizer;
+
+    @BeforeEach
+    void setUp() {
+        optimizer = new TimeWindowOptimizer(LocalTime.of(8, 0), 30.0, Duration.ofMinutes(5), 10,
+                Duration.ofSeconds(5));
+    }
+
+    @Test
+    void calculateOptimalTour_ShouldServeAFarStopFirst_WhenItsSlotClosesFirst() {
+        // Arrange: the near stop only opens at 10:00, the far one closes at 09:00
+        Delivery depot = delivery(0L, 48.85, 2.35);
+        Delivery near = delivery(1L, 48.85, 2.3637);
+        near.setTimeWindow("10:00-10:30");
+        Delivery far = delivery(2L, 48.85, 2.4866);
+        far.setTimeWindow("08:00-09:00");
+
+        // Act
+        List<Delivery> route = optimizer.calculateOptimalTour(List.of(depot, near, far));
+
+        // Assert
+        assertEquals(List.of(depot, far, near), route);
+    }
+
+    @Test
+    void route_ShouldMeetEverySlot_WhenSomeRouteDoes() {
+        // Arrange: slots of an hour around the times of a random route, which therefore meets them all
+        List<Delivery> stops = randomDeliveries(31, new Random(1));
+        DistanceMatrix distances = DistanceMatrix.of(stops);
+        int[] shuffled = IntStream.range(0, 31).toArray();
+        shuffle(shuffled, new Random(2));
+        int[] windows = new int[31];
+        windows[0] = TimeWindow.NONE;
+        double time = DEPARTURE;
+        for (int k = 1; k < shuffled.length; k++) {
+            time += distances.distance(shuffled[k - 1], shuffled[k]) * MINUTES_PER_KM;
+            int minute = (int) time;
+            windows[shuffled[k]] = TimeWindow.parse(clock(minute - 20) + "-" + clock(minute + 40));
+            time += SERVICE_MINUTES;
+        }
+
+        // Act
+        int[] route = optimizer.route(distances, windows, SearchMonitor.NONE);
+
+        // Assert
+        assertVisitsEveryStopFromTheDepot(route, 31);
+        assertEquals(0, lateStops(route, distances, windows));
+    }
+
+    @Test
+    void route_ShouldMeetEverySlot_WithMorningAndAfternoonSlots() {
+        // Arrange: wide slots, which leave room for the local search, and stops without any
+        List<Delivery> stops = randomDeliveries(61, new Random(3));
+        DistanceMatrix distances = DistanceMatrix.of(stops);
+        int[] windows = new int[61];
+        windows[0] = TimeWindow.NONE;
+        for (int i = 1; i < windows.length; i++) {
+            windows[i] = TimeWindow.parse(i % 3 == 0 ? "13:00-18:00" : i % 3 == 1 ? "08:00-13:00" : null);
+        }
+
+        // Act
+        int[] route = optimizer.route(distances, windows, SearchMonitor.NONE);
+
+        // Assert
+        assertVisitsEveryStopFromTheDepot(route, 61);
+        assertEquals(0, lateStops(route, distances, windows));
+    }
+
+    @Test
+    void plan_ShouldServeLate_AStopWhoseSlotCannotBeMet() {
+        // Arrange: a slot that closed before the departure
+        List<Delivery> deliveries = randomDeliveries(6, new Random(4));
+        deliveries.get(3).setTimeWindow("06:00-07:00");
+        deliveries.get(4).setTimeWindow("08:00-12:00");
+
+        // Act
+        OptimizedPlan plan = optimizer.plan(deliveries, DistanceMatrix.of(deliveries), LocalDate.of(2025, 6, 2),
+                SearchMonitor.NONE);
+
+        // Assert
+        assertEquals(5, plan.getOrderedDeliveries().size());
+        assertEquals(1, plan.getMetadata().getStatistics().get("lateDeliveries"));
+        assertEquals(1, plan.getRecommendations().size());
+        OptimizedPlan.DeliveryOrder late = plan.getOrderedDeliveries().stream()
+                .filter(order -> order.getDeliveryId() == 3L)
+                .findFirst()
+                .orElseThrow();
+        assertTrue((Long) late.getAdditionalInfo().get("lateMinutes") > 60);
+        for (int k = 0; k < plan.getOrderedDeliveries().size(); k++) {
+            OptimizedPlan.DeliveryOrder order = plan.getOrderedDeliveries().get(k);
+            assertEquals(k + 1, order.getSequenceNumber());
+            assertFalse(order.getEstimatedArrivalTime().isBefore(LocalDate.of(2025, 6, 2).atTime(8, 0)));
+            // Leaves after waiting for the slot, if needed, and the service time
+            long waiting = (Long) order.getAdditionalInfo().get("waitingMinutes");
+            Duration stay = Duration.between(order.getEstimatedArrivalTime(), order.getEstimatedDepartureTime());
+            assertEquals(waiting + SERVICE_MINUTES, stay.toSeconds() / 60.0, 1.0);
+        }
+    }
+
+    private static int lateStops(int[] route, DistanceMatrix distances, int[] windows) {
+        int late = 0;
+        double time = DEPARTURE;
+        for (int k = 1; k < route.length; k++) {
+            int stop = route[k];
+            time += distances.distance(route[k - 1], stop) * MINUTES_PER_KM;
+            if (windows[stop] != TimeWindow.NONE) {
+                time = Math.max(time, TimeWindow.open(windows[stop]));
+                if (time > TimeWindow.close(windows[stop]) + 1e-6) {
+                    late++;
+                }
+            }
+            time += SERVICE_MINUTES;
+        }
+        return late;
+    }
+
+    private static void assertVisitsEveryStopFromTheDepot(int[] route, int n) {
+        assertEquals(0, route[0]);
+        int[] sorted = route.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(IntStream.range(0, n).toArray(), sorted);
+    }
+
+    private static String clock(int minute) {
+        return String.format("%02d:%02d", minute / 60, minute % 60);
+    }
+
+    private static void shuffle(int[] stops, Random random) {
+        // The depot stays first
+        for (int i = stops.length - 1; i > 1; i--) {
+            int j = 1 + random.nextInt(i);
+            int swap = stops[i];
+            stops[i] = stops[j];
+            stops[j] = swap;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Customer;
+import com.delivrey.entity.Delivery;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeWindowTest {
+
+    @Test
+    void parse_ShouldReadTheOpeningAndClosingMinutes() {
+        assertWindow(9 * 60, 11 * 60, TimeWindow.parse("09:00-11:00"));
+        assertWindow(9 * 60, 11 * 60 + 30, TimeWindow.parse(" 9:00 - 11:30 "));
+        assertWindow(8 * 60 + 15, 10 * 60, TimeWindow.parse("08:15:00-10:00:59"));
+        assertEquals(LocalTime.of(8, 15), TimeWindow.openTime(TimeWindow.parse("08:15-10:00")));
+    }
+
+    @Test
+    void parse_ShouldRunPastMidnight_WhenTheSlotEndsBeforeItStarts() {
+        assertWindow(22 * 60, TimeWindow.MINUTES_PER_DAY + 2 * 60, TimeWindow.parse("22:00-02:00"));
+    }
+
+    @Test
+    void parse_ShouldStayOpenUntilTheEndOfTheDay_WhenThereIsNoClosingTime() {
+        assertWindow(14 * 60, TimeWindow.MINUTES_PER_DAY, TimeWindow.parse("14:00"));
+    }
+
+    @Test
+    void parse_ShouldReturnNone_WhenTheSlotCannotBeRead() {
+        assertEquals(TimeWindow.NONE, TimeWindow.parse(null));
+        assertEquals(TimeWindow.NONE, TimeWindow.parse(""));
+        assertEquals(TimeWindow.NONE, TimeWindow.parse("n'importe quand"));
+        assertEquals(TimeWindow.NONE, TimeWindow.parse("24:00-25:00"));
+        assertEquals(TimeWindow.NONE, TimeWindow.parse("09:60-11:00"));
+        assertEquals(TimeWindow.NONE, TimeWindow.parse("09:00-"));
+        assertEquals(TimeWindow.NONE, TimeWindow.parse("09:00-11:00 le matin"));
+        assertEquals(TimeWindow.NONE, TimeWindow.parse("9h-11h"));
+    }
+
+    @Test
+    void of_ShouldPreferTheSlotOfTheCustomer() {
+        // Arrange
+        Customer customer = new Customer();
+        customer.setPreferredTimeSlot("14:00-16:00");
+        Delivery delivery = new Delivery();
+        delivery.setCustomer(customer);
+        delivery.setTimeWindow("09:00-11:00");
+
+        // Act & Assert
+        assertWindow(14 * 60, 16 * 60, TimeWindow.of(delivery));
+
+        customer.setPreferredTimeSlot("le matin");
+        assertWindow(9 * 60, 11 * 60, TimeWindow.of(delivery));
+
+        delivery.setCustomer(null);
+        delivery.setTimeWindow(null);
+        assertEquals(TimeWindow.NONE, TimeWindow.of(delivery));
+    }
+
+    private static void assertWindow(int open, int close, int window) {
+        assertNotEquals(TimeWindow.NONE, window);
+        assertEquals(open, TimeWindow.open(window));
+        assertEquals(close, TimeWindow.close(window));
+    }
+}
@@ -0,0 +1,165 @@
+package com.delivrey.optimizer;
+
+import com.delivrey.entity.Delivery;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static com.delivrey.optimizer.DistanceMatrixTest.randomDeliveries;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TourImproverTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void twoOpt_ShouldUncrossTwoEdges() {
+        // Arrange: corners of a square visited 0 -> 2 -> 1 -> 3, whose two middle edges cross
+        DistanceMatrix distances = DistanceMatrix.of(
+                new double[]{48.80, 48.81, 48.81, 48.80},
+                new double[]{2.30, 2.30, 2.31, 2.31});
+        int[] route = {0, 2, 1, 3};
+        double before = distances.routeLength(route);
+
+        // Act
+        double saved = improve(new TwoOptImprover(), route, distances, 3);
+
+        // Assert: the shortest open path, along the two short sides
+        assertArrayEquals(new int[]{0, 3, 2, 1}, route);
+        assertEquals(before - distances.routeLength(route), saved, EPSILON);
+    }
+
+    @Test
+    void orOpt_ShouldMoveAStopBackBetweenItsNeighbors() {
+        // Arrange: stops along a line, stop 1 visited last
+        DistanceMatrix distances = DistanceMatrix.of(
+                new double[]{48.80, 48.80, 48.80, 48.80, 48.80},
+                new double[]{2.30, 2.31, 2.32, 2.33, 2.34});
+        int[] route = {0, 2, 3, 4, 1};
+        double before = distances.routeLength(route);
+
+        // Act
+        double saved = improve(new OrOptImprover(), route, distances, 4);
+
+        // Assert
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, route);
+        assertEquals(before - distances.routeLength(route), saved, EPSILON);
+    }
+
+    @Test
+    void improve_ShouldReportTheSavedLengthAndKeepTheFirstStop() {
+        for (TourImprover improver : List.of(new TwoOptImprover(), new OrOptImprover())) {
+            // Arrange
+            Random random = new Random(31);
+            DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(150, random));
+            int[] route = shuffledRoute(150, random);
+            double before = distances.routeLength(route);
+
+            // Act
+            double saved = improve(improver, route, distances, 10);
+
+            // Assert
+            assertTrue(saved > 0, improver.getClass().getSimpleName() + " should shorten a random route");
+            assertEquals(before - distances.routeLength(route), saved, 1e-6);
+            assertEquals(0, route[0]);
+            assertPermutation(route);
+        }
+    }
+
+    @Test
+    void twoOpt_ShouldLeaveNoImprovingMove_WhenEveryStopIsANeighbor() {
+        // Arrange
+        Random random = new Random(32);
+        int n = 60;
+        DistanceMatrix distances = DistanceMatrix.of(randomDeliveries(n, random));
+        int[] route = shuffledRoute(n, random);
+
+        // Act
+        improve(new TwoOptImprover(), route, distances, n - 1);
+
+        // Assert: no reversal of route[i+1..j] shortens the open route
+        for (int i = 0; i < n - 2; i++) {
+            for (int j = i + 2; j < n; j++) {
+                double removed = distances.distance(route[i], route[i + 1])
+                        + (j + 1 < n ? distances.distance(route[j], route[j + 1]) : 0.0);
+                double added = distances.distance(route[i], route[j])
+                        + (j + 1 < n ? distances.distance(route[i + 1], route[j + 1]) : 0.0);
+                assertTrue(added >= removed - 1e-7, "improving move left between " + i + " and " + j);
+            }
+        }
+    }
+
+    @Test
+    void localSearch_ShouldNotBeLongerThanItsConstruction() {
+        // Arrange
+        List<Delivery> deliveries = randomDeliveries(200, new Random(33));
+        DistanceMatrix distances = DistanceMatrix.of(deliveries);
+        NearestNeighborOptimizer construction = new NearestNeighborOptimizer();
+        LocalSearchOptimizer optimizer = new LocalSearchOptimizer(construction,
+                List.of(new TwoOptImprover(), new OrOptImprover()), 10, Duration.ofSeconds(30));
+
+        // Act
+        List<Delivery> initial = construction.calculateOptimalTour(deliveries, distances);
+        List<Delivery> improved = optimizer.calculateOptimalTour(deliveries, distances);
+
+        // Assert
+        assertSame(deliveries.get(0), improved.get(0));
+        assertEquals(deliveries.size(), improved.size());
+        assertTrue(distances.routeLength(DistanceMatrix.indexesOf(deliveries, improved))
+                < distances.routeLength(DistanceMatrix.indexesOf(deliveries, initial)));
+    }
+
+    @Test
+    void localSearch_ShouldKeepTheConstruction_WhenStoppedAtOnce() {
+        // Arrange
+        List<Delivery> deliveries = randomDeliveries(100, new Random(34));
+        DistanceMatrix distances = DistanceMatrix.of(deliveries);
+        NearestNeighborOptimizer construction = new NearestNeighborOptimizer();
+        LocalSearchOptimizer optimizer = new LocalSearchOptimizer(construction,
+                List.of(new TwoOptImprover(), new OrOptImprover()), 10, Duration.ofSeconds(30));
+
+        // Act
+        List<Delivery> route = optimizer.calculateOptimalTour(deliveries, distances, () -> true);
+
+        // Assert
+        assertEquals(construction.calculateOptimalTour(deliveries, distances), route);
+    }
+
+    private static double improve(TourImprover improver, int[] route, DistanceMatrix distances, int neighborCount) {
+        int[] position = new int[route.length];
+        for (int i = 0; i < route.length; i++) {
+            position[route[i]] = i;
+        }
+        double saved = improver.improve(route, position, distances, NeighborLists.of(distances, neighborCount),
+                SearchMonitor.NONE);
+        for (int i = 0; i < route.length; i++) {
+            assertEquals(i, position[route[i]], "position out of sync with the route");
+        }
+        return saved;
+    }
+
+    // Stop 0 first, the others in random order
+    private static int[] shuffledRoute(int n, Random random) {
+        int[] route = new int[n];
+        for (int i = 0; i < n; i++) {
+            route[i] = i;
+        }
+        for (int i = n - 1; i > 1; i--) {
+            int j = 1 + random.nextInt(i);
+            int swap = route[i];
+            route[i] = route[j];
+            route[j] = swap;
+        }
+        return route;
+    }
+
+    private static void assertPermutation(int[] route) {
+        boolean[] seen = new boolean[route.length];
+        for (int stop : route) {
+            assertFalse(seen[stop], "stop " + stop + " visited twice");
+            seen[stop] = true;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.delivrey.repository;
+
+import com.delivrey.entity.Customer;
+import com.delivrey.util.GeoUtils;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The bounding box of the nearby searches only prefilters: they find the customers a haversine
+ * filter keeps, near a pole and across the antimeridian as well.
+ * Runs without the second-level cache, whose regions only EntityCacheConfigTest creates.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+class CustomerRepositoryTest {
+
+    private static final double RADIUS_KM = 50.0;
+    private static final int CUSTOMERS_PER_CENTER = 150;
+
+    // Paris, both sides of the antimeridian, and both poles
+    private static final double[][] CENTERS = {
+            {48.8566, 2.3522},
+            {0.0, 179.9},
+            {-17.7, -179.95},
+            {64.5, 179.8},
+            {89.8, 45.0},
+            {-89.9, -120.0}};
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        for (double[] center : CENTERS) {
+            // One customer on the center itself, the others up to twice the radius away
+            persist(center[0], center[1]);
+            int placed = 0;
+            while (placed < CUSTOMERS_PER_CENTER) {
+                double distanceKm = random.nextDouble() * 2 * RADIUS_KM;
+                if (Math.abs(distanceKm - RADIUS_KM) < 0.01) {
+                    // Too close to the circle for two distance formulas to agree
+                    continue;
+                }
+                double[] point = destination(center[0], center[1], random.nextDouble() * 360, distanceKm);
+                persist(point[0], point[1]);
+                placed++;
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void findNearbyCustomers_ShouldFindTheCustomersOfAHaversineFilter() {
+        List<Customer> customers = customerRepository.findAll();
+        for (double[] center : CENTERS) {
+            // Arrange
+            Set<Long> expected = customers.stream()
+                    .filter(customer -> GeoUtils.haversineKm(center[0], center[1],
+                            customer.getLatitude(), customer.getLongitude()) <= RADIUS_KM)
+                    .map(Customer::getId)
+                    .collect(Collectors.toSet());
+
+            // Act
+            List<Customer> nearby = customerRepository.findNearbyCustomers(center[0], center[1], RADIUS_KM);
+            Page<Customer> page = customerRepository.findNearbyCustomers(center[0], center[1], RADIUS_KM,
+                    null, null, PageRequest.of(0, 2 * CUSTOMERS_PER_CENTER));
+
+            // Assert
+            String where = center[0] + ", " + center[1];
+            assertTrue(expected.size() > 1, where);
+            assertEquals(expected, ids(nearby), where);
+            assertEquals(expected, ids(page.getContent()), where);
+            assertEquals(expected.size(), page.getTotalElements(), where);
+        }
+    }
+
+    @Test
+    void findNearbyCustomers_ShouldApplyTheNameAndAddressFilters() {
+        // Arrange
+        Customer named = persist(48.86, 2.35);
+        named.setName("Boulangerie Martin");
+        named.setAddress("12 rue de Rivoli, Paris");
+        entityManager.flush();
+
+        // Act
+        Page<Customer> byName = customerRepository.findNearbyCustomers(48.8566, 2.3522, RADIUS_KM,
+                "martin", null, PageRequest.of(0, 10));
+        Page<Customer> byAddress = customerRepository.findNearbyCustomers(48.8566, 2.3522, RADIUS_KM,
+                null, "RIVOLI", PageRequest.of(0, 10));
+        Page<Customer> elsewhere = customerRepository.findNearbyCustomers(0.0, 179.9, RADIUS_KM,
+                "martin", null, PageRequest.of(0, 10));
+
+        // Assert
+        assertEquals(List.of(named.getId()), byName.map(Customer::getId).getContent());
+        assertEquals(List.of(named.getId()), byAddress.map(Customer::getId).getContent());
+        assertTrue(elsewhere.isEmpty());
+    }
+
+    private Customer persist(double latitude, double longitude) {
+        Customer customer = new Customer();
+        customer.setName("Client");
+        customer.setAddress("Nowhere");
+        customer.setLatitude(latitude);
+        customer.setLongitude(longitude);
+        entityManager.persist(customer);
+        return customer;
+    }
+
+    private static Set<Long> ids(List<Customer> customers) {
+        return customers.stream().map(Customer::getId).collect(Collectors.toSet());
+    }
+
+    /**
+     * Point {@code distanceKm} away from the start in the given direction, longitude wrapped to [-180, 180].
+     */
+    private static double[] destination(double latitude, double longitude, double bearingDegrees, double distanceKm) {
+        double angle = distanceKm / 6371.0;
+        double bearing = Math.toRadians(bearingDegrees);
+        double rLat = Math.toRadians(latitude);
+        double lat = Math.asin(Math.sin(rLat) * Math.cos(angle)
+                + Math.cos(rLat) * Math.sin(angle) * Math.cos(bearing));
+        double lon = Math.toRadians(longitude) + Math.atan2(Math.sin(bearing) * Math.sin(angle) * Math.cos(rLat),
+                Math.cos(angle) - Math.sin(rLat) * Math.sin(lat));
+        double lonDegrees = Math.toDegrees(lon);
+        lonDegrees = ((lonDegrees + 540.0) % 360.0) - 180.0;
+        return new double[]{Math.toDegrees(lat), lonDegrees};
+    }
+}
@@ -0,0 +1,188 @@
+package com.delivrey.service;
+
+import com.delivrey.entity.Customer;
+import com.delivrey.entity.Delivery;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizationResultCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private OptimizationResultCache cache;
+    private List<Delivery> stops;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new OptimizationResultCache(3, Duration.ofMinutes(10), meterRegistry);
+        stops = List.of(delivery(1L, 48.85, 2.35), delivery(2L, 48.86, 2.36), delivery(3L, 48.87, 2.37));
+    }
+
+    @Test
+    void get_ShouldReturnTheRouteWithTheGivenInstances_WhenTheTourIsUnchanged() {
+        // Arrange
+        OptimizationResultCache.Key key = OptimizationResultCache.key("2-opt", 9L, stops, false);
+        cache.put(key, 100L, List.of(stops.get(0), stops.get(2), stops.get(1)), 4.2);
+        List<Delivery> reloaded = List.of(delivery(3L, 48.87, 2.37), delivery(1L, 48.85, 2.35),
+                delivery(2L, 48.86, 2.36));
+
+        // Act: same stops read again, in another order
+        OptimizationResultCache.Key sameKey = OptimizationResultCache.key("2-OPT", 9L, reloaded, false);
+        OptimizationResultCache.Route route = cache.get(sameKey, reloaded);
+
+        // Assert
+        assertEquals(key, sameKey);
+        assertNotNull(route);
+        assertEquals(4.2, route.distanceKm());
+        assertSame(reloaded.get(1), route.stops().get(0));
+        assertSame(reloaded.get(0), route.stops().get(1));
+        assertSame(reloaded.get(2), route.stops().get(2));
+        assertEquals(1, meterRegistry.counter("tour.optimization.cache", "result", "hit").count());
+    }
+
+    @Test
+    void key_ShouldChange_WhenAStopMovesOrTheTourChanges() {
+        // Arrange
+        OptimizationResultCache.Key key = OptimizationResultCache.key("NN", 9L, stops, false);
+
+        // Act & Assert
+        assertNotEquals(key, OptimizationResultCache.key("NN", 9L,
+                List.of(stops.get(0), stops.get(1), delivery(3L, 48.87, 2.38)), false));
+        assertNotEquals(key, OptimizationResultCache.key("NN", 9L, stops.subList(0, 2), false));
+        assertNotEquals(key, OptimizationResultCache.key("NN", 8L, stops, false));
+        assertNotEquals(key, OptimizationResultCache.key("2OPT", 9L, stops, false));
+    }
+
+    @Test
+    void key_ShouldFollowTheTimeSlots_OnlyWhenTheAlgorithmDoes() {
+        // Arrange
+        Delivery rescheduled = delivery(3L, 48.87, 2.37);
+        Customer customer = new Customer();
+        customer.setPreferredTimeSlot("14:00-16:00");
+        rescheduled.setCustomer(customer);
+        List<Delivery> changed = List.of(stops.get(0), stops.get(1), rescheduled);
+
+        // Act & Assert
+        assertEquals(OptimizationResultCache.key("NN", 9L, stops, false),
+                OptimizationResultCache.key("NN", 9L, changed, false));
+        assertNotEquals(OptimizationResultCache.key("TIME_WINDOWS", 9L, stops, true),
+                OptimizationResultCache.key("TIME_WINDOWS", 9L, changed, true));
+    }
+
+    @Test
+    void invalidateTour_ShouldDropOnlyTheRoutesOfThatTour() {
+        // Arrange
+        OptimizationResultCache.Key first = OptimizationResultCache.key("NN", 9L, stops, false);
+        OptimizationResultCache.Key second = OptimizationResultCache.key("2OPT", 9L, stops, false);
+        OptimizationResultCache.Key other = OptimizationResultCache.key("NN", 8L, stops, false);
+        cache.put(first, 100L, stops, 1.0);
+        cache.put(second, 100L, stops, 1.0);
+        cache.put(other, 200L, stops, 1.0);
+
+        // Act
+        cache.invalidateTour(100L);
+
+        // Assert
+        assertEquals(1, cache.size());
+        assertNull(cache.get(first, stops));
+        assertNull(cache.get(second, stops));
+        assertNotNull(cache.get(other, stops));
+    }
+
+    @Test
+    void invalidateDelivery_ShouldDropTheRoutesGoingThroughIt() {
+        // Arrange
+        OptimizationResultCache.Key withIt = OptimizationResultCache.key("NN", 9L, stops, false);
+        OptimizationResultCache.Key without = OptimizationResultCache.key("NN", 9L, stops.subList(0, 2), false);
+        cache.put(withIt, 100L, stops, 1.0);
+        cache.put(without, 200L, stops.subList(0, 2), 1.0);
+
+        // Act
+        cache.invalidateDelivery(3L);
+
+        // Assert
+        assertNull(cache.get(withIt, stops));
+        assertNotNull(cache.get(without, stops.subList(0, 2)));
+    }
+
+    @Test
+    void get_ShouldMiss_WhenAStopOfTheRouteIsMissing() {
+        // Arrange
+        OptimizationResultCache.Key key = OptimizationResultCache.key("NN", 9L, stops, false);
+        cache.put(key, 100L, stops, 1.0);
+
+        // Act
+        OptimizationResultCache.Route route = cache.get(key, stops.subList(0, 2));
+
+        // Assert
+        assertNull(route);
+        assertEquals(1, meterRegistry.counter("tour.optimization.cache", "result", "miss").count());
+    }
+
+    @Test
+    void put_ShouldEvictTheLeastRecentlyUsedRoute_WhenFull() {
+        // Arrange
+        OptimizationResultCache.Key[] keys = new OptimizationResultCache.Key[4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = OptimizationResultCache.key("NN", (long) i, stops, false);
+        }
+        cache.put(keys[0], 100L, stops, 1.0);
+        cache.put(keys[1], 101L, stops, 1.0);
+        cache.put(keys[2], 102L, stops, 1.0);
+        cache.get(keys[0], stops);
+
+        // Act
+        cache.put(keys[3], 103L, stops, 1.0);
+
+        // Assert
+        assertEquals(3, cache.size());
+        assertNull(cache.get(keys[1], stops));
+        assertNotNull(cache.get(keys[0], stops));
+        assertEquals(1, meterRegistry.counter("tour.optimization.cache.evictions", "cause", "size").count());
+    }
+
+    @Test
+    void get_ShouldDropTheRoute_OnceExpired() throws InterruptedException {
+        // Arrange
+        OptimizationResultCache expiring = new OptimizationResultCache(3, Duration.ofMillis(1), meterRegistry);
+        OptimizationResultCache.Key key = OptimizationResultCache.key("NN", 9L, stops, false);
+        expiring.put(key, 100L, stops, 1.0);
+        Thread.sleep(5);
+
+        // Act
+        OptimizationResultCache.Route route = expiring.get(key, stops);
+
+        // Assert
+        assertNull(route);
+        assertEquals(0, expiring.size());
+        assertEquals(1, meterRegistry.counter("tour.optimization.cache.evictions", "cause", "expired").count());
+    }
+
+    @Test
+    void put_ShouldKeepNothing_WhenTheCacheIsDisabled() {
+        // Arrange
+        OptimizationResultCache disabled = new OptimizationResultCache(0, Duration.ofMinutes(10), meterRegistry);
+        OptimizationResultCache.Key key = OptimizationResultCache.key("NN", 9L, stops, false);
+
+        // Act
+        disabled.put(key, 100L, stops, 1.0);
+
+        // Assert
+        assertEquals(0, disabled.size());
+        assertNull(disabled.get(key, stops));
+    }
+
+    private static Delivery delivery(Long id, double latitude, double longitude) {
+        Delivery delivery = new Delivery();
+        delivery.setId(id);
+        delivery.setLatitude(latitude);
+        delivery.setLongitude(longitude);
+        return delivery;
+    }
+}
@@ -0,0 +1,214 @@
+package com.delivrey.service;
+
+import com.delivrey.config.GeoProperties;
+import com.delivrey.dto.DeliveryDTO;
+import com.delivrey.entity.DeliveryStatus;
+import com.delivrey.event.DeliveryChangeEvent;
+import com.delivrey.listener.DeliveryChangeListener;
+import com.delivrey.util.GeoUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingDeliveryIndexTest {
+
+    private List<DeliveryDTO> deliveries;
+    private PendingDeliveryIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // Mostly around Lyon, some spread over the world, a few on both sides of the antimeridian
+        Random random = new Random(41);
+        deliveries = new ArrayList<>();
+        for (long id = 1; id <= 2_000; id++) {
+            double latitude;
+            double longitude;
+            if (id % 10 == 0) {
+                latitude = -80 + random.nextDouble() * 160;
+                longitude = -180 + random.nextDouble() * 360;
+            } else if (id % 97 == 0) {
+                latitude = -17 + random.nextDouble();
+                longitude = random.nextBoolean() ? 179.5 + random.nextDouble() * 0.5 : -180 + random.nextDouble() * 0.5;
+            } else {
+                latitude = 45.6 + random.nextDouble() * 0.3;
+                longitude = 4.7 + random.nextDouble() * 0.3;
+            }
+            deliveries.add(delivery(id, latitude, longitude, id % 7 == 0 ? DeliveryStatus.DELIVERED : DeliveryStatus.PENDING));
+        }
+        index = new PendingDeliveryIndex(0.05);
+        index.load(deliveries);
+    }
+
+    @Test
+    void withinRadius_ShouldMatchBruteForce() {
+        double[][] queries = {{45.75, 4.85, 2.0}, {45.75, 4.85, 25.0}, {45.0, 4.0, 100.0}, {-16.5, 179.9, 80.0},
+                {0.0, 0.0, 3_000.0}, {89.9, 10.0, 500.0}};
+        for (double[] query : queries) {
+            // Act
+            List<DeliveryDTO> found = index.withinRadius(query[0], query[1], query[2]);
+
+            // Assert
+            List<DeliveryDTO> expected = pending().stream()
+                    .filter(delivery -> distance(query[0], query[1], delivery) <= query[2])
+                    .sorted(Comparator.comparingDouble(delivery -> distance(query[0], query[1], delivery)))
+                    .collect(Collectors.toList());
+            assertEquals(ids(expected), ids(found), "radius " + query[2] + " km around " + query[0] + ", " + query[1]);
+        }
+    }
+
+    @Test
+    void nearest_ShouldMatchBruteForce() {
+        double[][] queries = {{45.75, 4.85}, {45.0, 4.0}, {-16.5, -179.9}, {60.0, -100.0}, {-75.0, 0.0}};
+        for (double[] query : queries) {
+            for (int count : new int[]{1, 5, 50}) {
+                // Act
+                List<DeliveryDTO> found = index.nearest(query[0], query[1], count);
+
+                // Assert: same distances, ties may come in any order
+                List<Double> expected = pending().stream()
+                        .map(delivery -> distance(query[0], query[1], delivery))
+                        .sorted()
+                        .limit(count)
+                        .collect(Collectors.toList());
+                assertEquals(expected, found.stream()
+                        .map(delivery -> distance(query[0], query[1], delivery))
+                        .collect(Collectors.toList()), count + " nearest of " + query[0] + ", " + query[1]);
+            }
+        }
+    }
+
+    @Test
+    void nearest_ShouldReturnEveryPendingDelivery_WhenAskedForMore() {
+        // Act
+        List<DeliveryDTO> found = index.nearest(45.75, 4.85, 10_000);
+
+        // Assert
+        assertEquals(pending().size(), found.size());
+        assertTrue(index.nearest(45.75, 4.85, 0).isEmpty());
+    }
+
+    @Test
+    void put_ShouldMoveAndDropDeliveries_AsTheyChange() {
+        // Arrange
+        DeliveryDTO moved = delivery(5_000L, 10.0, 10.0, DeliveryStatus.PENDING);
+        index.put(moved);
+        assertEquals(List.of(5_000L), ids(index.withinRadius(10.0, 10.0, 1.0)));
+
+        // Act: moved away, then delivered
+        index.put(delivery(5_000L, -10.0, -10.0, DeliveryStatus.PENDING));
+        List<DeliveryDTO> atOldPlace = index.withinRadius(10.0, 10.0, 1.0);
+        List<DeliveryDTO> atNewPlace = index.withinRadius(-10.0, -10.0, 1.0);
+        index.put(delivery(5_000L, -10.0, -10.0, DeliveryStatus.IN_TRANSIT));
+
+        // Assert
+        assertTrue(atOldPlace.isEmpty());
+        assertEquals(List.of(5_000L), ids(atNewPlace));
+        assertTrue(index.withinRadius(-10.0, -10.0, 1.0).isEmpty());
+        assertEquals(pending().size(), index.size());
+    }
+
+    @Test
+    void handleDeliveryChange_ShouldDropTheDeliveriesOfADeletedCustomer() {
+        // Arrange: three pending deliveries of one customer, among the ones around Lyon
+        DeliveryChangeListener listener = new DeliveryChangeListener(index, null, new GeoProperties());
+        List<Long> customerDeliveries = List.of(6_001L, 6_002L, 6_003L);
+        for (Long id : customerDeliveries) {
+            listener.handleDeliveryChange(DeliveryChangeEvent.saved(this,
+                    delivery(id, 45.75 + id % 10 * 0.001, 4.85, DeliveryStatus.PENDING)));
+        }
+        assertTrue(ids(index.nearest(45.752, 4.85, 3)).containsAll(customerDeliveries));
+
+        // Act: the events CustomerServiceImpl.deleteById publishes for the deliveries deleted by cascade
+        for (Long id : customerDeliveries) {
+            listener.handleDeliveryChange(DeliveryChangeEvent.deleted(this, id));
+        }
+
+        // Assert: the index answers as the database now would
+        List<Long> nearby = ids(index.withinRadius(45.752, 4.85, 5.0));
+        List<Long> nearest = ids(index.nearest(45.752, 4.85, 10));
+        for (Long id : customerDeliveries) {
+            assertFalse(nearby.contains(id));
+            assertFalse(nearest.contains(id));
+        }
+        assertEquals(pending().size(), index.size());
+    }
+
+    @Test
+    void handleDeliveryChange_ShouldShowTheTourOfAPlannedDelivery() {
+        // Arrange
+        DeliveryChangeListener listener = new DeliveryChangeListener(index, null, new GeoProperties());
+        DeliveryDTO planned = delivery(7_000L, 20.0, 20.0, DeliveryStatus.PENDING);
+        listener.handleDeliveryChange(DeliveryChangeEvent.saved(this, planned));
+
+        // Act: planTours leaves the delivery PENDING but on a tour
+        listener.handleDeliveryChange(DeliveryChangeEvent.saved(this, DeliveryDTO.builder()
+                .id(7_000L)
+                .latitude(20.0)
+                .longitude(20.0)
+                .status(DeliveryStatus.PENDING)
+                .tourId(42L)
+                .build()));
+
+        // Assert
+        List<DeliveryDTO> found = index.withinRadius(20.0, 20.0, 1.0);
+        assertEquals(List.of(7_000L), ids(found));
+        assertEquals(Long.valueOf(42), found.get(0).getTourId());
+    }
+
+    @Test
+    void load_ShouldKeepTheChangesMadeBeforeIt() {
+        // Arrange
+        PendingDeliveryIndex loading = new PendingDeliveryIndex(0.05);
+        loading.remove(1L);
+        loading.put(delivery(2L, 1.0, 1.0, DeliveryStatus.PENDING));
+        assertFalse(loading.isReady());
+
+        // Act: the database read started before the changes
+        loading.load(List.of(
+                delivery(1L, 45.0, 4.0, DeliveryStatus.PENDING),
+                delivery(2L, 45.0, 4.0, DeliveryStatus.PENDING),
+                delivery(3L, 45.0, 4.0, DeliveryStatus.PENDING)));
+
+        // Assert
+        assertTrue(loading.isReady());
+        assertEquals(List.of(3L), ids(loading.withinRadius(45.0, 4.0, 1.0)));
+        assertEquals(List.of(2L), ids(loading.withinRadius(1.0, 1.0, 1.0)));
+    }
+
+    @Test
+    void constructor_ShouldRejectAnInvalidCellSize() {
+        assertThrows(IllegalArgumentException.class, () -> new PendingDeliveryIndex(0));
+        assertThrows(IllegalArgumentException.class, () -> new PendingDeliveryIndex(91));
+        assertThrows(IllegalArgumentException.class, () -> new PendingDeliveryIndex(Double.NaN));
+    }
+
+    private List<DeliveryDTO> pending() {
+        return deliveries.stream()
+                .filter(delivery -> delivery.getStatus() == DeliveryStatus.PENDING)
+                .collect(Collectors.toList());
+    }
+
+    private static double distance(double latitude, double longitude, DeliveryDTO delivery) {
+        return GeoUtils.haversineKm(latitude, longitude, delivery.getLatitude(), delivery.getLongitude());
+    }
+
+    private static List<Long> ids(List<DeliveryDTO> deliveries) {
+        return deliveries.stream().map(DeliveryDTO::getId).collect(Collectors.toList());
+    }
+
+    private static DeliveryDTO delivery(Long id, double latitude, double longitude, DeliveryStatus status) {
+        return DeliveryDTO.builder()
+                .id(id)
+                .latitude(latitude)
+                .longitude(longitude)
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,122 @@
+package com.delivrey.service.impl;
+
+import com.delivrey.config.GeoProperties;
+import com.delivrey.dao.CustomerDao;
+import com.delivrey.dto.CustomerDto;
+import com.delivrey.entity.Customer;
+import com.delivrey.entity.Delivery;
+import com.delivrey.event.DeliveryChangeEvent;
+import com.delivrey.exception.NotFoundException;
+import com.delivrey.mapper.CustomerMapper;
+import com.delivrey.repository.DeliveryHistoryRepository;
+import com.delivrey.repository.DeliveryRepository;
+import com.delivrey.service.DeliveryStatsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerServiceImplTest {
+
+    @Mock
+    private CustomerDao customerDao;
+
+    @Mock
+    private DeliveryHistoryRepository deliveryHistoryRepository;
+
+    @Mock
+    private DeliveryStatsService deliveryStatsService;
+
+    @Mock
+    private DeliveryRepository deliveryRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private CustomerMapper customerMapper;
+
+    @Mock
+    private GeoProperties geoProperties;
+
+    @InjectMocks
+    private CustomerServiceImpl customerService;
+
+    @Test
+    void deleteById_ShouldPublishTheDeletionOfEveryDelivery_WhenTheyGoByCascade() {
+        // Arrange
+        when(customerDao.existsById(7L)).thenReturn(true);
+        when(deliveryRepository.findByCustomerId(7L)).thenReturn(List.of(delivery(11L), delivery(12L)));
+        when(deliveryHistoryRepository.findByCustomerId(7L)).thenReturn(List.of());
+
+        // Act
+        customerService.deleteById(7L);
+
+        // Assert
+        ArgumentCaptor<DeliveryChangeEvent> events = ArgumentCaptor.forClass(DeliveryChangeEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertEquals(List.of(11L, 12L), events.getAllValues().stream().map(DeliveryChangeEvent::getDeliveryId).toList());
+        assertTrue(events.getAllValues().stream().allMatch(DeliveryChangeEvent::isDeleted));
+        verify(customerDao).deleteById(7L);
+    }
+
+    @Test
+    void deleteById_ShouldPublishNothing_WhenTheCustomerDoesNotExist() {
+        // Arrange
+        when(customerDao.existsById(7L)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(NotFoundException.class, () -> customerService.deleteById(7L));
+        verify(customerDao, never()).deleteById(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void findNearby_ShouldSearchWithPostgis_WhenEnabled() {
+        // Arrange
+        PageRequest pageable = PageRequest.of(0, 20);
+        when(geoProperties.isPostgis()).thenReturn(true);
+        when(customerDao.findNearbyPostgis(48.85, 2.35, 5.0, "Martin", null, pageable))
+                .thenReturn(new PageImpl<>(List.of(new Customer()), pageable, 1));
+
+        // Act
+        Page<CustomerDto> page = customerService.findNearby(48.85, 2.35, 5.0, "Martin", null, pageable);
+
+        // Assert
+        assertEquals(1, page.getTotalElements());
+        verify(customerDao, never()).findNearby(anyDouble(), anyDouble(), anyDouble(), any(), any(), any());
+    }
+
+    @Test
+    void findNearby_ShouldSearchTheBoundingBox_WhenPostgisIsDisabled() {
+        // Arrange
+        PageRequest pageable = PageRequest.of(0, 20);
+        when(customerDao.findNearby(48.85, 2.35, 5.0, null, "Paris", pageable))
+                .thenReturn(new PageImpl<>(List.of(), pageable, 0));
+
+        // Act
+        Page<CustomerDto> page = customerService.findNearby(48.85, 2.35, 5.0, null, "Paris", pageable);
+
+        // Assert
+        assertTrue(page.isEmpty());
+        verify(customerDao, never()).findNearbyPostgis(anyDouble(), anyDouble(), anyDouble(), any(), any(), any());
+    }
+
+    private static Delivery delivery(Long id) {
+        Delivery delivery = new Delivery();
+        delivery.setId(id);
+        return delivery;
+    }
+}
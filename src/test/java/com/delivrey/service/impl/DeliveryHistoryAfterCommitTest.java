@@ -0,0 +1,158 @@
+package com.delivrey.service.impl;
+
+import com.delivrey.config.DeliveryHistoryProperties;
+import com.delivrey.entity.Customer;
+import com.delivrey.entity.CustomerDeliveryStats;
+import com.delivrey.entity.Delivery;
+import com.delivrey.entity.Tour;
+import com.delivrey.entity.TourStatus;
+import com.delivrey.event.TourStatusChangeEvent;
+import com.delivrey.mapper.DeliveryHistoryMapper;
+import com.delivrey.repository.CustomerDeliveryStatsRepository;
+import com.delivrey.repository.DeliveryHistoryRepository;
+import com.delivrey.service.DeliveryHistoryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes the history of a tour from an AFTER_COMMIT listener on the thread that committed the
+ * status change, where the committed transaction is still bound: the histories must be committed
+ * in a transaction of their own and not be lost with it. Each test commits for real.
+ * Runs without the second-level cache, whose regions only EntityCacheConfigTest creates.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@Import({DeliveryHistoryServiceImpl.class, DeliveryStatsServiceImpl.class, DeliveryHistoryAfterCommitTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DeliveryHistoryAfterCommitTest {
+
+    @TestConfiguration
+    @EnableConfigurationProperties(DeliveryHistoryProperties.class)
+    static class Config {
+
+        // Same phase as TourStatusChangeListener, without its executor: runs on the committing thread
+        @Bean
+        HistoryOnCommit historyOnCommit(DeliveryHistoryService deliveryHistoryService) {
+            return new HistoryOnCommit(deliveryHistoryService);
+        }
+    }
+
+    static class HistoryOnCommit {
+
+        private final DeliveryHistoryService deliveryHistoryService;
+
+        HistoryOnCommit(DeliveryHistoryService deliveryHistoryService) {
+            this.deliveryHistoryService = deliveryHistoryService;
+        }
+
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+        public void onTourStatusChange(TourStatusChangeEvent event) {
+            deliveryHistoryService.createHistoryFromTour(event.getTour());
+        }
+    }
+
+    @MockitoBean
+    private DeliveryHistoryMapper deliveryHistoryMapper;
+
+    @MockitoBean
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private DeliveryHistoryRepository deliveryHistoryRepository;
+
+    @Autowired
+    private CustomerDeliveryStatsRepository customerDeliveryStatsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void createHistoryFromTour_ShouldCommitTheHistories_WhenCalledAfterCommit() {
+        // Arrange
+        Tour planned = transaction.execute(status -> {
+            Customer customer = new Customer();
+            customer.setName("Boulangerie Martin");
+            customer.setAddress("12 rue de la Paix, Paris");
+            customer.setLatitude(48.8698);
+            customer.setLongitude(2.3311);
+            entityManager.persist(customer);
+
+            Delivery first = delivery(customer, 48.8700, 2.3300);
+            Delivery second = delivery(customer, 48.8650, 2.3400);
+            entityManager.persist(first);
+            entityManager.persist(second);
+
+            Tour tour = new Tour();
+            tour.setTourDate(LocalDate.of(2025, 6, 2));
+            tour.setTourStatus(TourStatus.IN_PROGRESS);
+            tour.setDeliveries(List.of(first, second));
+            entityManager.persist(tour);
+            return tour;
+        });
+        Long tourId = planned.getId();
+        Long customerId = planned.getDeliveries().get(0).getCustomer().getId();
+
+        // Act: the status change commits, then the listener writes the history
+        transaction.executeWithoutResult(status -> {
+            Tour tour = entityManager.find(Tour.class, tourId);
+            tour.setTourStatus(TourStatus.COMPLETED);
+            eventPublisher.publishEvent(new TourStatusChangeEvent(this, tour, TourStatus.IN_PROGRESS,
+                    TourStatus.COMPLETED));
+        });
+
+        // Assert: read back from a new transaction
+        assertEquals(2, deliveryHistoryRepository.countByTourId(tourId));
+        CustomerDeliveryStats stats = customerDeliveryStatsRepository.findById(customerId).orElseThrow();
+        assertEquals(2, stats.getTotalDeliveries());
+        assertEquals(TourStatus.COMPLETED, transaction.execute(status ->
+                entityManager.find(Tour.class, tourId).getTourStatus()));
+    }
+
+    private static Delivery delivery(Customer customer, double latitude, double longitude) {
+        Delivery delivery = new Delivery();
+        delivery.setCustomer(customer);
+        delivery.setAddress("Paris");
+        delivery.setLatitude(latitude);
+        delivery.setLongitude(longitude);
+        delivery.setWeight(5.0);
+        delivery.setVolume(0.1);
+        delivery.setTimeWindow("09:00-11:00");
+        return delivery;
+    }
+}
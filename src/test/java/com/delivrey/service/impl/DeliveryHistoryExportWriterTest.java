@@ -0,0 +1,141 @@
+package com.delivrey.service.impl;
+
+import com.delivrey.dto.DeliveryHistoryDto;
+import com.delivrey.entity.DeliveryStatus;
+import com.delivrey.entity.TourStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeliveryHistoryExportWriterTest {
+
+    // Configured like the ObjectMapper of Spring Boot: dates as ISO strings
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private TrackingOutputStream out;
+    private DeliveryHistoryDto complete;
+    private DeliveryHistoryDto sparse;
+
+    @BeforeEach
+    void setUp() {
+        out = new TrackingOutputStream();
+        complete = DeliveryHistoryDto.builder()
+                .id(1L)
+                .customerId(10L)
+                .deliveryId(100L)
+                .tourId(7L)
+                .deliveryDate(LocalDate.of(2025, 6, 2))
+                .plannedTime(LocalTime.of(9, 0))
+                .actualTime(LocalTime.of(9, 12))
+                .delayMinutes(12)
+                .deliveryStatus(DeliveryStatus.DELIVERED)
+                .tourStatus(TourStatus.COMPLETED)
+                .notes("Laissé chez le gardien, \"bâtiment B\"")
+                .build();
+        sparse = DeliveryHistoryDto.builder()
+                .id(2L)
+                .deliveryDate(LocalDate.of(2025, 6, 3))
+                .build();
+    }
+
+    @Test
+    void ndjson_ShouldWriteOneObjectPerLine() throws IOException {
+        // Arrange
+        DeliveryHistoryExportWriter writer = DeliveryHistoryExportWriter.ndjson(out, objectMapper);
+
+        // Act
+        writer.write(complete);
+        writer.write(sparse);
+        writer.flush();
+
+        // Assert
+        String[] lines = out.text().split("\n", -1);
+        assertEquals(3, lines.length);
+        assertEquals("", lines[2]);
+        assertEquals(complete, objectMapper.readValue(lines[0], DeliveryHistoryDto.class));
+        assertEquals(sparse, objectMapper.readValue(lines[1], DeliveryHistoryDto.class));
+        assertTrue(lines[0].contains("\"deliveryDate\":\"2025-06-02\""), lines[0]);
+        assertFalse(out.closed);
+    }
+
+    @Test
+    void csv_ShouldWriteAHeader_ThenOneLinePerHistory() throws IOException {
+        // Arrange
+        DeliveryHistoryExportWriter writer = DeliveryHistoryExportWriter.csv(out);
+
+        // Act
+        writer.write(complete);
+        writer.write(sparse);
+        writer.flush();
+
+        // Assert
+        assertEquals("id,customerId,deliveryId,tourId,deliveryDate,plannedTime,actualTime,delayMinutes,"
+                        + "deliveryStatus,tourStatus,notes\n"
+                        + "1,10,100,7,2025-06-02,09:00,09:12,12,DELIVERED,COMPLETED,"
+                        + "\"Laissé chez le gardien, \"\"bâtiment B\"\"\"\n"
+                        + "2,,,,2025-06-03,,,,,,\n",
+                out.text());
+        assertFalse(out.closed);
+    }
+
+    @Test
+    void write_ShouldOnlyReachTheStream_OnFlush() throws IOException {
+        // Arrange
+        DeliveryHistoryExportWriter ndjson = DeliveryHistoryExportWriter.ndjson(out, objectMapper);
+        TrackingOutputStream csvOut = new TrackingOutputStream();
+        DeliveryHistoryExportWriter csv = DeliveryHistoryExportWriter.csv(csvOut);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            ndjson.write(complete);
+            csv.write(complete);
+        }
+
+        // Assert: rows are buffered rather than written to the socket one by one
+        assertEquals(0, out.size());
+        assertEquals(0, csvOut.size());
+        ndjson.flush();
+        csv.flush();
+        assertEquals(10, out.text().lines().count());
+        assertEquals(11, csvOut.text().lines().count());
+    }
+
+    @Test
+    void quote_ShouldOnlyQuoteTextHoldingASeparator() {
+        assertEquals("", DeliveryHistoryExportWriter.quote(null));
+        assertEquals("Sonner deux fois", DeliveryHistoryExportWriter.quote("Sonner deux fois"));
+        assertEquals("\"Porte 2, interphone\"", DeliveryHistoryExportWriter.quote("Porte 2, interphone"));
+        assertEquals("\"Dire \"\"bonjour\"\"\"", DeliveryHistoryExportWriter.quote("Dire \"bonjour\""));
+        assertEquals("\"Ligne 1\nLigne 2\"", DeliveryHistoryExportWriter.quote("Ligne 1\nLigne 2"));
+        assertEquals("\"Ligne 1\r\nLigne 2\"", DeliveryHistoryExportWriter.quote("Ligne 1\r\nLigne 2"));
+    }
+
+    private static final class TrackingOutputStream extends ByteArrayOutputStream {
+
+        private boolean closed;
+
+        String text() {
+            return toString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
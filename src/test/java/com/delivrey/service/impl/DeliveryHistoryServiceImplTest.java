@@ -0,0 +1,304 @@
+package com.delivrey.service.impl;
+
+import com.delivrey.config.DeliveryHistoryProperties;
+import com.delivrey.dto.DeliveryHistoryDto;
+import com.delivrey.dto.DeliveryStatsDto;
+import com.delivrey.entity.Customer;
+import com.delivrey.entity.CustomerDeliveryStats;
+import com.delivrey.entity.DayOfWeekDeliveryStats;
+import com.delivrey.entity.Delivery;
+import com.delivrey.entity.DeliveryHistory;
+import com.delivrey.entity.Tour;
+import com.delivrey.entity.TourDeliveryStats;
+import com.delivrey.entity.TourStatus;
+import com.delivrey.exception.InvalidRequestParameterException;
+import com.delivrey.mapper.DeliveryHistoryMapper;
+import com.delivrey.repository.CustomerDeliveryStatsRepository;
+import com.delivrey.repository.DayOfWeekDeliveryStatsRepository;
+import com.delivrey.repository.DeliveryHistoryRepository;
+import com.delivrey.repository.TourDeliveryStatsRepository;
+import com.delivrey.service.DeliveryHistoryService;
+import com.delivrey.service.DeliveryStatsService;
+import com.delivrey.util.KeysetCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeliveryHistoryServiceImplTest {
+
+    @Mock
+    private DeliveryHistoryRepository deliveryHistoryRepository;
+
+    @Mock
+    private DeliveryHistoryMapper deliveryHistoryMapper;
+
+    @Mock
+    private DeliveryStatsService deliveryStatsService;
+
+    @Mock
+    private CustomerDeliveryStatsRepository customerDeliveryStatsRepository;
+
+    @Mock
+    private TourDeliveryStatsRepository tourDeliveryStatsRepository;
+
+    @Mock
+    private DayOfWeekDeliveryStatsRepository dayOfWeekDeliveryStatsRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private DeliveryHistoryProperties properties;
+    private DeliveryHistoryServiceImpl service;
+    private Tour tour;
+
+    @BeforeEach
+    void setUp() {
+        properties = new DeliveryHistoryProperties();
+        service = new DeliveryHistoryServiceImpl(deliveryHistoryRepository, deliveryHistoryMapper, properties,
+                deliveryStatsService, customerDeliveryStatsRepository, tourDeliveryStatsRepository,
+                dayOfWeekDeliveryStatsRepository, entityManager, new ObjectMapper());
+
+        tour = new Tour();
+        tour.setId(7L);
+        // A Monday
+        tour.setTourDate(LocalDate.of(2025, 6, 2));
+        tour.setTourStatus(TourStatus.COMPLETED);
+    }
+
+    @Test
+    void createHistoryFromTour_ShouldDoNothing_WhenTourIsNotCompleted() {
+        // Arrange
+        tour.setTourStatus(TourStatus.IN_PROGRESS);
+
+        // Act
+        service.createHistoryFromTour(tour);
+
+        // Assert
+        verifyNoInteractions(deliveryHistoryRepository, deliveryStatsService, entityManager);
+    }
+
+    @Test
+    void createHistoryFromTour_ShouldSaveOneHistoryPerStop_AndAddThemToTheStats() {
+        // Arrange
+        when(deliveryHistoryRepository.findTourStops(7L)).thenReturn(List.of(
+                stop(1L, 10L, "09:00-11:00", "14:00-16:00"),
+                stop(2L, 20L, null, "14:00-16:00"),
+                stop(3L, 30L, "n'importe quand", null)));
+        when(entityManager.getReference(eq(Tour.class), any())).thenAnswer(invocation -> {
+            Tour reference = new Tour();
+            reference.setId(invocation.getArgument(1));
+            return reference;
+        });
+        when(entityManager.getReference(eq(Customer.class), any())).thenAnswer(invocation -> {
+            Customer reference = new Customer();
+            reference.setId(invocation.getArgument(1));
+            return reference;
+        });
+        when(entityManager.getReference(eq(Delivery.class), any())).thenAnswer(invocation -> {
+            Delivery reference = new Delivery();
+            reference.setId(invocation.getArgument(1));
+            return reference;
+        });
+
+        // Act
+        service.createHistoryFromTour(tour);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DeliveryHistory>> saved = ArgumentCaptor.forClass(List.class);
+        verify(deliveryHistoryRepository).saveAll(saved.capture());
+        List<DeliveryHistory> histories = saved.getValue();
+        assertEquals(3, histories.size());
+
+        // The customer's preferred slot first, then the delivery's, noon when neither can be read
+        assertEquals(LocalTime.of(9, 0), histories.get(0).getPlannedTime());
+        assertEquals(LocalTime.of(14, 0), histories.get(1).getPlannedTime());
+        assertEquals(LocalTime.NOON, histories.get(2).getPlannedTime());
+        for (int i = 0; i < histories.size(); i++) {
+            DeliveryHistory history = histories.get(i);
+            assertEquals(7L, history.getTour().getId());
+            assertEquals((i + 1) * 10L, history.getCustomer().getId());
+            assertEquals(i + 1L, history.getDelivery().getId());
+            assertEquals(tour.getTourDate(), history.getDeliveryDate());
+            assertNotNull(history.getActualTime());
+            assertNotNull(history.getDelayMinutes());
+        }
+        verify(deliveryStatsService).add(histories);
+        verify(deliveryHistoryRepository, never()).insertHistoryForTour(any(), any(), any(), any());
+    }
+
+    @Test
+    void createHistoryFromTour_ShouldAddTheInsertedHistoriesToTheStats_WhenInsertSelect() {
+        // Arrange
+        properties.setInsertSelect(true);
+        List<DeliveryHistory> inserted = List.of(new DeliveryHistory(), new DeliveryHistory());
+        when(deliveryHistoryRepository.insertHistoryForTour(eq(7L), eq(tour.getTourDate()), any(LocalTime.class),
+                eq("MONDAY"))).thenReturn(inserted);
+
+        // Act
+        service.createHistoryFromTour(tour);
+
+        // Assert
+        verify(deliveryStatsService).add(inserted);
+        verify(deliveryHistoryRepository, never()).findTourStops(any());
+        verify(deliveryHistoryRepository, never()).saveAll(anyList());
+        verifyNoInteractions(entityManager);
+    }
+
+    @Test
+    void export_ShouldWriteEveryHistoryOfTheTour_AndCloseTheStream() throws IOException {
+        // Arrange
+        LocalDate start = LocalDate.of(2025, 6, 1);
+        LocalDate end = LocalDate.of(2025, 6, 30);
+        AtomicBoolean closed = new AtomicBoolean();
+        DeliveryHistory first = new DeliveryHistory().setId(1L);
+        DeliveryHistory second = new DeliveryHistory().setId(2L);
+        when(deliveryHistoryRepository.streamByTourIdAndDeliveryDateBetween(7L, start, end))
+                .thenReturn(Stream.of(first, second).onClose(() -> closed.set(true)));
+        when(deliveryHistoryMapper.toDto(first)).thenReturn(DeliveryHistoryDto.builder().id(1L).tourId(7L).build());
+        when(deliveryHistoryMapper.toDto(second)).thenReturn(DeliveryHistoryDto.builder().id(2L).tourId(7L).build());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long count = service.export(start, end, 7L, DeliveryHistoryService.ExportFormat.CSV, out);
+
+        // Assert
+        assertEquals(2, count);
+        assertTrue(closed.get());
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).startsWith("1,,,7,"));
+        assertTrue(lines.get(2).startsWith("2,,,7,"));
+        verify(deliveryHistoryRepository, never()).streamByDeliveryDateBetween(any(), any());
+    }
+
+    @Test
+    void getCustomerDeliveryStats_ShouldReturnTheStatsInTheOrderOfTheIds_WithZerosForTheMissingOnes() {
+        // Arrange
+        CustomerDeliveryStats first = new CustomerDeliveryStats(1L);
+        first.add(10);
+        first.add(0);
+        first.add(null);
+        CustomerDeliveryStats third = new CustomerDeliveryStats(3L);
+        third.add(-4);
+        when(customerDeliveryStatsRepository.findAllById(List.of(3L, 2L, 1L))).thenReturn(List.of(first, third));
+
+        // Act: duplicates and nulls are dropped
+        List<DeliveryStatsDto> stats = service.getCustomerDeliveryStats(Arrays.asList(3L, 2L, null, 1L, 3L));
+
+        // Assert
+        assertEquals(List.of(3L, 2L, 1L), stats.stream().map(DeliveryStatsDto::getId).toList());
+        assertEquals(1, stats.get(0).getTotalDeliveries());
+        assertEquals(-4.0, stats.get(0).getAverageDelay());
+        assertEquals(new DeliveryStatsDto(2L, 0, 0, 0.0, 0), stats.get(1));
+        assertEquals(new DeliveryStatsDto(1L, 3, 1, 5.0, 10), stats.get(2));
+        verify(customerDeliveryStatsRepository, times(1)).findAllById(anyIterable());
+        verifyNoInteractions(deliveryHistoryRepository);
+    }
+
+    @Test
+    void getTourDeliveryStats_ShouldQueryTheIdsInBatches() {
+        // Arrange
+        List<Long> ids = LongStream.rangeClosed(1, 2_500).boxed().toList();
+        List<Integer> batchSizes = new ArrayList<>();
+        when(tourDeliveryStatsRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<Long> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            TourDeliveryStats row = new TourDeliveryStats(batch.get(0));
+            row.add(5);
+            return List.of(row);
+        });
+
+        // Act
+        List<DeliveryStatsDto> stats = service.getTourDeliveryStats(ids);
+
+        // Assert
+        assertEquals(List.of(1_000, 1_000, 500), batchSizes);
+        assertEquals(2_500, stats.size());
+        assertEquals(1, stats.get(0).getTotalDeliveries());
+        assertEquals(1, stats.get(1_000).getTotalDeliveries());
+        assertEquals(0, stats.get(1).getTotalDeliveries());
+        assertEquals(ids, stats.stream().map(DeliveryStatsDto::getId).toList());
+    }
+
+    @Test
+    void getAverageDelayByDayOfWeek_ShouldOnlyAverageTheLateDeliveries_OfTheDaysWithAny() {
+        // Arrange
+        DayOfWeekDeliveryStats monday = new DayOfWeekDeliveryStats(DayOfWeek.MONDAY);
+        monday.add(10);
+        monday.add(20);
+        monday.add(-5);
+        DayOfWeekDeliveryStats tuesday = new DayOfWeekDeliveryStats(DayOfWeek.TUESDAY);
+        tuesday.add(0);
+        when(dayOfWeekDeliveryStatsRepository.findAll()).thenReturn(List.of(monday, tuesday));
+
+        // Act
+        Map<DayOfWeek, Double> averages = service.getAverageDelayByDayOfWeek();
+
+        // Assert
+        assertEquals(Map.of(DayOfWeek.MONDAY, 15.0), averages);
+    }
+
+    @Test
+    void findAll_ShouldThrowInvalidRequestParameterException_WhenThePageRequestIsInvalid() {
+        // Arrange: a cursor of the tour listing, which has no date
+        String tourCursor = new KeysetCursor(null, 42L).encode();
+
+        // Act & Assert
+        assertThrows(InvalidRequestParameterException.class, () -> service.findAll(null, 0, false));
+        assertThrows(InvalidRequestParameterException.class, () -> service.findAll(tourCursor, 20, false));
+        verifyNoInteractions(deliveryHistoryRepository);
+    }
+
+    private static DeliveryHistoryRepository.TourStop stop(Long deliveryId, Long customerId,
+                                                           String preferredTimeSlot, String timeWindow) {
+        return new DeliveryHistoryRepository.TourStop() {
+            @Override
+            public Long getDeliveryId() {
+                return deliveryId;
+            }
+
+            @Override
+            public Long getCustomerId() {
+                return customerId;
+            }
+
+            @Override
+            public String getPreferredTimeSlot() {
+                return preferredTimeSlot;
+            }
+
+            @Override
+            public String getTimeWindow() {
+                return timeWindow;
+            }
+        };
+    }
+}
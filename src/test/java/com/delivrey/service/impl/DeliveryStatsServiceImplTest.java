@@ -0,0 +1,219 @@
+package com.delivrey.service.impl;
+
+import com.delivrey.entity.Customer;
+import com.delivrey.entity.Delivery;
+import com.delivrey.entity.DeliveryHistory;
+import com.delivrey.entity.DeliveryStats;
+import com.delivrey.entity.Tour;
+import com.delivrey.entity.TourStatus;
+import com.delivrey.repository.CustomerDeliveryStatsRepository;
+import com.delivrey.repository.DayOfWeekDeliveryStatsRepository;
+import com.delivrey.repository.DeliveryHistoryRepository;
+import com.delivrey.repository.TourDeliveryStatsRepository;
+import com.delivrey.service.DeliveryStatsService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The totals kept up to date history by history must be the ones the backfill computes from
+ * delivery_history in bulk. Each test commits for real: missing rows are created in a
+ * transaction of their own.
+ * Runs without the second-level cache, whose regions only EntityCacheConfigTest creates.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@Import(DeliveryStatsServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DeliveryStatsServiceImplTest {
+
+    // Late, on time, early, unknown: every branch of the totals
+    private static final Integer[] DELAYS = {12, 0, -5, null, 30, 3};
+
+    @Autowired
+    private DeliveryStatsService deliveryStatsService;
+
+    @Autowired
+    private DeliveryHistoryRepository deliveryHistoryRepository;
+
+    @Autowired
+    private CustomerDeliveryStatsRepository customerDeliveryStatsRepository;
+
+    @Autowired
+    private TourDeliveryStatsRepository tourDeliveryStatsRepository;
+
+    @Autowired
+    private DayOfWeekDeliveryStatsRepository dayOfWeekDeliveryStatsRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            deliveryHistoryRepository.deleteAllInBatch();
+            customerDeliveryStatsRepository.deleteAllInBatch();
+            tourDeliveryStatsRepository.deleteAllInBatch();
+            dayOfWeekDeliveryStatsRepository.deleteAllInBatch();
+        });
+    }
+
+    @Test
+    void add_ShouldGiveTheTotalsOfTheBackfill() {
+        // Arrange & Act: two tours written one after the other, as createHistoryFromTour does
+        writeTour(LocalDate.of(2025, 6, 2), 2);
+        writeTour(LocalDate.of(2025, 6, 3), 3);
+        List<List<Object>> incremented = totals();
+
+        // Assert
+        assertFalse(incremented.isEmpty());
+        transaction.executeWithoutResult(status -> deliveryStatsService.rebuild());
+        assertEquals(totals(), incremented);
+    }
+
+    @Test
+    void remove_ShouldGiveTheTotalsOfTheBackfill_OfTheHistoriesLeft() {
+        // Arrange
+        List<DeliveryHistory> histories = writeTour(LocalDate.of(2025, 6, 2), 2);
+        writeTour(LocalDate.of(2025, 6, 4), 2);
+
+        // Act: every other history of the first tour goes, as when its delivery is deleted
+        transaction.executeWithoutResult(status -> {
+            List<DeliveryHistory> removed = new ArrayList<>();
+            for (int i = 0; i < histories.size(); i += 2) {
+                removed.add(histories.get(i));
+            }
+            deliveryStatsService.remove(removed);
+            deliveryHistoryRepository.deleteAllByIdInBatch(removed.stream().map(DeliveryHistory::getId).toList());
+        });
+        List<List<Object>> decremented = totals();
+
+        // Assert
+        transaction.executeWithoutResult(status -> deliveryStatsService.rebuild());
+        assertEquals(totals(), decremented);
+    }
+
+    @Test
+    void remove_ShouldSkipMissingRows_WhenTheTotalsWereNeverBackfilled() {
+        // Arrange: histories written without the totals
+        List<DeliveryHistory> histories = transaction.execute(status -> persistTour(LocalDate.of(2025, 6, 2), 1));
+
+        // Act
+        transaction.executeWithoutResult(status -> deliveryStatsService.remove(histories));
+
+        // Assert
+        assertEquals(0, customerDeliveryStatsRepository.count());
+        assertEquals(0, tourDeliveryStatsRepository.count());
+        assertEquals(0, dayOfWeekDeliveryStatsRepository.count());
+    }
+
+    @Test
+    void needsBackfill_ShouldBeTrue_OnlyWhileThereAreHistoriesWithoutTotals() {
+        // Arrange
+        assertFalse(deliveryStatsService.needsBackfill());
+        transaction.executeWithoutResult(status -> persistTour(LocalDate.of(2025, 6, 2), 1));
+
+        // Act & Assert
+        assertTrue(deliveryStatsService.needsBackfill());
+        long counted = transaction.execute(status -> deliveryStatsService.rebuild());
+        assertEquals(DELAYS.length, counted);
+        assertFalse(deliveryStatsService.needsBackfill());
+    }
+
+    private List<DeliveryHistory> writeTour(LocalDate date, int customers) {
+        return transaction.execute(status -> {
+            List<DeliveryHistory> histories = persistTour(date, customers);
+            deliveryStatsService.add(histories);
+            return histories;
+        });
+    }
+
+    /**
+     * One history per delay in {@link #DELAYS}, spread over {@code customers} new customers.
+     */
+    private List<DeliveryHistory> persistTour(LocalDate date, int customers) {
+        List<Customer> owners = new ArrayList<>();
+        for (int c = 0; c < customers; c++) {
+            Customer customer = new Customer();
+            customer.setName("Client " + c);
+            customer.setAddress("Lyon");
+            customer.setLatitude(45.76);
+            customer.setLongitude(4.83);
+            entityManager.persist(customer);
+            owners.add(customer);
+        }
+        Tour tour = new Tour();
+        tour.setTourDate(date);
+        tour.setTourStatus(TourStatus.COMPLETED);
+        entityManager.persist(tour);
+
+        List<DeliveryHistory> histories = new ArrayList<>();
+        for (int i = 0; i < DELAYS.length; i++) {
+            Customer customer = owners.get(i % customers);
+            Delivery delivery = new Delivery();
+            delivery.setCustomer(customer);
+            delivery.setAddress("Lyon");
+            delivery.setLatitude(45.76);
+            delivery.setLongitude(4.83);
+            delivery.setWeight(5.0);
+            delivery.setVolume(0.1);
+            delivery.setTimeWindow("09:00-11:00");
+            entityManager.persist(delivery);
+
+            DeliveryHistory history = new DeliveryHistory()
+                    .setCustomer(customer)
+                    .setDelivery(delivery)
+                    .setTour(tour)
+                    .setDeliveryDate(date)
+                    .setPlannedTime(LocalTime.of(9, 0))
+                    .setDelayMinutes(DELAYS[i]);
+            entityManager.persist(history);
+            histories.add(history);
+        }
+        return histories;
+    }
+
+    /**
+     * Every non-empty row of the three tables, as comparable values.
+     */
+    private List<List<Object>> totals() {
+        List<List<Object>> rows = new ArrayList<>();
+        rows.addAll(rows(customerDeliveryStatsRepository.findAll(), stats -> stats.getCustomerId()));
+        rows.addAll(rows(tourDeliveryStatsRepository.findAll(), stats -> stats.getTourId()));
+        rows.addAll(rows(dayOfWeekDeliveryStatsRepository.findAll(), stats -> stats.getDayOfWeek()));
+        return rows;
+    }
+
+    private static <S extends DeliveryStats> List<List<Object>> rows(List<S> stats, Function<S, Object> key) {
+        return stats.stream()
+                .filter(row -> row.getTotalDeliveries() > 0)
+                .map(row -> List.<Object>of(row.getClass().getSimpleName(), key.apply(row), row.getTotalDeliveries(),
+                        row.getOnTimeDeliveries(), row.getLateDeliveries(), row.getDelayCount(), row.getTotalDelay(),
+                        row.getLateDelay()))
+                .sorted((a, b) -> a.toString().compareTo(b.toString()))
+                .toList();
+    }
+}
@@ -0,0 +1,199 @@
+package com.delivrey.service.impl;
+
+import com.delivrey.config.DeliveryHistoryProperties;
+import com.delivrey.config.FleetPlanningProperties;
+import com.delivrey.config.GeoProperties;
+import com.delivrey.config.LocalSearchProperties;
+import com.delivrey.config.MultiStartProperties;
+import com.delivrey.dto.DeliveryDTO;
+import com.delivrey.dto.DeliveryHistoryDto;
+import com.delivrey.dto.TourDTO;
+import com.delivrey.entity.Customer;
+import com.delivrey.entity.Delivery;
+import com.delivrey.entity.DeliveryHistory;
+import com.delivrey.entity.DeliveryStatus;
+import com.delivrey.entity.Tour;
+import com.delivrey.entity.TourStatus;
+import com.delivrey.mapper.CustomerMapperImpl;
+import com.delivrey.mapper.DeliveryHistoryMapperImpl;
+import com.delivrey.mapper.DeliveryMapperImpl;
+import com.delivrey.mapper.TourMapperImpl;
+import com.delivrey.optimizer.ClarkeWrightOptimizer;
+import com.delivrey.optimizer.TimeWindowOptimizer;
+import com.delivrey.optimizer.TourOptimizer;
+import com.delivrey.service.DeliveryHistoryService;
+import com.delivrey.service.DeliveryService;
+import com.delivrey.service.DeliveryServiceImpl;
+import com.delivrey.service.OptimizationResultCache;
+import com.delivrey.service.PendingDeliveryIndex;
+import com.delivrey.service.TourService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static com.delivrey.support.StatementCountAssertions.assertMaxStatements;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The paged listings of histories, deliveries and tours run a fixed number of statements
+ * whatever the page size: every row has a customer, delivery and tour of its own, so loading
+ * an association row by row would show at once.
+ * Runs without the second-level cache, whose regions only EntityCacheConfigTest creates.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@Import({DeliveryHistoryServiceImpl.class, DeliveryStatsServiceImpl.class, DeliveryServiceImpl.class,
+        TourServiceImpl.class, DeliveryHistoryMapperImpl.class, DeliveryMapperImpl.class, CustomerMapperImpl.class,
+        TourMapperImpl.class, ListingStatementCountTest.Config.class})
+class ListingStatementCountTest {
+
+    private static final int ROWS = 60;
+    private static final int[] PAGE_SIZES = {5, 50};
+
+    @TestConfiguration
+    @EnableConfigurationProperties({DeliveryHistoryProperties.class, GeoProperties.class,
+            LocalSearchProperties.class, FleetPlanningProperties.class, MultiStartProperties.class})
+    static class Config {
+
+        // Resolved as in OptimizerConfig, which the slice leaves out; listings never optimize
+        @Bean
+        @Primary
+        TourOptimizer nearestNeighbor() {
+            return mock(TourOptimizer.class);
+        }
+
+        @Bean
+        TourOptimizer aiOptimizer() {
+            return mock(TourOptimizer.class);
+        }
+    }
+
+    @MockitoBean
+    private ClarkeWrightOptimizer clarkeWrightOptimizer;
+
+    @MockitoBean
+    private TimeWindowOptimizer timeWindowOptimizer;
+
+    @MockitoBean
+    private OptimizationResultCache optimizationResultCache;
+
+    @MockitoBean
+    private PendingDeliveryIndex pendingDeliveryIndex;
+
+    @MockitoBean
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DeliveryHistoryService deliveryHistoryService;
+
+    @Autowired
+    private DeliveryService deliveryService;
+
+    @Autowired
+    private TourService tourService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        LocalDate date = LocalDate.of(2025, 6, 2);
+        for (int i = 0; i < ROWS; i++) {
+            Customer customer = new Customer();
+            customer.setName("Client " + i);
+            customer.setAddress("Lyon");
+            customer.setLatitude(45.76);
+            customer.setLongitude(4.83);
+            entityManager.persist(customer);
+
+            Delivery delivery = new Delivery();
+            delivery.setCustomer(customer);
+            delivery.setAddress("Lyon");
+            delivery.setLatitude(45.76);
+            delivery.setLongitude(4.83);
+            delivery.setWeight(5.0);
+            delivery.setVolume(0.1);
+            delivery.setTimeWindow("09:00-11:00");
+            entityManager.persist(delivery);
+
+            Tour tour = new Tour();
+            tour.setTourDate(date);
+            tour.setTourStatus(TourStatus.COMPLETED);
+            tour.setDeliveries(List.of(delivery));
+            entityManager.persist(tour);
+
+            entityManager.persist(new DeliveryHistory()
+                    .setCustomer(customer)
+                    .setDelivery(delivery)
+                    .setTour(tour)
+                    .setDeliveryDate(date)
+                    .setPlannedTime(LocalTime.of(9, 0))
+                    .setDelayMinutes(0));
+        }
+        // Nothing left in the persistence context: every association the listings touch is read from the database
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void deliveryHistoryFindAll_ShouldRunTheSameStatements_WhenThePageGrows() {
+        for (int size : PAGE_SIZES) {
+            // Act: page select and count
+            Page<DeliveryHistoryDto> page = assertMaxStatements(2,
+                    () -> deliveryHistoryService.findAll(PageRequest.of(0, size)));
+
+            // Assert: the statuses come from the fetched delivery and tour
+            assertEquals(size, page.getNumberOfElements());
+            assertEquals(ROWS, page.getTotalElements());
+            page.forEach(history -> {
+                assertEquals(DeliveryStatus.PENDING, history.getDeliveryStatus());
+                assertEquals(TourStatus.COMPLETED, history.getTourStatus());
+            });
+        }
+    }
+
+    @Test
+    void getDeliveriesByStatus_ShouldRunTheSameStatements_WhenThePageGrows() {
+        for (int size : PAGE_SIZES) {
+            // Act: page select and count
+            Page<DeliveryDTO> page = assertMaxStatements(2,
+                    () -> deliveryService.getDeliveriesByStatus(DeliveryStatus.PENDING, PageRequest.of(0, size)));
+
+            // Assert: the customer names come from the fetched customers
+            assertEquals(size, page.getNumberOfElements());
+            assertEquals(ROWS, page.getTotalElements());
+            page.forEach(delivery -> assertTrue(delivery.getCustomerName().startsWith("Client ")));
+        }
+    }
+
+    @Test
+    void getAllTours_ShouldRunTheSameStatements_WhenThePageGrows() {
+        for (int size : PAGE_SIZES) {
+            // Act: summaries, count and one batch of delivery ids
+            Page<TourDTO> page = assertMaxStatements(3, () -> tourService.getAllTours(PageRequest.of(0, size)));
+
+            // Assert
+            assertEquals(size, page.getNumberOfElements());
+            assertEquals(ROWS, page.getTotalElements());
+            page.forEach(tour -> assertEquals(1, tour.getDeliveryIds().size()));
+        }
+    }
+}
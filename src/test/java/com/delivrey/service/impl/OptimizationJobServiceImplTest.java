@@ -0,0 +1,193 @@
+package com.delivrey.service.impl;
+
+import com.delivrey.dto.OptimizationJobDTO;
+import com.delivrey.dto.OptimizationJobDTO.Status;
+import com.delivrey.entity.Delivery;
+import com.delivrey.entity.Tour;
+import com.delivrey.exception.EntityNotFoundException;
+import com.delivrey.exception.OptimizationBusyException;
+import com.delivrey.optimizer.SearchMonitor;
+import com.delivrey.optimizer.TourSnapshot;
+import com.delivrey.repository.TourRepository;
+import com.delivrey.service.OptimizationJobListener;
+import com.delivrey.service.TourService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OptimizationJobServiceImplTest {
+
+    @Mock
+    private TourService tourService;
+
+    @Mock
+    private TourRepository tourRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private OptimizationJobListener listener;
+
+    private TourSnapshot snapshot;
+    private Delivery stop;
+
+    @BeforeEach
+    void setUp() {
+        Tour tour = new Tour();
+        tour.setId(1L);
+        snapshot = TourSnapshot.of(tour, List.of());
+        stop = new Delivery();
+        stop.setId(10L);
+        stop.setLatitude(48.85);
+        stop.setLongitude(2.35);
+    }
+
+    @Test
+    void cancel_ShouldCancelAQueuedJob_WithoutRunningIt() {
+        // Arrange: an executor that only queues its tasks
+        List<Runnable> queued = new ArrayList<>();
+        OptimizationJobServiceImpl service = new OptimizationJobServiceImpl(tourService, tourRepository,
+                new TaskExecutorAdapter(queued::add), transactionManager);
+        when(tourRepository.existsById(1L)).thenReturn(true);
+        OptimizationJobDTO submitted = service.submit(1L, "NN", listener);
+
+        // Act
+        OptimizationJobDTO cancelled = service.cancel(submitted.getId());
+        queued.forEach(Runnable::run);
+
+        // Assert
+        assertEquals(Status.QUEUED, submitted.getStatus());
+        assertEquals(Status.CANCELLED, cancelled.getStatus());
+        assertNull(cancelled.getStartedAt());
+        assertEquals(Status.CANCELLED, service.getJob(submitted.getId()).getStatus());
+        verify(listener, times(1)).onFinished(argThat(job -> job.getStatus() == Status.CANCELLED));
+        verifyNoInteractions(tourService, transactionManager);
+    }
+
+    @Test
+    void cancel_ShouldStopARunningSearch_AndKeepItsBestRoute() throws InterruptedException {
+        // Arrange: a search that runs until its monitor tells it to stop
+        OptimizationJobServiceImpl service = new OptimizationJobServiceImpl(tourService, tourRepository,
+                new SimpleAsyncTaskExecutor(), transactionManager);
+        when(tourRepository.existsById(1L)).thenReturn(true);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(tourService.getTourSnapshot(1L)).thenReturn(snapshot);
+        CountDownLatch searching = new CountDownLatch(1);
+        when(tourService.optimize(eq(snapshot), eq("NN+2OPT"), any())).thenAnswer(invocation -> {
+            // No transaction is open while searching
+            verifyNoInteractions(transactionManager);
+            SearchMonitor monitor = invocation.getArgument(2);
+            monitor.onImprovement(12.5);
+            searching.countDown();
+            while (!monitor.shouldStop()) {
+                Thread.onSpinWait();
+            }
+            return List.of(stop);
+        });
+        when(tourService.getDeliveries(List.of(stop))).thenReturn(List.of(stop));
+        OptimizationJobDTO submitted = service.submit(1L, "NN+2OPT", listener);
+        assertTrue(searching.await(5, TimeUnit.SECONDS), "the search did not start");
+
+        // Act
+        OptimizationJobDTO cancelling = service.cancel(submitted.getId());
+
+        // Assert: still running until the search polls its monitor, then cancelled with its route
+        assertTrue(cancelling.getStatus() == Status.RUNNING || cancelling.getStatus() == Status.CANCELLED);
+        verify(listener, timeout(5_000)).onFinished(argThat(job -> job.getStatus() == Status.CANCELLED));
+        OptimizationJobDTO job = service.getJob(submitted.getId());
+        assertEquals(Status.CANCELLED, job.getStatus());
+        assertEquals(12.5, job.getBestCost());
+        assertEquals(1, job.getResult().size());
+        assertEquals(10L, job.getResult().get(0).getId());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void cancel_ShouldLeaveACompletedJobAsItIs() {
+        // Arrange: an executor running its tasks on the caller
+        OptimizationJobServiceImpl service = new OptimizationJobServiceImpl(tourService, tourRepository,
+                new TaskExecutorAdapter(Runnable::run), transactionManager);
+        when(tourRepository.existsById(1L)).thenReturn(true);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(tourService.getTourSnapshot(1L)).thenReturn(snapshot);
+        when(tourService.optimize(eq(snapshot), eq("NN"), any())).thenReturn(List.of(stop));
+        when(tourService.getDeliveries(List.of(stop))).thenReturn(List.of(stop));
+        String jobId = service.submit(1L, "NN", listener).getId();
+
+        // Act
+        OptimizationJobDTO job = service.cancel(jobId);
+
+        // Assert
+        assertEquals(Status.COMPLETED, job.getStatus());
+        assertNotNull(job.getFinishedAt());
+        verify(listener, times(1)).onFinished(any());
+    }
+
+    @Test
+    void run_ShouldReportTheFailure_WhenTheSearchThrows() {
+        // Arrange
+        OptimizationJobServiceImpl service = new OptimizationJobServiceImpl(tourService, tourRepository,
+                new TaskExecutorAdapter(Runnable::run), transactionManager);
+        when(tourRepository.existsById(1L)).thenReturn(true);
+        when(tourService.getTourSnapshot(1L)).thenThrow(new IllegalStateException("Tour has no deliveries"));
+
+        // Act
+        String jobId = service.submit(1L, "NN").getId();
+
+        // Assert
+        OptimizationJobDTO job = service.getJob(jobId);
+        assertEquals(Status.FAILED, job.getStatus());
+        assertEquals("Tour has no deliveries", job.getError());
+        verify(tourService, never()).optimize(any(), any(), any());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void submit_ShouldThrowOptimizationBusyException_WhenTheExecutorIsFull() {
+        // Arrange
+        OptimizationJobServiceImpl service = new OptimizationJobServiceImpl(tourService, tourRepository,
+                new TaskExecutorAdapter(task -> {
+                    throw new TaskRejectedException("Executor is full");
+                }), transactionManager);
+        when(tourRepository.existsById(1L)).thenReturn(true);
+
+        // Act & Assert
+        OptimizationBusyException exception = assertThrows(OptimizationBusyException.class,
+                () -> service.submit(1L, "NN", listener));
+        assertInstanceOf(TaskRejectedException.class, exception.getCause());
+        verifyNoInteractions(listener, tourService);
+    }
+
+    @Test
+    void submit_ShouldThrowException_WhenTourDoesNotExist() {
+        // Arrange
+        OptimizationJobServiceImpl service = new OptimizationJobServiceImpl(tourService, tourRepository,
+                new TaskExecutorAdapter(Runnable::run), transactionManager);
+        when(tourRepository.existsById(99L)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(EntityNotFoundException.class, () -> service.submit(99L, "NN"));
+        assertThrows(EntityNotFoundException.class, () -> service.getJob("unknown"));
+        assertThrows(EntityNotFoundException.class, () -> service.cancel("unknown"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.delivrey.support;
+
+import com.delivrey.util.StatementCounter;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Assertions on the number of SQL statements a piece of work runs, to catch a listing that
+ * starts loading its associations row by row. Needs a Spring test context with the application's
+ * Hibernate settings (StatementCounter as statement inspector); the work must run on the test's
+ * thread. Typical use: the same listing for a page of 5 and of 50 rows runs the same number of statements.
+ * <pre>
+ * Page&lt;DeliveryHistoryDto&gt; page = assertMaxStatements(2, () -&gt; service.findAll(PageRequest.of(0, 50)));
+ * </pre>
+ */
+public final class StatementCountAssertions {
+
+    private StatementCountAssertions() {}
+
+    /**
+     * Statements run by {@code work}.
+     */
+    public static long countStatements(Runnable work) {
+        long start = StatementCounter.count();
+        work.run();
+        return StatementCounter.count() - start;
+    }
+
+    public static <T> T assertStatements(long expected, Supplier<T> work) {
+        long start = StatementCounter.count();
+        T result = work.get();
+        assertEquals(expected, StatementCounter.count() - start, "SQL statements run");
+        return result;
+    }
+
+    public static void assertStatements(long expected, Runnable work) {
+        assertEquals(expected, countStatements(work), "SQL statements run");
+    }
+
+    public static <T> T assertMaxStatements(long max, Supplier<T> work) {
+        long start = StatementCounter.count();
+        T result = work.get();
+        long statements = StatementCounter.count() - start;
+        assertTrue(statements <= max, () -> statements + " SQL statements run, at most " + max + " expected");
+        return result;
+    }
+
+    public static void assertMaxStatements(long max, Runnable work) {
+        long statements = countStatements(work);
+        assertTrue(statements <= max, () -> statements + " SQL statements run, at most " + max + " expected");
+    }
+}
@@ -0,0 +1,92 @@
+package com.delivrey.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoUtilsTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void boundingBox_ShouldContainTheWholeCircle_AndTouchIt() {
+        double[][] centers = {{48.8566, 2.3522}, {-33.87, 151.21}, {0.0, 0.0}, {70.0, -20.0}, {-79.5, 10.0}};
+        for (double[] center : centers) {
+            for (double radiusKm : new double[]{0.5, 10.0, 250.0}) {
+                // Act
+                GeoUtils.BoundingBox box = GeoUtils.boundingBox(center[0], center[1], radiusKm);
+
+                // Assert: every point of the circle is inside, and the box reaches its farthest ones
+                double minLatitude = 90.0;
+                double maxLatitude = -90.0;
+                double minLongitude = 180.0;
+                double maxLongitude = -180.0;
+                for (int bearing = 0; bearing < 360 * 8; bearing++) {
+                    double[] point = destination(center[0], center[1], bearing / 8.0, radiusKm);
+                    assertTrue(contains(box, point), () -> "center " + center[0] + ", " + center[1]);
+                    minLatitude = Math.min(minLatitude, point[0]);
+                    maxLatitude = Math.max(maxLatitude, point[0]);
+                    minLongitude = Math.min(minLongitude, point[1]);
+                    maxLongitude = Math.max(maxLongitude, point[1]);
+                }
+                double tolerance = (box.maxLatitude() - box.minLatitude()) * 1e-3;
+                assertEquals(minLatitude, box.minLatitude(), tolerance);
+                assertEquals(maxLatitude, box.maxLatitude(), tolerance);
+                assertEquals(minLongitude, box.minLongitude(), tolerance / Math.cos(Math.toRadians(center[0])));
+                assertEquals(maxLongitude, box.maxLongitude(), tolerance / Math.cos(Math.toRadians(center[0])));
+            }
+        }
+    }
+
+    @Test
+    void boundingBox_ShouldSpanEveryLongitude_WhenTheCircleCoversAPole() {
+        // Act
+        GeoUtils.BoundingBox north = GeoUtils.boundingBox(89.8, 45.0, 50.0);
+        GeoUtils.BoundingBox south = GeoUtils.boundingBox(-89.9, -120.0, 50.0);
+
+        // Assert
+        assertEquals(90.0, north.maxLatitude(), EPSILON);
+        assertEquals(-180.0, north.minLongitude());
+        assertEquals(180.0, north.maxLongitude());
+        assertEquals(-90.0, south.minLatitude(), EPSILON);
+        assertEquals(-180.0, south.minLongitude());
+        assertEquals(180.0, south.maxLongitude());
+        assertTrue(contains(north, destination(89.8, 45.0, 0.0, 49.0)));
+        assertTrue(contains(south, destination(-89.9, -120.0, 180.0, 49.0)));
+    }
+
+    @Test
+    void boundingBox_ShouldSpanEveryLongitude_WhenTheCircleCrossesTheAntimeridian() {
+        for (double longitude : new double[]{179.9, -179.9}) {
+            // Act
+            GeoUtils.BoundingBox box = GeoUtils.boundingBox(10.0, longitude, 50.0);
+
+            // Assert: the points on the other side of the antimeridian are inside
+            assertEquals(-180.0, box.minLongitude());
+            assertEquals(180.0, box.maxLongitude());
+            for (int bearing = 0; bearing < 360; bearing++) {
+                assertTrue(contains(box, destination(10.0, longitude, bearing, 50.0)));
+            }
+        }
+    }
+
+    private static boolean contains(GeoUtils.BoundingBox box, double[] point) {
+        return point[0] >= box.minLatitude() - EPSILON && point[0] <= box.maxLatitude() + EPSILON
+                && point[1] >= box.minLongitude() - EPSILON && point[1] <= box.maxLongitude() + EPSILON;
+    }
+
+    /**
+     * Point {@code distanceKm} away from the start in the given direction, longitude wrapped to [-180, 180].
+     */
+    private static double[] destination(double latitude, double longitude, double bearingDegrees, double distanceKm) {
+        double angle = distanceKm / GeoUtils.EARTH_RADIUS_KM;
+        double bearing = Math.toRadians(bearingDegrees);
+        double rLat = Math.toRadians(latitude);
+        double lat = Math.asin(Math.sin(rLat) * Math.cos(angle)
+                + Math.cos(rLat) * Math.sin(angle) * Math.cos(bearing));
+        double lon = Math.toRadians(longitude) + Math.atan2(Math.sin(bearing) * Math.sin(angle) * Math.cos(rLat),
+                Math.cos(angle) - Math.sin(rLat) * Math.sin(lat));
+        double lonDegrees = ((Math.toDegrees(lon) + 540.0) % 360.0) - 180.0;
+        return new double[]{Math.toDegrees(lat), lonDegrees};
+    }
+}
@@ -0,0 +1,58 @@
+package com.delivrey.util;
+
+import com.delivrey.exception.InvalidRequestParameterException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+
+    @Test
+    void decode_ShouldReturnTheEncodedCursor() {
+        KeysetCursor[] cursors = {
+                new KeysetCursor(LocalDate.of(2025, 6, 2), 42L),
+                new KeysetCursor(null, 42L),
+                new KeysetCursor(LocalDate.of(1969, 12, 31), -1L),
+                new KeysetCursor(LocalDate.MIN, Long.MIN_VALUE),
+                new KeysetCursor(LocalDate.MAX, Long.MAX_VALUE)};
+        for (KeysetCursor cursor : cursors) {
+            assertEquals(cursor, KeysetCursor.decode(cursor.encode()));
+        }
+    }
+
+    @Test
+    void encode_ShouldBeSafeInAUrl() {
+        // Act
+        String token = new KeysetCursor(LocalDate.of(2025, 6, 2), Long.MAX_VALUE).encode();
+
+        // Assert: no '+', '/' nor '=' padding
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void decode_ShouldRejectTokensItDidNotMake() {
+        String[] tokens = {
+                "",
+                "not base64!",
+                token("2:20000:42"),
+                token("1:20000"),
+                token("1:20000:42:7"),
+                token("1:abc:42"),
+                token("1:20000:"),
+                token("1:99999999999999:42"),
+                token("1:20000:99999999999999999999")};
+        for (String token : tokens) {
+            InvalidRequestParameterException e = assertThrows(InvalidRequestParameterException.class,
+                    () -> KeysetCursor.decode(token), token);
+            assertTrue(e.getMessage().startsWith("Invalid page token"));
+        }
+    }
+
+    private static String token(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+}
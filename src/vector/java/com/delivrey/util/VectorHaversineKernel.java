@@ -0,0 +1,57 @@
+package com.delivrey.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static com.delivrey.util.GeoUtils.EARTH_RADIUS_KM;
+
+/**
+ * {@link ScalarHaversineKernel} on SIMD lanes with the incubating Vector API. Only compiled with
+ * the {@code vector} profile, and only used when the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}; GeoUtils falls back to the scalar kernel otherwise.
+ */
+final class VectorHaversineKernel implements HaversineKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final ScalarHaversineKernel tail = new ScalarHaversineKernel();
+
+    @Override
+    public void distancesKm(double latitude, double longitude, double cosLatitude,
+                            GeoUtils.Points to, int start, int end, double[] out, int offset) {
+        double[] latitudes = to.latitudes;
+        double[] longitudes = to.longitudes;
+        double[] cosLatitudes = to.cosLatitudes;
+        boolean flatOrigin = cosLatitude >= ScalarHaversineKernel.MIN_COS_LATITUDE;
+        int j = start;
+        for (int upper = start + SPECIES.loopBound(end - start); j < upper; j += SPECIES.length()) {
+            DoubleVector dLat = DoubleVector.fromArray(SPECIES, latitudes, j).sub(latitude);
+            DoubleVector dLon = DoubleVector.fromArray(SPECIES, longitudes, j).sub(longitude);
+            DoubleVector cos = DoubleVector.fromArray(SPECIES, cosLatitudes, j);
+
+            VectorMask<Double> flat = dLat.abs().compare(VectorOperators.LE, ScalarHaversineKernel.MAX_SPAN)
+                    .and(dLon.abs().compare(VectorOperators.LE, ScalarHaversineKernel.MAX_SPAN))
+                    .and(cos.compare(VectorOperators.GE, ScalarHaversineKernel.MIN_COS_LATITUDE));
+            if (!flatOrigin) {
+                flat = SPECIES.maskAll(false);
+            }
+
+            DoubleVector x = dLon.mul(cos.add(cosLatitude).mul(0.5));
+            DoubleVector distance = x.mul(x).add(dLat.mul(dLat)).sqrt().mul(EARTH_RADIUS_KM);
+            if (!flat.allTrue()) {
+                // Transcendentals only for the lanes that need them
+                DoubleVector sinLat = dLat.mul(0.5).lanewise(VectorOperators.SIN);
+                DoubleVector sinLon = dLon.mul(0.5).lanewise(VectorOperators.SIN);
+                DoubleVector a = sinLat.mul(sinLat).add(cos.mul(cosLatitude).mul(sinLon).mul(sinLon)).min(1.0);
+                DoubleVector haversine = a.sqrt().lanewise(VectorOperators.ASIN).mul(2 * EARTH_RADIUS_KM);
+                distance = haversine.blend(distance, flat);
+            }
+            distance.intoArray(out, offset + j - start);
+        }
+        if (j < end) {
+            tail.distancesKm(latitude, longitude, cosLatitude, to, j, end, out, offset + j - start);
+        }
+    }
+}